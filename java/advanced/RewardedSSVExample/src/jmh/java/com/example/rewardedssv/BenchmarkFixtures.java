@@ -0,0 +1,73 @@
+package com.example.rewardedssv;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Base64;
+
+/**
+ * Locally generated ECDSA P-256 keys and signed callbacks, so benchmarks run fully offline.
+ */
+public final class BenchmarkFixtures {
+  public static final long KEY_ID = 1268887L;
+
+  private final KeyPair keyPair;
+
+  public BenchmarkFixtures() throws GeneralSecurityException {
+    KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+    generator.initialize(new ECGenParameterSpec("secp256r1"));
+    this.keyPair = generator.generateKeyPair();
+  }
+
+  public KeyPair getKeyPair() {
+    return keyPair;
+  }
+
+  /** Returns a verifier keys document in the format served by the AdMob key server. */
+  public String keysJson(int extraKeys) throws GeneralSecurityException {
+    StringBuilder json = new StringBuilder("{\"keys\":[");
+    json.append(keyJson(KEY_ID, keyPair));
+    KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+    generator.initialize(new ECGenParameterSpec("secp256r1"));
+    for (int i = 0; i < extraKeys; i++) {
+      json.append(',').append(keyJson(KEY_ID + 1 + i, generator.generateKeyPair()));
+    }
+    return json.append("]}").toString();
+  }
+
+  private static String keyJson(long keyId, KeyPair keyPair) {
+    String base64 = Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded());
+    return String.format(
+        "{\"keyId\":%d,\"pem\":\"-----BEGIN PUBLIC KEY-----\\n%s\\n-----END PUBLIC KEY-----\","
+            + "\"base64\":\"%s\"}",
+        keyId, base64, base64);
+  }
+
+  /** Returns a realistically shaped signed callback query string. */
+  public String signedCallback(String transactionId) throws GeneralSecurityException {
+    String payload =
+        "ad_network=5450213213286189855"
+            + "&ad_unit=1234567890"
+            + "&custom_data=level%3D12%26source%3Dshop"
+            + "&reward_amount=10"
+            + "&reward_item=coins"
+            + "&timestamp="
+            + System.currentTimeMillis()
+            + "&transaction_id="
+            + transactionId
+            + "&user_id=4f2a9c1e77d04b1c";
+    return payload + "&signature=" + sign(payload) + "&key_id=" + KEY_ID;
+  }
+
+  /** Returns the URL-safe Base64 DER signature of {@code payload}. */
+  public String sign(String payload) throws GeneralSecurityException {
+    Signature signer = Signature.getInstance("SHA256withECDSA");
+    signer.initSign(keyPair.getPrivate());
+    signer.update(payload.getBytes(UTF_8));
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(signer.sign());
+  }
+}
@@ -0,0 +1,126 @@
+package com.example.rewardedssv;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.example.rewardedssv.CallbackQuery.Parameter;
+import com.example.rewardedssv.dedup.TransactionDedupStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * Full {@link SSVController#index} invocation against the real application context, with a local
+ * key set. Every invocation uses a fresh transaction id so that replay protection does not short
+ * circuit verification; {@code duplicate} measures the replay path. Iterations are kept short so
+ * that the pool of pre-signed callbacks is not exhausted.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ControllerBenchmark {
+  private static final int CALLBACKS = 100_000;
+
+  private ConfigurableApplicationContext context;
+  private SSVController controller;
+  private TransactionDedupStore dedupStore;
+  private Path keysFile;
+  private Path stateDirectory;
+  private String[] callbacks;
+  private String duplicate;
+  private final AtomicInteger next = new AtomicInteger();
+
+  @Setup(Level.Trial)
+  public void setUp() throws GeneralSecurityException, IOException {
+    BenchmarkFixtures fixtures = new BenchmarkFixtures();
+    keysFile = Files.createTempFile("verifier-keys", ".json");
+    Files.write(keysFile, fixtures.keysJson(1).getBytes(UTF_8));
+    stateDirectory = Files.createTempDirectory("ssv-state");
+    callbacks = new String[CALLBACKS];
+    for (int i = 0; i < CALLBACKS; i++) {
+      callbacks[i] = fixtures.signedCallback("bench-" + i);
+    }
+    duplicate = fixtures.signedCallback("bench-duplicate");
+    context =
+        new SpringApplicationBuilder(Application.class)
+            .web(WebApplicationType.NONE)
+            // The benchmark jar merges every auto-configuration list into one file, so the
+            // metrics auto-configuration may be missing; provide the registry explicitly.
+            .initializers(
+                context ->
+                    context
+                        .getBeanFactory()
+                        .registerSingleton("meterRegistry", new SimpleMeterRegistry()))
+            .properties(
+                "ssv.keys.url=file:" + keysFile,
+                "ssv.keys.snapshot-file=",
+                "ssv.ledger.store=file",
+                "ssv.ledger.file=" + stateDirectory.resolve("rewards.jsonl"),
+                "ssv.balance.directory=" + stateDirectory.resolve("balance"),
+                // Every request comes from the same address and ad unit; keep admission control in
+                // the measured path but out of reach.
+                "ssv.admission.address.rate-per-second=1e9",
+                "ssv.admission.ad-unit.rate-per-second=1e9",
+                "logging.level.root=WARN")
+            .run();
+    controller = context.getBean(SSVController.class);
+    dedupStore = context.getBean(TransactionDedupStore.class);
+    controller.index(request(duplicate)).join();
+  }
+
+  /** Forgets the callbacks used by the previous iteration, so the pool can be replayed. */
+  @Setup(Level.Iteration)
+  public void releaseTransactions() {
+    int used = Math.min(next.getAndSet(0), CALLBACKS);
+    for (int i = 0; i < used; i++) {
+      CallbackQuery query = CallbackQuery.parse(callbacks[i]);
+      dedupStore.release(
+          query.value(Parameter.TRANSACTION_ID), query.longValue(Parameter.TIMESTAMP));
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    context.close();
+    Files.deleteIfExists(keysFile);
+    FileSystemUtils.deleteRecursively(stateDirectory);
+  }
+
+  @Benchmark
+  public ResponseEntity<byte[]> verify() {
+    return controller.index(request(callbacks[next.getAndIncrement() % CALLBACKS])).join();
+  }
+
+  @Benchmark
+  public ResponseEntity<byte[]> duplicate() {
+    return controller.index(request(duplicate)).join();
+  }
+
+  private static MockHttpServletRequest request(String queryString) {
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/verify");
+    request.setQueryString(queryString);
+    return request;
+  }
+}
@@ -0,0 +1,61 @@
+package com.example.rewardedssv;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.example.rewardedssv.CallbackQuery.Parameter;
+import java.net.URLDecoder;
+import java.security.GeneralSecurityException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Payload extraction: the original parameter map, substring and copy approach against the single
+ * pass {@link CallbackQuery} parser. Run with the gc profiler to compare allocations per request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class QueryParsingBenchmark {
+  private String queryString;
+
+  @Setup
+  public void setUp() throws GeneralSecurityException {
+    queryString = new BenchmarkFixtures().signedCallback("11d3c1a0b6e84bf4a9f3b01ccab5c7e2");
+  }
+
+  /** What SSVController.index() did originally, with the servlet parameter map emulated. */
+  @Benchmark
+  public void legacyExtraction(Blackhole blackhole) {
+    Map<String, String[]> parameters = new HashMap<>();
+    for (String pair : queryString.split("&")) {
+      int separator = pair.indexOf('=');
+      parameters.put(
+          URLDecoder.decode(pair.substring(0, separator), UTF_8),
+          new String[] {URLDecoder.decode(pair.substring(separator + 1), UTF_8)});
+    }
+    Long keyId = Long.valueOf(parameters.get("key_id")[0]);
+    String signature = parameters.get("signature")[0];
+    byte[] payload = queryString.substring(0, queryString.indexOf("signature") - 1).getBytes(UTF_8);
+    blackhole.consume(keyId);
+    blackhole.consume(signature);
+    blackhole.consume(payload);
+    blackhole.consume(new String(payload));
+  }
+
+  @Benchmark
+  public void callbackQuery(Blackhole blackhole) {
+    CallbackQuery query = CallbackQuery.parse(queryString);
+    blackhole.consume(query.getKeyId());
+    blackhole.consume(query.getPayloadLength());
+    blackhole.consume(query.longValue(Parameter.TIMESTAMP));
+  }
+}
@@ -0,0 +1,38 @@
+package com.example.rewardedssv;
+
+import com.google.crypto.tink.subtle.Base64;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** URL-safe Base64 decoding of the callback signature. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SignatureDecodingBenchmark {
+  private String signature;
+  private CallbackQuery query;
+
+  @Setup
+  public void setUp() throws GeneralSecurityException {
+    BenchmarkFixtures fixtures = new BenchmarkFixtures();
+    signature = fixtures.sign("ad_network=5450213213286189855&transaction_id=123");
+    query = CallbackQuery.parse(fixtures.signedCallback("123"));
+  }
+
+  @Benchmark
+  public byte[] tinkUrlSafeDecode() {
+    return Base64.urlSafeDecode(signature);
+  }
+
+  @Benchmark
+  public byte[] callbackQueryDecode() {
+    return query.decodeSignature();
+  }
+}
@@ -0,0 +1,65 @@
+package com.example.rewardedssv.keys;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.example.rewardedssv.BenchmarkFixtures;
+import com.google.crypto.tink.subtle.EcdsaVerifyJce;
+import com.google.crypto.tink.subtle.EllipticCurves.EcdsaEncoding;
+import com.google.crypto.tink.subtle.Enums.HashType;
+import java.security.GeneralSecurityException;
+import java.security.interfaces.ECPublicKey;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * ECDSA P-256 verification: a new {@link EcdsaVerifyJce} per callback, as the controller used to
+ * do, against a reused one and against the thread-local {@link KeyVerifier}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EcdsaVerifyBenchmark {
+  private ECPublicKey publicKey;
+  private EcdsaVerifyJce reusedVerifier;
+  private KeyVerifier keyVerifier;
+  private byte[] payload;
+  private byte[] signature;
+
+  @Setup
+  public void setUp() throws GeneralSecurityException {
+    BenchmarkFixtures fixtures = new BenchmarkFixtures();
+    publicKey = (ECPublicKey) fixtures.getKeyPair().getPublic();
+    String payloadString = "ad_network=5450213213286189855&reward_amount=10&transaction_id=123";
+    payload = payloadString.getBytes(UTF_8);
+    signature = Base64.getUrlDecoder().decode(fixtures.sign(payloadString));
+    reusedVerifier = new EcdsaVerifyJce(publicKey, HashType.SHA256, EcdsaEncoding.DER);
+    keyVerifier = new KeyVerifier(BenchmarkFixtures.KEY_ID, publicKey);
+  }
+
+  @Benchmark
+  public EcdsaVerifyJce constructEcdsaVerifyJce() throws GeneralSecurityException {
+    return new EcdsaVerifyJce(publicKey, HashType.SHA256, EcdsaEncoding.DER);
+  }
+
+  @Benchmark
+  public void constructAndVerify() throws GeneralSecurityException {
+    new EcdsaVerifyJce(publicKey, HashType.SHA256, EcdsaEncoding.DER).verify(signature, payload);
+  }
+
+  @Benchmark
+  public void reusedEcdsaVerifyJce() throws GeneralSecurityException {
+    reusedVerifier.verify(signature, payload);
+  }
+
+  @Benchmark
+  public void threadLocalKeyVerifier() throws GeneralSecurityException {
+    keyVerifier.verify(signature, payload);
+  }
+}
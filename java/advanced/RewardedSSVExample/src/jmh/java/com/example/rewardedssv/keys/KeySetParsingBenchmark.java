@@ -0,0 +1,40 @@
+package com.example.rewardedssv.keys;
+
+import com.example.rewardedssv.BenchmarkFixtures;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Parsing the verifier keys document and building the registry from it. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class KeySetParsingBenchmark {
+  @Param({"1", "4", "16"})
+  public int keys;
+
+  private String keysJson;
+
+  @Setup
+  public void setUp() throws GeneralSecurityException {
+    keysJson = new BenchmarkFixtures().keysJson(keys - 1);
+  }
+
+  @Benchmark
+  public Object parseKeysJson() throws GeneralSecurityException, JSONException {
+    return VerifierKeysJson.parse(keysJson);
+  }
+
+  @Benchmark
+  public VerifierRegistry parseAndBuildRegistry() throws GeneralSecurityException, JSONException {
+    return VerifierRegistry.build(1, VerifierKeysJson.parse(keysJson));
+  }
+}
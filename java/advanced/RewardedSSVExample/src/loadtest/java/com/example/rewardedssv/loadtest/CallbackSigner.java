@@ -0,0 +1,84 @@
+package com.example.rewardedssv.loadtest;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Base64;
+
+/**
+ * Generates an ECDSA P-256 key pair and signs SSV callbacks with it, the way AdMob does.
+ *
+ * <p>Not thread-safe; use one instance per thread, all sharing the same {@link KeyPair}.
+ */
+final class CallbackSigner {
+  private static final String AD_NETWORK = "5450213213286189855";
+
+  private final long keyId;
+  private final KeyPair keyPair;
+  private final Signature signer;
+
+  CallbackSigner(long keyId, KeyPair keyPair) throws GeneralSecurityException {
+    this.keyId = keyId;
+    this.keyPair = keyPair;
+    this.signer = Signature.getInstance("SHA256withECDSA");
+    signer.initSign(keyPair.getPrivate());
+  }
+
+  static KeyPair generateKeyPair() throws GeneralSecurityException {
+    KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+    generator.initialize(new ECGenParameterSpec("secp256r1"));
+    return generator.generateKeyPair();
+  }
+
+  /** Returns a key set document in the format served by the AdMob verifier keys URL. */
+  String keysJson() {
+    String base64 = Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded());
+    return String.format(
+        "{\"keys\":[{\"keyId\":%d,\"pem\":\"-----BEGIN PUBLIC KEY-----\\n%s\\n"
+            + "-----END PUBLIC KEY-----\",\"base64\":\"%s\"}]}",
+        keyId, base64, base64);
+  }
+
+  /**
+   * Returns a signed callback query string. If {@code tamper} is set the signature does not match
+   * the payload.
+   */
+  String callback(
+      String adUnit,
+      int rewardAmount,
+      long timestampMillis,
+      String transactionId,
+      String userId,
+      boolean tamper)
+      throws GeneralSecurityException {
+    String payload =
+        "ad_network="
+            + AD_NETWORK
+            + "&ad_unit="
+            + adUnit
+            + "&reward_amount="
+            + rewardAmount
+            + "&reward_item=coins"
+            + "&timestamp="
+            + timestampMillis
+            + "&transaction_id="
+            + transactionId
+            + "&user_id="
+            + userId;
+    signer.update(payload.getBytes(UTF_8));
+    byte[] signature = signer.sign();
+    if (tamper) {
+      // Flip a bit of s, so the DER encoding stays valid but the signature does not verify.
+      signature[signature.length - 1] ^= 1;
+    }
+    return payload
+        + "&signature="
+        + Base64.getUrlEncoder().withoutPadding().encodeToString(signature)
+        + "&key_id="
+        + keyId;
+  }
+}
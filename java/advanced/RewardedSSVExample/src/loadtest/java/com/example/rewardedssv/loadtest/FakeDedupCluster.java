@@ -0,0 +1,248 @@
+package com.example.rewardedssv.loadtest;
+
+import com.example.rewardedssv.dedup.ClusterDedupStore;
+import com.example.rewardedssv.dedup.DedupTransport;
+import com.example.rewardedssv.dedup.LocalDedupStore;
+import com.example.rewardedssv.dedup.TransactionDedupStore.Status;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs several {@link ClusterDedupStore} nodes in one process, connected by an in-process {@link
+ * DedupTransport} with a simulated network latency, to exercise cluster-wide replay protection on
+ * one machine.
+ *
+ * <p>Every transaction is delivered once and, for a share of them, retried on other nodes at the
+ * same time, the way AdMob retries a callback whose answer got lost behind a load balancer. The
+ * run fails unless each transaction is recorded exactly once. Afterwards one node is cut off and
+ * already recorded transactions are replayed: none may be recorded again, they must be answered as
+ * duplicates or refused as unavailable. {@code ClusterDedupStoreTest} checks both on a smaller
+ * scale with every build; this runs them at load. Options, all of the form {@code --name=value}:
+ * {@code nodes} (default 3), {@code transactions} (default 200000), {@code retry-rate} (default
+ * 0.3), {@code concurrency} (transactions in flight, default 512), {@code latency-micros} (one-way
+ * network delay, default 200) and {@code near-cache-size} (default 65536, 0 to disable).
+ */
+public final class FakeDedupCluster {
+  private FakeDedupCluster() {}
+
+  public static void main(String[] args) throws InterruptedException {
+    int nodeCount = 3;
+    int transactions = 200_000;
+    double retryRate = 0.3;
+    int concurrency = 512;
+    long latencyMicros = 200;
+    int nearCacheSize = 65536;
+    for (String arg : args) {
+      String[] option = arg.replaceFirst("^--", "").split("=", 2);
+      switch (option[0]) {
+        case "nodes":
+          nodeCount = Integer.parseInt(option[1]);
+          break;
+        case "transactions":
+          transactions = Integer.parseInt(option[1]);
+          break;
+        case "retry-rate":
+          retryRate = Double.parseDouble(option[1]);
+          break;
+        case "concurrency":
+          concurrency = Integer.parseInt(option[1]);
+          break;
+        case "latency-micros":
+          latencyMicros = Long.parseLong(option[1]);
+          break;
+        case "near-cache-size":
+          nearCacheSize = Integer.parseInt(option[1]);
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown option: " + arg);
+      }
+    }
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    InProcessTransport transport = new InProcessTransport(latencyMicros);
+    List<String> names = new ArrayList<>();
+    for (int i = 0; i < nodeCount; i++) {
+      names.add("node-" + i);
+    }
+    List<ClusterDedupStore> nodes = new ArrayList<>();
+    for (String name : names) {
+      ClusterDedupStore node =
+          new ClusterDedupStore(
+              new LocalDedupStore(60, 48, 1_000_000, 20_000_000),
+              names,
+              name,
+              128,
+              transport,
+              256,
+              0,
+              500,
+              4,
+              nearCacheSize,
+              "fake-cluster-secret",
+              meterRegistry);
+      transport.nodes.put(name, node);
+      nodes.add(node);
+    }
+
+    long timestamp = System.currentTimeMillis();
+    AtomicIntegerArray recorded = new AtomicIntegerArray(transactions);
+    Map<Object, AtomicLong> outcomes = new ConcurrentHashMap<>();
+    Semaphore inFlight = new Semaphore(concurrency);
+    long start = System.nanoTime();
+    for (int i = 0; i < transactions; i++) {
+      int deliveries = 1;
+      if (ThreadLocalRandom.current().nextDouble() < retryRate) {
+        deliveries += 1 + ThreadLocalRandom.current().nextInt(2);
+      }
+      int transaction = i;
+      List<CompletableFuture<Object>> handled = new ArrayList<>(deliveries);
+      inFlight.acquire();
+      for (int d = 0; d < deliveries; d++) {
+        ClusterDedupStore node = nodes.get(ThreadLocalRandom.current().nextInt(nodeCount));
+        handled.add(
+            deliver(node, "tx-" + transaction, timestamp)
+                .thenApply(
+                    outcome -> {
+                      if (outcome == Status.RECORDED) {
+                        recorded.incrementAndGet(transaction);
+                      }
+                      outcomes.computeIfAbsent(outcome, key -> new AtomicLong()).incrementAndGet();
+                      return outcome;
+                    }));
+      }
+      CompletableFuture.allOf(handled.toArray(new CompletableFuture<?>[0]))
+          .whenComplete((ignored, failure) -> inFlight.release());
+    }
+    inFlight.acquire(concurrency);
+    inFlight.release(concurrency);
+    long elapsedNanos = System.nanoTime() - start;
+
+    int missing = 0;
+    int doubled = 0;
+    for (int i = 0; i < transactions; i++) {
+      int count = recorded.get(i);
+      if (count == 0) {
+        missing++;
+      } else if (count > 1) {
+        doubled++;
+      }
+    }
+    long deliveries = outcomes.values().stream().mapToLong(AtomicLong::get).sum();
+    System.out.printf(
+        "%d nodes, %d transactions, %d deliveries in %d ms (%.0f deliveries/s)%n",
+        nodeCount,
+        transactions,
+        deliveries,
+        TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+        deliveries * 1e9 / elapsedNanos);
+    System.out.printf("outcomes: %s%n", outcomes);
+    System.out.printf(
+        "replay checks: local %.0f, near cache %.0f, remote %.0f%n",
+        meterRegistry.get("ssv.dedup.lookups").tag("source", "local").counter().count(),
+        meterRegistry.get("ssv.dedup.lookups").tag("source", "near_cache").counter().count(),
+        meterRegistry.get("ssv.dedup.lookups").tag("source", "remote").counter().count());
+    long requests = 0;
+    double operations = 0;
+    for (DistributionSummary summary :
+        meterRegistry.get("ssv.dedup.batch.size").summaries()) {
+      requests += summary.count();
+      operations += summary.totalAmount();
+    }
+    System.out.printf(
+        "remote requests: %d carrying %.0f operations (%.1f per request)%n",
+        requests, operations, requests == 0 ? 0 : operations / requests);
+    System.out.printf("missing: %d, recorded more than once: %d%n", missing, doubled);
+
+    // Cut off the last node and replay transactions: the ones it owns can no longer be checked on
+    // the other nodes, but must never be recorded twice.
+    transport.partitioned.add(names.get(nodeCount - 1));
+    Map<Object, AtomicLong> partitioned = new ConcurrentHashMap<>();
+    List<CompletableFuture<Object>> replays = new ArrayList<>();
+    int replayCount = Math.min(transactions, 10_000);
+    for (int i = 0; i < replayCount; i++) {
+      ClusterDedupStore node = nodes.get(ThreadLocalRandom.current().nextInt(nodeCount));
+      replays.add(
+          deliver(node, "tx-" + i, timestamp)
+              .whenComplete(
+                  (outcome, failure) ->
+                      partitioned
+                          .computeIfAbsent(outcome, key -> new AtomicLong())
+                          .incrementAndGet()));
+    }
+    CompletableFuture.allOf(replays.toArray(new CompletableFuture<?>[0])).join();
+    long recordedAgain = partitioned.getOrDefault(Status.RECORDED, new AtomicLong()).get();
+    System.out.printf(
+        "%d replays with %s cut off: %s%n", replayCount, names.get(nodeCount - 1), partitioned);
+
+    nodes.forEach(ClusterDedupStore::close);
+    transport.close();
+    if (missing > 0 || doubled > 0 || recordedAgain > 0) {
+      System.out.println("FAILED: transactions were not recorded exactly once.");
+      System.exit(1);
+    }
+    System.out.println("OK: every transaction was recorded exactly once.");
+  }
+
+  /**
+   * Handles a delivery the way the server does: a replay check, then recording. Returns {@code
+   * "caught_by_check"} for a callback the replay check catches, else the {@link Status} of
+   * recording.
+   */
+  private static CompletableFuture<Object> deliver(
+      ClusterDedupStore node, String transactionId, long timestamp) {
+    return node.isDuplicateAsync(transactionId, timestamp)
+        .thenCompose(
+            duplicate ->
+                duplicate
+                    ? CompletableFuture.completedFuture("caught_by_check")
+                    : node.recordAsync(transactionId, timestamp).thenApply(status -> status));
+  }
+
+  /** Delivers requests to the stores of the other nodes after the configured delay each way. */
+  private static final class InProcessTransport implements DedupTransport, AutoCloseable {
+    final Map<String, ClusterDedupStore> nodes = new ConcurrentHashMap<>();
+    final Set<String> partitioned = ConcurrentHashMap.newKeySet();
+    private final long latencyMicros;
+    private final ScheduledExecutorService network = Executors.newScheduledThreadPool(4);
+
+    InProcessTransport(long latencyMicros) {
+      this.latencyMicros = latencyMicros;
+    }
+
+    @Override
+    public CompletableFuture<byte[]> send(String node, byte[] request) {
+      CompletableFuture<byte[]> response = new CompletableFuture<>();
+      if (partitioned.contains(node)) {
+        response.completeExceptionally(new ConnectException(node + " is cut off"));
+        return response;
+      }
+      network.schedule(
+          () -> {
+            byte[] body = nodes.get(node).serve(request);
+            network.schedule(() -> response.complete(body), latencyMicros, TimeUnit.MICROSECONDS);
+          },
+          latencyMicros,
+          TimeUnit.MICROSECONDS);
+      return response;
+    }
+
+    @Override
+    public void close() {
+      network.shutdownNow();
+    }
+  }
+}
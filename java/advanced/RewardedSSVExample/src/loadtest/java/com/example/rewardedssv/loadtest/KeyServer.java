@@ -0,0 +1,50 @@
+package com.example.rewardedssv.loadtest;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+
+/**
+ * Serves a fixed key set on localhost, standing in for the AdMob verifier keys URL. It sends an
+ * {@code ETag} and answers revalidations with {@code 304}, so conditional refreshes are exercised.
+ */
+final class KeyServer implements AutoCloseable {
+  private static final String PATH = "/verifier-keys";
+
+  private final HttpServer server;
+
+  KeyServer(int port, String keysJson) throws IOException {
+    byte[] body = keysJson.getBytes(UTF_8);
+    String etag = "\"" + Integer.toHexString(keysJson.hashCode()) + "\"";
+    server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+    server.createContext(
+        PATH,
+        exchange -> {
+          exchange.getResponseHeaders().set("ETag", etag);
+          if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+          }
+          exchange.getResponseHeaders().set("Content-Type", "application/json");
+          exchange.sendResponseHeaders(200, body.length);
+          try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+          }
+        });
+    server.start();
+  }
+
+  /** Returns the URL to pass as {@code ssv.keys.url} to the server under test. */
+  String getUrl() {
+    return "http://localhost:" + server.getAddress().getPort() + PATH;
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+  }
+}
@@ -0,0 +1,321 @@
+package com.example.rewardedssv.loadtest;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives {@code /verify} from a fixed number of threads, each sending its next callback as soon as
+ * the previous response arrived.
+ *
+ * <p>Every callback has a fresh transaction id, except for the configured share of replays of an
+ * earlier callback of the same thread and of callbacks with a tampered signature. Responses are
+ * classified from their status and JSON body.
+ *
+ * <p>This is a closed loop: when the server slows down the offered load drops with it, so tail
+ * latencies are those of a client that waits, not of an open stream of callbacks. With {@code
+ * honor-retry-after}, a thread that is refused also waits for the {@code Retry-After} delay.
+ */
+final class LoadGenerator {
+
+  /** How the server answered a callback. */
+  enum Outcome {
+    VERIFIED,
+    DUPLICATE,
+    INVALID,
+    UNAVAILABLE,
+    ERROR
+  }
+
+  /** What the generator sent. */
+  enum Kind {
+    FRESH,
+    REPLAY,
+    TAMPERED
+  }
+
+  private static final int REPLAY_POOL = 1024;
+
+  private final HttpClient client;
+  private final URI verifyUri;
+  private final KeyPair keyPair;
+  private final long keyId;
+  private final LoadTest.Options options;
+  private final AtomicLong transactionIds = new AtomicLong();
+
+  LoadGenerator(URI verifyUri, KeyPair keyPair, long keyId, LoadTest.Options options) {
+    this.client =
+        HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    this.verifyUri = verifyUri;
+    this.keyPair = keyPair;
+    this.keyId = keyId;
+    this.options = options;
+  }
+
+  /** Runs for {@code durationSeconds} and returns what all threads observed. */
+  Report run(long durationSeconds) throws InterruptedException {
+    long deadline = System.nanoTime() + Duration.ofSeconds(durationSeconds).toNanos();
+    List<Worker> workers = new ArrayList<>();
+    for (int i = 0; i < options.concurrency; i++) {
+      workers.add(new Worker(i, deadline));
+    }
+    long start = System.nanoTime();
+    for (Worker worker : workers) {
+      worker.thread.start();
+    }
+    for (Worker worker : workers) {
+      worker.thread.join();
+    }
+    return new Report(System.nanoTime() - start, workers);
+  }
+
+  /** Sends one fresh callback and returns whether it was verified. */
+  boolean probe() {
+    try {
+      String query =
+          new CallbackSigner(keyId, keyPair)
+              .callback(
+                  options.adUnits[0],
+                  1,
+                  System.currentTimeMillis(),
+                  "probe-" + transactionIds.incrementAndGet() + "-" + System.nanoTime(),
+                  "user-0",
+                  false);
+      return send(query) == Outcome.VERIFIED;
+    } catch (GeneralSecurityException exception) {
+      throw new IllegalStateException(exception);
+    }
+  }
+
+  private Outcome send(String query) {
+    return classify(exchange(query));
+  }
+
+  /** Sends {@code query} and returns the response, or {@code null} if none arrived. */
+  private HttpResponse<byte[]> exchange(String query) {
+    HttpRequest request =
+        HttpRequest.newBuilder(URI.create(verifyUri + "?" + query))
+            .timeout(Duration.ofSeconds(options.timeoutSeconds))
+            .GET()
+            .build();
+    try {
+      return client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+    } catch (IOException exception) {
+      return null;
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+      return null;
+    }
+  }
+
+  private static Outcome classify(HttpResponse<byte[]> response) {
+    if (response == null) {
+      return Outcome.ERROR;
+    }
+    switch (response.statusCode()) {
+      case 200:
+        String body = new String(response.body(), UTF_8);
+        if (body.contains("\"duplicate\":\"true\"")) {
+          return Outcome.DUPLICATE;
+        }
+        return body.contains("\"verified\":\"true\"") ? Outcome.VERIFIED : Outcome.INVALID;
+      case 400:
+        return Outcome.INVALID;
+      case 429:
+      case 503:
+        return Outcome.UNAVAILABLE;
+      default:
+        return Outcome.ERROR;
+    }
+  }
+
+  private final class Worker implements Runnable {
+    private final Thread thread;
+    private final long deadline;
+    private final String[] replayPool = new String[REPLAY_POOL];
+    private final long[][] counts = new long[Kind.values().length][Outcome.values().length];
+    private int accepted;
+    private long[] latencies = new long[1 << 16];
+    private int size;
+
+    Worker(int index, long deadline) {
+      this.thread = new Thread(this, "load-" + index);
+      this.deadline = deadline;
+    }
+
+    @Override
+    public void run() {
+      CallbackSigner signer;
+      try {
+        signer = new CallbackSigner(keyId, keyPair);
+      } catch (GeneralSecurityException exception) {
+        throw new IllegalStateException(exception);
+      }
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+      while (System.nanoTime() < deadline) {
+        double draw = random.nextDouble();
+        Kind kind;
+        String query;
+        if (draw < options.duplicateRate && accepted > 0) {
+          kind = Kind.REPLAY;
+          query = replayPool[random.nextInt(Math.min(accepted, REPLAY_POOL))];
+        } else {
+          kind = draw < options.duplicateRate + options.invalidRate ? Kind.TAMPERED : Kind.FRESH;
+          query = nextCallback(signer, random, kind == Kind.TAMPERED);
+        }
+        long start = System.nanoTime();
+        HttpResponse<byte[]> response = exchange(query);
+        record(System.nanoTime() - start);
+        Outcome outcome = classify(response);
+        counts[kind.ordinal()][outcome.ordinal()]++;
+        // Only a callback the server accepted is a replay when sent again.
+        if (kind == Kind.FRESH && outcome == Outcome.VERIFIED) {
+          replayPool[accepted++ % REPLAY_POOL] = query;
+        }
+        if (options.honorRetryAfter && outcome == Outcome.UNAVAILABLE) {
+          awaitRetryAfter(response);
+        }
+      }
+    }
+
+    /** Waits as long as the refusal asks for, like AdMob does before retrying a callback. */
+    private void awaitRetryAfter(HttpResponse<byte[]> response) {
+      long seconds = response.headers().firstValueAsLong("Retry-After").orElse(0);
+      long sleepNanos = Math.min(seconds * 1_000_000_000L, deadline - System.nanoTime());
+      if (sleepNanos > 0) {
+        try {
+          Thread.sleep(sleepNanos / 1_000_000L);
+        } catch (InterruptedException exception) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+
+    private String nextCallback(CallbackSigner signer, ThreadLocalRandom random, boolean tamper) {
+      try {
+        return signer.callback(
+            options.adUnits[random.nextInt(options.adUnits.length)],
+            1 + random.nextInt(100),
+            System.currentTimeMillis(),
+            Long.toHexString(random.nextLong() ^ transactionIds.incrementAndGet()),
+            "user-" + random.nextInt(options.users),
+            tamper);
+      } catch (GeneralSecurityException exception) {
+        throw new IllegalStateException(exception);
+      }
+    }
+
+    private void record(long nanos) {
+      if (size == latencies.length) {
+        latencies = Arrays.copyOf(latencies, size * 2);
+      }
+      latencies[size++] = nanos;
+    }
+  }
+
+  /** Throughput, latency percentiles and outcome counts of a run. */
+  static final class Report {
+    private final long elapsedNanos;
+    private final long[][] counts = new long[Kind.values().length][Outcome.values().length];
+    private final long[] latencies;
+
+    private Report(long elapsedNanos, List<Worker> workers) {
+      this.elapsedNanos = elapsedNanos;
+      int total = 0;
+      for (Worker worker : workers) {
+        total += worker.size;
+      }
+      latencies = new long[total];
+      int offset = 0;
+      for (Worker worker : workers) {
+        System.arraycopy(worker.latencies, 0, latencies, offset, worker.size);
+        offset += worker.size;
+        for (int kind = 0; kind < counts.length; kind++) {
+          for (int outcome = 0; outcome < counts[kind].length; outcome++) {
+            counts[kind][outcome] += worker.counts[kind][outcome];
+          }
+        }
+      }
+      Arrays.sort(latencies);
+    }
+
+    long total() {
+      return latencies.length;
+    }
+
+    long count(Outcome outcome) {
+      long count = 0;
+      for (long[] byKind : counts) {
+        count += byKind[outcome.ordinal()];
+      }
+      return count;
+    }
+
+    long count(Kind kind, Outcome outcome) {
+      return counts[kind.ordinal()][outcome.ordinal()];
+    }
+
+    /** Returns answers that do not match what was sent, e.g. a verified tampered callback. */
+    long unexpected() {
+      return count(Kind.FRESH, Outcome.INVALID)
+          + count(Kind.FRESH, Outcome.DUPLICATE)
+          + count(Kind.REPLAY, Outcome.VERIFIED)
+          + count(Kind.TAMPERED, Outcome.VERIFIED)
+          + count(Kind.TAMPERED, Outcome.DUPLICATE);
+    }
+
+    double throughput() {
+      return total() * 1e9 / elapsedNanos;
+    }
+
+    /** Returns the latency at {@code quantile} in milliseconds. */
+    double percentileMillis(double quantile) {
+      if (latencies.length == 0) {
+        return 0;
+      }
+      int index = (int) Math.ceil(quantile * latencies.length) - 1;
+      return latencies[Math.max(0, Math.min(latencies.length - 1, index))] / 1e6;
+    }
+
+    String format() {
+      StringBuilder out = new StringBuilder();
+      out.append(String.format("requests      %d in %.1f s%n", total(), elapsedNanos / 1e9));
+      out.append(String.format("throughput    %.0f callbacks/s%n", throughput()));
+      out.append(
+          String.format(
+              "latency (ms)  p50 %.2f  p90 %.2f  p99 %.2f  p99.9 %.2f  max %.2f%n",
+              percentileMillis(0.5),
+              percentileMillis(0.9),
+              percentileMillis(0.99),
+              percentileMillis(0.999),
+              percentileMillis(1)));
+      for (Outcome outcome : Outcome.values()) {
+        out.append(
+            String.format(
+                "%-13s %d (%.2f%%)%n",
+                outcome.name().toLowerCase(), count(outcome), percent(count(outcome))));
+      }
+      out.append(String.format("unexpected    %d%n", unexpected()));
+      return out.toString();
+    }
+
+    private double percent(long count) {
+      return total() == 0 ? 0 : 100.0 * count / total();
+    }
+  }
+}
@@ -0,0 +1,137 @@
+package com.example.rewardedssv.loadtest;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Offline load test for the SSV server.
+ *
+ * <p>Generates a signing key, serves it from a local stand-in for the verifier keys URL and, once
+ * the server under test verifies a probe callback, drives {@code /verify} with signed callbacks and
+ * prints throughput, latency percentiles and the share of every outcome. Start the server with
+ * {@code --ssv.keys.url} pointing at the printed key server URL, or at the file written by {@code
+ * --keys-file}.
+ *
+ * <p>Options, all of the form {@code --name=value}:
+ *
+ * <ul>
+ *   <li>{@code target}: the verify endpoint, default {@code http://localhost:8080/verify}.
+ *   <li>{@code concurrency}: client threads, default 32.
+ *   <li>{@code duration-seconds}: length of the measured run, default 30.
+ *   <li>{@code warmup-seconds}: unmeasured run before it, default 10.
+ *   <li>{@code duplicate-rate}: share of replayed callbacks, default 0.05.
+ *   <li>{@code invalid-rate}: share of callbacks with a tampered signature, default 0.01.
+ *   <li>{@code ad-units}: comma separated ad unit ids, default {@code 1234567890}.
+ *   <li>{@code users}: number of distinct user ids, default 100000.
+ *   <li>{@code timeout-seconds}: per request timeout, default 10.
+ *   <li>{@code wait-seconds}: how long to wait for the server to accept the key, default 120.
+ *   <li>{@code key-server-port}: port of the stand-in key server, default 0 for any free port.
+ *   <li>{@code keys-file}: also write the key set to this file.
+ *   <li>{@code honor-retry-after}: wait for the {@code Retry-After} of refused callbacks before
+ *       sending the next one, as AdMob does, default false.
+ * </ul>
+ */
+public final class LoadTest {
+
+  /** Settings of a load test run. */
+  static final class Options {
+    final URI target;
+    final int concurrency;
+    final long durationSeconds;
+    final long warmupSeconds;
+    final double duplicateRate;
+    final double invalidRate;
+    final String[] adUnits;
+    final int users;
+    final long timeoutSeconds;
+    final long waitSeconds;
+    final int keyServerPort;
+    final String keysFile;
+    final boolean honorRetryAfter;
+
+    private Options(Map<String, String> values) {
+      target = URI.create(values.getOrDefault("target", "http://localhost:8080/verify"));
+      concurrency = Integer.parseInt(values.getOrDefault("concurrency", "32"));
+      durationSeconds = Long.parseLong(values.getOrDefault("duration-seconds", "30"));
+      warmupSeconds = Long.parseLong(values.getOrDefault("warmup-seconds", "10"));
+      duplicateRate = Double.parseDouble(values.getOrDefault("duplicate-rate", "0.05"));
+      invalidRate = Double.parseDouble(values.getOrDefault("invalid-rate", "0.01"));
+      adUnits = values.getOrDefault("ad-units", "1234567890").split(",");
+      users = Integer.parseInt(values.getOrDefault("users", "100000"));
+      timeoutSeconds = Long.parseLong(values.getOrDefault("timeout-seconds", "10"));
+      waitSeconds = Long.parseLong(values.getOrDefault("wait-seconds", "120"));
+      keyServerPort = Integer.parseInt(values.getOrDefault("key-server-port", "0"));
+      keysFile = values.get("keys-file");
+      honorRetryAfter = Boolean.parseBoolean(values.getOrDefault("honor-retry-after", "false"));
+      if (concurrency < 1 || duplicateRate < 0 || invalidRate < 0
+          || duplicateRate + invalidRate > 1) {
+        throw new IllegalArgumentException("Invalid load test options: " + values);
+      }
+    }
+
+    static Options parse(String[] args) {
+      Map<String, String> values = new HashMap<>();
+      for (String arg : args) {
+        int equals = arg.indexOf('=');
+        if (!arg.startsWith("--") || equals < 0) {
+          throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+        }
+        values.put(arg.substring(2, equals), arg.substring(equals + 1));
+      }
+      return new Options(values);
+    }
+  }
+
+  private LoadTest() {}
+
+  public static void main(String[] args)
+      throws GeneralSecurityException, IOException, InterruptedException {
+    Options options = Options.parse(args);
+    KeyPair keyPair = CallbackSigner.generateKeyPair();
+    // A new key id per run, so a server holding an older key set refreshes it on first use.
+    long keyId = ThreadLocalRandom.current().nextLong(1_000_000_000L, 10_000_000_000L);
+    String keysJson = new CallbackSigner(keyId, keyPair).keysJson();
+    if (options.keysFile != null) {
+      Path keysFile = Paths.get(options.keysFile);
+      Files.write(keysFile, keysJson.getBytes(UTF_8));
+      System.out.printf("Wrote key %d to %s%n", keyId, keysFile.toAbsolutePath());
+    }
+    try (KeyServer keyServer = new KeyServer(options.keyServerPort, keysJson)) {
+      System.out.printf("Serving key %d at %s%n", keyId, keyServer.getUrl());
+      System.out.printf(
+          "Start the server with --ssv.keys.url=%s, waiting for %s%n",
+          keyServer.getUrl(), options.target);
+      LoadGenerator generator = new LoadGenerator(options.target, keyPair, keyId, options);
+      awaitServer(generator, options.waitSeconds);
+      if (options.warmupSeconds > 0) {
+        System.out.printf("Warming up for %d s%n", options.warmupSeconds);
+        generator.run(options.warmupSeconds);
+      }
+      System.out.printf(
+          "Running %d s at concurrency %d%n", options.durationSeconds, options.concurrency);
+      System.out.print(generator.run(options.durationSeconds).format());
+    }
+  }
+
+  /** Waits until the server verifies a callback signed with the generated key. */
+  private static void awaitServer(LoadGenerator generator, long waitSeconds)
+      throws InterruptedException {
+    long deadline = System.currentTimeMillis() + waitSeconds * 1000;
+    while (!generator.probe()) {
+      if (System.currentTimeMillis() > deadline) {
+        throw new IllegalStateException("Server did not verify a probe callback in time.");
+      }
+      Thread.sleep(1000);
+    }
+  }
+}
@@ -0,0 +1,100 @@
+package com.example.rewardedssv.loadtest;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Stand-in for the game backend that receives reward batches from {@code ssv.delivery.url}.
+ *
+ * <p>Counts batches, rewards and distinct transaction ids, and can be made slow or flaky to
+ * exercise retries and spilling. Options, all of the form {@code --name=value}: {@code port}
+ * (default 18091), {@code fail-rate} (share of batches answered with 503, default 0) and {@code
+ * delay-millis} (time to wait before answering, default 0).
+ */
+public final class WebhookStub {
+  private static final Pattern TRANSACTION_ID =
+      Pattern.compile("\"transaction_id\":\"((?:[^\"\\\\]|\\\\.)*)\"");
+
+  private WebhookStub() {}
+
+  public static void main(String[] args) throws IOException {
+    int port = 18091;
+    double failRate = 0;
+    long delayMillis = 0;
+    for (String arg : args) {
+      String[] option = arg.replaceFirst("^--", "").split("=", 2);
+      switch (option[0]) {
+        case "port":
+          port = Integer.parseInt(option[1]);
+          break;
+        case "fail-rate":
+          failRate = Double.parseDouble(option[1]);
+          break;
+        case "delay-millis":
+          delayMillis = Long.parseLong(option[1]);
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown option: " + arg);
+      }
+    }
+    AtomicLong batches = new AtomicLong();
+    AtomicLong rewards = new AtomicLong();
+    AtomicLong refused = new AtomicLong();
+    Set<String> transactionIds = ConcurrentHashMap.newKeySet();
+    double failureShare = failRate;
+    long delay = delayMillis;
+
+    HttpServer server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.createContext(
+        "/rewards",
+        exchange -> {
+          String body;
+          try (InputStream in = exchange.getRequestBody()) {
+            body = new String(in.readAllBytes(), UTF_8);
+          }
+          try {
+            Thread.sleep(delay);
+          } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+          }
+          if (ThreadLocalRandom.current().nextDouble() < failureShare) {
+            refused.incrementAndGet();
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+            return;
+          }
+          batches.incrementAndGet();
+          Matcher matcher = TRANSACTION_ID.matcher(body);
+          while (matcher.find()) {
+            rewards.incrementAndGet();
+            transactionIds.add(matcher.group(1));
+          }
+          exchange.sendResponseHeaders(204, -1);
+          exchange.close();
+        });
+    server.start();
+    System.out.printf("Receiving reward batches at http://localhost:%d/rewards%n", port);
+    Executors.newSingleThreadScheduledExecutor()
+        .scheduleWithFixedDelay(
+            () ->
+                System.out.printf(
+                    "batches %d, rewards %d, distinct transactions %d, refused %d%n",
+                    batches.get(), rewards.get(), transactionIds.size(), refused.get()),
+            5,
+            5,
+            TimeUnit.SECONDS);
+  }
+}
@@ -5,9 +5,11 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ImportRuntimeHints;
 
 /** Application entry point */
 @SpringBootApplication
+@ImportRuntimeHints(NativeHints.class)
 public class Application {
 
   public static void main(String[] args) {
@@ -0,0 +1,26 @@
+package com.example.rewardedssv;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/** Thread pool used by {@code POST /verify/batch} to verify callbacks in parallel. */
+@Configuration
+public class BatchVerificationConfiguration {
+
+  @Bean(destroyMethod = "shutdownNow")
+  public ExecutorService batchVerificationExecutor(@Value("${ssv.batch.threads:0}") int threads) {
+    int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    AtomicInteger count = new AtomicInteger();
+    return Executors.newFixedThreadPool(
+        poolSize,
+        runnable -> {
+          Thread thread = new Thread(runnable, "ssv-batch-" + count.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+}
@@ -0,0 +1,164 @@
+package com.example.rewardedssv;
+
+import com.example.rewardedssv.admission.AdmissionControl;
+import com.example.rewardedssv.admission.ConcurrencyLimiter;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Verifies a stream of callbacks, one per line, in parallel and writes one NDJSON result per input
+ * line in input order.
+ *
+ * <p>Each line is either a raw callback query string (optionally a full callback URL), a JSON
+ * string holding one, or a JSON object with a {@code query} field. At most {@code ssv.batch.window}
+ * lines are in flight at any time, so memory use does not depend on the size of the batch.
+ *
+ * <p>Every line takes a token from the {@link AdmissionControl} bucket of the client address and a
+ * slot of the {@link ConcurrencyLimiter} before any parsing or crypto work, so a batch cannot use
+ * more CPU than the same callbacks sent to {@code /verify}. Lines refused by either are answered
+ * with an error and can be sent again later.
+ */
+@Component
+public class BatchVerifier {
+  private static final String THROTTLED = "Too many callbacks from this address.";
+  private static final String OVERLOADED = "Server is overloaded.";
+
+  private final CallbackVerifier callbackVerifier;
+  private final AdmissionControl admission;
+  private final ConcurrencyLimiter limiter;
+  private final ExecutorService executor;
+  private final int window;
+
+  public BatchVerifier(
+      CallbackVerifier callbackVerifier,
+      AdmissionControl admission,
+      ConcurrencyLimiter limiter,
+      @Qualifier("batchVerificationExecutor") ExecutorService executor,
+      @Value("${ssv.batch.window:0}") int window) {
+    this.callbackVerifier = callbackVerifier;
+    this.admission = admission;
+    this.limiter = limiter;
+    this.executor = executor;
+    this.window = window > 0 ? window : 4 * Runtime.getRuntime().availableProcessors();
+  }
+
+  /**
+   * Verifies the callbacks read from {@code input}, sent from {@code clientAddress}, which is
+   * {@code null} if unknown.
+   */
+  public void verify(BufferedReader input, Writer output, String clientAddress)
+      throws IOException {
+    ArrayDeque<Future<String>> inFlight = new ArrayDeque<>(window);
+    String line;
+    long lineNumber = 0;
+    while ((line = input.readLine()) != null) {
+      lineNumber++;
+      if (line.isBlank()) {
+        continue;
+      }
+      if (inFlight.size() >= window) {
+        writeResult(inFlight.poll(), output);
+      }
+      inFlight.add(submit(lineNumber, line, clientAddress));
+    }
+    while (!inFlight.isEmpty()) {
+      writeResult(inFlight.poll(), output);
+    }
+    output.flush();
+  }
+
+  private Future<String> submit(long lineNumber, String line, String clientAddress) {
+    if (admission.admitAddress(clientAddress) > 0) {
+      return CompletableFuture.completedFuture(refused(lineNumber, THROTTLED));
+    }
+    long start = System.nanoTime();
+    if (!limiter.tryAcquire()) {
+      return CompletableFuture.completedFuture(refused(lineNumber, OVERLOADED));
+    }
+    try {
+      return executor.submit(
+          () -> {
+            try {
+              return verifyLine(lineNumber, line);
+            } finally {
+              // Batch latency includes waiting for a worker, so it is not sampled.
+              limiter.release(start, false);
+            }
+          });
+    } catch (RuntimeException exception) {
+      limiter.release(start, false);
+      throw exception;
+    }
+  }
+
+  private static String refused(long lineNumber, String error) {
+    JSONObject result = new JSONObject();
+    try {
+      result.put("line", lineNumber);
+      result.put("verified", false);
+      result.put("error", error);
+    } catch (JSONException exception) {
+      // Cannot happen for string, long and boolean values.
+      throw new IllegalStateException(exception);
+    }
+    return result.toString();
+  }
+
+  private String verifyLine(long lineNumber, String line) {
+    JSONObject result = new JSONObject();
+    try {
+      result.put("line", lineNumber);
+      VerificationResult verification = callbackVerifier.verify(queryString(line));
+      result.put("verified", verification.isVerified());
+      if (verification.getKeyId() != null) {
+        result.put("key_id", verification.getKeyId());
+      }
+      if (verification.getError() != null) {
+        result.put("error", verification.getError());
+      }
+    } catch (JSONException | RuntimeException exception) {
+      try {
+        result.put("verified", false);
+        result.put("error", "Malformed callback.");
+      } catch (JSONException ignored) {
+        // Cannot happen for string and boolean values.
+      }
+    }
+    return result.toString();
+  }
+
+  private static String queryString(String line) throws JSONException {
+    String callback = line.trim();
+    if (callback.startsWith("\"")) {
+      callback = (String) new JSONTokener(callback).nextValue();
+    } else if (callback.startsWith("{")) {
+      callback = new JSONObject(callback).getString("query");
+    }
+    int queryStart = callback.indexOf('?');
+    return queryStart >= 0 ? callback.substring(queryStart + 1) : callback;
+  }
+
+  private static void writeResult(Future<String> result, Writer output) throws IOException {
+    try {
+      output.write(result.get());
+      output.write('\n');
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+      throw new IOException(exception);
+    } catch (ExecutionException exception) {
+      throw new IOException(exception.getCause());
+    }
+  }
+}
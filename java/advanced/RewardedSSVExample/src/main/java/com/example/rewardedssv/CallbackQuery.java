@@ -0,0 +1,266 @@
+package com.example.rewardedssv;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.example.rewardedssv.VerificationError.Type;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Single-pass parser over the raw bytes of an SSV callback query string.
+ *
+ * <p>The query is copied into a byte array once; the signed payload and every known parameter are
+ * exposed as slices of that array, so nothing else is copied or decoded unless a caller asks for
+ * it. The payload ends exactly at the {@code &signature=} parameter, which together with {@code
+ * key_id} must be the last two parameters of the callback:
+ * https://developers.google.com/admob/android/rewarded-video-ssv#get_content_to_be_verified
+ */
+public final class CallbackQuery {
+
+  /** Parameters of an SSV callback. */
+  public enum Parameter {
+    AD_NETWORK("ad_network"),
+    AD_UNIT("ad_unit"),
+    CUSTOM_DATA("custom_data"),
+    KEY_ID("key_id"),
+    REWARD_AMOUNT("reward_amount"),
+    REWARD_ITEM("reward_item"),
+    SIGNATURE("signature"),
+    TIMESTAMP("timestamp"),
+    TRANSACTION_ID("transaction_id"),
+    USER_ID("user_id");
+
+    private static final Parameter[] VALUES = values();
+
+    private final String key;
+    private final byte[] keyBytes;
+
+    Parameter(String key) {
+      this.key = key;
+      this.keyBytes = key.getBytes(US_ASCII);
+    }
+
+    public String getKey() {
+      return key;
+    }
+
+    private static Parameter match(byte[] data, int offset, int length) {
+      for (Parameter parameter : VALUES) {
+        byte[] keyBytes = parameter.keyBytes;
+        if (keyBytes.length == length
+            && Arrays.equals(keyBytes, 0, length, data, offset, offset + length)) {
+          return parameter;
+        }
+      }
+      return null;
+    }
+  }
+
+  private static final Base64.Decoder SIGNATURE_DECODER = Base64.getUrlDecoder();
+  private static final VerificationError MISSING_SIGNATURE =
+      VerificationError.of(Type.MISSING_PARAMETER, "Missing key_id and/or signature parameters.");
+  private static final VerificationError NOT_LAST =
+      VerificationError.of(
+          Type.MALFORMED,
+          "Malformed callback: signature and key_id must be the last two parameters.");
+  private static final VerificationError NOTHING_SIGNED =
+      VerificationError.of(Type.MALFORMED, "Malformed callback: nothing is signed.");
+
+  private final byte[] data;
+  /** Value offset and end per {@link Parameter}, interleaved; offset -1 if absent. */
+  private final int[] slices;
+  private final int payloadLength;
+  private final long keyId;
+
+  private CallbackQuery(byte[] data, int[] slices, int payloadLength, long keyId) {
+    this.data = data;
+    this.slices = slices;
+    this.payloadLength = payloadLength;
+    this.keyId = keyId;
+  }
+
+  /**
+   * Parses a raw, still percent-encoded query string.
+   *
+   * @throws InvalidCallbackException if the query is not a well-formed signed callback
+   */
+  public static CallbackQuery parse(String queryString) {
+    if (queryString == null) {
+      throw new InvalidCallbackException(MISSING_SIGNATURE);
+    }
+    return parse(queryString.getBytes(UTF_8));
+  }
+
+  /**
+   * Parses the raw bytes of a query string. The array is used as is and must not be modified
+   * afterwards.
+   *
+   * @throws InvalidCallbackException if the query is not a well-formed signed callback
+   */
+  public static CallbackQuery parse(byte[] data) {
+    int[] slices = new int[Parameter.VALUES.length * 2];
+    Arrays.fill(slices, -1);
+    int signatureStart = -1;
+    int position = 0;
+    int length = data.length;
+    while (position < length) {
+      int nameStart = position;
+      int nameEnd = -1;
+      while (position < length && data[position] != '&') {
+        if (nameEnd < 0 && data[position] == '=') {
+          nameEnd = position;
+        }
+        position++;
+      }
+      int valueEnd = position;
+      position++;
+      if (nameEnd < 0) {
+        nameEnd = valueEnd;
+      }
+      Parameter parameter = Parameter.match(data, nameStart, nameEnd - nameStart);
+      if (signatureStart >= 0
+          && nameEnd > nameStart
+          && (parameter != Parameter.KEY_ID || slices[Parameter.KEY_ID.ordinal() * 2] >= 0)) {
+        // Only key_id may follow the signature, anything else would not be covered by it.
+        throw new InvalidCallbackException(NOT_LAST);
+      }
+      if (parameter == null) {
+        continue;
+      }
+      int slot = parameter.ordinal() * 2;
+      if (slices[slot] >= 0) {
+        // Keep the first occurrence, like ServletRequest.getParameter().
+        continue;
+      }
+      slices[slot] = Math.min(nameEnd + 1, valueEnd);
+      slices[slot + 1] = valueEnd;
+      if (parameter == Parameter.SIGNATURE) {
+        signatureStart = nameStart;
+      }
+    }
+    if (signatureStart < 0 || slices[Parameter.KEY_ID.ordinal() * 2] < 0) {
+      throw new InvalidCallbackException(MISSING_SIGNATURE);
+    }
+    if (signatureStart == 0) {
+      throw new InvalidCallbackException(NOTHING_SIGNED);
+    }
+    int keyIdSlot = Parameter.KEY_ID.ordinal() * 2;
+    long keyId = parseLong(data, slices[keyIdSlot], slices[keyIdSlot + 1], Parameter.KEY_ID);
+    return new CallbackQuery(data, slices, signatureStart - 1, keyId);
+  }
+
+  private static long parseLong(byte[] data, int start, int end, Parameter parameter) {
+    // At most 18 digits, so the value cannot overflow.
+    if (start < 0 || start == end || end - start > 18) {
+      throw invalid(parameter);
+    }
+    long value = 0;
+    for (int i = start; i < end; i++) {
+      int digit = data[i] - '0';
+      if (digit < 0 || digit > 9) {
+        throw invalid(parameter);
+      }
+      value = value * 10 + digit;
+    }
+    return value;
+  }
+
+  private static InvalidCallbackException invalid(Parameter parameter) {
+    return new InvalidCallbackException(
+        VerificationError.of(
+            Type.MALFORMED, String.format("Invalid %s parameter.", parameter.getKey())));
+  }
+
+  /** Returns the backing array; the signed payload is its first {@link #getPayloadLength} bytes. */
+  public byte[] getData() {
+    return data;
+  }
+
+  public int getPayloadLength() {
+    return payloadLength;
+  }
+
+  public long getKeyId() {
+    return keyId;
+  }
+
+  /**
+   * Decodes the URL-safe Base64 signature. A signature that is still percent-encoded, such as one
+   * with {@code %3D} padding, is percent-decoded first.
+   */
+  public byte[] decodeSignature() {
+    int start = slices[Parameter.SIGNATURE.ordinal() * 2];
+    int end = slices[Parameter.SIGNATURE.ordinal() * 2 + 1];
+    if (isEncoded(start, end)) {
+      return SIGNATURE_DECODER.decode(value(Parameter.SIGNATURE));
+    }
+    ByteBuffer decoded = SIGNATURE_DECODER.decode(ByteBuffer.wrap(data, start, end - start));
+    byte[] signature = decoded.array();
+    if (decoded.arrayOffset() != 0 || decoded.remaining() != signature.length) {
+      signature = Arrays.copyOfRange(signature, decoded.position(), decoded.limit());
+    }
+    return signature;
+  }
+
+  public boolean has(Parameter parameter) {
+    return slices[parameter.ordinal() * 2] >= 0;
+  }
+
+  /** Returns the offset of the raw value of {@code parameter} in {@link #getData}, or -1. */
+  public int valueOffset(Parameter parameter) {
+    return slices[parameter.ordinal() * 2];
+  }
+
+  /** Returns the length of the raw value of {@code parameter}, or -1 if it is absent. */
+  public int valueLength(Parameter parameter) {
+    int start = slices[parameter.ordinal() * 2];
+    return start < 0 ? -1 : slices[parameter.ordinal() * 2 + 1] - start;
+  }
+
+  /** Returns the percent-decoded value of {@code parameter}, or {@code null} if it is absent. */
+  public String value(Parameter parameter) {
+    int start = slices[parameter.ordinal() * 2];
+    if (start < 0) {
+      return null;
+    }
+    int end = slices[parameter.ordinal() * 2 + 1];
+    if (isEncoded(start, end)) {
+      return URLDecoder.decode(new String(data, start, end - start, UTF_8), UTF_8);
+    }
+    return new String(data, start, end - start, UTF_8);
+  }
+
+  private boolean isEncoded(int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (data[i] == '%' || data[i] == '+') {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Parses the value of {@code parameter} as a non-negative decimal number without creating a
+   * String.
+   *
+   * @throws InvalidCallbackException if the parameter is absent or not a number
+   */
+  public long longValue(Parameter parameter) {
+    int slot = parameter.ordinal() * 2;
+    return parseLong(data, slices[slot], slices[slot + 1], parameter);
+  }
+
+  /** Returns the signed payload as a String, for logging and debugging. */
+  public String payloadString() {
+    return new String(data, 0, payloadLength, UTF_8);
+  }
+
+  /** Returns the raw signature parameter value, for logging and debugging. */
+  public String signatureString() {
+    int start = slices[Parameter.SIGNATURE.ordinal() * 2];
+    return new String(data, start, slices[Parameter.SIGNATURE.ordinal() * 2 + 1] - start, UTF_8);
+  }
+}
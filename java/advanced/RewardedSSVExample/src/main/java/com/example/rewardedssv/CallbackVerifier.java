@@ -0,0 +1,132 @@
+package com.example.rewardedssv;
+
+import com.example.rewardedssv.VerificationError.Type;
+import com.example.rewardedssv.VerificationMetrics.Stage;
+import com.example.rewardedssv.keys.KeyVerifier;
+import com.example.rewardedssv.keys.MissingKeyException;
+import com.example.rewardedssv.keys.VerifierKeyProvider;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import org.springframework.stereotype.Service;
+
+/**
+ * Verifies the signature of an SSV callback. Shared by the single and the batch verification
+ * endpoints. Verdicts go through the {@link VerificationCache}, so the same callback is not
+ * verified again while its verdict is cached or being computed.
+ */
+@Service
+public class CallbackVerifier {
+  private static final VerificationError SIGNATURE_ENCODING =
+      VerificationError.of(Type.SIGNATURE_ENCODING, "Invalid signature encoding.");
+  private static final VerificationError INVALID_SIGNATURE =
+      VerificationError.of(Type.INVALID_SIGNATURE, "Invalid signature");
+
+  private final VerifierKeyProvider keyProvider;
+  private final VerificationMetrics metrics;
+  private final VerificationCache cache;
+
+  public CallbackVerifier(
+      VerifierKeyProvider keyProvider, VerificationMetrics metrics, VerificationCache cache) {
+    this.keyProvider = keyProvider;
+    this.metrics = metrics;
+    this.cache = cache;
+  }
+
+  /** Parses and verifies a raw callback query string. */
+  public VerificationResult verify(String queryString) {
+    CallbackQuery query;
+    try {
+      query = CallbackQuery.parse(queryString);
+    } catch (InvalidCallbackException exception) {
+      return VerificationResult.rejected(exception.getError());
+    }
+    return verify(query);
+  }
+
+  /**
+   * Verifies {@code query} without blocking the calling thread: a missing key is awaited
+   * asynchronously and the ECDSA check runs on {@code executor}.
+   */
+  public CompletableFuture<VerificationResult> verifyAsync(CallbackQuery query, Executor executor) {
+    return cache.verify(query, uncached -> verifyUncachedAsync(uncached, executor));
+  }
+
+  public VerificationResult verify(CallbackQuery query) {
+    return cache
+        .verify(query, uncached -> CompletableFuture.completedFuture(verifyUncached(uncached)))
+        .join();
+  }
+
+  private CompletableFuture<VerificationResult> verifyUncachedAsync(
+      CallbackQuery query, Executor executor) {
+    byte[] signature;
+    try {
+      signature = query.decodeSignature();
+    } catch (IllegalArgumentException exception) {
+      return CompletableFuture.completedFuture(
+          VerificationResult.failed(query, SIGNATURE_ENCODING));
+    }
+    long lookupStart = System.nanoTime();
+    return keyProvider
+        .getVerifierAsync(query.getKeyId())
+        .handleAsync(
+            (verifier, failure) -> {
+              metrics.recordStage(Stage.KEY_LOOKUP, lookupStart);
+              if (failure != null) {
+                Throwable cause =
+                    failure instanceof CompletionException ? failure.getCause() : failure;
+                return VerificationResult.failed(query, lookupError(cause));
+              }
+              return verify(verifier, query, signature);
+            },
+            executor);
+  }
+
+  private VerificationResult verifyUncached(CallbackQuery query) {
+    byte[] signature;
+    try {
+      signature = query.decodeSignature();
+    } catch (IllegalArgumentException exception) {
+      return VerificationResult.failed(query, SIGNATURE_ENCODING);
+    }
+    long lookupStart = System.nanoTime();
+    KeyVerifier verifier;
+    try {
+      verifier = keyProvider.getVerifier(query.getKeyId());
+    } catch (GeneralSecurityException exception) {
+      return VerificationResult.failed(query, lookupError(exception));
+    } finally {
+      metrics.recordStage(Stage.KEY_LOOKUP, lookupStart);
+    }
+    return verify(verifier, query, signature);
+  }
+
+  private VerificationResult verify(KeyVerifier verifier, CallbackQuery query, byte[] signature) {
+    long start = System.nanoTime();
+    try {
+      verifier.verify(signature, query.getData(), 0, query.getPayloadLength());
+      return VerificationResult.verified(query);
+    } catch (GeneralSecurityException exception) {
+      return VerificationResult.failed(query, INVALID_SIGNATURE);
+    } finally {
+      metrics.recordStage(Stage.SIGNATURE, start);
+    }
+  }
+
+  /** Returns the error for a key lookup that failed with {@code failure}. */
+  private static VerificationError lookupError(Throwable failure) {
+    if (!(failure instanceof MissingKeyException)) {
+      return VerificationError.of(Type.OTHER, failure.getMessage());
+    }
+    switch (((MissingKeyException) failure).getReason()) {
+      case NO_KEYS:
+        return VerificationError.of(Type.NO_KEYS, failure.getMessage());
+      case TIMEOUT:
+        return VerificationError.of(Type.KEY_TIMEOUT, failure.getMessage());
+      default:
+        return VerificationError.of(Type.UNKNOWN_KEY, failure.getMessage());
+    }
+  }
+}
@@ -0,0 +1,17 @@
+package com.example.rewardedssv;
+
+/** Thrown for a callback query that is malformed or misses a parameter it needs. */
+public final class InvalidCallbackException extends IllegalArgumentException {
+  private static final long serialVersionUID = 1L;
+
+  private final transient VerificationError error;
+
+  public InvalidCallbackException(VerificationError error) {
+    super(error.getMessage());
+    this.error = error;
+  }
+
+  public VerificationError getError() {
+    return error;
+  }
+}
@@ -0,0 +1,58 @@
+package com.example.rewardedssv;
+
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.beans.factory.aot.BeanFactoryInitializationAotContribution;
+import org.springframework.beans.factory.aot.BeanFactoryInitializationAotProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+
+/**
+ * Reachability hints for the native image that static analysis cannot find.
+ *
+ * <p>JSON goes through org.json, and signatures through Tink's subtle API, neither of which use
+ * reflection. Tink asks the JCA for its engines by name, though, which looks the provider classes
+ * up reflectively; the elliptic curve ones are registered here so that verification works even if
+ * the image is built without all security services. The only resource read at run time is a key
+ * set served with {@code ssv.keys.url=classpath:...}, which {@link ClasspathKeySet} includes.
+ */
+class NativeHints implements RuntimeHintsRegistrar {
+  private static final String[] EC_ENGINES = {
+    "sun.security.ec.SunEC",
+    "sun.security.ec.ECKeyFactory",
+    "sun.security.ec.ECDSASignature$SHA256",
+    "sun.security.ec.ECDSASignature$SHA384",
+    "sun.security.ec.ECDSASignature$SHA512",
+  };
+
+  @Override
+  public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+    for (String engine : EC_ENGINES) {
+      hints
+          .reflection()
+          .registerType(
+              TypeReference.of(engine), MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+    }
+  }
+
+  /**
+   * Includes the key set of {@code ssv.keys.url} in the image if it is a {@code classpath:}
+   * resource, so the property has to be set when building.
+   */
+  static class ClasspathKeySet implements BeanFactoryInitializationAotProcessor {
+    private static final String CLASSPATH_PREFIX = "classpath:";
+
+    @Override
+    public BeanFactoryInitializationAotContribution processAheadOfTime(
+        ConfigurableListableBeanFactory beanFactory) {
+      String keysUrl = beanFactory.resolveEmbeddedValue("${ssv.keys.url:}");
+      if (keysUrl == null || !keysUrl.startsWith(CLASSPATH_PREFIX)) {
+        return null;
+      }
+      String resource = keysUrl.substring(CLASSPATH_PREFIX.length());
+      return (generationContext, code) ->
+          generationContext.getRuntimeHints().resources().registerPattern(resource);
+    }
+  }
+}
@@ -0,0 +1,39 @@
+package com.example.rewardedssv;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Non-blocking deployment mode, enabled with the {@code reactive} profile: {@code /verify} is
+ * served by WebFlux on Netty instead of Spring MVC on Tomcat.
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveSSVConfiguration {
+
+  /** Pins the reactive server to Netty, Tomcat would otherwise win since it is on the classpath. */
+  @Bean
+  public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+    return new NettyReactiveWebServerFactory();
+  }
+
+  /** Bounded scheduler for ECDSA verification, so crypto never runs on the Netty event loop. */
+  @Bean(destroyMethod = "dispose")
+  public Scheduler verificationScheduler(@Value("${ssv.reactive.verify-threads:0}") int threads) {
+    int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    return Schedulers.newParallel("ssv-verify", poolSize, true);
+  }
+
+  @Bean
+  public RouterFunction<ServerResponse> verifyRoute(ReactiveSSVHandler handler) {
+    return RouterFunctions.route().GET("/verify", handler::verify).build();
+  }
+}
@@ -0,0 +1,61 @@
+package com.example.rewardedssv;
+
+import com.example.rewardedssv.VerificationMetrics.Stage;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executor;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+/** WebFlux counterpart of {@link SSVController#index}. */
+@Component
+@Profile("reactive")
+public class ReactiveSSVHandler {
+  private final RewardCallbackHandler callbackHandler;
+  private final VerificationResponses responses;
+  private final VerificationMetrics metrics;
+  private final Executor verifyExecutor;
+
+  public ReactiveSSVHandler(
+      RewardCallbackHandler callbackHandler,
+      VerificationResponses responses,
+      VerificationMetrics metrics,
+      @Qualifier("verificationScheduler") Scheduler verificationScheduler) {
+    this.callbackHandler = callbackHandler;
+    this.responses = responses;
+    this.metrics = metrics;
+    this.verifyExecutor = verificationScheduler::schedule;
+  }
+
+  public Mono<ServerResponse> verify(ServerRequest request) {
+    String queryString = request.uri().getRawQuery();
+    String clientAddress =
+        request
+            .remoteAddress()
+            .map(InetSocketAddress::getAddress)
+            .map(InetAddress::getHostAddress)
+            .orElse(null);
+    return Mono.fromFuture(
+            () -> callbackHandler.handleAsync(queryString, clientAddress, verifyExecutor))
+        .flatMap(
+            result -> {
+              long responseStart = System.nanoTime();
+              ServerResponse.BodyBuilder builder = ServerResponse.status(responses.status(result));
+              if (result.hasRetryAfter()) {
+                builder.header(
+                    HttpHeaders.RETRY_AFTER, Long.toString(result.getRetryAfterSeconds()));
+              }
+              Mono<ServerResponse> response =
+                  builder.contentType(MediaType.APPLICATION_JSON).bodyValue(responses.body(result));
+              metrics.recordStage(Stage.RESPONSE, responseStart);
+              return response;
+            });
+  }
+}
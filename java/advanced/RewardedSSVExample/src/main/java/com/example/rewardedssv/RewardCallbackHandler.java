@@ -0,0 +1,242 @@
+package com.example.rewardedssv;
+
+import com.example.rewardedssv.CallbackQuery.Parameter;
+import com.example.rewardedssv.VerificationError.Type;
+import com.example.rewardedssv.VerificationMetrics.Stage;
+import com.example.rewardedssv.admission.AdmissionControl;
+import com.example.rewardedssv.admission.ConcurrencyLimiter;
+import com.example.rewardedssv.dedup.TransactionDedupStore;
+import com.example.rewardedssv.dedup.TransactionDedupStore.Status;
+import com.example.rewardedssv.ledger.RewardLedger;
+import com.example.rewardedssv.ledger.VerifiedReward;
+import com.example.rewardedssv.validation.TimestampCheck;
+import com.example.rewardedssv.validation.ValidationPipeline;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import org.springframework.stereotype.Service;
+
+/**
+ * Handles a single SSV callback: sheds it if the {@link ConcurrencyLimiter} is at its limit,
+ * applies {@link AdmissionControl}, runs the {@link ValidationPipeline} and rejects replays of an
+ * already accepted {@code transaction_id} before any crypto work, verifies the signature, records
+ * the transaction and hands the reward to the {@link RewardLedger}.
+ */
+@Service
+public class RewardCallbackHandler {
+  private static final VerificationError THROTTLED_ADDRESS =
+      VerificationError.of(Type.THROTTLED_ADDRESS, "Too many callbacks from this address.");
+  private static final VerificationError THROTTLED_AD_UNIT =
+      VerificationError.of(Type.THROTTLED_AD_UNIT, "Too many callbacks for this ad unit.");
+  private static final VerificationError OVERLOADED =
+      VerificationError.of(Type.OVERLOADED, "Server is overloaded.");
+  private static final VerificationError LEDGER_FULL =
+      VerificationError.of(Type.LEDGER_FULL, "Reward ledger is full.");
+  private static final VerificationError DEDUP_FULL =
+      VerificationError.of(Type.DEDUP_FULL, "Replay protection store is full.");
+  private static final VerificationError DEDUP_UNAVAILABLE =
+      VerificationError.of(Type.DEDUP_UNAVAILABLE, "Replay protection store is unavailable.");
+  private static final long OVERLOADED_RETRY_AFTER_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final CallbackVerifier callbackVerifier;
+  private final AdmissionControl admission;
+  private final ConcurrencyLimiter limiter;
+  private final ValidationPipeline validation;
+  private final TransactionDedupStore dedupStore;
+  private final RewardLedger ledger;
+  private final VerificationMetrics metrics;
+
+  public RewardCallbackHandler(
+      CallbackVerifier callbackVerifier,
+      AdmissionControl admission,
+      ConcurrencyLimiter limiter,
+      ValidationPipeline validation,
+      TransactionDedupStore dedupStore,
+      RewardLedger ledger,
+      VerificationMetrics metrics) {
+    this.callbackVerifier = callbackVerifier;
+    this.admission = admission;
+    this.limiter = limiter;
+    this.validation = validation;
+    this.dedupStore = dedupStore;
+    this.ledger = ledger;
+    this.metrics = metrics;
+  }
+
+  /**
+   * Handles the callback with {@code queryString} from {@code clientAddress}, which is {@code null}
+   * if unknown.
+   */
+  public VerificationResult handle(String queryString, String clientAddress) {
+    long start = System.nanoTime();
+    if (!limiter.tryAcquire()) {
+      return shed();
+    }
+    VerificationResult result = null;
+    try {
+      Callback callback = precheck(queryString, clientAddress);
+      result = callback.result;
+      if (result == null) {
+        result =
+            admit(callback, dedupStore.isDuplicate(callback.transactionId, callback.timestamp));
+      }
+      if (result == null) {
+        result = callbackVerifier.verify(callback.query);
+        if (result.isVerified()) {
+          Status status = dedupStore.record(callback.transactionId, callback.timestamp);
+          result = record(callback, result, status);
+        }
+      }
+      metrics.recordOutcome(result);
+      return result;
+    } finally {
+      limiter.release(start, result != null && result.isVerified());
+    }
+  }
+
+  /**
+   * Like {@link #handle} but never blocks the calling thread; signature verification runs on
+   * {@code verifyExecutor}, and replay checks that need another node complete asynchronously.
+   */
+  public CompletableFuture<VerificationResult> handleAsync(
+      String queryString, String clientAddress, Executor verifyExecutor) {
+    long start = System.nanoTime();
+    if (!limiter.tryAcquire()) {
+      return CompletableFuture.completedFuture(shed());
+    }
+    CompletableFuture<VerificationResult> handled;
+    try {
+      handled = handleAdmittedAsync(queryString, clientAddress, verifyExecutor);
+    } catch (RuntimeException exception) {
+      limiter.release(start, false);
+      throw exception;
+    }
+    handled.whenComplete(
+        (result, failure) -> limiter.release(start, result != null && result.isVerified()));
+    return handled;
+  }
+
+  private CompletableFuture<VerificationResult> handleAdmittedAsync(
+      String queryString, String clientAddress, Executor verifyExecutor) {
+    Callback callback = precheck(queryString, clientAddress);
+    if (callback.result != null) {
+      metrics.recordOutcome(callback.result);
+      return CompletableFuture.completedFuture(callback.result);
+    }
+    return dedupStore
+        .isDuplicateAsync(callback.transactionId, callback.timestamp)
+        .thenCompose(
+            duplicate -> {
+              VerificationResult refused = admit(callback, duplicate);
+              if (refused != null) {
+                return CompletableFuture.completedFuture(refused);
+              }
+              return callbackVerifier
+                  .verifyAsync(callback.query, verifyExecutor)
+                  .thenCompose(verified -> recordAsync(callback, verified));
+            })
+        .thenApply(
+            result -> {
+              metrics.recordOutcome(result);
+              return result;
+            });
+  }
+
+  /**
+   * Refuses a callback over the concurrency limit, or one the {@link VerificationExecutor} has no
+   * room for; AdMob retries it after the delay.
+   */
+  VerificationResult shed() {
+    VerificationResult result =
+        VerificationResult.unavailable(null, OVERLOADED, OVERLOADED_RETRY_AFTER_NANOS);
+    metrics.recordOutcome(result);
+    return result;
+  }
+
+  /** Parses the callback and runs every check that is cheaper than verifying the signature. */
+  private Callback precheck(String queryString, String clientAddress) {
+    long wait = admission.admitAddress(clientAddress);
+    if (wait > 0) {
+      return new Callback(VerificationResult.throttled(null, THROTTLED_ADDRESS, wait));
+    }
+    long parseStart = System.nanoTime();
+    CallbackQuery query;
+    try {
+      query = CallbackQuery.parse(queryString);
+    } catch (InvalidCallbackException exception) {
+      return new Callback(VerificationResult.rejected(exception.getError()));
+    } finally {
+      metrics.recordStage(Stage.PARSE, parseStart);
+    }
+    VerificationError error = validation.validate(query);
+    if (error != null) {
+      return new Callback(VerificationResult.failed(query, error));
+    }
+    // The validation checks ensure a timestamp within the replay protection window.
+    long timestamp = query.longValue(Parameter.TIMESTAMP);
+    return new Callback(query, query.value(Parameter.TRANSACTION_ID), timestamp);
+  }
+
+  /** Returns the result of a replayed or throttled callback, or {@code null} to verify it. */
+  private VerificationResult admit(Callback callback, boolean duplicate) {
+    if (duplicate) {
+      return VerificationResult.duplicate(callback.query);
+    }
+    // After the replay check, so that AdMob's retries of accepted callbacks are never throttled.
+    long wait = admission.admitAdUnit(callback.query);
+    return wait > 0 ? VerificationResult.throttled(callback.query, THROTTLED_AD_UNIT, wait) : null;
+  }
+
+  private CompletableFuture<VerificationResult> recordAsync(
+      Callback callback, VerificationResult verified) {
+    if (!verified.isVerified()) {
+      return CompletableFuture.completedFuture(verified);
+    }
+    return dedupStore
+        .recordAsync(callback.transactionId, callback.timestamp)
+        .thenApply(status -> record(callback, verified, status));
+  }
+
+  private VerificationResult record(Callback callback, VerificationResult verified, Status status) {
+    switch (status) {
+      case RECORDED:
+        if (!ledger.offer(VerifiedReward.of(callback.query))) {
+          // Forget the transaction so that AdMob's retry is accepted once the ledger caught up.
+          dedupStore.release(callback.transactionId, callback.timestamp);
+          return VerificationResult.unavailable(callback.query, LEDGER_FULL);
+        }
+        return verified;
+      case DUPLICATE:
+        // A concurrent retry of the same callback got there first.
+        return VerificationResult.duplicate(callback.query);
+      case FULL:
+        return VerificationResult.unavailable(callback.query, DEDUP_FULL);
+      case UNAVAILABLE:
+        return VerificationResult.unavailable(callback.query, DEDUP_UNAVAILABLE);
+      default:
+        return VerificationResult.failed(callback.query, TimestampCheck.OUT_OF_WINDOW);
+    }
+  }
+
+  /** A parsed callback that passed the prechecks, or the result that ended its handling early. */
+  private static final class Callback {
+    final CallbackQuery query;
+    final String transactionId;
+    final long timestamp;
+    final VerificationResult result;
+
+    Callback(CallbackQuery query, String transactionId, long timestamp) {
+      this.query = query;
+      this.transactionId = transactionId;
+      this.timestamp = timestamp;
+      this.result = null;
+    }
+
+    Callback(VerificationResult result) {
+      this.query = null;
+      this.transactionId = null;
+      this.timestamp = 0;
+      this.result = result;
+    }
+  }
+}
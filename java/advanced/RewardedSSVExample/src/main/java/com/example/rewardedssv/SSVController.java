@@ -2,120 +2,100 @@ package com.example.rewardedssv;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
-import com.google.crypto.tink.subtle.Base64;
-import com.google.crypto.tink.subtle.EcdsaVerifyJce;
-import com.google.crypto.tink.subtle.EllipticCurves;
-import com.google.crypto.tink.subtle.EllipticCurves.EcdsaEncoding;
-import com.google.crypto.tink.subtle.Enums.HashType;
+import com.example.rewardedssv.VerificationMetrics.Stage;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.security.GeneralSecurityException;
-import java.security.interfaces.ECPublicKey;
-import java.util.Enumeration;
-import java.util.HashMap;
-import java.util.Map;
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.util.concurrent.CompletableFuture;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 /** SSV REST Controller */
 @RestController
+@Profile("!reactive")
 public class SSVController {
-  private static final String SIGNATURE_PARAM_KEY = "signature";
-  private static final String KEY_ID_PARAM_KEY = "key_id";
-  private static final String REWARD_VERIFIER_KEYS_URL =
-      "https://www.gstatic.com/admob/reward/verifier-keys.json";
+  static final String BATCH_SECRET_HEADER = "X-SSV-Batch-Secret";
+  private static final String NDJSON_CONTENT_TYPE = "application/x-ndjson";
 
-  private static Map<Long, ECPublicKey> parsePublicKeysJson()
-      throws GeneralSecurityException, IOException, JSONException {
-    URL url = new URL(REWARD_VERIFIER_KEYS_URL);
-    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-    connection.setRequestMethod("GET");
-    BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-    String inputLine;
-    StringBuffer content = new StringBuffer();
-    while ((inputLine = reader.readLine()) != null) {
-      content.append(inputLine);
-    }
-    reader.close();
-    connection.disconnect();
-    String publicKeysJson = content.toString();
-    JSONArray keys = new JSONObject(publicKeysJson).getJSONArray("keys");
-    Map<Long, ECPublicKey> publicKeys = new HashMap<>();
-    for (int i = 0; i < keys.length(); i++) {
-      JSONObject key = keys.getJSONObject(i);
-      publicKeys.put(
-          key.getLong("keyId"),
-          EllipticCurves.getEcPublicKey(Base64.decode(key.getString("base64"))));
-    }
-    if (publicKeys.isEmpty()) {
-      throw new GeneralSecurityException("No trusted keys are available for this protocol version");
-    }
-    return publicKeys;
-  }
+  private final VerificationExecutor verificationExecutor;
+  private final BatchVerifier batchVerifier;
+  private final VerificationResponses responses;
+  private final VerificationMetrics metrics;
+  private final byte[] batchSecret;
 
-  private void verify(final byte[] dataToVerify, Long keyId, final byte[] signature)
-      throws GeneralSecurityException {
-    try {
-      Map<Long, ECPublicKey> publicKeys = parsePublicKeysJson();
-      if (publicKeys.containsKey(keyId)) {
-        ECPublicKey publicKey = publicKeys.get(keyId);
-        EcdsaVerifyJce verifier = new EcdsaVerifyJce(publicKey, HashType.SHA256, EcdsaEncoding.DER);
-        verifier.verify(signature, dataToVerify);
-      } else {
-        throw new GeneralSecurityException(
-            String.format("Cannot find verifying key with key id: %s.", keyId));
-      }
-    } catch (JSONException exception) {
-      throw new GeneralSecurityException(exception);
-    } catch (IOException exception) {
-      throw new GeneralSecurityException(exception);
-    }
+  public SSVController(
+      VerificationExecutor verificationExecutor,
+      BatchVerifier batchVerifier,
+      VerificationResponses responses,
+      VerificationMetrics metrics,
+      @Value("${ssv.batch.secret:}") String batchSecret) {
+    this.verificationExecutor = verificationExecutor;
+    this.batchVerifier = batchVerifier;
+    this.responses = responses;
+    this.metrics = metrics;
+    this.batchSecret = batchSecret.getBytes(UTF_8);
   }
 
+  /**
+   * Verifies a single callback. The request thread returns once the callback is handed to the
+   * {@link VerificationExecutor}; the response is written when the future completes.
+   */
   @GetMapping(value = "/verify")
-  public ResponseEntity<?> index(HttpServletRequest request) {
-
-    Enumeration enumeration = request.getParameterNames();
-    Map<String, String[]> parameters = request.getParameterMap();
+  public CompletableFuture<ResponseEntity<byte[]>> index(HttpServletRequest request) {
+    return verificationExecutor
+        .submit(request.getQueryString(), request.getRemoteAddr())
+        .thenApply(this::respond);
+  }
 
-    Map<String, String> response = new HashMap<>();
-    if (!parameters.containsKey(KEY_ID_PARAM_KEY) || !parameters.containsKey(SIGNATURE_PARAM_KEY)) {
-      response.put("verified", Boolean.FALSE.toString());
-      response.put("error", "Missing key_id and/or signature parameters.");
-      return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+  private ResponseEntity<byte[]> respond(VerificationResult result) {
+    long responseStart = System.nanoTime();
+    ResponseEntity.BodyBuilder builder = ResponseEntity.status(responses.status(result));
+    if (result.hasRetryAfter()) {
+      builder.header(HttpHeaders.RETRY_AFTER, Long.toString(result.getRetryAfterSeconds()));
     }
+    ResponseEntity<byte[]> response =
+        builder.contentType(MediaType.APPLICATION_JSON).body(responses.body(result));
+    metrics.recordStage(Stage.RESPONSE, responseStart);
+    return response;
+  }
 
-    Long keyId = Long.valueOf(parameters.get(KEY_ID_PARAM_KEY)[0]);
-    String signature = parameters.get(SIGNATURE_PARAM_KEY)[0];
-    String queryString = request.getQueryString();
-    /* The last two query parameters of rewarded video
-      SSV callbacks are always signature and key_id
-      https://developers.google.com/admob/android/rewarded-video-ssv#get_content_to_be_verified
-    */
-    byte[] payload =
-        queryString.substring(0, queryString.indexOf(SIGNATURE_PARAM_KEY) - 1).getBytes(UTF_8);
-
-    response.put("payload", new String(payload));
-    response.put("key_id", keyId.toString());
-    response.put("sig", signature);
-    HttpStatus status = HttpStatus.OK;
-    try {
-      verify(payload, keyId, Base64.urlSafeDecode(signature));
-      response.put("verified", Boolean.TRUE.toString());
-    } catch (GeneralSecurityException exception) {
-      status = HttpStatus.BAD_REQUEST;
-      response.put("verified", Boolean.FALSE.toString());
-      response.put("error", exception.getMessage());
+  /**
+   * Verifies a line-delimited stream of callbacks and streams back one NDJSON result per line, in
+   * the order of the input.
+   *
+   * <p>Only served to callers that send {@code ssv.batch.secret} in the {@value
+   * #BATCH_SECRET_HEADER} header, others get {@code 403}. Without a secret the endpoint answers
+   * {@code 404}.
+   */
+  @PostMapping(value = "/verify/batch")
+  public void batch(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    if (batchSecret.length == 0) {
+      response.setStatus(HttpStatus.NOT_FOUND.value());
+      return;
+    }
+    String presented = request.getHeader(BATCH_SECRET_HEADER);
+    if (presented == null || !MessageDigest.isEqual(batchSecret, presented.getBytes(UTF_8))) {
+      response.setStatus(HttpStatus.FORBIDDEN.value());
+      return;
+    }
+    response.setContentType(NDJSON_CONTENT_TYPE);
+    response.setCharacterEncoding(UTF_8.name());
+    try (BufferedReader input =
+            new BufferedReader(new InputStreamReader(request.getInputStream(), UTF_8));
+        Writer output = new OutputStreamWriter(response.getOutputStream(), UTF_8)) {
+      batchVerifier.verify(input, output, request.getRemoteAddr());
     }
-    return new ResponseEntity<>(response, status);
   }
 }
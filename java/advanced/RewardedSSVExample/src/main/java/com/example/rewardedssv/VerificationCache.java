@@ -0,0 +1,240 @@
+package com.example.rewardedssv;
+
+import com.example.rewardedssv.CallbackQuery.Parameter;
+import com.example.rewardedssv.keys.VerifierKeyProvider;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Remembers recent signature verdicts and lets concurrent verifications of the same callback share
+ * one ECDSA check.
+ *
+ * <p>AdMob retries callbacks, sometimes concurrently, and a forged callback may be sent many times;
+ * replay protection only catches retries of callbacks that were already accepted. Verdicts are
+ * keyed by the SHA-256 of the signed payload, the signature, the key id and the version of the key
+ * set, so only the very same callback can hit them and a key rotation starts over. Only definitive
+ * verdicts, a valid or an invalid signature, are cached; a missing key is looked up again next
+ * time.
+ *
+ * <p>The cache is split into stripes, each a least recently used map of up to {@code
+ * ssv.verify.cache.max-entries} divided by the number of stripes; entries expire after {@code
+ * ssv.verify.cache.ttl-seconds}. A {@code max-entries} of 0 turns caching and coalescing off.
+ */
+@Component
+public class VerificationCache {
+  private static final int STRIPES = 16;
+
+  private final VerifierKeyProvider keyProvider;
+  private final Stripe[] stripes;
+  private final long ttlNanos;
+  private final Map<Key, CompletableFuture<VerificationResult>> inFlight =
+      new ConcurrentHashMap<>();
+  private final ThreadLocal<MessageDigest> digests =
+      ThreadLocal.withInitial(VerificationCache::sha256);
+  private final Counter hits;
+  private final Counter misses;
+  private final Counter coalesced;
+
+  public VerificationCache(
+      VerifierKeyProvider keyProvider,
+      MeterRegistry meterRegistry,
+      @Value("${ssv.verify.cache.max-entries:100000}") int maxEntries,
+      @Value("${ssv.verify.cache.ttl-seconds:600}") long ttlSeconds) {
+    this.keyProvider = keyProvider;
+    this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+    if (maxEntries > 0) {
+      stripes = new Stripe[STRIPES];
+      for (int i = 0; i < STRIPES; i++) {
+        stripes[i] = new Stripe(Math.max(1, maxEntries / STRIPES));
+      }
+    } else {
+      stripes = null;
+    }
+    Gauge.builder("ssv.verify.cache.size", this, VerificationCache::size)
+        .description("Signature verdicts in the verification cache")
+        .register(meterRegistry);
+    this.hits = lookupCounter(meterRegistry, "hit");
+    this.misses = lookupCounter(meterRegistry, "miss");
+    this.coalesced = lookupCounter(meterRegistry, "coalesced");
+  }
+
+  private static Counter lookupCounter(MeterRegistry meterRegistry, String result) {
+    return Counter.builder("ssv.verify.cache")
+        .description("Verification cache lookups by result")
+        .tag("result", result)
+        .register(meterRegistry);
+  }
+
+  /**
+   * Returns the verdict for {@code query} from the cache or from a concurrent verification of the
+   * same callback, or else runs {@code verification} and caches its verdict.
+   */
+  CompletableFuture<VerificationResult> verify(
+      CallbackQuery query,
+      Function<CallbackQuery, CompletableFuture<VerificationResult>> verification) {
+    if (stripes == null || !query.has(Parameter.SIGNATURE)) {
+      return verification.apply(query);
+    }
+    Key key = key(query);
+    Stripe stripe = stripes[(int) (key.h0 >>> 60)];
+    VerificationResult cached = stripe.get(key, System.nanoTime());
+    if (cached != null) {
+      hits.increment();
+      return CompletableFuture.completedFuture(cached.withQuery(query));
+    }
+    CompletableFuture<VerificationResult> leader = new CompletableFuture<>();
+    CompletableFuture<VerificationResult> running = inFlight.putIfAbsent(key, leader);
+    if (running != null) {
+      coalesced.increment();
+      return running.thenApply(result -> result.withQuery(query));
+    }
+    misses.increment();
+    CompletableFuture<VerificationResult> result;
+    try {
+      result = verification.apply(query);
+    } catch (RuntimeException exception) {
+      inFlight.remove(key, leader);
+      leader.completeExceptionally(exception);
+      throw exception;
+    }
+    return result.whenComplete(
+        (verified, failure) -> {
+          if (failure == null && isDefinitive(verified)) {
+            // Cached before leaving the in-flight map, so that no caller misses both.
+            stripe.put(key, verified.withQuery(null), System.nanoTime() + ttlNanos);
+          }
+          inFlight.remove(key, leader);
+          if (failure != null) {
+            leader.completeExceptionally(failure);
+          } else {
+            leader.complete(verified);
+          }
+        });
+  }
+
+  private static boolean isDefinitive(VerificationResult result) {
+    return result.isVerified()
+        || result.getErrorType() == VerificationError.Type.INVALID_SIGNATURE;
+  }
+
+  private double size() {
+    if (stripes == null) {
+      return 0;
+    }
+    int size = 0;
+    for (Stripe stripe : stripes) {
+      size += stripe.size();
+    }
+    return size;
+  }
+
+  private Key key(CallbackQuery query) {
+    MessageDigest digest = digests.get();
+    int signatureOffset = query.valueOffset(Parameter.SIGNATURE);
+    int signatureLength = query.valueLength(Parameter.SIGNATURE);
+    // The lengths keep the boundary between payload and signature unambiguous. The key set
+    // version is read before verifying, so a verdict is never filed under a newer key set.
+    ByteBuffer header = ByteBuffer.allocate(24);
+    header.putInt(query.getPayloadLength()).putInt(signatureLength).putLong(query.getKeyId());
+    header.putLong(keyProvider.getRegistry().getVersion());
+    digest.update(header.array());
+    digest.update(query.getData(), 0, query.getPayloadLength());
+    digest.update(query.getData(), signatureOffset, signatureLength);
+    ByteBuffer hash = ByteBuffer.wrap(digest.digest());
+    return new Key(hash.getLong(), hash.getLong(), hash.getLong(), hash.getLong());
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException exception) {
+      throw new IllegalStateException(exception);
+    }
+  }
+
+  /** SHA-256 of a callback and the key set version. */
+  private static final class Key {
+    final long h0;
+    final long h1;
+    final long h2;
+    final long h3;
+
+    Key(long h0, long h1, long h2, long h3) {
+      this.h0 = h0;
+      this.h1 = h1;
+      this.h2 = h2;
+      this.h3 = h3;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Key)) {
+        return false;
+      }
+      Key key = (Key) other;
+      return h0 == key.h0 && h1 == key.h1 && h2 == key.h2 && h3 == key.h3;
+    }
+
+    @Override
+    public int hashCode() {
+      return (int) h1;
+    }
+  }
+
+  private static final class Entry {
+    final VerificationResult result;
+    final long expiresAtNanos;
+
+    Entry(VerificationResult result, long expiresAtNanos) {
+      this.result = result;
+      this.expiresAtNanos = expiresAtNanos;
+    }
+  }
+
+  /** Least recently used map of verdicts. */
+  private static final class Stripe {
+    private final LinkedHashMap<Key, Entry> entries;
+
+    Stripe(int capacity) {
+      this.entries =
+          new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+              return size() > capacity;
+            }
+          };
+    }
+
+    synchronized VerificationResult get(Key key, long nowNanos) {
+      Entry entry = entries.get(key);
+      if (entry == null) {
+        return null;
+      }
+      if (nowNanos - entry.expiresAtNanos >= 0) {
+        entries.remove(key);
+        return null;
+      }
+      return entry.result;
+    }
+
+    synchronized void put(Key key, VerificationResult result, long expiresAtNanos) {
+      entries.put(key, new Entry(result, expiresAtNanos));
+    }
+
+    synchronized int size() {
+      return entries.size();
+    }
+  }
+}
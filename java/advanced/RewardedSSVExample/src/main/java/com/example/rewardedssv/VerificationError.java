@@ -0,0 +1,84 @@
+package com.example.rewardedssv;
+
+/**
+ * Why a callback was not accepted: a {@link Type}, set where the error is detected, and the message
+ * sent back to the client. Metrics tag callbacks by the type, so messages are never parsed.
+ */
+public final class VerificationError {
+
+  /** Kinds of errors, each counted under its lower-case name in {@code ssv.callbacks}. */
+  public enum Type {
+    SIGNATURE_ENCODING,
+    INVALID_SIGNATURE,
+    /** The message names the key id of the callback. */
+    UNKNOWN_KEY(false),
+    /** The message names the key id of the callback. */
+    KEY_TIMEOUT(false),
+    NO_KEYS,
+    MISSING_PARAMETER,
+    MALFORMED,
+    OUT_OF_WINDOW,
+    DEDUP_FULL,
+    DEDUP_UNAVAILABLE,
+    OVERLOADED,
+    DEADLINE_EXCEEDED,
+    LEDGER_FULL,
+    THROTTLED_ADDRESS,
+    THROTTLED_AD_UNIT,
+    REWARD_AMOUNT_OUT_OF_BOUNDS,
+    AD_UNIT_NOT_ALLOWED,
+    REWARD_ITEM_NOT_ALLOWED,
+    /** Any other failure, such as a key source error; the message may be anything. */
+    OTHER(false);
+
+    private final String tag;
+    private final boolean fixedMessages;
+
+    Type() {
+      this(true);
+    }
+
+    Type(boolean fixedMessages) {
+      this.tag = name().toLowerCase();
+      this.fixedMessages = fixedMessages;
+    }
+
+    /** Returns the value of the {@code error} tag of {@code ssv.callbacks}. */
+    public String getTag() {
+      return tag;
+    }
+
+    /**
+     * Returns {@code true} if errors of this type only carry messages from a small, fixed set, so
+     * that their response bodies can be cached.
+     */
+    public boolean hasFixedMessages() {
+      return fixedMessages;
+    }
+  }
+
+  private final Type type;
+  private final String message;
+
+  private VerificationError(Type type, String message) {
+    this.type = type;
+    this.message = message;
+  }
+
+  public static VerificationError of(Type type, String message) {
+    return new VerificationError(type, message);
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+
+  @Override
+  public String toString() {
+    return type.tag + ": " + message;
+  }
+}
@@ -0,0 +1,162 @@
+package com.example.rewardedssv;
+
+import com.example.rewardedssv.admission.ConcurrencyLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bulkhead between Tomcat and callback verification in the servlet deployment mode, so that slow
+ * key fetches or a burst of callbacks cannot take up the connector's request threads.
+ *
+ * <p>{@link SSVController} hands each callback to {@link RewardCallbackHandler#handleAsync}: the
+ * request thread only parses and prechecks it, a missing verifier key is awaited without holding
+ * any thread, and the signature is checked on a fixed pool of {@code ssv.executor.threads} threads,
+ * one per processor by default. The {@link ConcurrencyLimiter} bounds the callbacks in progress;
+ * only while it is turned off, at most {@code ssv.executor.queue-capacity} callbacks beyond the
+ * pool size may be in progress and further callbacks are handled as {@code
+ * ssv.executor.rejection} says: {@code reject} sheds them like the limiter, {@code caller-runs}
+ * verifies them on the request thread. A callback that is not answered within {@code
+ * ssv.executor.deadline-millis} gets {@code 503} as well. Its handling still finishes in the
+ * background, so a reward recorded after the deadline is answered as a duplicate on retry.
+ */
+@Component
+@Profile("!reactive")
+public class VerificationExecutor {
+  private static final VerificationError DEADLINE_EXCEEDED =
+      VerificationError.of(
+          VerificationError.Type.DEADLINE_EXCEEDED, "Verification deadline exceeded.");
+  private static final long RETRY_AFTER_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final RewardCallbackHandler callbackHandler;
+  private final ThreadPoolExecutor pool;
+  private final int capacity;
+  private final Semaphore permits;
+  private final boolean callerRuns;
+  private final long deadlineMillis;
+  private final Counter rejected;
+  private final Counter ranOnCaller;
+  private final Counter deadlineExceeded;
+
+  public VerificationExecutor(
+      RewardCallbackHandler callbackHandler,
+      ConcurrencyLimiter limiter,
+      MeterRegistry meterRegistry,
+      @Value("${ssv.executor.threads:0}") int threads,
+      @Value("${ssv.executor.queue-capacity:1024}") int queueCapacity,
+      @Value("${ssv.executor.rejection:reject}") String rejection,
+      @Value("${ssv.executor.deadline-millis:5000}") long deadlineMillis) {
+    switch (rejection) {
+      case "reject":
+        this.callerRuns = false;
+        break;
+      case "caller-runs":
+        this.callerRuns = true;
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown ssv.executor.rejection: " + rejection);
+    }
+    this.callbackHandler = callbackHandler;
+    int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    AtomicInteger count = new AtomicInteger();
+    // Unbounded, since the permits already bound the callbacks that can queue verifications.
+    this.pool =
+        new ThreadPoolExecutor(
+            poolSize,
+            poolSize,
+            0,
+            TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(),
+            runnable -> {
+              Thread thread = new Thread(runnable, "ssv-verify-" + count.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    // A second, fixed limit behind the adaptive one would only cap it.
+    this.capacity = limiter.isEnabled() ? Integer.MAX_VALUE : poolSize + queueCapacity;
+    this.permits = new Semaphore(capacity);
+    this.deadlineMillis = deadlineMillis;
+    Gauge.builder("ssv.executor.backlog", this, executor -> executor.getBacklog())
+        .description("Callbacks being handled off the request threads")
+        .register(meterRegistry);
+    Gauge.builder("ssv.executor.queue", pool, executor -> executor.getQueue().size())
+        .description("Signature checks waiting for a verification thread")
+        .register(meterRegistry);
+    this.rejected = rejectionCounter(meterRegistry, "rejected");
+    this.ranOnCaller = rejectionCounter(meterRegistry, "caller_runs");
+    this.deadlineExceeded =
+        Counter.builder("ssv.executor.deadlines")
+            .description("Callbacks answered with 503 because they missed the deadline")
+            .register(meterRegistry);
+  }
+
+  private static Counter rejectionCounter(MeterRegistry meterRegistry, String action) {
+    return Counter.builder("ssv.executor.rejections")
+        .description("Callbacks that found the backlog full, by the action taken")
+        .tag("action", action)
+        .register(meterRegistry);
+  }
+
+  @PreDestroy
+  void stop() {
+    pool.shutdownNow();
+  }
+
+  /** Returns the number of callbacks that are queued or being handled. */
+  public int getBacklog() {
+    return capacity - permits.availablePermits();
+  }
+
+  /**
+   * Handles the callback with {@code queryString} from {@code clientAddress}. The returned future
+   * completes on a verification thread, or on the calling thread if the callback is answered
+   * without verifying it.
+   */
+  public CompletableFuture<VerificationResult> submit(String queryString, String clientAddress) {
+    if (!permits.tryAcquire()) {
+      if (callerRuns) {
+        ranOnCaller.increment();
+        return CompletableFuture.completedFuture(
+            callbackHandler.handle(queryString, clientAddress));
+      }
+      rejected.increment();
+      return CompletableFuture.completedFuture(callbackHandler.shed());
+    }
+    CompletableFuture<VerificationResult> handled;
+    try {
+      handled = callbackHandler.handleAsync(queryString, clientAddress, pool);
+    } catch (RuntimeException exception) {
+      permits.release();
+      throw exception;
+    }
+    handled.whenComplete((result, failure) -> permits.release());
+    if (deadlineMillis <= 0 || handled.isDone()) {
+      return handled;
+    }
+    // The deadline applies to a copy, so the permit is held until the handling really finished.
+    return handled
+        .copy()
+        .orTimeout(deadlineMillis, TimeUnit.MILLISECONDS)
+        .exceptionally(
+            failure -> {
+              if (!(failure instanceof TimeoutException)) {
+                throw failure instanceof RuntimeException
+                    ? (RuntimeException) failure
+                    : new IllegalStateException(failure);
+              }
+              deadlineExceeded.increment();
+              return VerificationResult.unavailable(null, DEADLINE_EXCEEDED, RETRY_AFTER_NANOS);
+            });
+  }
+}
@@ -0,0 +1,94 @@
+package com.example.rewardedssv;
+
+import com.example.rewardedssv.keys.VerifierKeyProvider;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.springframework.stereotype.Component;
+
+/**
+ * Domain metrics for reward verification, exported through actuator and Prometheus.
+ *
+ * <ul>
+ *   <li>{@code ssv.verify.stage}: time spent per stage of handling a callback.
+ *   <li>{@code ssv.callbacks}: handled callbacks by outcome, error type and key id.
+ * </ul>
+ *
+ * <p>Meters are created up front or cached, so recording does not look them up in the registry.
+ */
+@Component
+public class VerificationMetrics {
+
+  /** Stages of handling a callback. */
+  public enum Stage {
+    PARSE("parse"),
+    KEY_LOOKUP("key_lookup"),
+    SIGNATURE("signature"),
+    RESPONSE("response");
+
+    private final String tag;
+
+    Stage(String tag) {
+      this.tag = tag;
+    }
+  }
+
+  private static final String NO_ERROR = "none";
+  private static final String NO_KEY_ID = "none";
+  private static final String UNKNOWN_KEY_ID = "unknown";
+
+  private final MeterRegistry registry;
+  private final VerifierKeyProvider keyProvider;
+  private final Map<Stage, Timer> stageTimers = new EnumMap<>(Stage.class);
+  private final Map<String, Counter> callbackCounters = new ConcurrentHashMap<>();
+
+  public VerificationMetrics(MeterRegistry registry, VerifierKeyProvider keyProvider) {
+    this.registry = registry;
+    this.keyProvider = keyProvider;
+    for (Stage stage : Stage.values()) {
+      stageTimers.put(
+          stage,
+          Timer.builder("ssv.verify.stage")
+              .description("Time spent per stage of handling an SSV callback")
+              .tag("stage", stage.tag)
+              .publishPercentileHistogram()
+              .register(registry));
+    }
+  }
+
+  /** Records a stage that started at {@code startNanos}, as returned by {@link System#nanoTime}. */
+  public void recordStage(Stage stage, long startNanos) {
+    stageTimers.get(stage).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /** Counts a handled callback. */
+  public void recordOutcome(VerificationResult result) {
+    String outcome = result.getOutcome().name().toLowerCase();
+    String errorType = result.getErrorType() == null ? NO_ERROR : result.getErrorType().getTag();
+    String keyId = keyIdTag(result.getQuery());
+    callbackCounters
+        .computeIfAbsent(
+            outcome + '|' + errorType + '|' + keyId,
+            ignored ->
+                Counter.builder("ssv.callbacks")
+                    .description("Handled SSV callbacks")
+                    .tag("outcome", outcome)
+                    .tag("error", errorType)
+                    .tag("key_id", keyId)
+                    .register(registry))
+        .increment();
+  }
+
+  /** Only tags key ids of the current key set, so forged key ids cannot explode cardinality. */
+  private String keyIdTag(CallbackQuery query) {
+    if (query == null) {
+      return NO_KEY_ID;
+    }
+    long keyId = query.getKeyId();
+    return keyProvider.getRegistry().get(keyId) != null ? Long.toString(keyId) : UNKNOWN_KEY_ID;
+  }
+}
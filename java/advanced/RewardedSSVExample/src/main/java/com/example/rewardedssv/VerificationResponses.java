@@ -0,0 +1,140 @@
+package com.example.rewardedssv;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+/**
+ * Renders {@link VerificationResult}s as compact, fixed-shape JSON.
+ *
+ * <p>The bodies for success, duplicates and errors of a {@link VerificationError.Type} with fixed
+ * messages are built once and shared; other errors are written field by field without a generic
+ * serializer. The signed payload, key id and signature are only echoed back when {@code
+ * ssv.response.echo-payload} is enabled, which is meant for debugging.
+ */
+@Component
+public class VerificationResponses {
+  private static final byte[] VERIFIED = json(true, false, null);
+  private static final byte[] DUPLICATE = json(false, true, null);
+  private static final byte[] FAILED = json(false, false, null);
+  /** Bodies by message, only for errors whose type has a fixed set of messages. */
+  private static final Map<String, byte[]> ERRORS = new ConcurrentHashMap<>();
+
+  private final boolean echoPayload;
+
+  public VerificationResponses(@Value("${ssv.response.echo-payload:false}") boolean echoPayload) {
+    this.echoPayload = echoPayload;
+  }
+
+  public HttpStatus status(VerificationResult result) {
+    switch (result.getOutcome()) {
+      case VERIFIED:
+      case DUPLICATE:
+        // Retries of an accepted callback get 200 as well so that Google stops retrying.
+        return HttpStatus.OK;
+      case UNAVAILABLE:
+        return HttpStatus.SERVICE_UNAVAILABLE;
+      case THROTTLED:
+        return HttpStatus.TOO_MANY_REQUESTS;
+      default:
+        return HttpStatus.BAD_REQUEST;
+    }
+  }
+
+  /** Returns the JSON body for {@code result}. Shared arrays must not be modified. */
+  public byte[] body(VerificationResult result) {
+    if (echoPayload && result.getQuery() != null) {
+      return echo(result);
+    }
+    switch (result.getOutcome()) {
+      case VERIFIED:
+        return VERIFIED;
+      case DUPLICATE:
+        return DUPLICATE;
+      default:
+        VerificationError error = result.getVerificationError();
+        if (error == null || error.getMessage() == null) {
+          return FAILED;
+        }
+        if (!error.getType().hasFixedMessages()) {
+          return json(false, false, error.getMessage());
+        }
+        return ERRORS.computeIfAbsent(
+            error.getMessage(), message -> json(false, false, message));
+    }
+  }
+
+  private static byte[] echo(VerificationResult result) {
+    JsonWriter writer = new JsonWriter();
+    writer.field("payload", result.getPayload());
+    writer.field("key_id", result.getKeyId());
+    writer.field("sig", result.getSignature());
+    writer.field("verified", Boolean.toString(result.isVerified()));
+    if (result.getOutcome() == VerificationResult.Outcome.DUPLICATE) {
+      writer.field("duplicate", Boolean.TRUE.toString());
+    }
+    if (result.getError() != null) {
+      writer.field("error", result.getError());
+    }
+    return writer.finish();
+  }
+
+  private static byte[] json(boolean verified, boolean duplicate, String error) {
+    JsonWriter writer = new JsonWriter();
+    writer.field("verified", Boolean.toString(verified));
+    if (duplicate) {
+      writer.field("duplicate", Boolean.TRUE.toString());
+    }
+    if (error != null) {
+      writer.field("error", error);
+    }
+    return writer.finish();
+  }
+
+  /** Writes a flat JSON object of string fields. */
+  private static final class JsonWriter {
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(128);
+    private boolean first = true;
+
+    JsonWriter() {
+      out.write('{');
+    }
+
+    void field(String name, String value) {
+      if (!first) {
+        out.write(',');
+      }
+      first = false;
+      string(name);
+      out.write(':');
+      string(value);
+    }
+
+    byte[] finish() {
+      out.write('}');
+      return out.toByteArray();
+    }
+
+    private void string(String value) {
+      out.write('"');
+      for (int i = 0; i < value.length(); i++) {
+        char c = value.charAt(i);
+        if (c == '"' || c == '\\') {
+          out.write('\\');
+          out.write(c);
+        } else if (c < 0x20 || c >= 0x80) {
+          // Escaping everything outside printable ASCII keeps surrogate pairs intact.
+          out.writeBytes(String.format("\\u%04x", (int) c).getBytes(UTF_8));
+        } else {
+          out.write(c);
+        }
+      }
+      out.write('"');
+    }
+  }
+}
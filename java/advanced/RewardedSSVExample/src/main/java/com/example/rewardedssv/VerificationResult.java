@@ -0,0 +1,125 @@
+package com.example.rewardedssv;
+
+/** Outcome of verifying a single SSV callback. */
+public final class VerificationResult {
+
+  /** How a callback was handled. */
+  public enum Outcome {
+    /** The signature is valid. */
+    VERIFIED,
+    /** The transaction was already accepted before; the callback was not verified again. */
+    DUPLICATE,
+    /** The callback is malformed or its signature is invalid. */
+    REJECTED,
+    /** The callback could not be handled right now and should be retried. */
+    UNAVAILABLE,
+    /** The callback was refused by admission control and should be retried later. */
+    THROTTLED
+  }
+
+  private final Outcome outcome;
+  private final CallbackQuery query;
+  private final VerificationError error;
+  private final long retryAfterNanos;
+
+  private VerificationResult(Outcome outcome, CallbackQuery query, VerificationError error) {
+    this(outcome, query, error, 0);
+  }
+
+  private VerificationResult(
+      Outcome outcome, CallbackQuery query, VerificationError error, long retryAfterNanos) {
+    this.outcome = outcome;
+    this.query = query;
+    this.error = error;
+    this.retryAfterNanos = retryAfterNanos;
+  }
+
+  static VerificationResult verified(CallbackQuery query) {
+    return new VerificationResult(Outcome.VERIFIED, query, null);
+  }
+
+  static VerificationResult failed(CallbackQuery query, VerificationError error) {
+    return new VerificationResult(Outcome.REJECTED, query, error);
+  }
+
+  /** Returns a failure for a callback that could not be parsed far enough to be verified. */
+  static VerificationResult rejected(VerificationError error) {
+    return new VerificationResult(Outcome.REJECTED, null, error);
+  }
+
+  static VerificationResult duplicate(CallbackQuery query) {
+    return new VerificationResult(Outcome.DUPLICATE, query, null);
+  }
+
+  static VerificationResult unavailable(CallbackQuery query, VerificationError error) {
+    return new VerificationResult(Outcome.UNAVAILABLE, query, error);
+  }
+
+  /** Returns an overload refusal that tells the client when to retry. */
+  static VerificationResult unavailable(
+      CallbackQuery query, VerificationError error, long retryAfterNanos) {
+    return new VerificationResult(Outcome.UNAVAILABLE, query, error, retryAfterNanos);
+  }
+
+  /** Returns a refusal by admission control; {@code query} is {@code null} if not yet parsed. */
+  static VerificationResult throttled(
+      CallbackQuery query, VerificationError error, long retryAfterNanos) {
+    return new VerificationResult(Outcome.THROTTLED, query, error, retryAfterNanos);
+  }
+
+  /** Returns the same verdict for another callback, or for none if {@code query} is null. */
+  VerificationResult withQuery(CallbackQuery query) {
+    return new VerificationResult(outcome, query, error, retryAfterNanos);
+  }
+
+  public Outcome getOutcome() {
+    return outcome;
+  }
+
+  public boolean isVerified() {
+    return outcome == Outcome.VERIFIED;
+  }
+
+  /** Returns the parsed callback, or {@code null} if it could not be parsed. */
+  public CallbackQuery getQuery() {
+    return query;
+  }
+
+  /** Returns the signed part of the query string, or {@code null} if it was not parsed. */
+  public String getPayload() {
+    return query == null ? null : query.payloadString();
+  }
+
+  public String getKeyId() {
+    return query == null ? null : Long.toString(query.getKeyId());
+  }
+
+  public String getSignature() {
+    return query == null ? null : query.signatureString();
+  }
+
+  /** Returns {@code true} if the response should carry a {@code Retry-After} header. */
+  public boolean hasRetryAfter() {
+    return retryAfterNanos > 0;
+  }
+
+  /** Returns the whole seconds after which a refused callback may be retried, at least 1. */
+  public long getRetryAfterSeconds() {
+    return Math.max(1, (retryAfterNanos + 999_999_999L) / 1_000_000_000L);
+  }
+
+  /** Returns why the callback was not accepted, or {@code null}. */
+  public String getError() {
+    return error == null ? null : error.getMessage();
+  }
+
+  /** Returns the type of {@link #getError}, or {@code null} if there is no error. */
+  public VerificationError.Type getErrorType() {
+    return error == null ? null : error.getType();
+  }
+
+  /** Returns the error with its type, or {@code null}. */
+  public VerificationError getVerificationError() {
+    return error;
+  }
+}
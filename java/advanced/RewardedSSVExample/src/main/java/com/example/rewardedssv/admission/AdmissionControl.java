@@ -0,0 +1,64 @@
+package com.example.rewardedssv.admission;
+
+import com.example.rewardedssv.CallbackQuery;
+import com.example.rewardedssv.CallbackQuery.Parameter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rate limits callbacks per client address and per {@code ad_unit} before any key lookup or
+ * signature verification, so a flood of forged callbacks cannot use up the CPU that verifying
+ * legitimate ones needs.
+ *
+ * <p>Each limit is a {@link TokenBuckets} with {@code ssv.admission.stripes} buckets; a rate of 0
+ * turns it off. AdMob sends callbacks from a small number of Google addresses, so the per-address
+ * limit has to stay well above the callback rate of the app. Throttled callbacks are answered with
+ * {@code 429}, which AdMob retries.
+ */
+@Component
+public class AdmissionControl {
+  private final TokenBuckets addresses;
+  private final TokenBuckets adUnits;
+
+  public AdmissionControl(
+      @Value("${ssv.admission.stripes:4096}") int stripes,
+      @Value("${ssv.admission.address.rate-per-second:500}") double addressRate,
+      @Value("${ssv.admission.address.burst:1000}") int addressBurst,
+      @Value("${ssv.admission.ad-unit.rate-per-second:2000}") double adUnitRate,
+      @Value("${ssv.admission.ad-unit.burst:4000}") int adUnitBurst) {
+    this.addresses = addressRate > 0 ? new TokenBuckets(stripes, addressRate, addressBurst) : null;
+    this.adUnits = adUnitRate > 0 ? new TokenBuckets(stripes, adUnitRate, adUnitBurst) : null;
+  }
+
+  /**
+   * Takes a token for a callback from {@code address}, which may be {@code null} if unknown.
+   *
+   * @return 0 if the callback is admitted, otherwise the nanoseconds until it would be
+   */
+  public long admitAddress(String address) {
+    if (addresses == null || address == null) {
+      return 0;
+    }
+    return addresses.tryAcquire(address.hashCode());
+  }
+
+  /**
+   * Takes a token for a callback for the {@code ad_unit} of {@code query}, if it has one.
+   *
+   * @return 0 if the callback is admitted, otherwise the nanoseconds until it would be
+   */
+  public long admitAdUnit(CallbackQuery query) {
+    if (adUnits == null || !query.has(Parameter.AD_UNIT)) {
+      return 0;
+    }
+    // Hashes the raw value, so that admission does not allocate.
+    byte[] data = query.getData();
+    int offset = query.valueOffset(Parameter.AD_UNIT);
+    int end = offset + query.valueLength(Parameter.AD_UNIT);
+    int hash = 1;
+    for (int i = offset; i < end; i++) {
+      hash = 31 * hash + data[i];
+    }
+    return adUnits.tryAcquire(hash);
+  }
+}
@@ -0,0 +1,159 @@
+package com.example.rewardedssv.admission;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Adaptive limit on the number of callbacks handled at once, so that an overload is shed right away
+ * instead of queuing callbacks until they time out.
+ *
+ * <p>The limit follows a gradient algorithm driven by the latency of verified callbacks. For every
+ * sampling window of {@code ssv.admission.concurrency.window-millis}, the average latency is
+ * compared with a baseline that estimates the latency without queuing: it follows a faster window
+ * quickly but a slower one only slowly. While the latency stays within {@code
+ * ssv.admission.concurrency.tolerance} times the baseline, the limit grows by about its square root
+ * per window; once queuing pushes the latency beyond that, the limit shrinks in proportion, by at
+ * most half per window. The limit stays between {@code min-limit} and {@code
+ * max-limit}, and only grows while the callbacks in flight actually come close to it.
+ */
+@Component
+public class ConcurrencyLimiter {
+  /** Weight of a faster window in the baseline latency, which follows improvements quickly. */
+  private static final double BASELINE_DOWN_WEIGHT = 0.5;
+
+  /** Weight of a slower window in the baseline, so queuing cannot become the new normal. */
+  private static final double BASELINE_UP_WEIGHT = 0.01;
+
+  private static final int MIN_WINDOW_SAMPLES = 10;
+
+  private final boolean enabled;
+  private final int minLimit;
+  private final int maxLimit;
+  private final double tolerance;
+  private final double smoothing;
+  private final long windowNanos;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final Counter shed;
+
+  private volatile int limit;
+  // Guarded by this.
+  private double estimatedLimit;
+  private double baselineNanos;
+  private long windowStart = System.nanoTime();
+  private long windowSumNanos;
+  private int windowSamples;
+  private int windowMaxInFlight;
+
+  public ConcurrencyLimiter(
+      MeterRegistry meterRegistry,
+      @Value("${ssv.admission.concurrency.enabled:true}") boolean enabled,
+      @Value("${ssv.admission.concurrency.initial-limit:64}") int initialLimit,
+      @Value("${ssv.admission.concurrency.min-limit:8}") int minLimit,
+      @Value("${ssv.admission.concurrency.max-limit:1024}") int maxLimit,
+      @Value("${ssv.admission.concurrency.tolerance:1.5}") double tolerance,
+      @Value("${ssv.admission.concurrency.smoothing:0.2}") double smoothing,
+      @Value("${ssv.admission.concurrency.window-millis:100}") long windowMillis) {
+    if (minLimit < 1 || maxLimit < minLimit) {
+      throw new IllegalArgumentException("Invalid ssv.admission.concurrency limits");
+    }
+    this.enabled = enabled;
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.tolerance = tolerance;
+    this.smoothing = smoothing;
+    this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+    this.estimatedLimit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    this.limit = (int) estimatedLimit;
+    Gauge.builder("ssv.admission.limit", this, limiter -> limiter.limit)
+        .description("Current limit on the callbacks handled at once")
+        .register(meterRegistry);
+    Gauge.builder("ssv.admission.in.flight", inFlight, AtomicInteger::get)
+        .description("Callbacks being handled")
+        .register(meterRegistry);
+    this.shed =
+        Counter.builder("ssv.admission.shed")
+            .description("Callbacks refused because the concurrency limit was reached")
+            .register(meterRegistry);
+  }
+
+  /**
+   * Admits a callback if fewer than the current limit are in flight. An admitted callback must be
+   * passed to {@link #release} once it was answered.
+   */
+  public boolean tryAcquire() {
+    if (!enabled) {
+      return true;
+    }
+    while (true) {
+      int current = inFlight.get();
+      if (current >= limit) {
+        shed.increment();
+        return false;
+      }
+      if (inFlight.compareAndSet(current, current + 1)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Releases a callback admitted at {@code startNanos}; its latency adjusts the limit if {@code
+   * sample} is set, which should only be the case for callbacks that went through verification.
+   */
+  public void release(long startNanos, boolean sample) {
+    if (!enabled) {
+      return;
+    }
+    int current = inFlight.getAndDecrement();
+    if (sample) {
+      record(System.nanoTime() - startNanos, current);
+    }
+  }
+
+  private synchronized void record(long latencyNanos, int current) {
+    windowSumNanos += latencyNanos;
+    windowSamples++;
+    windowMaxInFlight = Math.max(windowMaxInFlight, current);
+    long now = System.nanoTime();
+    if (now - windowStart < windowNanos || windowSamples < MIN_WINDOW_SAMPLES) {
+      return;
+    }
+    double shortTermNanos = (double) windowSumNanos / windowSamples;
+    boolean utilized = windowMaxInFlight >= estimatedLimit / 2;
+    windowStart = now;
+    windowSumNanos = 0;
+    windowSamples = 0;
+    windowMaxInFlight = 0;
+
+    if (baselineNanos == 0) {
+      baselineNanos = shortTermNanos;
+    } else {
+      double weight = shortTermNanos < baselineNanos ? BASELINE_DOWN_WEIGHT : BASELINE_UP_WEIGHT;
+      baselineNanos += (shortTermNanos - baselineNanos) * weight;
+    }
+    if (!utilized) {
+      // Too little load to tell whether a higher limit would still be served as fast.
+      return;
+    }
+    double gradient = Math.max(0.5, Math.min(1.0, tolerance * baselineNanos / shortTermNanos));
+    double next = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+    estimatedLimit = estimatedLimit * (1 - smoothing) + next * smoothing;
+    estimatedLimit = Math.max(minLimit, Math.min(maxLimit, estimatedLimit));
+    limit = (int) estimatedLimit;
+  }
+
+  /** Returns {@code false} if {@code ssv.admission.concurrency.enabled} turned the limit off. */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /** Returns the current limit. */
+  public int getLimit() {
+    return limit;
+  }
+}
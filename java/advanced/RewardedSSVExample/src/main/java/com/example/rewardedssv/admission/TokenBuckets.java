@@ -0,0 +1,57 @@
+package com.example.rewardedssv.admission;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed set of token buckets that keys are striped onto by hash, updated lock-free.
+ *
+ * <p>Each bucket is a single long, the time at which it would be full again had it not been used
+ * since (the theoretical arrival time of the generic cell rate algorithm), so taking a token is one
+ * compare-and-set and refilling needs no timer. Keys that hash onto the same bucket share it, which
+ * only makes the limit stricter for them. Buckets are a cache line apart, so that busy keys do not
+ * slow down their neighbours.
+ */
+final class TokenBuckets {
+  private static final int LONGS_PER_CACHE_LINE = 8;
+
+  private final AtomicLongArray arrivals;
+  private final int shift;
+  private final long intervalNanos;
+  private final long toleranceNanos;
+  private final long epoch = System.nanoTime();
+
+  /**
+   * @param stripes number of buckets, rounded up to a power of two
+   * @param ratePerSecond tokens added to a bucket per second
+   * @param burst tokens a full bucket holds
+   */
+  TokenBuckets(int stripes, double ratePerSecond, int burst) {
+    int bits = 32 - Integer.numberOfLeadingZeros(Math.max(1, stripes - 1));
+    this.arrivals = new AtomicLongArray((1 << bits) * LONGS_PER_CACHE_LINE);
+    this.shift = 32 - bits;
+    this.intervalNanos = Math.max(1, (long) (1e9 / ratePerSecond));
+    this.toleranceNanos = intervalNanos * Math.max(1, burst);
+  }
+
+  /**
+   * Takes a token from the bucket of the key with {@code hash}.
+   *
+   * @return 0 if a token was taken, otherwise the nanoseconds until the bucket has one
+   */
+  long tryAcquire(int hash) {
+    int index = ((hash * 0x9E3779B9) >>> shift) * LONGS_PER_CACHE_LINE;
+    // Relative to the epoch, so that the initial zero means a full bucket.
+    long now = System.nanoTime() - epoch;
+    while (true) {
+      long arrival = arrivals.get(index);
+      long next = Math.max(arrival, now) + intervalNanos;
+      long wait = next - now - toleranceNanos;
+      if (wait > 0) {
+        return wait;
+      }
+      if (arrivals.compareAndSet(index, arrival, next)) {
+        return 0;
+      }
+    }
+  }
+}
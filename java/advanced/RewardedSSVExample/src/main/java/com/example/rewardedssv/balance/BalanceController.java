@@ -0,0 +1,69 @@
+package com.example.rewardedssv.balance;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.security.MessageDigest;
+import java.util.Map;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Answers {@code GET /balance?user_id=...} with the balances of a user by reward item. Served by
+ * both the servlet and the reactive stack; the lookup never blocks, so it is safe on an event loop.
+ *
+ * <p>Balances are only served to callers that send {@code ssv.balance.secret} in the {@value
+ * #SECRET_HEADER} header, others get {@code 403}. Without a secret the endpoint answers {@code
+ * 404}, as it shares the public port with {@code /verify}.
+ */
+@RestController
+public class BalanceController {
+  static final String SECRET_HEADER = "X-SSV-Balance-Secret";
+
+  private final BalanceEngine engine;
+  private final byte[] secret;
+
+  public BalanceController(BalanceEngine engine, @Value("${ssv.balance.secret:}") String secret) {
+    this.engine = engine;
+    this.secret = secret.getBytes(UTF_8);
+  }
+
+  @GetMapping(value = "/balance")
+  public ResponseEntity<byte[]> balance(
+      @RequestHeader(name = SECRET_HEADER, required = false) String presented,
+      @RequestParam(name = "user_id", required = false) String userId) {
+    if (secret.length == 0) {
+      return ResponseEntity.notFound().build();
+    }
+    if (presented == null || !MessageDigest.isEqual(secret, presented.getBytes(UTF_8))) {
+      return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+    }
+    JSONObject body = new JSONObject();
+    try {
+      if (userId == null || userId.isEmpty()) {
+        body.put("error", "Missing user_id parameter.");
+        return respond(HttpStatus.BAD_REQUEST, body);
+      }
+      Map<String, Long> balances = engine.getBalances(userId);
+      body.put("user_id", userId);
+      body.put("balances", new JSONObject(balances));
+    } catch (JSONException exception) {
+      // Cannot happen for string and long values.
+      throw new IllegalStateException(exception);
+    }
+    return respond(HttpStatus.OK, body);
+  }
+
+  private static ResponseEntity<byte[]> respond(HttpStatus status, JSONObject body) {
+    return ResponseEntity.status(status)
+        .contentType(MediaType.APPLICATION_JSON)
+        .body(body.toString().getBytes(UTF_8));
+  }
+}
@@ -0,0 +1,247 @@
+package com.example.rewardedssv.balance;
+
+import com.example.rewardedssv.ledger.LedgerListener;
+import com.example.rewardedssv.ledger.LedgerStore;
+import com.example.rewardedssv.ledger.VerifiedReward;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Running balance of every {@code user_id} per {@code reward_item}, kept from the committed
+ * rewards of the ledger.
+ *
+ * <p>Users are partitioned by hash onto {@code ssv.balance.shards} {@link BalanceShard}s, each
+ * updated by its own thread, so updates of different users never contend and updates of one user
+ * are never concurrent. Every {@code ssv.balance.snapshot-interval-seconds} each shard is copied
+ * between two updates and written to {@code ssv.balance.directory} with the ledger sequence number
+ * it includes. On startup the snapshots are loaded and only the rewards after them are replayed.
+ *
+ * <p>Balances are updated shortly after a reward is committed, so a read may not include a reward
+ * that was just verified. Rewards without a {@code user_id} are not counted.
+ */
+@Component
+public class BalanceEngine implements LedgerListener {
+  private static final Logger logger = LoggerFactory.getLogger(BalanceEngine.class);
+
+  private final LedgerStore store;
+  private final Path directory;
+  private final long snapshotIntervalSeconds;
+  private final BalanceShard[] shards;
+  private final ScheduledExecutorService scheduler =
+      Executors.newSingleThreadScheduledExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, "ssv-balance-snapshots");
+            thread.setDaemon(true);
+            return thread;
+          });
+  private final Timer snapshotTimer;
+
+  private volatile boolean running = true;
+
+  public BalanceEngine(
+      LedgerStore store,
+      MeterRegistry meterRegistry,
+      @Value("${ssv.balance.shards:0}") int shards,
+      @Value("${ssv.balance.queue-capacity:256}") int queueCapacity,
+      @Value("${ssv.balance.directory:data/balance}") String directory,
+      @Value("${ssv.balance.snapshot-interval-seconds:300}") long snapshotIntervalSeconds) {
+    this.store = store;
+    this.directory = Paths.get(directory);
+    this.snapshotIntervalSeconds = snapshotIntervalSeconds;
+    int shardCount = shards > 0 ? shards : Runtime.getRuntime().availableProcessors();
+    this.shards = new BalanceShard[shardCount];
+    for (int i = 0; i < this.shards.length; i++) {
+      this.shards[i] = new BalanceShard(i, queueCapacity);
+    }
+    Gauge.builder("ssv.balance.queue.depth", this, BalanceEngine::getQueueDepth)
+        .description("Reward batches waiting to be applied to the balances")
+        .register(meterRegistry);
+    Gauge.builder("ssv.balance.users", this, BalanceEngine::getUserCount)
+        .description("Users with a balance")
+        .register(meterRegistry);
+    this.snapshotTimer =
+        Timer.builder("ssv.balance.snapshot")
+            .description("Time spent writing a snapshot of the balances")
+            .register(meterRegistry);
+  }
+
+  @PostConstruct
+  void start() throws IOException {
+    Files.createDirectories(directory);
+    long from = restore();
+    for (BalanceShard shard : shards) {
+      shard.start();
+    }
+    if (snapshotIntervalSeconds > 0) {
+      scheduler.scheduleWithFixedDelay(
+          this::snapshot, snapshotIntervalSeconds, snapshotIntervalSeconds, TimeUnit.SECONDS);
+    }
+    logger.info(
+        "Keeping reward balances in {} shards, replaying the ledger from sequence {}.",
+        shards.length,
+        from);
+    store.replay(from, this);
+  }
+
+  /** Loads the snapshots and returns the sequence number to replay the ledger from. */
+  private long restore() {
+    ShardSnapshot[] snapshots = new ShardSnapshot[shards.length];
+    try {
+      for (int i = 0; i < shards.length; i++) {
+        snapshots[i] = ShardSnapshot.read(directory, i);
+        if (snapshots[i] == null) {
+          if (i > 0) {
+            logger.warn("Balance snapshot of shard {} is missing, rebuilding balances.", i);
+          }
+          return 0;
+        }
+        if (snapshots[i].shardCount != shards.length || snapshots[i].shard != i) {
+          logger.warn(
+              "Balance snapshots were taken with {} shards, rebuilding balances for {}.",
+              snapshots[i].shardCount,
+              shards.length);
+          return 0;
+        }
+        if (snapshots[i].nextSequence > store.getNextSequence()) {
+          // The ledger lost rewards the snapshot includes, and will reuse their sequence numbers.
+          logger.warn(
+              "Balance snapshot of shard {} is ahead of the ledger, rebuilding balances.", i);
+          return 0;
+        }
+      }
+    } catch (IOException | RuntimeException exception) {
+      logger.warn("Failed to read the balance snapshots, rebuilding balances.", exception);
+      return 0;
+    }
+    long from = Long.MAX_VALUE;
+    for (int i = 0; i < shards.length; i++) {
+      shards[i].restore(snapshots[i]);
+      from = Math.min(from, snapshots[i].nextSequence);
+    }
+    return from;
+  }
+
+  /** Applies the rewards still queued and writes a final snapshot. */
+  @PreDestroy
+  void stop() throws InterruptedException {
+    running = false;
+    scheduler.shutdownNow();
+    scheduler.awaitTermination(10, TimeUnit.SECONDS);
+    List<ShardSnapshot> snapshots = new ArrayList<>(shards.length);
+    for (BalanceShard shard : shards) {
+      shard.stop();
+      snapshots.add(shard.copy(shards.length));
+    }
+    write(snapshots);
+  }
+
+  @Override
+  public void onCommitted(long firstSequence, List<VerifiedReward> rewards) {
+    if (!running) {
+      return;
+    }
+    int[] counts = new int[shards.length];
+    int[] shardOf = new int[rewards.size()];
+    for (int i = 0; i < rewards.size(); i++) {
+      String userId = rewards.get(i).getUserId();
+      shardOf[i] = userId == null ? -1 : shardOf(userId);
+      if (shardOf[i] >= 0) {
+        counts[shardOf[i]]++;
+      }
+    }
+    long endSequence = firstSequence + rewards.size();
+    try {
+      // Every shard hears about every batch, so that its next sequence number keeps up.
+      for (int shard = 0; shard < shards.length; shard++) {
+        long[] sequences = new long[counts[shard]];
+        VerifiedReward[] batch = new VerifiedReward[counts[shard]];
+        int count = 0;
+        for (int i = 0; i < rewards.size() && count < batch.length; i++) {
+          if (shardOf[i] == shard) {
+            sequences[count] = firstSequence + i;
+            batch[count++] = rewards.get(i);
+          }
+        }
+        shards[shard].update(sequences, batch, count, endSequence);
+      }
+    } catch (InterruptedException exception) {
+      // The rewards are replayed from the last snapshot on the next start.
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /** Returns the balances of {@code userId} by reward item. Does not block. */
+  public Map<String, Long> getBalances(String userId) {
+    return shards[shardOf(userId)].read(userId);
+  }
+
+  private int shardOf(String userId) {
+    int hash = userId.hashCode() * 0x9E3779B9;
+    return Math.floorMod(hash ^ (hash >>> 16), shards.length);
+  }
+
+  private double getQueueDepth() {
+    int depth = 0;
+    for (BalanceShard shard : shards) {
+      depth += shard.getQueueDepth();
+    }
+    return depth;
+  }
+
+  private double getUserCount() {
+    long users = 0;
+    for (BalanceShard shard : shards) {
+      users += shard.getUserCount();
+    }
+    return users;
+  }
+
+  private void snapshot() {
+    List<CompletableFuture<ShardSnapshot>> copies = new ArrayList<>(shards.length);
+    List<ShardSnapshot> snapshots = new ArrayList<>(shards.length);
+    try {
+      for (BalanceShard shard : shards) {
+        copies.add(shard.snapshot(shards.length));
+      }
+      for (CompletableFuture<ShardSnapshot> copy : copies) {
+        snapshots.add(copy.get());
+      }
+    } catch (InterruptedException | ExecutionException exception) {
+      // Shutting down, stop() writes the final snapshot.
+      return;
+    }
+    write(snapshots);
+  }
+
+  private void write(List<ShardSnapshot> snapshots) {
+    long start = System.nanoTime();
+    try {
+      for (ShardSnapshot snapshot : snapshots) {
+        snapshot.write(directory);
+      }
+    } catch (IOException exception) {
+      logger.warn("Failed to write the balance snapshots to {}.", directory, exception);
+      return;
+    }
+    snapshotTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+  }
+}
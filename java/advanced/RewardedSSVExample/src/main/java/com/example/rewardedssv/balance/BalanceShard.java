@@ -0,0 +1,194 @@
+package com.example.rewardedssv.balance;
+
+import com.example.rewardedssv.ledger.VerifiedReward;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Balances of the users that hash to one shard, owned by a single writer thread.
+ *
+ * <p>Users and reward items are given int ids, and each balance is stored under the user id and
+ * item id combined into one long. Only the writer thread changes the maps, so updates take no lock
+ * other than an uncontended write stamp per batch. Readers use optimistic reads of that stamp and
+ * try again if a batch was applied meanwhile, so they never block the writer.
+ */
+final class BalanceShard {
+  private static final Logger logger = LoggerFactory.getLogger(BalanceShard.class);
+
+  private final int index;
+  private final BlockingQueue<Runnable> tasks;
+  private final Thread writer;
+  private final StampedLock lock = new StampedLock();
+  private final StringIndex users = new StringIndex();
+  private final StringIndex items = new StringIndex();
+  private final LongLongMap balances = new LongLongMap();
+
+  /** Every reward before this ledger sequence number is included in the balances. */
+  private volatile long nextSequence;
+  private volatile boolean running = true;
+
+  BalanceShard(int index, int queueCapacity) {
+    this.index = index;
+    this.tasks = new ArrayBlockingQueue<>(queueCapacity);
+    this.writer = new Thread(this::writeLoop, "ssv-balance-" + index);
+    writer.setDaemon(true);
+  }
+
+  /** Loads {@code snapshot}; only before {@link #start}. */
+  void restore(ShardSnapshot snapshot) {
+    for (int id = 1; id < snapshot.users.length; id++) {
+      users.intern(snapshot.users[id]);
+    }
+    for (int id = 1; id < snapshot.items.length; id++) {
+      items.intern(snapshot.items[id]);
+    }
+    long[] entries = snapshot.balances;
+    for (int i = 0; i < entries.length; i += 2) {
+      if (entries[i] != 0) {
+        balances.add(entries[i], entries[i + 1]);
+      }
+    }
+    nextSequence = snapshot.nextSequence;
+  }
+
+  void start() {
+    writer.start();
+  }
+
+  /** Applies the queued updates and stops the writer thread. */
+  void stop() throws InterruptedException {
+    running = false;
+    writer.join();
+  }
+
+  /**
+   * Queues rewards for the writer thread; {@code sequences} holds the ledger sequence number of
+   * each reward. Blocks while the queue is full, so a slow shard holds back the ledger writer.
+   *
+   * @param endSequence the sequence number after the ledger batch the rewards are taken from
+   * @return {@code false} if the shard is stopping
+   */
+  boolean update(long[] sequences, VerifiedReward[] rewards, int count, long endSequence)
+      throws InterruptedException {
+    return submit(() -> apply(sequences, rewards, count, endSequence));
+  }
+
+  /** Returns a copy of the balances, taken by the writer thread between two updates. */
+  CompletableFuture<ShardSnapshot> snapshot(int shardCount) throws InterruptedException {
+    CompletableFuture<ShardSnapshot> snapshot = new CompletableFuture<>();
+    if (!submit(() -> snapshot.complete(copy(shardCount)))) {
+      snapshot.completeExceptionally(new IllegalStateException("Balance shard is stopping."));
+    }
+    return snapshot;
+  }
+
+  /** Returns a copy of the balances; only on the writer thread or after {@link #stop}. */
+  ShardSnapshot copy(int shardCount) {
+    return new ShardSnapshot(
+        index,
+        shardCount,
+        nextSequence,
+        users.copyNames(),
+        items.copyNames(),
+        balances.copyTable());
+  }
+
+  /** Returns the balances of {@code userId} by reward item, without blocking the writer. */
+  Map<String, Long> read(String userId) {
+    while (true) {
+      long stamp = lock.tryOptimisticRead();
+      if (stamp != 0) {
+        Map<String, Long> result = readUnvalidated(userId);
+        if (lock.validate(stamp)) {
+          return result;
+        }
+      }
+      Thread.onSpinWait();
+    }
+  }
+
+  private Map<String, Long> readUnvalidated(String userId) {
+    Map<String, Long> result = new TreeMap<>();
+    int user = users.lookup(userId);
+    if (user == 0) {
+      return result;
+    }
+    // Reward items are few, so every one is looked up for the user.
+    int itemCount = items.size();
+    for (int item = 1; item <= itemCount; item++) {
+      long amount = balances.get(key(user, item), Long.MIN_VALUE);
+      String name = items.name(item);
+      if (amount != Long.MIN_VALUE && name != null) {
+        result.put(name, amount);
+      }
+    }
+    return result;
+  }
+
+  int getQueueDepth() {
+    return tasks.size();
+  }
+
+  int getUserCount() {
+    return users.size();
+  }
+
+  private boolean submit(Runnable task) throws InterruptedException {
+    while (!tasks.offer(task, 100, TimeUnit.MILLISECONDS)) {
+      if (!running) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void writeLoop() {
+    while (running || !tasks.isEmpty()) {
+      Runnable task;
+      try {
+        task = tasks.poll(100, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException exception) {
+        // Only stop() ends the loop, so that queued updates are not dropped.
+        continue;
+      }
+      if (task == null) {
+        continue;
+      }
+      try {
+        task.run();
+      } catch (RuntimeException exception) {
+        logger.error("Balance shard {} failed to apply an update.", index, exception);
+      }
+    }
+  }
+
+  private void apply(long[] sequences, VerifiedReward[] rewards, int count, long endSequence) {
+    long stamp = lock.writeLock();
+    try {
+      for (int i = 0; i < count; i++) {
+        // Rewards the restored snapshot already includes are replayed from the ledger again.
+        if (sequences[i] < nextSequence) {
+          continue;
+        }
+        VerifiedReward reward = rewards[i];
+        String item = reward.getRewardItem() != null ? reward.getRewardItem() : "";
+        long key = key(users.intern(reward.getUserId()), items.intern(item));
+        balances.add(key, reward.getRewardAmount());
+      }
+      nextSequence = Math.max(nextSequence, endSequence);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  private static long key(int user, int item) {
+    return ((long) user << 32) | (item & 0xFFFFFFFFL);
+  }
+}
@@ -0,0 +1,88 @@
+package com.example.rewardedssv.balance;
+
+/**
+ * Map of long keys to long values in one open-addressing table of interleaved keys and values;
+ * zero is not a valid key, it marks a free slot.
+ *
+ * <p>Only one thread may write. Other threads may call {@link #get} at any time, but may see an
+ * outdated or inconsistent value while a write is in progress and have to validate their read the
+ * way {@link BalanceShard} does. Keys and values share one array so that a reader never pairs the
+ * keys of one table with the values of another after a resize.
+ */
+final class LongLongMap {
+  private long[] table = new long[32];
+  private int size;
+
+  /** Returns the value of {@code key}, or {@code missing} if there is none. */
+  long get(long key, long missing) {
+    long[] table = this.table;
+    int mask = (table.length >>> 1) - 1;
+    int slot = slot(key, mask);
+    // Bounded, so that a reader racing the writer cannot probe forever.
+    for (int probes = 0; probes <= mask; probes++) {
+      long found = table[slot << 1];
+      if (found == key) {
+        return table[(slot << 1) + 1];
+      }
+      if (found == 0) {
+        return missing;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return missing;
+  }
+
+  /** Adds {@code delta} to the value of {@code key}, which starts at zero. */
+  void add(long key, long delta) {
+    int mask = (table.length >>> 1) - 1;
+    int slot = slot(key, mask);
+    long found;
+    while ((found = table[slot << 1]) != 0) {
+      if (found == key) {
+        table[(slot << 1) + 1] += delta;
+        return;
+      }
+      slot = (slot + 1) & mask;
+    }
+    if ((size + 1) * 2 > mask + 1) {
+      resize();
+      add(key, delta);
+      return;
+    }
+    table[(slot << 1) + 1] = delta;
+    table[slot << 1] = key;
+    size++;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /** Returns a copy of the table: pairs of key and value, where a zero key is a free slot. */
+  long[] copyTable() {
+    return table.clone();
+  }
+
+  private void resize() {
+    long[] old = table;
+    long[] resized = new long[old.length * 2];
+    int mask = (resized.length >>> 1) - 1;
+    for (int i = 0; i < old.length; i += 2) {
+      if (old[i] != 0) {
+        int slot = slot(old[i], mask);
+        while (resized[slot << 1] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        resized[slot << 1] = old[i];
+        resized[(slot << 1) + 1] = old[i + 1];
+      }
+    }
+    // Published only once complete, readers see either the old or the new table.
+    table = resized;
+  }
+
+  private static int slot(long key, int mask) {
+    long hash = key * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ (hash >>> 32)) & mask;
+  }
+}
@@ -0,0 +1,158 @@
+package com.example.rewardedssv.balance;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Copy of the balances of one shard, together with the ledger sequence number up to which they
+ * include every reward.
+ *
+ * <p>On disk a snapshot is a header with the shard count, the user and reward item names by id and
+ * one {@code user, item, amount} entry per balance, followed by a CRC32C of all of it.
+ */
+final class ShardSnapshot {
+  private static final int MAGIC = 0x53535642;
+  private static final int VERSION = 1;
+  private static final int MAX_NAME_BYTES = 1 << 20;
+
+  final int shard;
+  final int shardCount;
+  final long nextSequence;
+  final String[] users;
+  final String[] items;
+  /** Pairs of key and amount; a zero key is an unused pair. */
+  final long[] balances;
+
+  ShardSnapshot(
+      int shard,
+      int shardCount,
+      long nextSequence,
+      String[] users,
+      String[] items,
+      long[] balances) {
+    this.shard = shard;
+    this.shardCount = shardCount;
+    this.nextSequence = nextSequence;
+    this.users = users;
+    this.items = items;
+    this.balances = balances;
+  }
+
+  static Path path(Path directory, int shard) {
+    return directory.resolve(String.format("shard-%03d.snapshot", shard));
+  }
+
+  /** Writes the snapshot to a temporary file and moves it over the previous one. */
+  void write(Path directory) throws IOException {
+    Path path = path(directory, shard);
+    Path temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+    try {
+      CRC32C crc = new CRC32C();
+      try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+        OutputStream file = Channels.newOutputStream(channel);
+        DataOutputStream output =
+            new DataOutputStream(
+                new BufferedOutputStream(new CheckedOutputStream(file, crc), 1 << 16));
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeInt(shard);
+        output.writeInt(shardCount);
+        output.writeLong(nextSequence);
+        writeNames(output, users);
+        writeNames(output, items);
+        int entries = 0;
+        for (int i = 0; i < balances.length; i += 2) {
+          if (balances[i] != 0) {
+            entries++;
+          }
+        }
+        output.writeInt(entries);
+        for (int i = 0; i < balances.length; i += 2) {
+          if (balances[i] != 0) {
+            output.writeLong(balances[i]);
+            output.writeLong(balances[i + 1]);
+          }
+        }
+        output.flush();
+        new DataOutputStream(file).writeInt((int) crc.getValue());
+        channel.force(true);
+      }
+      try {
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException exception) {
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  /** Reads the snapshot of {@code shard}, or returns {@code null} if there is none. */
+  static ShardSnapshot read(Path directory, int shard) throws IOException {
+    Path path = path(directory, shard);
+    if (!Files.exists(path)) {
+      return null;
+    }
+    CRC32C crc = new CRC32C();
+    try (InputStream file = new BufferedInputStream(Files.newInputStream(path), 1 << 16)) {
+      DataInputStream input = new DataInputStream(new CheckedInputStream(file, crc));
+      if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+        throw new IOException("Not a balance snapshot: " + path);
+      }
+      int snapshotShard = input.readInt();
+      int shardCount = input.readInt();
+      long nextSequence = input.readLong();
+      String[] users = readNames(input);
+      String[] items = readNames(input);
+      long[] balances = new long[2 * input.readInt()];
+      for (int i = 0; i < balances.length; i++) {
+        balances[i] = input.readLong();
+      }
+      int expected = (int) crc.getValue();
+      if (new DataInputStream(file).readInt() != expected) {
+        throw new IOException("Checksum mismatch in balance snapshot " + path);
+      }
+      return new ShardSnapshot(snapshotShard, shardCount, nextSequence, users, items, balances);
+    }
+  }
+
+  private static void writeNames(DataOutputStream output, String[] names) throws IOException {
+    output.writeInt(names.length - 1);
+    for (int id = 1; id < names.length; id++) {
+      byte[] bytes = names[id].getBytes(UTF_8);
+      output.writeInt(bytes.length);
+      output.write(bytes);
+    }
+  }
+
+  private static String[] readNames(DataInputStream input) throws IOException {
+    String[] names = new String[input.readInt() + 1];
+    for (int id = 1; id < names.length; id++) {
+      int length = input.readInt();
+      if (length < 0 || length > MAX_NAME_BYTES) {
+        throw new IOException("Invalid name length " + length + " in balance snapshot.");
+      }
+      byte[] bytes = new byte[length];
+      input.readFully(bytes);
+      names[id] = new String(bytes, UTF_8);
+    }
+    return names;
+  }
+}
@@ -0,0 +1,92 @@
+package com.example.rewardedssv.balance;
+
+import java.util.Arrays;
+
+/**
+ * Assigns dense int ids, starting at 1, to strings, so that they can be part of a primitive key.
+ * The ids are found through an open-addressing table of ids; the strings are stored once, by id.
+ *
+ * <p>Same threading rules as {@link LongLongMap}: one writer, and readers that validate.
+ */
+final class StringIndex {
+  private String[] names = new String[16];
+  private int[] slots = new int[32];
+  private volatile int size;
+
+  /** Returns the id of {@code name}, or 0 if it has none. */
+  int lookup(String name) {
+    int[] slots = this.slots;
+    String[] names = this.names;
+    int mask = slots.length - 1;
+    int slot = hash(name) & mask;
+    for (int probes = 0; probes <= mask; probes++) {
+      int id = slots[slot];
+      if (id == 0) {
+        return 0;
+      }
+      // A reader may see ids newer than its copy of the names.
+      if (id < names.length && name.equals(names[id])) {
+        return id;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return 0;
+  }
+
+  /** Returns the id of {@code name}, assigning the next one if it has none yet. */
+  int intern(String name) {
+    int id = lookup(name);
+    if (id != 0) {
+      return id;
+    }
+    id = size + 1;
+    if (id == names.length) {
+      names = Arrays.copyOf(names, names.length * 2);
+    }
+    names[id] = name;
+    if (id * 2 > slots.length) {
+      slots = rebuild(slots.length * 2, id);
+    } else {
+      insert(slots, id);
+    }
+    size = id;
+    return id;
+  }
+
+  /** Returns the string with {@code id}, or {@code null} if there is none. */
+  String name(int id) {
+    String[] names = this.names;
+    return id > 0 && id < names.length ? names[id] : null;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /** Returns the strings by id; index 0 is unused. */
+  String[] copyNames() {
+    return Arrays.copyOf(names, size + 1);
+  }
+
+  private int[] rebuild(int capacity, int lastId) {
+    int[] rebuilt = new int[capacity];
+    for (int id = 1; id <= lastId; id++) {
+      insert(rebuilt, id);
+    }
+    return rebuilt;
+  }
+
+  private void insert(int[] slots, int id) {
+    int mask = slots.length - 1;
+    int slot = hash(names[id]) & mask;
+    while (slots[slot] != 0) {
+      slot = (slot + 1) & mask;
+    }
+    slots[slot] = id;
+  }
+
+  private static int hash(String name) {
+    int hash = name.hashCode() * 0x9E3779B9;
+    return hash ^ (hash >>> 16);
+  }
+}
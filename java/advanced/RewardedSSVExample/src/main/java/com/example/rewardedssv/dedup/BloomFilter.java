@@ -0,0 +1,49 @@
+package com.example.rewardedssv.dedup;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free Bloom filter over {@link Fingerprint128} values, used to skip the exact store for ids
+ * that were certainly never seen.
+ */
+final class BloomFilter {
+  private final AtomicLongArray bits;
+  private final long bitCount;
+  private final int hashCount;
+
+  /** Sizes the filter for {@code expectedEntries} at roughly a 1% false positive rate. */
+  BloomFilter(long expectedEntries) {
+    long requestedBits = Math.max(64, expectedEntries * 10);
+    int words = (int) Math.min(Integer.MAX_VALUE - 8, (requestedBits + 63) >>> 6);
+    this.bits = new AtomicLongArray(words);
+    this.bitCount = (long) words << 6;
+    this.hashCount = 7;
+  }
+
+  boolean mightContain(Fingerprint128 fingerprint) {
+    long combined = fingerprint.high;
+    for (int i = 0; i < hashCount; i++) {
+      long index = (combined & Long.MAX_VALUE) % bitCount;
+      if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+        return false;
+      }
+      combined += fingerprint.low;
+    }
+    return true;
+  }
+
+  void put(Fingerprint128 fingerprint) {
+    long combined = fingerprint.high;
+    for (int i = 0; i < hashCount; i++) {
+      long index = (combined & Long.MAX_VALUE) % bitCount;
+      int word = (int) (index >>> 6);
+      long mask = 1L << index;
+      long current;
+      while (((current = bits.get(word)) & mask) == 0
+          && !bits.compareAndSet(word, current, current | mask)) {
+        // Retry until the bit is set, by us or by a concurrent writer.
+      }
+      combined += fingerprint.low;
+    }
+  }
+}
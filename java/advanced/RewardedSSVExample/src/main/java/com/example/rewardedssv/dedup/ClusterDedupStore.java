@@ -0,0 +1,276 @@
+package com.example.rewardedssv.dedup;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link TransactionDedupStore} shared by all nodes behind a load balancer, selected with {@code
+ * ssv.dedup.store=cluster}, so that a retry is recognized whichever node it lands on.
+ *
+ * <p>A {@link HashRing} over {@code ssv.dedup.cluster.nodes} makes one node the owner of each
+ * {@code transaction_id}. Ids this node owns live in its {@link LocalDedupStore}; the others are
+ * checked and recorded on their owner through a {@link DedupPeer}, which batches the operations
+ * for one node into a single request. Ids recorded on another node are kept in a {@link NearCache},
+ * which answers the common replay, a retry arriving at the node that took the original, locally.
+ *
+ * <p>If the owner cannot be reached, the replay check passes and recording reports {@link
+ * Status#UNAVAILABLE}, so the callback is refused and AdMob retries it later rather than risking a
+ * double reward. The owner may have applied a record whose answer was lost, which would turn that
+ * retry into a duplicate that is never rewarded, so the record is released again first. Every
+ * record carries a random token and the release only undoes the record with the same token, never
+ * one a concurrent retry made. The ids a node owns are kept in its memory only: a restarted owner
+ * replays its own ledger but forgets the ids other nodes recorded on it, within the replay
+ * protection window.
+ */
+public class ClusterDedupStore implements TransactionDedupStore, AutoCloseable {
+  private static final Logger logger = LoggerFactory.getLogger(ClusterDedupStore.class);
+  private static final Status[] STATUSES = Status.values();
+
+  private final LocalDedupStore local;
+  private final List<String> nodes;
+  private final HashRing ring;
+  private final int self;
+  private final DedupPeer[] peers;
+  private final NearCache nearCache;
+  private final int maxRequestBytes;
+  private final byte[] secret;
+  private final Counter localLookups;
+  private final Counter nearCacheLookups;
+  private final Counter remoteLookups;
+  private final Counter releasedRecords;
+  private final Counter unreleasedRecords;
+
+  /**
+   * Creates the store of the node {@code self}, which must be one of {@code nodes}; every node has
+   * to be given the same {@code nodes}, {@code virtualNodes}, {@code batchSize} and {@code secret}
+   * to agree on the owners and accept each other's batches.
+   */
+  public ClusterDedupStore(
+      LocalDedupStore local,
+      List<String> nodes,
+      String self,
+      int virtualNodes,
+      DedupTransport transport,
+      int batchSize,
+      long lingerMicros,
+      long timeoutMillis,
+      int maxInFlight,
+      int nearCacheSize,
+      String secret,
+      MeterRegistry meterRegistry) {
+    if (secret.isEmpty()) {
+      // Anyone who could post to /internal/dedup could release accepted transactions.
+      throw new IllegalArgumentException(
+          "ssv.dedup.cluster.secret must be set when ssv.dedup.store is cluster");
+    }
+    this.self = nodes.indexOf(self);
+    if (this.self < 0) {
+      throw new IllegalArgumentException(
+          "ssv.dedup.cluster.self " + self + " is not one of ssv.dedup.cluster.nodes " + nodes);
+    }
+    this.local = local;
+    this.nodes = List.copyOf(nodes);
+    this.ring = new HashRing(nodes, virtualNodes);
+    this.peers = new DedupPeer[nodes.size()];
+    for (int i = 0; i < nodes.size(); i++) {
+      if (i != this.self) {
+        peers[i] =
+            new DedupPeer(
+                nodes.get(i),
+                transport,
+                batchSize,
+                lingerMicros,
+                timeoutMillis,
+                maxInFlight,
+                meterRegistry);
+      }
+    }
+    this.nearCache = nearCacheSize > 0 ? new NearCache(nearCacheSize) : null;
+    this.maxRequestBytes = batchSize * DedupProtocol.OPERATION_BYTES;
+    this.secret = secret.getBytes(UTF_8);
+    this.localLookups = lookupCounter(meterRegistry, "local");
+    this.nearCacheLookups = lookupCounter(meterRegistry, "near_cache");
+    this.remoteLookups = lookupCounter(meterRegistry, "remote");
+    this.releasedRecords = unansweredCounter(meterRegistry, "released");
+    this.unreleasedRecords = unansweredCounter(meterRegistry, "unreleased");
+    logger.info("Sharing replay protection with {} as node {} of {}.", nodes, self, nodes.size());
+  }
+
+  private static Counter lookupCounter(MeterRegistry meterRegistry, String source) {
+    return Counter.builder("ssv.dedup.lookups")
+        .description("Replay checks by where they were answered")
+        .tag("source", source)
+        .register(meterRegistry);
+  }
+
+  private static Counter unansweredCounter(MeterRegistry meterRegistry, String result) {
+    return Counter.builder("ssv.dedup.unanswered")
+        .description("Records on another node without an answer, by whether they were released")
+        .tag("result", result)
+        .register(meterRegistry);
+  }
+
+  @Override
+  public boolean isInWindow(long timestampMillis) {
+    return local.isInWindow(timestampMillis);
+  }
+
+  @Override
+  public long getWindowStartMillis() {
+    return local.getWindowStartMillis();
+  }
+
+  @Override
+  public boolean isDuplicate(String transactionId, long timestampMillis) {
+    return isDuplicateAsync(transactionId, timestampMillis).join();
+  }
+
+  @Override
+  public CompletableFuture<Boolean> isDuplicateAsync(String transactionId, long timestampMillis) {
+    Fingerprint128 fingerprint = Fingerprint128.of(transactionId);
+    int owner = ring.owner(fingerprint);
+    if (owner == self) {
+      localLookups.increment();
+      return CompletableFuture.completedFuture(local.isDuplicate(fingerprint, timestampMillis));
+    }
+    if (nearCache != null && nearCache.contains(fingerprint)) {
+      nearCacheLookups.increment();
+      return CompletableFuture.completedFuture(true);
+    }
+    remoteLookups.increment();
+    return peers[owner]
+        .submit(DedupProtocol.CHECK, fingerprint, timestampMillis, 0)
+        .handle(
+            (response, failure) -> {
+              // Without an answer the callback goes on; recording it asks the owner again.
+              boolean duplicate = failure == null && response == 1;
+              if (duplicate) {
+                remember(fingerprint);
+              }
+              return duplicate;
+            });
+  }
+
+  @Override
+  public Status record(String transactionId, long timestampMillis) {
+    return recordAsync(transactionId, timestampMillis).join();
+  }
+
+  @Override
+  public CompletableFuture<Status> recordAsync(String transactionId, long timestampMillis) {
+    Fingerprint128 fingerprint = Fingerprint128.of(transactionId);
+    int owner = ring.owner(fingerprint);
+    if (owner == self) {
+      return CompletableFuture.completedFuture(local.record(fingerprint, timestampMillis));
+    }
+    int token = ThreadLocalRandom.current().nextInt(1, Integer.MAX_VALUE);
+    return peers[owner]
+        .submit(DedupProtocol.RECORD, fingerprint, timestampMillis, token)
+        .handle(
+            (response, failure) -> {
+              if (failure != null || response >= STATUSES.length) {
+                return unavailable(owner, fingerprint, timestampMillis, token);
+              }
+              Status status = STATUSES[response];
+              if (status == Status.RECORDED || status == Status.DUPLICATE) {
+                remember(fingerprint);
+              }
+              return CompletableFuture.completedFuture(status);
+            })
+        .thenCompose(Function.identity());
+  }
+
+  /**
+   * Releases a record without an answer, in case the owner applied it, and then reports {@link
+   * Status#UNAVAILABLE}. If the owner cannot be reached for that either, the retry of the refused
+   * callback is taken for a duplicate until the owner restarts or the window passes.
+   */
+  private CompletableFuture<Status> unavailable(
+      int owner, Fingerprint128 fingerprint, long timestampMillis, int token) {
+    return peers[owner]
+        .submit(DedupProtocol.RELEASE, fingerprint, timestampMillis, token)
+        .handle(
+            (response, failure) -> {
+              (failure == null ? releasedRecords : unreleasedRecords).increment();
+              return Status.UNAVAILABLE;
+            });
+  }
+
+  @Override
+  public void release(String transactionId, long timestampMillis) {
+    Fingerprint128 fingerprint = Fingerprint128.of(transactionId);
+    int owner = ring.owner(fingerprint);
+    if (owner == self) {
+      local.release(fingerprint, timestampMillis);
+      return;
+    }
+    if (nearCache != null) {
+      nearCache.remove(fingerprint);
+    }
+    peers[owner]
+        .submit(DedupProtocol.RELEASE, fingerprint, timestampMillis, 0)
+        .whenComplete(
+            (response, failure) -> {
+              if (failure != null) {
+                logger.warn(
+                    "Failed to release transaction {} on {}, its retries will be duplicates.",
+                    transactionId,
+                    nodes.get(owner),
+                    failure);
+              }
+            });
+  }
+
+  /** Returns the number of transactions this node owns and currently remembers. */
+  @Override
+  public long size() {
+    return local.size();
+  }
+
+  /** Returns {@code true} if {@code presented} matches {@code ssv.dedup.cluster.secret}. */
+  public boolean authorize(String presented) {
+    return presented != null && MessageDigest.isEqual(secret, presented.getBytes(UTF_8));
+  }
+
+  /** Returns the size of the largest batch another node sends, a full one of {@code batchSize}. */
+  public int getMaxRequestBytes() {
+    return maxRequestBytes;
+  }
+
+  /**
+   * Applies a batch of operations sent by another node to the ids this node owns.
+   *
+   * @throws IllegalArgumentException if the batch is malformed or larger than {@link
+   *     #getMaxRequestBytes}
+   */
+  public byte[] serve(byte[] request) {
+    if (request.length > maxRequestBytes) {
+      throw new IllegalArgumentException("Dedup request of " + request.length + " bytes");
+    }
+    return DedupProtocol.serve(local, request);
+  }
+
+  private void remember(Fingerprint128 fingerprint) {
+    if (nearCache != null) {
+      nearCache.add(fingerprint);
+    }
+  }
+
+  @Override
+  public void close() {
+    for (DedupPeer peer : peers) {
+      if (peer != null) {
+        peer.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,75 @@
+package com.example.rewardedssv.dedup;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Creates the {@link TransactionDedupStore}, selected by {@code ssv.dedup.store}: {@code local} for
+ * the ids of this node only, {@code cluster} to share them between the comma-separated base URLs
+ * of {@code ssv.dedup.cluster.nodes}, one of which is this node's {@code ssv.dedup.cluster.self}.
+ * The {@code cluster} store refuses to start without an {@code ssv.dedup.cluster.secret}.
+ */
+@Configuration
+public class DedupConfiguration {
+
+  @Bean
+  public TransactionDedupStore transactionDedupStore(
+      MeterRegistry meterRegistry,
+      @Value("${ssv.dedup.store:local}") String type,
+      @Value("${ssv.dedup.window-minutes:60}") long windowMinutes,
+      @Value("${ssv.dedup.retention-hours:48}") long retentionHours,
+      @Value("${ssv.dedup.expected-entries-per-window:1000000}") long expectedEntriesPerWindow,
+      @Value("${ssv.dedup.max-entries-per-window:20000000}") long maxEntriesPerWindow,
+      @Value("${ssv.dedup.cluster.nodes:}") String nodes,
+      @Value("${ssv.dedup.cluster.self:}") String self,
+      @Value("${ssv.dedup.cluster.virtual-nodes:128}") int virtualNodes,
+      @Value("${ssv.dedup.cluster.batch-size:256}") int batchSize,
+      @Value("${ssv.dedup.cluster.linger-micros:0}") long lingerMicros,
+      @Value("${ssv.dedup.cluster.timeout-millis:500}") long timeoutMillis,
+      @Value("${ssv.dedup.cluster.max-in-flight:4}") int maxInFlight,
+      @Value("${ssv.dedup.cluster.near-cache-size:65536}") int nearCacheSize,
+      @Value("${ssv.dedup.cluster.secret:}") String secret) {
+    LocalDedupStore local =
+        new LocalDedupStore(
+            windowMinutes, retentionHours, expectedEntriesPerWindow, maxEntriesPerWindow);
+    switch (type) {
+      case "local":
+        return local;
+      case "cluster":
+        return new ClusterDedupStore(
+            local,
+            baseUrls(nodes),
+            stripSlash(self.trim()),
+            virtualNodes,
+            new HttpDedupTransport(Duration.ofMillis(timeoutMillis), secret),
+            batchSize,
+            lingerMicros,
+            timeoutMillis,
+            maxInFlight,
+            nearCacheSize,
+            secret,
+            meterRegistry);
+      default:
+        throw new IllegalArgumentException("Unknown ssv.dedup.store: " + type);
+    }
+  }
+
+  private static List<String> baseUrls(String nodes) {
+    List<String> urls = new ArrayList<>();
+    for (String node : nodes.split(",")) {
+      if (!node.isBlank()) {
+        urls.add(stripSlash(node.trim()));
+      }
+    }
+    return urls;
+  }
+
+  private static String stripSlash(String url) {
+    return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+  }
+}
@@ -0,0 +1,58 @@
+package com.example.rewardedssv.dedup;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStream;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Answers the dedup batches other nodes send to {@code POST /internal/dedup} for the transactions
+ * this node owns. Answers {@code 404} unless {@code ssv.dedup.store} is {@code cluster}, {@code 403}
+ * without the {@code ssv.dedup.cluster.secret}, and {@code 413} for a body larger than a full batch,
+ * which is refused before it is read. {@link ReactiveDedupConfiguration} serves the same endpoint
+ * in the {@code reactive} profile.
+ */
+@RestController
+@Profile("!reactive")
+public class DedupController {
+  private final TransactionDedupStore store;
+
+  public DedupController(TransactionDedupStore store) {
+    this.store = store;
+  }
+
+  @PostMapping(value = HttpDedupTransport.PATH)
+  public ResponseEntity<byte[]> serve(HttpServletRequest request) throws IOException {
+    if (!(store instanceof ClusterDedupStore)) {
+      return ResponseEntity.notFound().build();
+    }
+    ClusterDedupStore cluster = (ClusterDedupStore) store;
+    if (!cluster.authorize(request.getHeader(HttpDedupTransport.SECRET_HEADER))) {
+      return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+    }
+    int maxBytes = cluster.getMaxRequestBytes();
+    if (request.getContentLengthLong() > maxBytes) {
+      return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+    }
+    byte[] body;
+    try (InputStream input = request.getInputStream()) {
+      // One byte more than allowed tells a chunked body that is too large.
+      body = input.readNBytes(maxBytes + 1);
+    }
+    if (body.length > maxBytes) {
+      return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+    }
+    try {
+      return ResponseEntity.ok()
+          .contentType(MediaType.APPLICATION_OCTET_STREAM)
+          .body(cluster.serve(body));
+    } catch (IllegalArgumentException exception) {
+      return ResponseEntity.badRequest().build();
+    }
+  }
+}
@@ -0,0 +1,172 @@
+package com.example.rewardedssv.dedup;
+
+import com.example.rewardedssv.dedup.DedupProtocol.Operation;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends the dedup operations for the transactions another node owns to that node, in batches.
+ *
+ * <p>A sender thread takes the queued operations and posts them as one request, with at most
+ * {@code maxInFlight} requests outstanding. Operations that arrive while all requests are out wait
+ * in the queue and leave together with the next one, so batches grow with the load without
+ * delaying a lone lookup; {@code lingerMicros} additionally waits for more operations before
+ * sending a batch that is not full. Operations fail fast when the queue is full, the peer does not
+ * answer within {@code timeoutMillis} or the peer answers with an error.
+ */
+final class DedupPeer implements AutoCloseable {
+  private static final Logger logger = LoggerFactory.getLogger(DedupPeer.class);
+  private static final int QUEUE_CAPACITY = 8192;
+
+  private final String node;
+  private final DedupTransport transport;
+  private final int batchSize;
+  private final long lingerNanos;
+  private final long timeoutMillis;
+  private final Semaphore inFlight;
+  private final BlockingQueue<Operation> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+  private final Thread sender;
+  private final Timer succeeded;
+  private final Timer failed;
+  private final DistributionSummary batchSizes;
+
+  private volatile boolean closed;
+  private volatile boolean reachable = true;
+
+  DedupPeer(
+      String node,
+      DedupTransport transport,
+      int batchSize,
+      long lingerMicros,
+      long timeoutMillis,
+      int maxInFlight,
+      MeterRegistry meterRegistry) {
+    this.node = node;
+    this.transport = transport;
+    this.batchSize = batchSize;
+    this.lingerNanos = TimeUnit.MICROSECONDS.toNanos(lingerMicros);
+    this.timeoutMillis = timeoutMillis;
+    this.inFlight = new Semaphore(maxInFlight);
+    this.succeeded = requestTimer(meterRegistry, node, "success");
+    this.failed = requestTimer(meterRegistry, node, "failure");
+    this.batchSizes =
+        DistributionSummary.builder("ssv.dedup.batch.size")
+            .description("Dedup operations per request to another node")
+            .tag("peer", node)
+            .register(meterRegistry);
+    this.sender = new Thread(this::run, "ssv-dedup-peer-" + node);
+    sender.setDaemon(true);
+    sender.start();
+  }
+
+  private static Timer requestTimer(MeterRegistry meterRegistry, String node, String result) {
+    return Timer.builder("ssv.dedup.remote")
+        .description("Dedup requests to the node that owns the transactions")
+        .tag("peer", node)
+        .tag("result", result)
+        .register(meterRegistry);
+  }
+
+  /** Queues an operation and returns the future of its response byte. */
+  CompletableFuture<Integer> submit(
+      byte code, Fingerprint128 fingerprint, long timestampMillis, int token) {
+    Operation operation = new Operation(code, fingerprint, timestampMillis, token);
+    if (closed || !queue.offer(operation)) {
+      operation.response.completeExceptionally(
+          new RejectedExecutionException("Dedup queue for " + node + " is full"));
+    }
+    return operation.response;
+  }
+
+  private void run() {
+    List<Operation> batch = new ArrayList<>(batchSize);
+    try {
+      while (!closed) {
+        inFlight.acquire();
+        batch.add(queue.take());
+        queue.drainTo(batch, batchSize - batch.size());
+        if (lingerNanos > 0) {
+          long deadline = System.nanoTime() + lingerNanos;
+          while (batch.size() < batchSize) {
+            Operation next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (next == null) {
+              break;
+            }
+            batch.add(next);
+            queue.drainTo(batch, batchSize - batch.size());
+          }
+        }
+        send(batch);
+        batch = new ArrayList<>(batchSize);
+      }
+    } catch (InterruptedException exception) {
+      // Closed.
+    }
+    queue.drainTo(batch);
+    RejectedExecutionException closing = new RejectedExecutionException("Dedup store is closed");
+    for (Operation operation : batch) {
+      operation.response.completeExceptionally(closing);
+    }
+  }
+
+  private void send(List<Operation> batch) {
+    long start = System.nanoTime();
+    batchSizes.record(batch.size());
+    CompletableFuture<byte[]> request;
+    try {
+      request = transport.send(node, DedupProtocol.encode(batch));
+    } catch (RuntimeException exception) {
+      request = CompletableFuture.failedFuture(exception);
+    }
+    request
+        .orTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+        .whenComplete(
+            (response, failure) -> {
+              inFlight.release();
+              Throwable error = failure;
+              if (error == null && response.length != batch.size()) {
+                error =
+                    new IllegalStateException(
+                        "Dedup node " + node + " answered " + response.length + " operations");
+              }
+              (error == null ? succeeded : failed)
+                  .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+              updateReachable(error);
+              for (int i = 0; i < batch.size(); i++) {
+                if (error == null) {
+                  batch.get(i).response.complete(response[i] & 0xff);
+                } else {
+                  batch.get(i).response.completeExceptionally(error);
+                }
+              }
+            });
+  }
+
+  /** Logs when the peer stops and starts answering, rather than every failed request. */
+  private void updateReachable(Throwable error) {
+    if (error != null && reachable) {
+      reachable = false;
+      logger.warn("Dedup node {} is not answering.", node, error);
+    } else if (error == null && !reachable) {
+      reachable = true;
+      logger.info("Dedup node {} is answering again.", node);
+    }
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    sender.interrupt();
+  }
+}
@@ -0,0 +1,95 @@
+package com.example.rewardedssv.dedup;
+
+import com.example.rewardedssv.dedup.TransactionDedupStore.Status;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Binary format of the batches {@link ClusterDedupStore} nodes send to the owners of transactions.
+ *
+ * <p>A request is a sequence of operations of {@value #OPERATION_BYTES} bytes each: the operation
+ * code, the two halves of the fingerprint, the callback timestamp and a token, big-endian. The
+ * response has one byte per operation, in the same order: {@code 1} for a duplicate and {@code 0}
+ * otherwise for {@link #CHECK}, the {@link Status} ordinal for {@link #RECORD}, and {@code 0} for
+ * {@link #RELEASE}. A {@link #RELEASE} with a non-zero token only undoes the {@link #RECORD} that
+ * carried the same token. Fingerprints, rather than transaction ids, keep the operations of a
+ * fixed size.
+ */
+final class DedupProtocol {
+  static final byte CHECK = 0;
+  static final byte RECORD = 1;
+  static final byte RELEASE = 2;
+  static final int OPERATION_BYTES = 29;
+
+  private DedupProtocol() {}
+
+  /** One operation of a batch and the future its response byte completes. */
+  static final class Operation {
+    final byte code;
+    final Fingerprint128 fingerprint;
+    final long timestampMillis;
+    final int token;
+    final CompletableFuture<Integer> response = new CompletableFuture<>();
+
+    Operation(byte code, Fingerprint128 fingerprint, long timestampMillis, int token) {
+      this.code = code;
+      this.fingerprint = fingerprint;
+      this.timestampMillis = timestampMillis;
+      this.token = token;
+    }
+  }
+
+  static byte[] encode(List<Operation> operations) {
+    ByteBuffer buffer = ByteBuffer.allocate(operations.size() * OPERATION_BYTES);
+    for (Operation operation : operations) {
+      buffer
+          .put(operation.code)
+          .putLong(operation.fingerprint.high)
+          .putLong(operation.fingerprint.low)
+          .putLong(operation.timestampMillis)
+          .putInt(operation.token);
+    }
+    return buffer.array();
+  }
+
+  /**
+   * Applies the operations of {@code request} to {@code store} and returns the response. A
+   * malformed request is refused before any of its operations is applied, since the sender treats
+   * all of them as failed.
+   */
+  static byte[] serve(LocalDedupStore store, byte[] request) {
+    if (request.length % OPERATION_BYTES != 0) {
+      throw new IllegalArgumentException("Truncated dedup request of " + request.length + " bytes");
+    }
+    byte[] response = new byte[request.length / OPERATION_BYTES];
+    for (int i = 0; i < response.length; i++) {
+      byte code = request[i * OPERATION_BYTES];
+      if (code != CHECK && code != RECORD && code != RELEASE) {
+        throw new IllegalArgumentException("Unknown dedup operation " + code);
+      }
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(request);
+    for (int i = 0; i < response.length; i++) {
+      byte code = buffer.get();
+      Fingerprint128 fingerprint = new Fingerprint128(buffer.getLong(), buffer.getLong());
+      long timestampMillis = buffer.getLong();
+      int token = buffer.getInt();
+      switch (code) {
+        case CHECK:
+          response[i] = (byte) (store.isDuplicate(fingerprint, timestampMillis) ? 1 : 0);
+          break;
+        case RECORD:
+          response[i] = (byte) store.record(fingerprint, timestampMillis, token).ordinal();
+          break;
+        case RELEASE:
+          store.release(fingerprint, timestampMillis, token);
+          break;
+        default:
+          // Refused above.
+          break;
+      }
+    }
+    return response;
+  }
+}
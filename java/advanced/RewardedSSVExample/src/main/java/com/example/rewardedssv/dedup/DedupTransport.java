@@ -0,0 +1,14 @@
+package com.example.rewardedssv.dedup;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Carries batches of dedup operations from a {@link ClusterDedupStore} node to the owner of the
+ * transactions. {@link HttpDedupTransport} is used between servers; tests and simulations can
+ * connect stores in one process instead.
+ */
+public interface DedupTransport {
+
+  /** Sends the encoded operations to {@code node} and returns its encoded response. */
+  CompletableFuture<byte[]> send(String node, byte[] request);
+}
@@ -0,0 +1,88 @@
+package com.example.rewardedssv.dedup;
+
+/**
+ * 128-bit MurmurHash3 (x64 variant) of a transaction id.
+ *
+ * <p>Transaction ids are stored as fingerprints instead of strings: 16 bytes per id regardless of
+ * its length, with a collision probability that is negligible at the volumes a single node sees.
+ */
+final class Fingerprint128 {
+  private static final long C1 = 0x87c37b91114253d5L;
+  private static final long C2 = 0x4cf5ad432745937fL;
+
+  final long high;
+  final long low;
+
+  Fingerprint128(long high, long low) {
+    this.high = high;
+    this.low = low;
+  }
+
+  /** Hashes the low byte of every char of {@code value}; transaction ids are ASCII. */
+  static Fingerprint128 of(CharSequence value) {
+    int length = value.length();
+    long h1 = 0;
+    long h2 = 0;
+    int index = 0;
+    while (length - index >= 16) {
+      long k1 = readLong(value, index);
+      long k2 = readLong(value, index + 8);
+      index += 16;
+      h1 ^= mixK1(k1);
+      h1 = Long.rotateLeft(h1, 27) + h2;
+      h1 = h1 * 5 + 0x52dce729;
+      h2 ^= mixK2(k2);
+      h2 = Long.rotateLeft(h2, 31) + h1;
+      h2 = h2 * 5 + 0x38495ab5;
+    }
+    long k1 = 0;
+    long k2 = 0;
+    int remaining = length - index;
+    for (int i = remaining - 1; i >= 8; i--) {
+      k2 ^= (long) (value.charAt(index + i) & 0xff) << ((i - 8) * 8);
+    }
+    for (int i = Math.min(remaining, 8) - 1; i >= 0; i--) {
+      k1 ^= (long) (value.charAt(index + i) & 0xff) << (i * 8);
+    }
+    h1 ^= mixK1(k1);
+    h2 ^= mixK2(k2);
+    h1 ^= length;
+    h2 ^= length;
+    h1 += h2;
+    h2 += h1;
+    h1 = fmix64(h1);
+    h2 = fmix64(h2);
+    h1 += h2;
+    h2 += h1;
+    return new Fingerprint128(h1, h2);
+  }
+
+  private static long readLong(CharSequence value, int index) {
+    long result = 0;
+    for (int i = 7; i >= 0; i--) {
+      result = (result << 8) | (value.charAt(index + i) & 0xff);
+    }
+    return result;
+  }
+
+  private static long mixK1(long k1) {
+    k1 *= C1;
+    k1 = Long.rotateLeft(k1, 31);
+    return k1 * C2;
+  }
+
+  private static long mixK2(long k2) {
+    k2 *= C2;
+    k2 = Long.rotateLeft(k2, 33);
+    return k2 * C1;
+  }
+
+  private static long fmix64(long k) {
+    k ^= k >>> 33;
+    k *= 0xff51afd7ed558ccdL;
+    k ^= k >>> 33;
+    k *= 0xc4ceb9fe1a85ec53L;
+    k ^= k >>> 33;
+    return k;
+  }
+}
@@ -0,0 +1,166 @@
+package com.example.rewardedssv.dedup;
+
+/**
+ * Exact set of {@link Fingerprint128} values stored in striped open-addressing tables of
+ * primitives, about 40 bytes per entry including free slots. Each entry carries the token it was
+ * added with, so that only the one who added it can take it back out.
+ */
+final class FingerprintSet {
+  private static final int STRIPES = 64;
+
+  private final Stripe[] stripes = new Stripe[STRIPES];
+
+  FingerprintSet() {
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new Stripe();
+    }
+  }
+
+  boolean contains(Fingerprint128 fingerprint) {
+    return stripe(fingerprint).contains(fingerprint.high, fingerprint.low);
+  }
+
+  /** Adds {@code fingerprint} and returns {@code true} if it was not present. */
+  boolean add(Fingerprint128 fingerprint) {
+    return add(fingerprint, 0);
+  }
+
+  /** Adds {@code fingerprint} with {@code token} and returns {@code true} if it was not present. */
+  boolean add(Fingerprint128 fingerprint, int token) {
+    return stripe(fingerprint).add(fingerprint.high, fingerprint.low, token);
+  }
+
+  /** Removes {@code fingerprint} and returns {@code true} if it was present. */
+  boolean remove(Fingerprint128 fingerprint) {
+    return remove(fingerprint, 0);
+  }
+
+  /**
+   * Removes {@code fingerprint} if it was added with {@code token}, or whatever its token if {@code
+   * token} is 0, and returns {@code true} if it was removed.
+   */
+  boolean remove(Fingerprint128 fingerprint, int token) {
+    return stripe(fingerprint).remove(fingerprint.high, fingerprint.low, token);
+  }
+
+  long size() {
+    long size = 0;
+    for (Stripe stripe : stripes) {
+      size += stripe.size();
+    }
+    return size;
+  }
+
+  private Stripe stripe(Fingerprint128 fingerprint) {
+    return stripes[(int) (fingerprint.low >>> 58)];
+  }
+
+  /**
+   * Linear probing table where the all-zero fingerprint marks a free slot; the one real id that
+   * hashes to it is remapped to a reserved constant.
+   */
+  private static final class Stripe {
+    private static final long ZERO_REPLACEMENT = 0x9E3779B97F4A7C15L;
+
+    private long[] highs = new long[16];
+    private long[] lows = new long[16];
+    private int[] tokens = new int[16];
+    private int size;
+
+    synchronized boolean contains(long high, long low) {
+      if (high == 0 && low == 0) {
+        high = ZERO_REPLACEMENT;
+      }
+      return indexOf(high, low) >= 0;
+    }
+
+    synchronized boolean add(long high, long low, int token) {
+      if (high == 0 && low == 0) {
+        high = ZERO_REPLACEMENT;
+      }
+      if (indexOf(high, low) >= 0) {
+        return false;
+      }
+      if ((size + 1) * 2 > highs.length) {
+        resize(highs.length * 2);
+      }
+      insert(high, low, token);
+      size++;
+      return true;
+    }
+
+    synchronized boolean remove(long high, long low, int token) {
+      if (high == 0 && low == 0) {
+        high = ZERO_REPLACEMENT;
+      }
+      int index = indexOf(high, low);
+      if (index < 0 || (token != 0 && tokens[index] != token)) {
+        return false;
+      }
+      // Backward-shift deletion keeps probe chains intact without tombstones.
+      int mask = highs.length - 1;
+      int hole = index;
+      int next = (hole + 1) & mask;
+      while (highs[next] != 0 || lows[next] != 0) {
+        int home = slot(highs[next], lows[next], mask);
+        if (((next - home) & mask) >= ((next - hole) & mask)) {
+          highs[hole] = highs[next];
+          lows[hole] = lows[next];
+          tokens[hole] = tokens[next];
+          hole = next;
+        }
+        next = (next + 1) & mask;
+      }
+      highs[hole] = 0;
+      lows[hole] = 0;
+      tokens[hole] = 0;
+      size--;
+      return true;
+    }
+
+    synchronized int size() {
+      return size;
+    }
+
+    private int indexOf(long high, long low) {
+      int mask = highs.length - 1;
+      int index = slot(high, low, mask);
+      while (highs[index] != 0 || lows[index] != 0) {
+        if (highs[index] == high && lows[index] == low) {
+          return index;
+        }
+        index = (index + 1) & mask;
+      }
+      return -1;
+    }
+
+    private void insert(long high, long low, int token) {
+      int mask = highs.length - 1;
+      int index = slot(high, low, mask);
+      while (highs[index] != 0 || lows[index] != 0) {
+        index = (index + 1) & mask;
+      }
+      highs[index] = high;
+      lows[index] = low;
+      tokens[index] = token;
+    }
+
+    private void resize(int capacity) {
+      long[] oldHighs = highs;
+      long[] oldLows = lows;
+      int[] oldTokens = tokens;
+      highs = new long[capacity];
+      lows = new long[capacity];
+      tokens = new int[capacity];
+      for (int i = 0; i < oldHighs.length; i++) {
+        if (oldHighs[i] != 0 || oldLows[i] != 0) {
+          insert(oldHighs[i], oldLows[i], oldTokens[i]);
+        }
+      }
+    }
+
+    private static int slot(long high, long low, int mask) {
+      return (int) (high ^ (high >>> 32)) & mask;
+    }
+  }
+}
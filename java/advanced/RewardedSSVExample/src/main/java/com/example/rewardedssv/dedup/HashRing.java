@@ -0,0 +1,51 @@
+package com.example.rewardedssv.dedup;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Consistent hash ring that assigns every transaction fingerprint to one owner node.
+ *
+ * <p>Each node is placed at {@code virtualNodes} pseudo-random points, and a fingerprint belongs
+ * to the node at the first point at or after it, wrapping around. Every node computes the same
+ * owner from the same node list without talking to the others, and adding or removing a node only
+ * moves the ids in the ranges that node gains or loses.
+ */
+final class HashRing {
+  private final long[] points;
+  private final int[] owners;
+
+  HashRing(List<String> nodes, int virtualNodes) {
+    if (nodes.isEmpty() || virtualNodes < 1) {
+      throw new IllegalArgumentException("A hash ring needs nodes and virtual nodes");
+    }
+    int count = nodes.size() * virtualNodes;
+    long[] keys = new long[count];
+    int i = 0;
+    for (int node = 0; node < nodes.size(); node++) {
+      for (int replica = 0; replica < virtualNodes; replica++) {
+        keys[i++] = Fingerprint128.of(nodes.get(node) + "#" + replica).high;
+      }
+    }
+    Integer[] order = new Integer[count];
+    for (int j = 0; j < count; j++) {
+      order[j] = j;
+    }
+    Arrays.sort(order, (a, b) -> Long.compare(keys[a], keys[b]));
+    points = new long[count];
+    owners = new int[count];
+    for (int j = 0; j < count; j++) {
+      points[j] = keys[order[j]];
+      owners[j] = order[j] / virtualNodes;
+    }
+  }
+
+  /** Returns the index, in the node list, of the node that owns {@code fingerprint}. */
+  int owner(Fingerprint128 fingerprint) {
+    int index = Arrays.binarySearch(points, fingerprint.high);
+    if (index < 0) {
+      index = -index - 1;
+    }
+    return owners[index == points.length ? 0 : index];
+  }
+}
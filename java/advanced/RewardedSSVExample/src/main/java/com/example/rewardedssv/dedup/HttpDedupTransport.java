@@ -0,0 +1,54 @@
+package com.example.rewardedssv.dedup;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Posts dedup batches to {@code <node>/internal/dedup} of the other servers. Batches of one peer
+ * reuse its keep-alive connections, so a lookup costs one round trip.
+ */
+final class HttpDedupTransport implements DedupTransport {
+  static final String PATH = "/internal/dedup";
+  static final String SECRET_HEADER = "X-SSV-Dedup-Secret";
+
+  private final HttpClient client;
+  private final Duration timeout;
+  private final String secret;
+
+  HttpDedupTransport(Duration timeout, String secret) {
+    this.client =
+        HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(timeout)
+            .build();
+    this.timeout = timeout;
+    this.secret = secret;
+  }
+
+  @Override
+  public CompletableFuture<byte[]> send(String node, byte[] request) {
+    HttpRequest post =
+        HttpRequest.newBuilder(URI.create(node + PATH))
+            .timeout(timeout)
+            .header("Content-Type", "application/octet-stream")
+            .header(SECRET_HEADER, secret)
+            .POST(HttpRequest.BodyPublishers.ofByteArray(request))
+            .build();
+    return client
+        .sendAsync(post, HttpResponse.BodyHandlers.ofByteArray())
+        .thenApply(
+            response -> {
+              if (response.statusCode() != 200) {
+                throw new CompletionException(
+                    new IllegalStateException(
+                        "Dedup node " + node + " answered " + response.statusCode()));
+              }
+              return response.body();
+            });
+  }
+}
@@ -0,0 +1,175 @@
+package com.example.rewardedssv.dedup;
+
+import java.time.Clock;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * {@link TransactionDedupStore} that keeps the ids in the memory of this node, selected with {@code
+ * ssv.dedup.store=local}. It also holds the ids a {@link ClusterDedupStore} node owns.
+ *
+ * <p>Ids are bucketed by the signed callback {@code timestamp} into fixed windows held in a ring;
+ * a window that falls out of the retention period is dropped as a whole when its ring slot is
+ * reused. Each window has a Bloom filter in front of an exact fingerprint set, so the common case,
+ * a new id, is answered without touching the exact set. Callbacks whose timestamp lies outside the
+ * retention period cannot be checked and are reported as {@link Status#OUT_OF_WINDOW}.
+ */
+public class LocalDedupStore implements TransactionDedupStore {
+  private final Clock clock;
+  private final long windowMillis;
+  private final int retainedWindows;
+  private final long expectedEntriesPerWindow;
+  private final long maxEntriesPerWindow;
+  private final AtomicReferenceArray<Window> ring;
+
+  public LocalDedupStore(
+      long windowMinutes,
+      long retentionHours,
+      long expectedEntriesPerWindow,
+      long maxEntriesPerWindow) {
+    this(
+        windowMinutes,
+        retentionHours,
+        expectedEntriesPerWindow,
+        maxEntriesPerWindow,
+        Clock.systemUTC());
+  }
+
+  LocalDedupStore(
+      long windowMinutes,
+      long retentionHours,
+      long expectedEntriesPerWindow,
+      long maxEntriesPerWindow,
+      Clock clock) {
+    this.clock = clock;
+    this.windowMillis = TimeUnit.MINUTES.toMillis(windowMinutes);
+    this.retainedWindows =
+        (int) Math.max(1, (TimeUnit.HOURS.toMillis(retentionHours) + windowMillis - 1) / windowMillis);
+    this.expectedEntriesPerWindow = expectedEntriesPerWindow;
+    this.maxEntriesPerWindow = maxEntriesPerWindow;
+    // One extra slot for the window ahead of the clock, to tolerate clock skew.
+    this.ring = new AtomicReferenceArray<>(retainedWindows + 1);
+  }
+
+  @Override
+  public boolean isInWindow(long timestampMillis) {
+    long id = Math.floorDiv(timestampMillis, windowMillis);
+    long current = clock.millis() / windowMillis;
+    return id > current - retainedWindows && id <= current + 1;
+  }
+
+  @Override
+  public long getWindowStartMillis() {
+    long current = clock.millis() / windowMillis;
+    return (current - retainedWindows + 1) * windowMillis;
+  }
+
+  @Override
+  public boolean isDuplicate(String transactionId, long timestampMillis) {
+    return isDuplicate(Fingerprint128.of(transactionId), timestampMillis);
+  }
+
+  boolean isDuplicate(Fingerprint128 fingerprint, long timestampMillis) {
+    Window window = window(timestampMillis, clock.millis(), false);
+    return window != null
+        && window.bloomFilter.mightContain(fingerprint)
+        && window.entries.contains(fingerprint);
+  }
+
+  @Override
+  public Status record(String transactionId, long timestampMillis) {
+    return record(Fingerprint128.of(transactionId), timestampMillis);
+  }
+
+  Status record(Fingerprint128 fingerprint, long timestampMillis) {
+    return record(fingerprint, timestampMillis, 0);
+  }
+
+  /** Records {@code fingerprint} with a non-zero {@code token} that can release it again. */
+  Status record(Fingerprint128 fingerprint, long timestampMillis, int token) {
+    Window window = window(timestampMillis, clock.millis(), true);
+    if (window == null) {
+      return Status.OUT_OF_WINDOW;
+    }
+    if (window.entries.size() >= maxEntriesPerWindow && !window.entries.contains(fingerprint)) {
+      return Status.FULL;
+    }
+    if (!window.entries.add(fingerprint, token)) {
+      return Status.DUPLICATE;
+    }
+    window.bloomFilter.put(fingerprint);
+    return Status.RECORDED;
+  }
+
+  /** The Bloom filter keeps the bit set, which only costs an exact lookup. */
+  @Override
+  public void release(String transactionId, long timestampMillis) {
+    release(Fingerprint128.of(transactionId), timestampMillis);
+  }
+
+  void release(Fingerprint128 fingerprint, long timestampMillis) {
+    release(fingerprint, timestampMillis, 0);
+  }
+
+  /**
+   * Releases {@code fingerprint} only if it was recorded with {@code token}, or whoever recorded
+   * it if {@code token} is 0.
+   */
+  void release(Fingerprint128 fingerprint, long timestampMillis, int token) {
+    Window window = window(timestampMillis, clock.millis(), false);
+    if (window != null) {
+      window.entries.remove(fingerprint, token);
+    }
+  }
+
+  @Override
+  public long size() {
+    long now = clock.millis();
+    long oldest = now / windowMillis - retainedWindows + 1;
+    long size = 0;
+    for (int i = 0; i < ring.length(); i++) {
+      Window window = ring.get(i);
+      if (window != null && window.id >= oldest) {
+        size += window.entries.size();
+      }
+    }
+    return size;
+  }
+
+  private Window window(long timestampMillis, long nowMillis, boolean create) {
+    long id = Math.floorDiv(timestampMillis, windowMillis);
+    long current = nowMillis / windowMillis;
+    if (id <= current - retainedWindows || id > current + 1) {
+      return null;
+    }
+    int slot = (int) Math.floorMod(id, (long) ring.length());
+    while (true) {
+      Window window = ring.get(slot);
+      if (window != null && window.id == id) {
+        return window;
+      }
+      if (window != null && window.id > id) {
+        return null;
+      }
+      if (!create) {
+        return null;
+      }
+      // Replacing an expired window drops all of its entries at once.
+      Window replacement = new Window(id, expectedEntriesPerWindow);
+      if (ring.compareAndSet(slot, window, replacement)) {
+        return replacement;
+      }
+    }
+  }
+
+  private static final class Window {
+    final long id;
+    final BloomFilter bloomFilter;
+    final FingerprintSet entries = new FingerprintSet();
+
+    Window(long id, long expectedEntries) {
+      this.id = id;
+      this.bloomFilter = new BloomFilter(expectedEntries);
+    }
+  }
+}
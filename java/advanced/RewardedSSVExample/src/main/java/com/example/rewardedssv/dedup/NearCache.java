@@ -0,0 +1,44 @@
+package com.example.rewardedssv.dedup;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Small direct-mapped cache of fingerprints that are known to be recorded on another node, so that
+ * retries arriving at the node that forwarded the original are answered without a remote lookup.
+ *
+ * <p>A newer fingerprint simply overwrites an older one in the same slot. Only positive answers
+ * are cached, so a miss costs a remote lookup but never a wrong answer; a released transaction is
+ * removed from the cache before it is released on its owner.
+ */
+final class NearCache {
+  private final AtomicReferenceArray<Fingerprint128> slots;
+  private final int mask;
+
+  /** Creates a cache of at least {@code capacity} slots, rounded up to a power of two. */
+  NearCache(int capacity) {
+    int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+    this.slots = new AtomicReferenceArray<>(size);
+    this.mask = size - 1;
+  }
+
+  boolean contains(Fingerprint128 fingerprint) {
+    Fingerprint128 cached = slots.get(slot(fingerprint));
+    return cached != null && cached.high == fingerprint.high && cached.low == fingerprint.low;
+  }
+
+  void add(Fingerprint128 fingerprint) {
+    slots.set(slot(fingerprint), fingerprint);
+  }
+
+  void remove(Fingerprint128 fingerprint) {
+    int slot = slot(fingerprint);
+    Fingerprint128 cached = slots.get(slot);
+    if (cached != null && cached.high == fingerprint.high && cached.low == fingerprint.low) {
+      slots.compareAndSet(slot, cached, null);
+    }
+  }
+
+  private int slot(Fingerprint128 fingerprint) {
+    return (int) fingerprint.low & mask;
+  }
+}
@@ -0,0 +1,72 @@
+package com.example.rewardedssv.dedup;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.BodyExtractors;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+/**
+ * WebFlux counterpart of {@link DedupController}, with the same answers. The body is collected up
+ * to the size of a full batch only, and a batch is applied in memory on the event loop.
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveDedupConfiguration {
+
+  @Bean
+  public RouterFunction<ServerResponse> dedupRoute(TransactionDedupStore store) {
+    return RouterFunctions.route()
+        .POST(HttpDedupTransport.PATH, request -> serve(store, request))
+        .build();
+  }
+
+  private static Mono<ServerResponse> serve(TransactionDedupStore store, ServerRequest request) {
+    if (!(store instanceof ClusterDedupStore)) {
+      return ServerResponse.notFound().build();
+    }
+    ClusterDedupStore cluster = (ClusterDedupStore) store;
+    String secret = request.headers().firstHeader(HttpDedupTransport.SECRET_HEADER);
+    if (!cluster.authorize(secret)) {
+      return ServerResponse.status(HttpStatus.FORBIDDEN).build();
+    }
+    int maxBytes = cluster.getMaxRequestBytes();
+    if (request.headers().contentLength().orElse(0) > maxBytes) {
+      return ServerResponse.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+    }
+    return DataBufferUtils.join(request.body(BodyExtractors.toDataBuffers()), maxBytes)
+        .map(ReactiveDedupConfiguration::toBytes)
+        .defaultIfEmpty(new byte[0])
+        .flatMap(
+            body -> {
+              byte[] response;
+              try {
+                response = cluster.serve(body);
+              } catch (IllegalArgumentException exception) {
+                return ServerResponse.badRequest().build();
+              }
+              return ServerResponse.ok()
+                  .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                  .bodyValue(response);
+            })
+        .onErrorResume(
+            DataBufferLimitException.class,
+            exception -> ServerResponse.status(HttpStatus.PAYLOAD_TOO_LARGE).build());
+  }
+
+  private static byte[] toBytes(DataBuffer buffer) {
+    byte[] bytes = new byte[buffer.readableByteCount()];
+    buffer.read(bytes);
+    DataBufferUtils.release(buffer);
+    return bytes;
+  }
+}
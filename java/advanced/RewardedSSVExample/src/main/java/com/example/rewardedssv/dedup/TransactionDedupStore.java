@@ -0,0 +1,59 @@
+package com.example.rewardedssv.dedup;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Remembers the {@code transaction_id} of every accepted callback so retried or replayed callbacks
+ * are answered without verifying or rewarding them again.
+ *
+ * <p>Created by {@link DedupConfiguration}: {@link LocalDedupStore} remembers the ids of one node,
+ * {@link ClusterDedupStore} shares them between the nodes behind a load balancer, so that a retry
+ * landing on another node is still recognized.
+ */
+public interface TransactionDedupStore {
+
+  /** Outcome of {@link #record}. */
+  enum Status {
+    /** First time this transaction is seen. */
+    RECORDED,
+    /** The transaction was seen before. */
+    DUPLICATE,
+    /** The timestamp is too old or too far in the future to be checked. */
+    OUT_OF_WINDOW,
+    /** The window reached {@code ssv.dedup.max-entries-per-window}. */
+    FULL,
+    /** The node that owns the transaction could not be asked. */
+    UNAVAILABLE
+  }
+
+  /** Returns {@code true} if callbacks with this timestamp can be checked for replays. */
+  boolean isInWindow(long timestampMillis);
+
+  /** Returns the oldest callback timestamp that is currently {@link #isInWindow in the window}. */
+  long getWindowStartMillis();
+
+  /** Returns {@code true} if {@code transactionId} was already recorded. */
+  boolean isDuplicate(String transactionId, long timestampMillis);
+
+  /** Records {@code transactionId}; only one of several concurrent callers gets {@code RECORDED}. */
+  Status record(String transactionId, long timestampMillis);
+
+  /**
+   * Forgets {@code transactionId} again, for callbacks that were recorded but could not be
+   * processed further.
+   */
+  void release(String transactionId, long timestampMillis);
+
+  /** Returns the number of transactions currently remembered by this node. */
+  long size();
+
+  /** Like {@link #isDuplicate} but does not block the calling thread on another node. */
+  default CompletableFuture<Boolean> isDuplicateAsync(String transactionId, long timestampMillis) {
+    return CompletableFuture.completedFuture(isDuplicate(transactionId, timestampMillis));
+  }
+
+  /** Like {@link #record} but does not block the calling thread on another node. */
+  default CompletableFuture<Status> recordAsync(String transactionId, long timestampMillis) {
+    return CompletableFuture.completedFuture(record(transactionId, timestampMillis));
+  }
+}
@@ -0,0 +1,57 @@
+package com.example.rewardedssv.delivery;
+
+import java.nio.file.Path;
+
+/**
+ * A batch of rewards as it is posted to the webhook. Rewards of tenants with their own webhook are
+ * batched separately, so the rewards of a batch are in sequence order but not always consecutive.
+ */
+final class DeliveryBatch {
+  private final long firstSequence;
+  private final int size;
+  private final byte[] body;
+  private final Path spillFile;
+  private final String tenant;
+  private int attempts;
+
+  DeliveryBatch(long firstSequence, int size, byte[] body, Path spillFile, String tenant) {
+    this.firstSequence = firstSequence;
+    this.size = size;
+    this.body = body;
+    this.spillFile = spillFile;
+    this.tenant = tenant;
+  }
+
+  long getFirstSequence() {
+    return firstSequence;
+  }
+
+  int size() {
+    return size;
+  }
+
+  byte[] getBody() {
+    return body;
+  }
+
+  /** Returns the file this batch was read from, or {@code null} if it was never spilled. */
+  Path getSpillFile() {
+    return spillFile;
+  }
+
+  /** Returns the tenant whose webhook this batch goes to, or {@code null} for the default one. */
+  String getTenant() {
+    return tenant;
+  }
+
+  /** Counts a failed attempt and returns the number of failed attempts so far. */
+  int failedAttempt() {
+    return ++attempts;
+  }
+
+  @Override
+  public String toString() {
+    String rewards = String.format("%d rewards from %d", size, firstSequence);
+    return tenant == null ? rewards : rewards + " of " + tenant;
+  }
+}
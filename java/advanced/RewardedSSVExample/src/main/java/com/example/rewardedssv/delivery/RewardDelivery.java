@@ -0,0 +1,469 @@
+package com.example.rewardedssv.delivery;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.example.rewardedssv.ledger.LedgerListener;
+import com.example.rewardedssv.ledger.LedgerStore;
+import com.example.rewardedssv.ledger.RewardJson;
+import com.example.rewardedssv.ledger.VerifiedReward;
+import com.example.rewardedssv.tenant.Tenant;
+import com.example.rewardedssv.tenant.TenantRegistry;
+import com.example.rewardedssv.tenant.TenantTable;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+/**
+ * Posts committed rewards in batches to the game backend at {@code ssv.delivery.url}, so callback
+ * latency does not depend on the backend.
+ *
+ * <p>Rewards are collected into batches of up to {@code ssv.delivery.batch-size}, or whatever
+ * arrived within {@code ssv.delivery.linger-millis}. At most {@code ssv.delivery.max-in-flight}
+ * batches are being posted or waiting for a retry at any time. Failed posts are retried with
+ * exponential backoff and full jitter; after {@code ssv.delivery.max-attempts} the batch is spilled
+ * to disk, and spilled batches are left alone for {@code ssv.delivery.backoff-max-millis}. When the
+ * backend is slow and {@code ssv.delivery.max-queued-batches} batches are waiting, new batches are
+ * spilled to disk right away. Batches the backend refuses with a 4xx status are kept in a {@code
+ * failed} directory and not retried.
+ *
+ * <p>Delivery is at least once and batches may arrive out of order: every reward carries its
+ * ledger sequence number and {@code transaction_id}, and every request an {@code Idempotency-Key}.
+ * The sequence number up to which every reward was delivered or spilled is persisted every second,
+ * and rewards after it are replayed from the ledger on startup. Without such a cursor, delivery
+ * starts with the next new reward.
+ *
+ * <p>Rewards of a tenant with its own {@code webhook} are batched and posted separately, to the
+ * webhook the tenant has when the batch is posted.
+ */
+@Component
+@ConditionalOnExpression("!'${ssv.delivery.url:}'.isEmpty()")
+public class RewardDelivery implements LedgerListener {
+  private static final Logger logger = LoggerFactory.getLogger(RewardDelivery.class);
+
+  private final LedgerStore store;
+  private final TenantRegistry tenants;
+  private final URI url;
+  private final HttpClient client;
+  private final Duration timeout;
+  private final int batchSize;
+  private final long lingerNanos;
+  private final int maxInFlight;
+  private final int maxAttempts;
+  private final long backoffInitialMillis;
+  private final long backoffMaxMillis;
+  private final Semaphore permits;
+  private final BlockingQueue<DeliveryBatch> ready;
+  private final SpillDirectory spill;
+  private final Path cursorFile;
+  /** Size of every batch in memory that is neither delivered nor spilled, by first sequence. */
+  private final ConcurrentSkipListMap<Long, Integer> outstanding = new ConcurrentSkipListMap<>();
+  private final ScheduledExecutorService scheduler =
+      Executors.newSingleThreadScheduledExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, "ssv-delivery-scheduler");
+            thread.setDaemon(true);
+            return thread;
+          });
+  private final Thread dispatcher;
+
+  private final Timer requestTimer;
+  private final Counter delivered;
+  private final Counter retried;
+  private final Counter spilled;
+  private final Counter failed;
+
+  /** Guards the batch being collected and {@link #receivedNext}. */
+  private final Object lock = new Object();
+  private List<VerifiedReward> pending = new ArrayList<>();
+  private long pendingFirst;
+  private long pendingSince;
+  private long receivedNext;
+  private long persistedCursor = -1;
+
+  private final long spillPauseNanos;
+  private volatile long spillPausedSince;
+  private volatile boolean running = true;
+
+  public RewardDelivery(
+      LedgerStore store,
+      TenantRegistry tenants,
+      MeterRegistry meterRegistry,
+      @Value("${ssv.delivery.url}") String url,
+      @Value("${ssv.delivery.directory:data/delivery}") String directory,
+      @Value("${ssv.delivery.batch-size:500}") int batchSize,
+      @Value("${ssv.delivery.linger-millis:50}") long lingerMillis,
+      @Value("${ssv.delivery.timeout-millis:5000}") long timeoutMillis,
+      @Value("${ssv.delivery.max-in-flight:4}") int maxInFlight,
+      @Value("${ssv.delivery.max-queued-batches:64}") int maxQueuedBatches,
+      @Value("${ssv.delivery.max-attempts:8}") int maxAttempts,
+      @Value("${ssv.delivery.backoff-initial-millis:200}") long backoffInitialMillis,
+      @Value("${ssv.delivery.backoff-max-millis:30000}") long backoffMaxMillis)
+      throws IOException {
+    this.store = store;
+    this.tenants = tenants;
+    this.url = URI.create(url);
+    this.client = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(timeoutMillis)).build();
+    this.timeout = Duration.ofMillis(timeoutMillis);
+    this.batchSize = batchSize;
+    this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+    this.maxInFlight = maxInFlight;
+    this.maxAttempts = maxAttempts;
+    this.backoffInitialMillis = backoffInitialMillis;
+    this.backoffMaxMillis = backoffMaxMillis;
+    this.spillPauseNanos = TimeUnit.MILLISECONDS.toNanos(backoffMaxMillis);
+    this.spillPausedSince = System.nanoTime() - spillPauseNanos;
+    this.permits = new Semaphore(maxInFlight);
+    this.ready = new ArrayBlockingQueue<>(maxQueuedBatches);
+    this.spill = new SpillDirectory(Paths.get(directory, "spill"));
+    this.cursorFile = Paths.get(directory, "cursor");
+    this.dispatcher = new Thread(this::dispatchLoop, "ssv-delivery-dispatcher");
+    dispatcher.setDaemon(true);
+
+    Gauge.builder("ssv.delivery.in.flight", permits, p -> maxInFlight - p.availablePermits())
+        .description("Reward batches being posted or waiting for a retry")
+        .register(meterRegistry);
+    Gauge.builder("ssv.delivery.queued", ready, BlockingQueue::size)
+        .description("Reward batches waiting in memory to be posted")
+        .register(meterRegistry);
+    Gauge.builder("ssv.delivery.spilled", spill, SpillDirectory::size)
+        .description("Reward batches waiting on disk to be posted")
+        .register(meterRegistry);
+    this.requestTimer =
+        Timer.builder("ssv.delivery.request")
+            .description("Time spent posting a batch of rewards to the webhook")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+    this.delivered = batchCounter(meterRegistry, "delivered");
+    this.retried = batchCounter(meterRegistry, "retried");
+    this.spilled = batchCounter(meterRegistry, "spilled");
+    this.failed = batchCounter(meterRegistry, "failed");
+  }
+
+  private static Counter batchCounter(MeterRegistry meterRegistry, String outcome) {
+    return Counter.builder("ssv.delivery.batches")
+        .description("Reward batches by what happened to them")
+        .tag("outcome", outcome)
+        .register(meterRegistry);
+  }
+
+  @PostConstruct
+  void start() throws IOException {
+    long cursor = readCursor();
+    if (cursor < 0) {
+      // Not persisted yet, so that the next persist writes it.
+      cursor = store.getNextSequence();
+    } else {
+      persistedCursor = cursor;
+    }
+    synchronized (lock) {
+      receivedNext = cursor;
+    }
+    dispatcher.start();
+    long lingerMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(lingerNanos));
+    scheduler.scheduleWithFixedDelay(
+        this::flushLingering, lingerMillis, lingerMillis, TimeUnit.MILLISECONDS);
+    scheduler.scheduleWithFixedDelay(this::persistCursor, 1, 1, TimeUnit.SECONDS);
+    logger.info(
+        "Delivering rewards to {} from sequence {}, {} batches are spilled.",
+        url,
+        cursor,
+        spill.size());
+    // Rewards that were committed but not delivered or spilled before the last shutdown.
+    store.replay(cursor, this);
+  }
+
+  @PreDestroy
+  void stop() throws InterruptedException {
+    running = false;
+    dispatcher.interrupt();
+    dispatcher.join();
+    scheduler.shutdownNow();
+    // Everything after the cursor is replayed from the ledger on the next start.
+    persistCursor();
+  }
+
+  @Override
+  public void onCommitted(long firstSequence, List<VerifiedReward> rewards) {
+    if (!running) {
+      return;
+    }
+    synchronized (lock) {
+      if (!pending.isEmpty() && pendingFirst + pending.size() != firstSequence) {
+        sealPending();
+      }
+      for (int i = 0; i < rewards.size(); i++) {
+        if (pending.isEmpty()) {
+          pendingFirst = firstSequence + i;
+          pendingSince = System.nanoTime();
+        }
+        pending.add(rewards.get(i));
+        if (pending.size() >= batchSize) {
+          sealPending();
+        }
+      }
+      receivedNext = firstSequence + rewards.size();
+    }
+  }
+
+  private void flushLingering() {
+    synchronized (lock) {
+      if (!pending.isEmpty() && System.nanoTime() - pendingSince >= lingerNanos) {
+        sealPending();
+      }
+    }
+  }
+
+  /**
+   * Turns the collected rewards into a batch per webhook and queues them. If the queue is full they
+   * are spilled on the scheduler thread, as this runs on the ledger writer thread.
+   */
+  private void sealPending() {
+    TenantTable table = tenants.getTable();
+    Map<String, List<Integer>> byTenant = new LinkedHashMap<>();
+    for (int i = 0; i < pending.size(); i++) {
+      byTenant.computeIfAbsent(webhookTenant(table, pending.get(i)), t -> new ArrayList<>()).add(i);
+    }
+    for (Map.Entry<String, List<Integer>> rewards : byTenant.entrySet()) {
+      DeliveryBatch batch = seal(rewards.getKey(), rewards.getValue());
+      outstanding.put(batch.getFirstSequence(), batch.size());
+      if (!ready.offer(batch)) {
+        try {
+          scheduler.execute(() -> spillForLater(batch));
+        } catch (RejectedExecutionException exception) {
+          // Stopping; the batch stays outstanding and is replayed from the ledger.
+        }
+      }
+    }
+    pending = new ArrayList<>();
+  }
+
+  /** Returns the tenant with its own webhook that {@code reward} goes to, or {@code null}. */
+  private static String webhookTenant(TenantTable table, VerifiedReward reward) {
+    Tenant tenant = table.route(reward.getAdUnit());
+    return tenant != null && tenant.getWebhook() != null ? tenant.getName() : null;
+  }
+
+  private DeliveryBatch seal(String tenant, List<Integer> indexes) {
+    StringBuilder body = new StringBuilder(indexes.size() * 256).append("{\"rewards\":[");
+    for (int i = 0; i < indexes.size(); i++) {
+      if (i > 0) {
+        body.append(',');
+      }
+      int index = indexes.get(i);
+      body.append(RewardJson.toJson(pendingFirst + index, pending.get(index)));
+    }
+    body.append("]}");
+    return new DeliveryBatch(
+        pendingFirst + indexes.get(0),
+        indexes.size(),
+        body.toString().getBytes(UTF_8),
+        null,
+        tenant);
+  }
+
+  private void dispatchLoop() {
+    while (running) {
+      DeliveryBatch batch;
+      try {
+        batch = nextBatch();
+        if (batch == null) {
+          continue;
+        }
+        permits.acquire();
+      } catch (InterruptedException exception) {
+        // A batch taken from memory is replayed from the ledger, a spilled one stays on disk.
+        return;
+      }
+      post(batch);
+    }
+  }
+
+  /**
+   * Returns the next batch to post, preferring the ones in memory over the spilled ones, or {@code
+   * null} if there is none right now.
+   */
+  private DeliveryBatch nextBatch() throws InterruptedException {
+    DeliveryBatch batch = ready.poll();
+    if (batch != null) {
+      return batch;
+    }
+    if (System.nanoTime() - spillPausedSince >= spillPauseNanos) {
+      try {
+        batch = spill.take();
+      } catch (IOException exception) {
+        logger.warn("Failed to read a spilled reward batch from {}.", spill.getPath(), exception);
+      }
+    }
+    return batch != null ? batch : ready.poll(100, TimeUnit.MILLISECONDS);
+  }
+
+  /** Posts {@code batch}, which holds a permit until it is delivered, spilled or failed. */
+  private void post(DeliveryBatch batch) {
+    HttpRequest request =
+        HttpRequest.newBuilder(target(batch))
+            .timeout(timeout)
+            .header("Content-Type", "application/json")
+            .header("Idempotency-Key", batch.getFirstSequence() + "-" + batch.size())
+            .POST(HttpRequest.BodyPublishers.ofByteArray(batch.getBody()))
+            .build();
+    long start = System.nanoTime();
+    client
+        .sendAsync(request, HttpResponse.BodyHandlers.discarding())
+        .whenComplete(
+            (response, failure) -> {
+              requestTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+              onResponse(batch, response == null ? -1 : response.statusCode(), failure);
+            });
+  }
+
+  /** Returns the current webhook of the tenant of {@code batch}, or the default one. */
+  private URI target(DeliveryBatch batch) {
+    if (batch.getTenant() == null) {
+      return url;
+    }
+    Tenant tenant = tenants.getTable().get(batch.getTenant());
+    return tenant != null && tenant.getWebhook() != null ? tenant.getWebhook() : url;
+  }
+
+  private void onResponse(DeliveryBatch batch, int status, Throwable failure) {
+    if (failure == null && status >= 200 && status < 300) {
+      delivered.increment();
+      done(batch);
+      try {
+        spill.delivered(batch);
+      } catch (IOException exception) {
+        logger.warn("Failed to delete delivered batch {}.", batch.getSpillFile(), exception);
+      }
+      return;
+    }
+    if (failure == null && status >= 400 && status < 500 && status != 408 && status != 429) {
+      logger.error("Webhook refused {} with status {}, not retrying.", batch, status);
+      failed.increment();
+      try {
+        spill.fail(batch);
+      } catch (IOException exception) {
+        logger.error("Failed to keep refused {}.", batch, exception);
+      }
+      done(batch);
+      return;
+    }
+    int attempts = batch.failedAttempt();
+    if (attempts >= maxAttempts || !running) {
+      logger.warn("Failed to deliver {} after {} attempts, spilling it.", batch, attempts, failure);
+      // Give the backend a break before going through the spilled batches again.
+      spillPausedSince = System.nanoTime();
+      spillForLater(batch);
+      permits.release();
+      return;
+    }
+    retried.increment();
+    try {
+      scheduler.schedule(() -> post(batch), backoffMillis(attempts), TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException exception) {
+      spillForLater(batch);
+      permits.release();
+    }
+  }
+
+  private void done(DeliveryBatch batch) {
+    if (batch.getSpillFile() == null) {
+      outstanding.remove(batch.getFirstSequence());
+    }
+    permits.release();
+  }
+
+  /** Returns a random delay of up to {@code initial * 2^(attempts - 1)}, capped at the maximum. */
+  private long backoffMillis(int attempts) {
+    long cap = Math.min(backoffMaxMillis, backoffInitialMillis << Math.min(attempts - 1, 30));
+    return ThreadLocalRandom.current().nextLong(cap + 1);
+  }
+
+  private void spillForLater(DeliveryBatch batch) {
+    if (spill.putBack(batch)) {
+      return;
+    }
+    try {
+      spill.write(batch);
+      spilled.increment();
+      outstanding.remove(batch.getFirstSequence());
+    } catch (IOException exception) {
+      // Stays outstanding, so it is replayed from the ledger after a restart.
+      logger.error("Failed to spill {} to {}.", batch, spill.getPath(), exception);
+    }
+  }
+
+  /** Returns the sequence number up to which every reward was delivered or spilled. */
+  private long cursor() {
+    synchronized (lock) {
+      long cursor = pending.isEmpty() ? receivedNext : pendingFirst;
+      Long oldest = outstanding.isEmpty() ? null : outstanding.firstKey();
+      return oldest != null ? Math.min(cursor, oldest) : cursor;
+    }
+  }
+
+  private long readCursor() throws IOException {
+    if (!Files.isRegularFile(cursorFile)) {
+      return -1;
+    }
+    return Long.parseLong(new String(Files.readAllBytes(cursorFile), UTF_8).trim());
+  }
+
+  private void persistCursor() {
+    long cursor = cursor();
+    if (cursor == persistedCursor) {
+      return;
+    }
+    try {
+      Path temp = Files.createTempFile(cursorFile.getParent(), "cursor", ".tmp");
+      try {
+        Files.write(temp, Long.toString(cursor).getBytes(UTF_8));
+        try {
+          Files.move(
+              temp,
+              cursorFile,
+              StandardCopyOption.ATOMIC_MOVE,
+              StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException exception) {
+          Files.move(temp, cursorFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+      } finally {
+        Files.deleteIfExists(temp);
+      }
+      persistedCursor = cursor;
+    } catch (IOException exception) {
+      logger.warn("Failed to persist the delivery cursor to {}.", cursorFile, exception);
+    }
+  }
+}
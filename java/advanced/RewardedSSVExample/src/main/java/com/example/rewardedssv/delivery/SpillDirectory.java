@@ -0,0 +1,106 @@
+package com.example.rewardedssv.delivery;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Stream;
+
+/**
+ * Batches that could not be kept in memory, one file per batch named after its first sequence
+ * number, its size and its tenant if any, so the oldest batch is always the first file. Batches
+ * the webhook refused for good are moved to a separate {@code failed} directory for inspection.
+ */
+final class SpillDirectory {
+  private static final String SUFFIX = ".json";
+
+  private final Path directory;
+  private final Path failedDirectory;
+  private final NavigableSet<Path> files = new ConcurrentSkipListSet<>();
+
+  SpillDirectory(Path directory) throws IOException {
+    this.directory = directory;
+    this.failedDirectory = directory.resolveSibling("failed");
+    Files.createDirectories(directory);
+    Files.createDirectories(failedDirectory);
+    try (Stream<Path> existing = Files.list(directory)) {
+      existing.filter(path -> path.getFileName().toString().endsWith(SUFFIX)).forEach(files::add);
+    }
+  }
+
+  void write(DeliveryBatch batch) throws IOException {
+    Path path = directory.resolve(fileName(batch));
+    Path temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+    try {
+      Files.write(temp, batch.getBody());
+      try {
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException exception) {
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+    files.add(path);
+  }
+
+  /** Removes the oldest batch from the directory listing and returns it, or {@code null}. */
+  DeliveryBatch take() throws IOException {
+    Path path = files.pollFirst();
+    if (path == null) {
+      return null;
+    }
+    String name = path.getFileName().toString();
+    int dash = name.indexOf('-');
+    int end = name.length() - SUFFIX.length();
+    int dot = name.indexOf('.', dash);
+    return new DeliveryBatch(
+        Long.parseLong(name.substring(0, dash)),
+        Integer.parseInt(name.substring(dash + 1, dot < end ? dot : end)),
+        Files.readAllBytes(path),
+        path,
+        dot < end ? name.substring(dot + 1, end) : null);
+  }
+
+  /** Deletes a delivered batch, if it came from this directory. */
+  void delivered(DeliveryBatch batch) throws IOException {
+    if (batch.getSpillFile() != null) {
+      Files.deleteIfExists(batch.getSpillFile());
+    }
+  }
+
+  /** Puts a batch back to be retried later. Returns {@code false} if it was not spilled before. */
+  boolean putBack(DeliveryBatch batch) {
+    if (batch.getSpillFile() == null) {
+      return false;
+    }
+    files.add(batch.getSpillFile());
+    return true;
+  }
+
+  /** Keeps a batch that the webhook refused for good. */
+  void fail(DeliveryBatch batch) throws IOException {
+    Path target = failedDirectory.resolve(fileName(batch));
+    if (batch.getSpillFile() != null) {
+      Files.move(batch.getSpillFile(), target, StandardCopyOption.REPLACE_EXISTING);
+    } else {
+      Files.write(target, batch.getBody());
+    }
+  }
+
+  int size() {
+    return files.size();
+  }
+
+  Path getPath() {
+    return directory;
+  }
+
+  private static String fileName(DeliveryBatch batch) {
+    String tenant = batch.getTenant() == null ? "" : "." + batch.getTenant();
+    return String.format("%020d-%d%s%s", batch.getFirstSequence(), batch.size(), tenant, SUFFIX);
+  }
+}
@@ -0,0 +1,47 @@
+package com.example.rewardedssv.keys;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Minimal consecutive-failure circuit breaker guarding the verifier keys endpoint.
+ *
+ * <p>After {@code failureThreshold} consecutive failures the breaker opens and rejects calls until
+ * {@code openMillis} have elapsed. It is then half-open: a single trial call is let through, and
+ * every other call is rejected for another {@code openMillis} while it runs. A successful trial
+ * closes the breaker, a failed one opens it again. A trial that never reports back only holds up
+ * the next one until that period ends.
+ */
+final class CircuitBreaker {
+  private final int failureThreshold;
+  private final long openMillis;
+  private final AtomicInteger consecutiveFailures = new AtomicInteger();
+  /** 0 while closed, else when the next trial call may start. */
+  private final AtomicLong openUntilMillis = new AtomicLong();
+
+  CircuitBreaker(int failureThreshold, long openMillis) {
+    this.failureThreshold = failureThreshold;
+    this.openMillis = openMillis;
+  }
+
+  boolean allowRequest(long nowMillis) {
+    long openUntil = openUntilMillis.get();
+    if (openUntil == 0) {
+      return true;
+    }
+    // Only the caller that moves the deadline on makes the trial call.
+    return nowMillis >= openUntil
+        && openUntilMillis.compareAndSet(openUntil, nowMillis + openMillis);
+  }
+
+  void onSuccess() {
+    consecutiveFailures.set(0);
+    openUntilMillis.set(0);
+  }
+
+  void onFailure(long nowMillis) {
+    if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+      openUntilMillis.set(nowMillis + openMillis);
+    }
+  }
+}
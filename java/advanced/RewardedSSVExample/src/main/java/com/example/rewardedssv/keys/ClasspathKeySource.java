@@ -0,0 +1,32 @@
+package com.example.rewardedssv.keys;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/** Reads the verifier keys from a classpath resource, e.g. a key set bundled with tests. */
+public class ClasspathKeySource implements KeySource {
+  private final String resource;
+
+  public ClasspathKeySource(String resource) {
+    this.resource = resource.startsWith("/") ? resource.substring(1) : resource;
+  }
+
+  @Override
+  public String fetch() throws IOException {
+    ClassLoader classLoader = ClasspathKeySource.class.getClassLoader();
+    try (InputStream input = classLoader.getResourceAsStream(resource)) {
+      if (input == null) {
+        throw new FileNotFoundException("Classpath resource not found: " + resource);
+      }
+      return new String(input.readAllBytes(), UTF_8);
+    }
+  }
+
+  @Override
+  public String describe() {
+    return "classpath:" + resource;
+  }
+}
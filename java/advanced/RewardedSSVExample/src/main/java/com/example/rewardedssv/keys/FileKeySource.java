@@ -0,0 +1,45 @@
+package com.example.rewardedssv.keys;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Reads the verifier keys from a local file, e.g. a stand-in key set for offline runs. The file is
+ * only read again once its modification time or size changes.
+ */
+public class FileKeySource implements KeySource {
+  private final Path path;
+  private volatile long lastModifiedMillis;
+  private volatile long lastSize = -1;
+
+  public FileKeySource(Path path) {
+    this.path = path;
+  }
+
+  @Override
+  public String fetch() throws IOException {
+    long modifiedMillis = Files.getLastModifiedTime(path).toMillis();
+    long size = Files.size(path);
+    if (modifiedMillis == lastModifiedMillis && size == lastSize) {
+      return null;
+    }
+    String publicKeysJson = new String(Files.readAllBytes(path), UTF_8);
+    // Remembered only once read, a failed read or parse invalidates them again.
+    lastModifiedMillis = modifiedMillis;
+    lastSize = size;
+    return publicKeysJson;
+  }
+
+  @Override
+  public void invalidate() {
+    lastSize = -1;
+  }
+
+  @Override
+  public String describe() {
+    return path.toUri().toString();
+  }
+}
@@ -0,0 +1,79 @@
+package com.example.rewardedssv.keys;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/**
+ * Fetches the verifier keys from an HTTP(S) endpoint, by default the AdMob key server.
+ *
+ * <p>All sources share one {@link HttpClient}, which keeps connections open between refreshes and
+ * uses HTTP/2 where the server supports it. Refreshes are conditional on the {@code ETag} and
+ * {@code Last-Modified} of the last key set, so an unchanged key set costs a {@code 304} without a
+ * body and is not parsed again.
+ */
+public class HttpKeySource implements KeySource {
+  private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(5);
+  private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+  private static final HttpClient CLIENT =
+      HttpClient.newBuilder()
+          .version(HttpClient.Version.HTTP_2)
+          .followRedirects(HttpClient.Redirect.NORMAL)
+          .connectTimeout(CONNECT_TIMEOUT)
+          .build();
+
+  private final URI uri;
+  private volatile String etag;
+  private volatile String lastModified;
+
+  public HttpKeySource(String url) {
+    this.uri = URI.create(url);
+  }
+
+  @Override
+  public String fetch() throws IOException {
+    HttpRequest.Builder request = HttpRequest.newBuilder(uri).timeout(REQUEST_TIMEOUT).GET();
+    String etag = this.etag;
+    String lastModified = this.lastModified;
+    if (etag != null) {
+      request.header("If-None-Match", etag);
+    }
+    if (lastModified != null) {
+      request.header("If-Modified-Since", lastModified);
+    }
+    HttpResponse<String> response;
+    try {
+      response = CLIENT.send(request.build(), HttpResponse.BodyHandlers.ofString(UTF_8));
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while fetching " + uri);
+    }
+    int status = response.statusCode();
+    if (status == 304 && (etag != null || lastModified != null)) {
+      return null;
+    }
+    if (status != 200) {
+      throw new IOException("Unexpected status " + status + " from " + uri);
+    }
+    this.etag = response.headers().firstValue("ETag").orElse(null);
+    this.lastModified = response.headers().firstValue("Last-Modified").orElse(null);
+    return response.body();
+  }
+
+  @Override
+  public void invalidate() {
+    etag = null;
+    lastModified = null;
+  }
+
+  @Override
+  public String describe() {
+    return uri.toString();
+  }
+}
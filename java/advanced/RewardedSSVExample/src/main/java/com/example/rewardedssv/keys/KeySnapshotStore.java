@@ -0,0 +1,53 @@
+package com.example.rewardedssv.keys;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Keeps a copy of the last good verifier keys document on local disk.
+ *
+ * <p>The snapshot is replaced atomically so a crash while writing never leaves a truncated file
+ * behind. It is read once at startup so the server can verify callbacks before, or without, reaching
+ * the key endpoint.
+ */
+public class KeySnapshotStore {
+  private final Path path;
+
+  public KeySnapshotStore(Path path) {
+    this.path = path;
+  }
+
+  /** Returns the snapshot contents, or {@code null} if there is no snapshot yet. */
+  public String read() throws IOException {
+    if (!Files.isRegularFile(path)) {
+      return null;
+    }
+    return new String(Files.readAllBytes(path), UTF_8);
+  }
+
+  public void write(String publicKeysJson) throws IOException {
+    Path directory = path.toAbsolutePath().getParent();
+    Files.createDirectories(directory);
+    Path temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+    try {
+      Files.write(temp, publicKeysJson.getBytes(UTF_8));
+      try {
+        Files.move(
+            temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException exception) {
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  public Path getPath() {
+    return path;
+  }
+}
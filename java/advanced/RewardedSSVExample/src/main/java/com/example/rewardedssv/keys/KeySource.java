@@ -0,0 +1,19 @@
+package com.example.rewardedssv.keys;
+
+import java.io.IOException;
+
+/** Source of the verifier keys JSON document. */
+public interface KeySource {
+
+  /**
+   * Returns the verifier keys JSON document, or {@code null} if it has not changed since it was
+   * last returned.
+   */
+  String fetch() throws IOException;
+
+  /** Makes the next {@link #fetch()} return the document even if it has not changed. */
+  default void invalidate() {}
+
+  /** Returns a human readable description of where the keys come from. */
+  String describe();
+}
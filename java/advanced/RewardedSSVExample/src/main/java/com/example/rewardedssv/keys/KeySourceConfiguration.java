@@ -0,0 +1,36 @@
+package com.example.rewardedssv.keys;
+
+import java.nio.file.Paths;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Selects the {@link KeySource} from the scheme of {@code ssv.keys.url}: {@code file:} and {@code
+ * classpath:} read a local key set, anything else is fetched over HTTP.
+ */
+@Configuration
+public class KeySourceConfiguration {
+  private static final String FILE_PREFIX = "file:";
+  private static final String CLASSPATH_PREFIX = "classpath:";
+
+  @Bean
+  public KeySource keySource(
+      @Value("${ssv.keys.url:https://www.gstatic.com/admob/reward/verifier-keys.json}")
+          String keysUrl) {
+    if (keysUrl.startsWith(FILE_PREFIX)) {
+      return new FileKeySource(Paths.get(keysUrl.substring(FILE_PREFIX.length())));
+    }
+    if (keysUrl.startsWith(CLASSPATH_PREFIX)) {
+      return new ClasspathKeySource(keysUrl.substring(CLASSPATH_PREFIX.length()));
+    }
+    return new HttpKeySource(keysUrl);
+  }
+
+  @Bean
+  @ConditionalOnExpression("!'${ssv.keys.snapshot-file:}'.isEmpty()")
+  public KeySnapshotStore keySnapshotStore(@Value("${ssv.keys.snapshot-file}") String path) {
+    return new KeySnapshotStore(Paths.get(path));
+  }
+}
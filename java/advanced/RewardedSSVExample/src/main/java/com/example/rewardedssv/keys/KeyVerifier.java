@@ -0,0 +1,75 @@
+package com.example.rewardedssv.keys;
+
+import com.google.crypto.tink.subtle.EcdsaVerifyJce;
+import com.google.crypto.tink.subtle.EllipticCurves;
+import com.google.crypto.tink.subtle.EllipticCurves.EcdsaEncoding;
+import com.google.crypto.tink.subtle.Enums.HashType;
+import java.security.GeneralSecurityException;
+import java.security.Signature;
+import java.security.interfaces.ECPublicKey;
+
+/**
+ * Ready-to-use ECDSA P-256 / SHA-256 / DER verifier for a single key.
+ *
+ * <p>Behaves like Tink's {@link EcdsaVerifyJce} but keeps one initialized {@link Signature} per
+ * thread instead of creating a new one for every call.
+ */
+public final class KeyVerifier {
+  private static final String SIGNATURE_ALGORITHM = "SHA256withECDSA";
+
+  private final long keyId;
+  private final ECPublicKey publicKey;
+  private final ThreadLocal<Signature> signatures;
+
+  KeyVerifier(long keyId, ECPublicKey publicKey) throws GeneralSecurityException {
+    // Let Tink validate the key (curve and point) once, when the key set is loaded.
+    new EcdsaVerifyJce(publicKey, HashType.SHA256, EcdsaEncoding.DER);
+    this.keyId = keyId;
+    this.publicKey = publicKey;
+    this.signatures =
+        ThreadLocal.withInitial(
+            () -> {
+              try {
+                Signature signature = Signature.getInstance(SIGNATURE_ALGORITHM);
+                signature.initVerify(publicKey);
+                return signature;
+              } catch (GeneralSecurityException exception) {
+                throw new IllegalStateException(exception);
+              }
+            });
+  }
+
+  public long getKeyId() {
+    return keyId;
+  }
+
+  public ECPublicKey getPublicKey() {
+    return publicKey;
+  }
+
+  /** Verifies a DER encoded {@code signature} over {@code data}. */
+  public void verify(final byte[] signature, final byte[] data) throws GeneralSecurityException {
+    verify(signature, data, 0, data.length);
+  }
+
+  /** Verifies a DER encoded {@code signature} over {@code length} bytes of {@code data}. */
+  public void verify(final byte[] signature, final byte[] data, int offset, int length)
+      throws GeneralSecurityException {
+    if (!EllipticCurves.isValidDerEncoding(signature)) {
+      throw new GeneralSecurityException("Invalid signature");
+    }
+    Signature verifier = signatures.get();
+    boolean verified;
+    try {
+      verifier.update(data, offset, length);
+      verified = verifier.verify(signature);
+    } catch (RuntimeException | GeneralSecurityException exception) {
+      // A failed verify() leaves the Signature in an undefined state, start over on next use.
+      signatures.remove();
+      verified = false;
+    }
+    if (!verified) {
+      throw new GeneralSecurityException("Invalid signature");
+    }
+  }
+}
@@ -0,0 +1,29 @@
+package com.example.rewardedssv.keys;
+
+import java.security.GeneralSecurityException;
+
+/** Thrown when no verifying key is available for the key id of a callback. */
+public final class MissingKeyException extends GeneralSecurityException {
+  private static final long serialVersionUID = 1L;
+
+  /** Why the key is missing. */
+  public enum Reason {
+    /** The key set does not contain the key id. */
+    UNKNOWN_KEY,
+    /** The key set is empty. */
+    NO_KEYS,
+    /** The keys could not be fetched in time. */
+    TIMEOUT
+  }
+
+  private final Reason reason;
+
+  public MissingKeyException(Reason reason, String message) {
+    super(message);
+    this.reason = reason;
+  }
+
+  public Reason getReason() {
+    return reason;
+  }
+}
@@ -0,0 +1,47 @@
+package com.example.rewardedssv.keys;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+/** Gauges for the in-memory verifier key set. */
+@Component
+public class VerifierKeyMetrics implements MeterBinder {
+  private final VerifierKeyProvider keyProvider;
+
+  public VerifierKeyMetrics(VerifierKeyProvider keyProvider) {
+    this.keyProvider = keyProvider;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder("ssv.keys.cache.hit.ratio", keyProvider, VerifierKeyMetrics::hitRatio)
+        .description("Share of key lookups answered from the in-memory key set")
+        .register(registry);
+    Gauge.builder("ssv.keys.age", keyProvider, VerifierKeyMetrics::ageSeconds)
+        .description("Time since the key set was last refreshed from the key source")
+        .baseUnit("seconds")
+        .register(registry);
+    Gauge.builder("ssv.keys.count", keyProvider, provider -> provider.getRegistry().size())
+        .description("Number of keys in the current key set")
+        .register(registry);
+    Gauge.builder("ssv.keys.version", keyProvider, provider -> provider.getRegistry().getVersion())
+        .description("Version of the current key set, incremented on every refresh")
+        .register(registry);
+  }
+
+  private static double hitRatio(VerifierKeyProvider provider) {
+    double hits = provider.getCacheHits();
+    double total = hits + provider.getCacheMisses();
+    return total == 0 ? 1.0 : hits / total;
+  }
+
+  private static double ageSeconds(VerifierKeyProvider provider) {
+    long lastRefreshMillis = provider.getLastRefreshMillis();
+    if (lastRefreshMillis == 0) {
+      return Double.NaN;
+    }
+    return (System.currentTimeMillis() - lastRefreshMillis) / 1000.0;
+  }
+}
@@ -0,0 +1,333 @@
+package com.example.rewardedssv.keys;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import org.json.JSONException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Holds the reward verifier public keys in memory.
+ *
+ * <p>Keys come from the configured {@link KeySource}. If a {@link KeySnapshotStore} is configured,
+ * the last good key set is written to it after every refresh and loaded synchronously at startup.
+ *
+ * <p>Every successfully fetched key set is turned into a new {@link VerifierRegistry} which is
+ * published atomically, so request threads never see a partially updated key set.
+ *
+ * <p>Keys are refreshed in the background every {@code ssv.keys.ttl-seconds}; a key set that has
+ * not changed since the last refresh is kept as is, without parsing it again. When the keys
+ * endpoint fails, the last good key set keeps being served and a circuit breaker stops further
+ * calls for a while. A lookup for an unknown {@code key_id} triggers at most one forced refresh per
+ * {@code ssv.keys.forced-refresh-interval-seconds}.
+ *
+ * <p>Refreshes are single-flight: all callers that miss a key while a refresh is running share that
+ * refresh instead of each downloading the key set, which matters most during a key rotation.
+ */
+@Component
+public class VerifierKeyProvider {
+  private static final Logger logger = LoggerFactory.getLogger(VerifierKeyProvider.class);
+
+  private final KeySource keySource;
+  private final KeySnapshotStore snapshotStore;
+  private final long ttlMillis;
+  private final long forcedRefreshIntervalMillis;
+  private final long refreshWaitMillis;
+  private final CircuitBreaker circuitBreaker;
+  private final ScheduledExecutorService scheduler =
+      Executors.newSingleThreadScheduledExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, "ssv-key-refresh");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  private final AtomicReference<CompletableFuture<VerifierRegistry>> inFlight =
+      new AtomicReference<>();
+  private final AtomicLong lastForcedRefreshMillis = new AtomicLong();
+
+  private final LongAdder cacheHits = new LongAdder();
+  private final LongAdder cacheMisses = new LongAdder();
+  private final Timer fetchSuccessTimer;
+  private final Timer fetchNotModifiedTimer;
+  private final Timer fetchFailureTimer;
+
+  private volatile VerifierRegistry registry = VerifierRegistry.EMPTY;
+  private volatile long lastRefreshMillis;
+
+  public VerifierKeyProvider(
+      KeySource keySource,
+      ObjectProvider<KeySnapshotStore> snapshotStore,
+      MeterRegistry meterRegistry,
+      @Value("${ssv.keys.ttl-seconds:3600}") long ttlSeconds,
+      @Value("${ssv.keys.forced-refresh-interval-seconds:10}") long forcedRefreshIntervalSeconds,
+      @Value("${ssv.keys.refresh-wait-millis:2000}") long refreshWaitMillis,
+      @Value("${ssv.keys.breaker.failure-threshold:3}") int breakerFailureThreshold,
+      @Value("${ssv.keys.breaker.open-seconds:30}") long breakerOpenSeconds) {
+    this.keySource = keySource;
+    this.snapshotStore = snapshotStore.getIfAvailable();
+    this.ttlMillis = TimeUnit.SECONDS.toMillis(ttlSeconds);
+    this.forcedRefreshIntervalMillis = TimeUnit.SECONDS.toMillis(forcedRefreshIntervalSeconds);
+    this.refreshWaitMillis = refreshWaitMillis;
+    this.circuitBreaker =
+        new CircuitBreaker(breakerFailureThreshold, TimeUnit.SECONDS.toMillis(breakerOpenSeconds));
+    this.fetchSuccessTimer = fetchTimer(meterRegistry, "success");
+    this.fetchNotModifiedTimer = fetchTimer(meterRegistry, "not_modified");
+    this.fetchFailureTimer = fetchTimer(meterRegistry, "failure");
+  }
+
+  private static Timer fetchTimer(MeterRegistry meterRegistry, String outcome) {
+    return Timer.builder("ssv.keys.fetch")
+        .description("Time spent fetching and parsing the verifier keys")
+        .tag("outcome", outcome)
+        .publishPercentileHistogram()
+        .register(meterRegistry);
+  }
+
+  @PostConstruct
+  void start() {
+    loadSnapshot();
+    if (registry.isEmpty()) {
+      refresh();
+    } else {
+      // Serve the snapshot right away and catch up with the key source in the background.
+      scheduler.execute(this::refresh);
+    }
+    scheduler.scheduleWithFixedDelay(this::refresh, ttlMillis, ttlMillis, TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  void stop() {
+    scheduler.shutdownNow();
+  }
+
+  /**
+   * Returns the verifier for {@code keyId}, blocking up to {@code ssv.keys.refresh-wait-millis} for
+   * a refresh of the key set if the key is not known yet.
+   */
+  public KeyVerifier getVerifier(long keyId) throws GeneralSecurityException {
+    KeyVerifier verifier = registry.get(keyId);
+    if (verifier != null) {
+      cacheHits.increment();
+      return verifier;
+    }
+    try {
+      return getVerifierAsync(keyId).join();
+    } catch (CompletionException exception) {
+      throw (GeneralSecurityException) exception.getCause();
+    }
+  }
+
+  /**
+   * Returns a future for the verifier of {@code keyId}. Unknown keys join the single in-flight
+   * refresh of the key set, starting one if none is running, and fail with a {@link
+   * GeneralSecurityException} after {@code ssv.keys.refresh-wait-millis}. Callers on an event loop
+   * can use this without blocking.
+   */
+  public CompletableFuture<KeyVerifier> getVerifierAsync(long keyId) {
+    KeyVerifier verifier = registry.get(keyId);
+    if (verifier != null) {
+      cacheHits.increment();
+      return CompletableFuture.completedFuture(verifier);
+    }
+    cacheMisses.increment();
+    // The timeout only fails this dependent future, the shared refresh keeps running.
+    return forceRefresh()
+        .thenApply(
+            current -> {
+              KeyVerifier refreshed = current.get(keyId);
+              if (refreshed == null) {
+                throw new CompletionException(missingKey(current, keyId));
+              }
+              return refreshed;
+            })
+        .orTimeout(refreshWaitMillis, TimeUnit.MILLISECONDS)
+        .exceptionally(
+            failure -> {
+              throw new CompletionException(toSecurityException(failure, keyId));
+            });
+  }
+
+  /** Returns the registry currently used to verify callbacks. */
+  public VerifierRegistry getRegistry() {
+    return registry;
+  }
+
+  /** Returns the number of lookups answered from the in-memory key set. */
+  public long getCacheHits() {
+    return cacheHits.sum();
+  }
+
+  /** Returns the number of lookups for keys that were not in the in-memory key set. */
+  public long getCacheMisses() {
+    return cacheMisses.sum();
+  }
+
+  /** Returns where the keys are fetched from. */
+  public String getSourceDescription() {
+    return keySource.describe();
+  }
+
+  /** Returns the time of the last successful refresh, or 0 if keys were never loaded. */
+  public long getLastRefreshMillis() {
+    return lastRefreshMillis;
+  }
+
+  private static GeneralSecurityException toSecurityException(Throwable failure, long keyId) {
+    Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+    if (cause instanceof GeneralSecurityException) {
+      return (GeneralSecurityException) cause;
+    }
+    if (cause instanceof TimeoutException) {
+      return new MissingKeyException(
+          MissingKeyException.Reason.TIMEOUT,
+          String.format("Timed out waiting for verifying key with key id: %s.", keyId));
+    }
+    return new GeneralSecurityException(cause);
+  }
+
+  private static MissingKeyException missingKey(VerifierRegistry current, long keyId) {
+    if (current.isEmpty()) {
+      return new MissingKeyException(
+          MissingKeyException.Reason.NO_KEYS,
+          "No trusted keys are available for this protocol version");
+    }
+    return new MissingKeyException(
+        MissingKeyException.Reason.UNKNOWN_KEY,
+        String.format("Cannot find verifying key with key id: %s.", keyId));
+  }
+
+  /**
+   * Joins the refresh in flight or, if the forced refresh interval has elapsed, starts a new one.
+   * Otherwise completes immediately with the current registry.
+   */
+  private CompletableFuture<VerifierRegistry> forceRefresh() {
+    CompletableFuture<VerifierRegistry> running = inFlight.get();
+    if (running != null) {
+      return running;
+    }
+    long now = System.currentTimeMillis();
+    long last = lastForcedRefreshMillis.get();
+    if (now - last < forcedRefreshIntervalMillis
+        || !lastForcedRefreshMillis.compareAndSet(last, now)) {
+      running = inFlight.get();
+      return running != null ? running : CompletableFuture.completedFuture(registry);
+    }
+    return startRefresh();
+  }
+
+  /** Starts a refresh on the refresh thread unless one is already in flight. */
+  private CompletableFuture<VerifierRegistry> startRefresh() {
+    CompletableFuture<VerifierRegistry> refresh = new CompletableFuture<>();
+    if (!inFlight.compareAndSet(null, refresh)) {
+      CompletableFuture<VerifierRegistry> running = inFlight.get();
+      return running != null ? running : CompletableFuture.completedFuture(registry);
+    }
+    try {
+      scheduler.execute(() -> completeRefresh(refresh));
+    } catch (RejectedExecutionException exception) {
+      inFlight.set(null);
+      refresh.complete(registry);
+    }
+    return refresh;
+  }
+
+  /** Refreshes the key set and waits for it, used at startup and on the TTL schedule. */
+  private void refresh() {
+    CompletableFuture<VerifierRegistry> refresh = new CompletableFuture<>();
+    if (inFlight.compareAndSet(null, refresh)) {
+      completeRefresh(refresh);
+    }
+  }
+
+  private void completeRefresh(CompletableFuture<VerifierRegistry> refresh) {
+    try {
+      refresh.complete(refreshQuietly());
+    } catch (RuntimeException exception) {
+      refresh.completeExceptionally(exception);
+    } finally {
+      inFlight.compareAndSet(refresh, null);
+    }
+  }
+
+  private VerifierRegistry refreshQuietly() {
+    long now = System.currentTimeMillis();
+    if (!circuitBreaker.allowRequest(now)) {
+      logger.debug("Key endpoint circuit breaker is open, serving cached keys.");
+      return registry;
+    }
+    String publicKeysJson;
+    long fetchStart = System.nanoTime();
+    try {
+      publicKeysJson = keySource.fetch();
+      if (publicKeysJson != null) {
+        registry =
+            VerifierRegistry.build(
+                registry.getVersion() + 1, VerifierKeysJson.parse(publicKeysJson));
+      }
+      lastRefreshMillis = System.currentTimeMillis();
+      circuitBreaker.onSuccess();
+      (publicKeysJson != null ? fetchSuccessTimer : fetchNotModifiedTimer)
+          .record(System.nanoTime() - fetchStart, TimeUnit.NANOSECONDS);
+    } catch (GeneralSecurityException | IOException | JSONException exception) {
+      // The next refresh fetches the whole key set, even if it has not changed since.
+      keySource.invalidate();
+      fetchFailureTimer.record(System.nanoTime() - fetchStart, TimeUnit.NANOSECONDS);
+      circuitBreaker.onFailure(System.currentTimeMillis());
+      logger.warn(
+          "Failed to refresh verifier keys from {}, serving {} cached keys.",
+          keySource.describe(),
+          registry.size(),
+          exception);
+      return registry;
+    }
+    if (publicKeysJson != null) {
+      writeSnapshot(publicKeysJson);
+    }
+    return registry;
+  }
+
+  private void loadSnapshot() {
+    if (snapshotStore == null) {
+      return;
+    }
+    try {
+      String publicKeysJson = snapshotStore.read();
+      if (publicKeysJson != null) {
+        registry = VerifierRegistry.build(1, VerifierKeysJson.parse(publicKeysJson));
+        logger.info(
+            "Loaded {} verifier keys from snapshot {}.", registry.size(), snapshotStore.getPath());
+      }
+    } catch (GeneralSecurityException | IOException | JSONException exception) {
+      logger.warn("Ignoring unreadable key snapshot {}.", snapshotStore.getPath(), exception);
+    }
+  }
+
+  private void writeSnapshot(String publicKeysJson) {
+    if (snapshotStore == null) {
+      return;
+    }
+    try {
+      snapshotStore.write(publicKeysJson);
+    } catch (IOException exception) {
+      logger.warn("Failed to write key snapshot {}.", snapshotStore.getPath(), exception);
+    }
+  }
+}
@@ -0,0 +1,30 @@
+package com.example.rewardedssv.keys;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports DOWN until a verifier key set has been loaded, from the snapshot or the key source. It is
+ * part of the readiness group so no traffic is routed to an instance that cannot verify callbacks.
+ */
+@Component
+public class VerifierKeysHealthIndicator implements HealthIndicator {
+  private final VerifierKeyProvider keyProvider;
+
+  public VerifierKeysHealthIndicator(VerifierKeyProvider keyProvider) {
+    this.keyProvider = keyProvider;
+  }
+
+  @Override
+  public Health health() {
+    VerifierRegistry registry = keyProvider.getRegistry();
+    Health.Builder builder = registry.isEmpty() ? Health.down() : Health.up();
+    return builder
+        .withDetail("keys", registry.size())
+        .withDetail("version", registry.getVersion())
+        .withDetail("source", keyProvider.getSourceDescription())
+        .withDetail("lastRefreshMillis", keyProvider.getLastRefreshMillis())
+        .build();
+  }
+}
@@ -0,0 +1,35 @@
+package com.example.rewardedssv.keys;
+
+import com.google.crypto.tink.subtle.Base64;
+import com.google.crypto.tink.subtle.EllipticCurves;
+import java.security.GeneralSecurityException;
+import java.security.interfaces.ECPublicKey;
+import java.util.HashMap;
+import java.util.Map;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/** Parses the verifier keys JSON document served at the AdMob verifier keys URL. */
+public final class VerifierKeysJson {
+
+  private VerifierKeysJson() {}
+
+  public static Map<Long, ECPublicKey> parse(String publicKeysJson)
+      throws GeneralSecurityException, JSONException {
+    JSONArray keys = new JSONObject(publicKeysJson).getJSONArray("keys");
+    Map<Long, ECPublicKey> publicKeys = new HashMap<>();
+    for (int i = 0; i < keys.length(); i++) {
+      JSONObject key = keys.getJSONObject(i);
+      publicKeys.put(
+          key.getLong("keyId"),
+          EllipticCurves.getEcPublicKey(Base64.decode(key.getString("base64"))));
+    }
+    if (publicKeys.isEmpty()) {
+      throw new MissingKeyException(
+          MissingKeyException.Reason.NO_KEYS,
+          "No trusted keys are available for this protocol version");
+    }
+    return publicKeys;
+  }
+}
@@ -0,0 +1,80 @@
+package com.example.rewardedssv.keys;
+
+import java.security.GeneralSecurityException;
+import java.security.interfaces.ECPublicKey;
+import java.util.Map;
+
+/**
+ * Immutable lookup table from primitive {@code key_id} to {@link KeyVerifier}, built once per key
+ * set version.
+ *
+ * <p>Uses open addressing with linear probing over parallel arrays so lookups neither box the key
+ * nor take a lock. A new registry is built and swapped in whenever the key set changes.
+ */
+public final class VerifierRegistry {
+  static final VerifierRegistry EMPTY = new VerifierRegistry(0, new long[1], new KeyVerifier[1], 0);
+
+  private final long version;
+  private final long[] keyIds;
+  private final KeyVerifier[] verifiers;
+  private final int mask;
+  private final int size;
+
+  private VerifierRegistry(long version, long[] keyIds, KeyVerifier[] verifiers, int size) {
+    this.version = version;
+    this.keyIds = keyIds;
+    this.verifiers = verifiers;
+    this.mask = keyIds.length - 1;
+    this.size = size;
+  }
+
+  /** Builds a registry for {@code publicKeys}, validating every key up front. */
+  static VerifierRegistry build(long version, Map<Long, ECPublicKey> publicKeys)
+      throws GeneralSecurityException {
+    // Keep the load factor at or below 0.5 so probe sequences stay short.
+    int capacity = Integer.highestOneBit(Math.max(1, publicKeys.size()) * 4 - 1);
+    long[] keyIds = new long[capacity];
+    KeyVerifier[] verifiers = new KeyVerifier[capacity];
+    int mask = capacity - 1;
+    for (Map.Entry<Long, ECPublicKey> entry : publicKeys.entrySet()) {
+      long keyId = entry.getKey();
+      int slot = slot(keyId, mask);
+      while (verifiers[slot] != null && keyIds[slot] != keyId) {
+        slot = (slot + 1) & mask;
+      }
+      keyIds[slot] = keyId;
+      verifiers[slot] = new KeyVerifier(keyId, entry.getValue());
+    }
+    return new VerifierRegistry(version, keyIds, verifiers, publicKeys.size());
+  }
+
+  /** Returns the verifier for {@code keyId}, or {@code null} if the key is unknown. */
+  public KeyVerifier get(long keyId) {
+    int slot = slot(keyId, mask);
+    KeyVerifier verifier;
+    while ((verifier = verifiers[slot]) != null) {
+      if (keyIds[slot] == keyId) {
+        return verifier;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return null;
+  }
+
+  public long getVersion() {
+    return version;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  private static int slot(long keyId, int mask) {
+    long hash = keyId * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ (hash >>> 32)) & mask;
+  }
+}
@@ -0,0 +1,147 @@
+package com.example.rewardedssv.ledger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stores rewards as JSON lines in a single append-only file.
+ *
+ * <p>Every append is one write of the whole batch followed by one {@code fsync}, so the cost of
+ * syncing is shared by all rewards of a group commit. On open, a trailing partial line left behind
+ * by a crash is cut off and the existing lines are counted to continue the sequence.
+ */
+public class FileLedgerStore implements LedgerStore {
+  private static final Logger logger = LoggerFactory.getLogger(FileLedgerStore.class);
+  private static final int REPLAY_BATCH_SIZE = 1024;
+
+  private final Path path;
+  private final boolean fsync;
+  private final FileChannel channel;
+  private long nextSequence;
+
+  public FileLedgerStore(Path path, boolean fsync) throws IOException {
+    this.path = path;
+    this.fsync = fsync;
+    Path directory = path.toAbsolutePath().getParent();
+    Files.createDirectories(directory);
+    this.channel =
+        FileChannel.open(
+            path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    recover();
+  }
+
+  /** Counts the complete lines and truncates anything after the last one. */
+  private void recover() throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+    long position = 0;
+    long validLength = 0;
+    long lines = 0;
+    int read;
+    while ((read = channel.read(buffer, position)) > 0) {
+      for (int i = 0; i < read; i++) {
+        if (buffer.get(i) == '\n') {
+          lines++;
+          validLength = position + i + 1;
+        }
+      }
+      position += read;
+      buffer.clear();
+    }
+    if (validLength < channel.size()) {
+      logger.warn(
+          "Truncating {} bytes of an incomplete record at the end of {}.",
+          channel.size() - validLength,
+          path);
+      channel.truncate(validLength);
+    }
+    channel.position(validLength);
+    nextSequence = lines;
+  }
+
+  @Override
+  public long append(List<VerifiedReward> rewards) throws IOException {
+    long firstSequence = nextSequence;
+    StringBuilder lines = new StringBuilder(rewards.size() * 256);
+    long sequence = firstSequence;
+    for (VerifiedReward reward : rewards) {
+      lines.append(RewardJson.toJson(sequence++, reward)).append('\n');
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(UTF_8));
+    long start = channel.position();
+    try {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      if (fsync) {
+        channel.force(false);
+      }
+    } catch (IOException exception) {
+      // Drop whatever part of the batch made it to the file, so a retry does not duplicate it.
+      channel.truncate(start);
+      channel.position(start);
+      throw exception;
+    }
+    nextSequence = sequence;
+    return firstSequence;
+  }
+
+  @Override
+  public void replay(long fromSequence, LedgerListener listener) throws IOException {
+    List<VerifiedReward> batch = new ArrayList<>(REPLAY_BATCH_SIZE);
+    long batchStart = fromSequence;
+    long sequence = 0;
+    try (BufferedReader reader = Files.newBufferedReader(path, UTF_8)) {
+      String line;
+      while (sequence < nextSequence && (line = reader.readLine()) != null) {
+        if (sequence++ < fromSequence) {
+          continue;
+        }
+        batch.add(RewardJson.fromJson(new JSONObject(line)));
+        if (batch.size() == REPLAY_BATCH_SIZE) {
+          listener.onCommitted(batchStart, batch);
+          batchStart += batch.size();
+          batch.clear();
+        }
+      }
+    } catch (JSONException exception) {
+      throw new IOException("Unreadable record " + (sequence - 1) + " in " + path, exception);
+    }
+    if (!batch.isEmpty()) {
+      listener.onCommitted(batchStart, batch);
+    }
+  }
+
+  /** Always {@code 0}: finding older rewards in the file would take reading it. */
+  @Override
+  public long firstSequenceSince(long timestampMillis) {
+    return 0;
+  }
+
+  @Override
+  public long getNextSequence() {
+    return nextSequence;
+  }
+
+  @Override
+  public String describe() {
+    return path.toString();
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
@@ -0,0 +1,352 @@
+package com.example.rewardedssv.ledger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stores rewards in a segmented journal of memory-mapped files.
+ *
+ * <p>Records are appended to the active {@link JournalSegment} with plain memory writes; a group
+ * commit then forces just the written range to disk. When a record does not fit, a new segment
+ * named after its first sequence number is started. Segments are never rewritten, so older ones
+ * can be archived or deleted by the operator.
+ *
+ * <p>Once a segment is full, its sequence range and latest callback timestamp are added to the
+ * {@value #INDEX} file, so that a restart neither scans sealed segments nor replays those that are
+ * older than the replay protection window. On open, the segments missing from the index are scanned
+ * in order up to the last valid record. Whatever follows it in the last segment, the remains of a
+ * torn write, is cleared, and a last segment whose header never reached the disk is deleted. A
+ * damaged record in an earlier segment means later records cannot be trusted to be contiguous, so
+ * the later segments are moved aside with a {@code .corrupt} suffix and the journal continues after
+ * the last valid record.
+ */
+public class JournalLedgerStore implements LedgerStore {
+  private static final Logger logger = LoggerFactory.getLogger(JournalLedgerStore.class);
+  private static final String SUFFIX = ".seg";
+  private static final String INDEX = "sealed.idx";
+  private static final int REPLAY_BATCH_SIZE = 1024;
+
+  private final Path directory;
+  private final int segmentSize;
+  private final boolean fsync;
+  /** Every sealed segment, in order. */
+  private final List<SealedSegment> sealed = new ArrayList<>();
+  private JournalSegment active;
+  /** Latest callback timestamp in the active segment. */
+  private long activeMaxTimestamp = Long.MIN_VALUE;
+
+  public JournalLedgerStore(Path directory, int segmentSize, boolean fsync) throws IOException {
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    this.fsync = fsync;
+    Files.createDirectories(directory);
+    recover();
+  }
+
+  private void recover() throws IOException {
+    List<Path> paths;
+    try (Stream<Path> files = Files.list(directory)) {
+      paths =
+          files
+              .filter(path -> path.getFileName().toString().endsWith(SUFFIX))
+              .sorted()
+              .collect(Collectors.toCollection(ArrayList::new));
+    }
+    if (!paths.isEmpty() && JournalSegment.isBlank(paths.get(paths.size() - 1))) {
+      // A crash while starting the segment; no record can have been committed to it.
+      Path blank = paths.remove(paths.size() - 1);
+      logger.warn("Deleting journal segment {}, its header was never written.", blank);
+      Files.delete(blank);
+    }
+    Map<Path, SealedSegment> index = readIndex();
+    boolean indexChanged = false;
+    long records = 0;
+    long next = -1;
+    for (int i = 0; i < paths.size(); i++) {
+      Path path = paths.get(i);
+      boolean last = i + 1 == paths.size();
+      SealedSegment known = last ? null : index.get(path);
+      if (known != null && (next < 0 || known.firstSequence == next)) {
+        sealed.add(known);
+        records += known.nextSequence - known.firstSequence;
+        next = known.nextSequence;
+        continue;
+      }
+      long[] maxTimestamp = {Long.MIN_VALUE};
+      JournalSegment segment =
+          JournalSegment.open(path, true, 0, maxTimestampVisitor(maxTimestamp));
+      if (next >= 0 && segment.getFirstSequence() != next) {
+        segment.close();
+        quarantine(paths.subList(i, paths.size()), "does not continue the previous segment");
+        break;
+      }
+      records += segment.getNextSequence() - segment.getFirstSequence();
+      next = segment.getNextSequence();
+      if (!last && segment.hasCleanEnd()) {
+        sealed.add(new SealedSegment(segment.getFirstSequence(), next, maxTimestamp[0]));
+        indexChanged = true;
+        segment.close();
+        continue;
+      }
+      active = segment;
+      activeMaxTimestamp = maxTimestamp[0];
+      if (!last) {
+        quarantine(paths.subList(i + 1, paths.size()), "follows a damaged record");
+      }
+      break;
+    }
+    if (active == null && !sealed.isEmpty()) {
+      // The segments after the last sealed one were moved aside, so it continues the journal.
+      SealedSegment reopened = sealed.remove(sealed.size() - 1);
+      long[] maxTimestamp = {Long.MIN_VALUE};
+      active =
+          JournalSegment.open(
+              JournalSegment.path(directory, reopened.firstSequence),
+              true,
+              0,
+              maxTimestampVisitor(maxTimestamp));
+      activeMaxTimestamp = maxTimestamp[0];
+    }
+    if (active == null) {
+      active = JournalSegment.create(directory, 0, segmentSize);
+    } else if (!active.hasCleanEnd()) {
+      logger.warn(
+          "Dropping a damaged record after sequence {} in {}.",
+          active.getNextSequence() - 1,
+          active.getPath());
+    }
+    active.clearTail();
+    if (indexChanged || sealed.size() != index.size()) {
+      writeIndex();
+    }
+    logger.info(
+        "Recovered {} rewards in {} journal segments from {}.",
+        records,
+        sealed.size() + 1,
+        directory);
+  }
+
+  private static JournalSegment.RecordVisitor maxTimestampVisitor(long[] maxTimestamp) {
+    return (sequence, payload) ->
+        maxTimestamp[0] = Math.max(maxTimestamp[0], RewardCodec.timestampMillis(payload));
+  }
+
+  private static void quarantine(List<Path> paths, String reason) throws IOException {
+    for (Path path : paths) {
+      Path target = path.resolveSibling(path.getFileName() + ".corrupt");
+      logger.error("Moving journal segment {} aside, it {}.", path, reason);
+      Files.move(path, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /** Reads the sealed segments by path, or none if the index is missing or unreadable. */
+  private Map<Path, SealedSegment> readIndex() {
+    Map<Path, SealedSegment> index = new HashMap<>();
+    Path path = directory.resolve(INDEX);
+    if (!Files.exists(path)) {
+      return index;
+    }
+    try {
+      for (String line : Files.readAllLines(path, UTF_8)) {
+        String[] fields = line.split(" ");
+        SealedSegment segment =
+            new SealedSegment(
+                Long.parseLong(fields[0]), Long.parseLong(fields[1]), Long.parseLong(fields[2]));
+        index.put(JournalSegment.path(directory, segment.firstSequence), segment);
+      }
+    } catch (IOException | RuntimeException exception) {
+      logger.warn("Ignoring unreadable journal index {}, scanning all segments.", path, exception);
+      index.clear();
+    }
+    return index;
+  }
+
+  /** Replaces the index with the current sealed segments. */
+  private void writeIndex() throws IOException {
+    StringBuilder lines = new StringBuilder();
+    for (SealedSegment segment : sealed) {
+      lines
+          .append(segment.firstSequence)
+          .append(' ')
+          .append(segment.nextSequence)
+          .append(' ')
+          .append(segment.maxTimestampMillis)
+          .append('\n');
+    }
+    Path temporary = directory.resolve(INDEX + ".tmp");
+    try (FileChannel channel =
+        FileChannel.open(
+            temporary,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE)) {
+      ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(UTF_8));
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      if (fsync) {
+        channel.force(false);
+      }
+    }
+    Files.move(
+        temporary,
+        directory.resolve(INDEX),
+        StandardCopyOption.ATOMIC_MOVE,
+        StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  @Override
+  public long append(List<VerifiedReward> rewards) throws IOException {
+    List<byte[]> payloads = new ArrayList<>(rewards.size());
+    for (VerifiedReward reward : rewards) {
+      payloads.add(RewardCodec.encode(reward));
+    }
+    JournalSegment first = active;
+    int firstPosition = first.getPosition();
+    long firstSequence = first.getNextSequence();
+    long maxTimestamp = activeMaxTimestamp;
+    List<JournalSegment> started = new ArrayList<>();
+    List<SealedSegment> filled = new ArrayList<>();
+    try {
+      for (int i = 0; i < payloads.size(); i++) {
+        byte[] payload = payloads.get(i);
+        if (!active.append(payload)) {
+          filled.add(
+              new SealedSegment(active.getFirstSequence(), active.getNextSequence(), maxTimestamp));
+          active = JournalSegment.create(directory, active.getNextSequence(), segmentSize);
+          started.add(active);
+          maxTimestamp = Long.MIN_VALUE;
+          if (!active.append(payload)) {
+            throw new IOException(
+                "A reward of " + payload.length + " bytes does not fit into a journal segment.");
+          }
+        }
+        maxTimestamp = Math.max(maxTimestamp, rewards.get(i).getTimestampMillis());
+      }
+      if (fsync) {
+        first.force(firstPosition);
+        for (JournalSegment segment : started) {
+          segment.force(0);
+        }
+      }
+    } catch (IOException | RuntimeException exception) {
+      // Roll back the whole batch, so a retry does not write any reward twice.
+      for (JournalSegment segment : started) {
+        segment.close();
+        Files.deleteIfExists(segment.getPath());
+      }
+      active = first;
+      first.truncate(firstPosition, firstSequence);
+      throw exception;
+    }
+    activeMaxTimestamp = maxTimestamp;
+    if (!started.isEmpty()) {
+      sealed.addAll(filled);
+      first.close();
+      for (int i = 0; i < started.size() - 1; i++) {
+        started.get(i).close();
+      }
+      try {
+        writeIndex();
+      } catch (IOException exception) {
+        // The batch is committed, so it must not fail; the next start scans the segment instead.
+        logger.warn("Failed to update the journal index in {}.", directory, exception);
+      }
+    }
+    return firstSequence;
+  }
+
+  /**
+   * Passes every reward from {@code fromSequence} on to {@code listener}, in batches. Must not run
+   * concurrently with {@link #append}.
+   */
+  @Override
+  public void replay(long fromSequence, LedgerListener listener) throws IOException {
+    List<VerifiedReward> batch = new ArrayList<>(REPLAY_BATCH_SIZE);
+    long[] batchStart = {fromSequence};
+    JournalSegment.RecordVisitor visitor =
+        (sequence, payload) -> {
+          if (batch.isEmpty()) {
+            batchStart[0] = sequence;
+          }
+          batch.add(RewardCodec.decode(payload));
+          if (batch.size() == REPLAY_BATCH_SIZE) {
+            listener.onCommitted(batchStart[0], batch);
+            batch.clear();
+          }
+        };
+    for (SealedSegment segment : sealed) {
+      if (segment.nextSequence <= fromSequence) {
+        continue;
+      }
+      Path path = JournalSegment.path(directory, segment.firstSequence);
+      try (JournalSegment replayed = JournalSegment.open(path, false, fromSequence, visitor)) {
+        if (replayed.getNextSequence() != segment.nextSequence) {
+          logger.error(
+              "Journal segment {} ends at sequence {} instead of {}, a record is damaged.",
+              path,
+              replayed.getNextSequence(),
+              segment.nextSequence);
+        }
+      }
+    }
+    active.scan(fromSequence, visitor);
+    if (!batch.isEmpty()) {
+      listener.onCommitted(batchStart[0], batch);
+    }
+  }
+
+  /** Skips the sealed segments with no callback timestamp from {@code timestampMillis} on. */
+  @Override
+  public long firstSequenceSince(long timestampMillis) {
+    for (SealedSegment segment : sealed) {
+      if (segment.maxTimestampMillis >= timestampMillis) {
+        return segment.firstSequence;
+      }
+    }
+    return active.getFirstSequence();
+  }
+
+  @Override
+  public long getNextSequence() {
+    return active.getNextSequence();
+  }
+
+  @Override
+  public String describe() {
+    return directory.toString();
+  }
+
+  @Override
+  public void close() throws IOException {
+    active.close();
+  }
+
+  /** Sequence range and latest callback timestamp of a full segment. */
+  private static final class SealedSegment {
+    final long firstSequence;
+    final long nextSequence;
+    final long maxTimestampMillis;
+
+    SealedSegment(long firstSequence, long nextSequence, long maxTimestampMillis) {
+      this.firstSequence = firstSequence;
+      this.nextSequence = nextSequence;
+      this.maxTimestampMillis = maxTimestampMillis;
+    }
+  }
+}
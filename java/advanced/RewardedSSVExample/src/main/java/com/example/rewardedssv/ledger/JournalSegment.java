@@ -0,0 +1,239 @@
+package com.example.rewardedssv.ledger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * One fixed-size, memory-mapped file of the journal.
+ *
+ * <p>A segment starts with a header holding a magic number and the sequence number of its first
+ * record, followed by records framed as {@code length, crc, sequence, payload}. The CRC32C covers
+ * the sequence number and the payload. The unused rest of a segment is zero, so a zero length marks
+ * its clean end; anything else that is not the valid next record is the end of a torn write.
+ */
+final class JournalSegment implements Closeable {
+  private static final int MAGIC = 0x5353564a;
+  private static final int HEADER_BYTES = 16;
+  private static final int FRAME_HEADER_BYTES = 16;
+
+  /** Receives the records of a segment. */
+  interface RecordVisitor {
+    void visit(long sequence, ByteBuffer payload) throws IOException;
+  }
+
+  private final Path path;
+  private final long firstSequence;
+  private final FileChannel channel;
+  private final MappedByteBuffer buffer;
+  private int position;
+  private long nextSequence;
+  private boolean cleanEnd;
+
+  private JournalSegment(
+      Path path, long firstSequence, FileChannel channel, MappedByteBuffer buffer) {
+    this.path = path;
+    this.firstSequence = firstSequence;
+    this.channel = channel;
+    this.buffer = buffer;
+    this.position = HEADER_BYTES;
+    this.nextSequence = firstSequence;
+    this.cleanEnd = true;
+  }
+
+  /** Returns the file name of the segment starting at {@code firstSequence}. */
+  static Path path(Path directory, long firstSequence) {
+    return directory.resolve(String.format("%020d.seg", firstSequence));
+  }
+
+  static JournalSegment create(Path directory, long firstSequence, int size) throws IOException {
+    Path path = path(directory, firstSequence);
+    FileChannel channel =
+        FileChannel.open(
+            path,
+            StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    buffer.putInt(0, MAGIC);
+    buffer.putLong(8, firstSequence);
+    buffer.force(0, HEADER_BYTES);
+    return new JournalSegment(path, firstSequence, channel, buffer);
+  }
+
+  /**
+   * Returns {@code true} if the file at {@code path} is shorter than a header or its header is all
+   * zero: {@link #create} did not get to force the header, so no record can have been committed.
+   */
+  static boolean isBlank(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      if (channel.size() < HEADER_BYTES) {
+        return true;
+      }
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+      while (header.hasRemaining()) {
+        if (channel.read(header, header.position()) < 0) {
+          return true;
+        }
+      }
+      for (int i = 0; i < HEADER_BYTES; i++) {
+        if (header.get(i) != 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /** Opens an existing segment and finds the end of its valid records. */
+  static JournalSegment open(Path path, boolean writable) throws IOException {
+    return open(path, writable, Long.MAX_VALUE, null);
+  }
+
+  /**
+   * Opens an existing segment and finds the end of its valid records, passing those from {@code
+   * fromSequence} on to {@code visitor} on the way.
+   */
+  static JournalSegment open(
+      Path path, boolean writable, long fromSequence, RecordVisitor visitor) throws IOException {
+    FileChannel channel =
+        writable
+            ? FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)
+            : FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      long size = channel.size();
+      if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+        throw new IOException("Invalid journal segment size " + size + ": " + path);
+      }
+      MappedByteBuffer buffer =
+          channel.map(
+              writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, 0, size);
+      if (buffer.getInt(0) != MAGIC) {
+        throw new IOException("Not a journal segment: " + path);
+      }
+      JournalSegment segment = new JournalSegment(path, buffer.getLong(8), channel, buffer);
+      segment.scan(fromSequence, visitor);
+      return segment;
+    } catch (IOException | RuntimeException exception) {
+      channel.close();
+      throw exception;
+    }
+  }
+
+  /**
+   * Walks the records from the start of the segment, passing those from {@code fromSequence} on to
+   * {@code visitor}, and stops at the first frame that is not the valid next record.
+   */
+  void scan(long fromSequence, RecordVisitor visitor) throws IOException {
+    CRC32C crc = new CRC32C();
+    int offset = HEADER_BYTES;
+    long sequence = firstSequence;
+    int limit = buffer.capacity();
+    while (offset + FRAME_HEADER_BYTES <= limit) {
+      int length = buffer.getInt(offset);
+      if (length <= 0
+          || length > limit - offset - FRAME_HEADER_BYTES
+          || buffer.getLong(offset + 8) != sequence) {
+        break;
+      }
+      crc.reset();
+      crc.update(buffer.slice(offset + 8, 8 + length));
+      if ((int) crc.getValue() != buffer.getInt(offset + 4)) {
+        break;
+      }
+      if (visitor != null && sequence >= fromSequence) {
+        visitor.visit(sequence, buffer.slice(offset + FRAME_HEADER_BYTES, length));
+      }
+      offset += FRAME_HEADER_BYTES + length;
+      sequence++;
+    }
+    position = offset;
+    nextSequence = sequence;
+    cleanEnd = offset + Integer.BYTES > limit || buffer.getInt(offset) == 0;
+  }
+
+  /** Zeroes everything after the last valid record, so a torn write cannot be mistaken later. */
+  void clearTail() {
+    boolean changed = false;
+    for (int offset = position; offset < buffer.capacity(); offset++) {
+      if (buffer.get(offset) != 0) {
+        buffer.put(offset, (byte) 0);
+        changed = true;
+      }
+    }
+    if (changed) {
+      buffer.force();
+    }
+    cleanEnd = true;
+  }
+
+  /**
+   * Appends a record with the next sequence number.
+   *
+   * @return {@code false} if the record does not fit into the rest of the segment
+   */
+  boolean append(byte[] payload) {
+    if (buffer.capacity() - position < FRAME_HEADER_BYTES + payload.length) {
+      return false;
+    }
+    CRC32C crc = new CRC32C();
+    ByteBuffer sequenceBytes = ByteBuffer.allocate(8).putLong(0, nextSequence);
+    crc.update(sequenceBytes);
+    crc.update(payload);
+    // The length goes last, so a scan of the mapping never sees a partial record. Pages that reach
+    // the disk out of order after a crash are caught by the CRC.
+    buffer.putInt(position + 4, (int) crc.getValue());
+    buffer.putLong(position + 8, nextSequence);
+    buffer.put(position + FRAME_HEADER_BYTES, payload);
+    buffer.putInt(position, payload.length);
+    position += FRAME_HEADER_BYTES + payload.length;
+    nextSequence++;
+    return true;
+  }
+
+  /** Writes the records from {@code fromPosition} on through to the file. */
+  void force(int fromPosition) {
+    buffer.force(fromPosition, position - fromPosition);
+  }
+
+  /** Drops the records after {@code toPosition}, which continue at {@code toSequence}. */
+  void truncate(int toPosition, long toSequence) {
+    for (int offset = toPosition; offset < position; offset++) {
+      buffer.put(offset, (byte) 0);
+    }
+    position = toPosition;
+    nextSequence = toSequence;
+  }
+
+  Path getPath() {
+    return path;
+  }
+
+  long getFirstSequence() {
+    return firstSequence;
+  }
+
+  /** Returns the sequence number the next record of this segment gets. */
+  long getNextSequence() {
+    return nextSequence;
+  }
+
+  int getPosition() {
+    return position;
+  }
+
+  /** Returns whether the last scan ended at unused space rather than at a damaged record. */
+  boolean hasCleanEnd() {
+    return cleanEnd;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
@@ -0,0 +1,34 @@
+package com.example.rewardedssv.ledger;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Creates the {@link LedgerStore} that verified rewards are committed to, selected by {@code
+ * ssv.ledger.store}: {@code journal} for the memory-mapped journal, {@code file} for a single JSON
+ * lines file.
+ */
+@Configuration
+public class LedgerConfiguration {
+
+  @Bean
+  public LedgerStore ledgerStore(
+      @Value("${ssv.ledger.store:journal}") String type,
+      @Value("${ssv.ledger.fsync:true}") boolean fsync,
+      @Value("${ssv.ledger.file:data/ledger/rewards.jsonl}") String file,
+      @Value("${ssv.ledger.journal.directory:data/ledger/journal}") String journalDirectory,
+      @Value("${ssv.ledger.journal.segment-size-mb:64}") int segmentSizeMb)
+      throws IOException {
+    switch (type) {
+      case "journal":
+        return new JournalLedgerStore(Paths.get(journalDirectory), segmentSizeMb << 20, fsync);
+      case "file":
+        return new FileLedgerStore(Paths.get(file), fsync);
+      default:
+        throw new IllegalArgumentException("Unknown ssv.ledger.store: " + type);
+    }
+  }
+}
@@ -0,0 +1,13 @@
+package com.example.rewardedssv.ledger;
+
+import java.util.List;
+
+/** Receives committed rewards in sequence order. */
+public interface LedgerListener {
+
+  /**
+   * Called with consecutive rewards, the first of which has sequence number {@code firstSequence}.
+   * The list must not be kept or modified.
+   */
+  void onCommitted(long firstSequence, List<VerifiedReward> rewards);
+}
@@ -0,0 +1,71 @@
+package com.example.rewardedssv.ledger;
+
+import com.example.rewardedssv.dedup.TransactionDedupStore;
+import com.example.rewardedssv.dedup.TransactionDedupStore.Status;
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rebuilds in-memory state from the ledger on startup, before the server accepts callbacks.
+ *
+ * <p>Replaying the recorded transactions into the {@link TransactionDedupStore} keeps a restart
+ * from accepting retries of callbacks that were rewarded before it. The replay starts at {@link
+ * LedgerStore#firstSequenceSince the first stored reward} that can still be in the replay protection
+ * window, so restarts do not slow down as the ledger grows; older transactions among the replayed
+ * ones are skipped by the store. With a shared store the transactions other nodes own are recorded
+ * on them, one ledger batch at a time.
+ */
+@Component
+public class LedgerRecovery {
+  private static final Logger logger = LoggerFactory.getLogger(LedgerRecovery.class);
+
+  private final LedgerStore store;
+  private final TransactionDedupStore dedupStore;
+
+  public LedgerRecovery(LedgerStore store, TransactionDedupStore dedupStore) {
+    this.store = store;
+    this.dedupStore = dedupStore;
+  }
+
+  @PostConstruct
+  void recover() throws IOException {
+    long start = System.nanoTime();
+    long[] replayed = {0};
+    long[] unavailable = {0};
+    long fromSequence = store.firstSequenceSince(dedupStore.getWindowStartMillis());
+    store.replay(
+        fromSequence,
+        (firstSequence, rewards) -> {
+          List<CompletableFuture<Status>> recorded = new ArrayList<>(rewards.size());
+          for (VerifiedReward reward : rewards) {
+            recorded.add(
+                dedupStore.recordAsync(reward.getTransactionId(), reward.getTimestampMillis()));
+          }
+          for (CompletableFuture<Status> status : recorded) {
+            if (status.join() == Status.UNAVAILABLE) {
+              unavailable[0]++;
+            }
+          }
+          replayed[0] += rewards.size();
+        });
+    if (unavailable[0] > 0) {
+      logger.warn(
+          "{} replayed rewards could not be recorded on the node that owns them.", unavailable[0]);
+    }
+    logger.info(
+        "Replayed {} rewards from sequence {} of {} in {} ms, {} are within the replay protection"
+            + " window.",
+        replayed[0],
+        fromSequence,
+        store.describe(),
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+        dedupStore.size());
+  }
+}
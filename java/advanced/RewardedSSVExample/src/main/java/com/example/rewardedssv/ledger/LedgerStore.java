@@ -0,0 +1,31 @@
+package com.example.rewardedssv.ledger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/** Durable, append-only storage for verified rewards. Only used from the ledger writer thread. */
+public interface LedgerStore extends Closeable {
+
+  /**
+   * Appends {@code rewards} and makes them durable before returning.
+   *
+   * @return the sequence number assigned to the first reward; the others follow consecutively
+   */
+  long append(List<VerifiedReward> rewards) throws IOException;
+
+  /** Passes every stored reward from {@code fromSequence} on to {@code listener}, in order. */
+  void replay(long fromSequence, LedgerListener listener) throws IOException;
+
+  /**
+   * Returns a sequence number from which on {@link #replay} passes every reward with a callback
+   * timestamp of at least {@code timestampMillis}, and possibly some older ones.
+   */
+  long firstSequenceSince(long timestampMillis);
+
+  /** Returns the sequence number the next appended reward will get. */
+  long getNextSequence();
+
+  /** Returns where the rewards are stored. */
+  String describe();
+}
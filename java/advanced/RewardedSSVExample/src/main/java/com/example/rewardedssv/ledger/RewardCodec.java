@@ -0,0 +1,81 @@
+package com.example.rewardedssv.ledger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.ByteBuffer;
+
+/** Compact binary encoding of a {@link VerifiedReward} for the journal. */
+final class RewardCodec {
+  private static final int NULL_LENGTH = -1;
+
+  private RewardCodec() {}
+
+  static byte[] encode(VerifiedReward reward) {
+    byte[][] strings = {
+      bytes(reward.getTransactionId()),
+      bytes(reward.getUserId()),
+      bytes(reward.getAdNetwork()),
+      bytes(reward.getAdUnit()),
+      bytes(reward.getRewardItem()),
+      bytes(reward.getCustomData()),
+    };
+    int size = 3 * Long.BYTES;
+    for (byte[] string : strings) {
+      size += Integer.BYTES + (string == null ? 0 : string.length);
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(size);
+    for (byte[] string : strings) {
+      if (string == null) {
+        buffer.putInt(NULL_LENGTH);
+      } else {
+        buffer.putInt(string.length).put(string);
+      }
+    }
+    buffer.putLong(reward.getRewardAmount());
+    buffer.putLong(reward.getTimestampMillis());
+    buffer.putLong(reward.getKeyId());
+    return buffer.array();
+  }
+
+  /** Decodes a reward from the remaining bytes of {@code buffer}. */
+  static VerifiedReward decode(ByteBuffer buffer) {
+    String transactionId = string(buffer);
+    String userId = string(buffer);
+    String adNetwork = string(buffer);
+    String adUnit = string(buffer);
+    String rewardItem = string(buffer);
+    String customData = string(buffer);
+    long rewardAmount = buffer.getLong();
+    long timestampMillis = buffer.getLong();
+    long keyId = buffer.getLong();
+    return new VerifiedReward(
+        transactionId,
+        userId,
+        adNetwork,
+        adUnit,
+        rewardItem,
+        rewardAmount,
+        customData,
+        timestampMillis,
+        keyId);
+  }
+
+  /** Returns the callback timestamp of an encoded reward without decoding the rest of it. */
+  static long timestampMillis(ByteBuffer payload) {
+    return payload.getLong(payload.limit() - 2 * Long.BYTES);
+  }
+
+  private static byte[] bytes(String value) {
+    return value == null ? null : value.getBytes(UTF_8);
+  }
+
+  private static String string(ByteBuffer buffer) {
+    int length = buffer.getInt();
+    if (length == NULL_LENGTH) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, UTF_8);
+  }
+}
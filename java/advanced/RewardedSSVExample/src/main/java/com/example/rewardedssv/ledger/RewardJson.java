@@ -0,0 +1,42 @@
+package com.example.rewardedssv.ledger;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/** JSON form of a {@link VerifiedReward}, as written to the ledger file and sent downstream. */
+public final class RewardJson {
+
+  private RewardJson() {}
+
+  public static JSONObject toJson(long sequence, VerifiedReward reward) {
+    try {
+      return new JSONObject()
+          .put("seq", sequence)
+          .put("transaction_id", reward.getTransactionId())
+          .put("user_id", reward.getUserId())
+          .put("ad_network", reward.getAdNetwork())
+          .put("ad_unit", reward.getAdUnit())
+          .put("reward_item", reward.getRewardItem())
+          .put("reward_amount", reward.getRewardAmount())
+          .put("custom_data", reward.getCustomData())
+          .put("timestamp", reward.getTimestampMillis())
+          .put("key_id", reward.getKeyId());
+    } catch (JSONException exception) {
+      // Only thrown for non-finite numbers, which a reward does not have.
+      throw new IllegalStateException(exception);
+    }
+  }
+
+  public static VerifiedReward fromJson(JSONObject json) throws JSONException {
+    return new VerifiedReward(
+        json.getString("transaction_id"),
+        json.optString("user_id", null),
+        json.optString("ad_network", null),
+        json.optString("ad_unit", null),
+        json.optString("reward_item", null),
+        json.optLong("reward_amount"),
+        json.optString("custom_data", null),
+        json.getLong("timestamp"),
+        json.getLong("key_id"));
+  }
+}
@@ -0,0 +1,206 @@
+package com.example.rewardedssv.ledger;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Write-behind ledger of verified rewards.
+ *
+ * <p>Request threads only put rewards on a bounded queue and never wait for the disk; when the
+ * queue is full {@link #offer} fails right away and the callback is answered with a retryable
+ * error. A single writer thread drains the queue and group-commits everything that arrived within
+ * {@code ssv.ledger.flush-millis} of the first pending reward, up to {@code
+ * ssv.ledger.max-batch-size} rewards, in one {@link LedgerStore#append}.
+ *
+ * <p>A reward is acknowledged to AdMob once it is queued, before it is durable; {@code
+ * ssv.ledger.flush-millis} bounds how much can be lost in a crash. Failed commits are retried until
+ * they succeed, meanwhile the queue fills up and callbacks are refused.
+ *
+ * <p>Every {@link LedgerListener} bean is told about each batch once it is committed, on the writer
+ * thread, so listeners must hand the rewards off rather than do slow work.
+ */
+@Component
+public class RewardLedger {
+  private static final Logger logger = LoggerFactory.getLogger(RewardLedger.class);
+  private static final long RETRY_MILLIS = 1000;
+
+  private final LedgerStore store;
+  private final List<LedgerListener> listeners;
+  private final BlockingQueue<VerifiedReward> queue;
+  private final long flushNanos;
+  private final int maxBatchSize;
+  private final Thread writer;
+  private final Timer commitTimer;
+  private final DistributionSummary batchSizes;
+  private final Counter commitFailures;
+
+  private volatile boolean running = true;
+
+  public RewardLedger(
+      LedgerStore store,
+      ObjectProvider<LedgerListener> listeners,
+      MeterRegistry meterRegistry,
+      @Value("${ssv.ledger.queue-capacity:65536}") int queueCapacity,
+      @Value("${ssv.ledger.flush-millis:5}") long flushMillis,
+      @Value("${ssv.ledger.max-batch-size:1024}") int maxBatchSize) {
+    this.store = store;
+    this.listeners = listeners.orderedStream().collect(Collectors.toList());
+    this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    this.flushNanos = TimeUnit.MILLISECONDS.toNanos(flushMillis);
+    this.maxBatchSize = maxBatchSize;
+    this.writer = new Thread(this::writeLoop, "ssv-ledger-writer");
+    writer.setDaemon(true);
+    Gauge.builder("ssv.ledger.queue.depth", queue, BlockingQueue::size)
+        .description("Verified rewards waiting to be committed to the ledger")
+        .register(meterRegistry);
+    this.commitTimer =
+        Timer.builder("ssv.ledger.commit")
+            .description("Time spent committing a batch of rewards to the ledger")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+    this.batchSizes =
+        DistributionSummary.builder("ssv.ledger.batch.size")
+            .description("Rewards per ledger commit")
+            .register(meterRegistry);
+    this.commitFailures =
+        Counter.builder("ssv.ledger.commit.failures")
+            .description("Failed ledger commits, which are retried")
+            .register(meterRegistry);
+  }
+
+  @PostConstruct
+  void start() {
+    logger.info(
+        "Recording verified rewards to {} from sequence {}.",
+        store.describe(),
+        store.getNextSequence());
+    writer.start();
+  }
+
+  /** Stops accepting rewards, commits the ones still queued and closes the store. */
+  @PreDestroy
+  void stop() throws InterruptedException, IOException {
+    running = false;
+    writer.join();
+    // Rewards offered while the writer was finishing its last batch.
+    List<VerifiedReward> rest = new ArrayList<>();
+    queue.drainTo(rest);
+    if (!rest.isEmpty()) {
+      commit(rest);
+    }
+    store.close();
+  }
+
+  /**
+   * Queues {@code reward} to be committed. Never blocks.
+   *
+   * @return {@code false} if the queue is full or the ledger is shutting down
+   */
+  public boolean offer(VerifiedReward reward) {
+    return running && queue.offer(reward);
+  }
+
+  /** Returns the number of rewards waiting to be committed. */
+  public int getQueueDepth() {
+    return queue.size();
+  }
+
+  private void writeLoop() {
+    List<VerifiedReward> batch = new ArrayList<>(maxBatchSize);
+    while (running || !queue.isEmpty()) {
+      try {
+        VerifiedReward first = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+        fill(batch);
+      } catch (InterruptedException exception) {
+        // Only stop() ends the loop, so that queued rewards are not dropped.
+        continue;
+      }
+      commit(batch);
+      batch.clear();
+    }
+  }
+
+  /** Adds rewards to {@code batch} until it is full or the flush latency has passed. */
+  private void fill(List<VerifiedReward> batch) throws InterruptedException {
+    long deadline = System.nanoTime() + flushNanos;
+    while (batch.size() < maxBatchSize) {
+      queue.drainTo(batch, maxBatchSize - batch.size());
+      long remaining = deadline - System.nanoTime();
+      if (batch.size() >= maxBatchSize || remaining <= 0) {
+        return;
+      }
+      VerifiedReward next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+      if (next == null) {
+        return;
+      }
+      batch.add(next);
+    }
+  }
+
+  private void commit(List<VerifiedReward> batch) {
+    while (true) {
+      long start = System.nanoTime();
+      long firstSequence;
+      try {
+        firstSequence = store.append(batch);
+        commitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        batchSizes.record(batch.size());
+      } catch (IOException exception) {
+        commitFailures.increment();
+        if (!running) {
+          logger.error(
+              "Dropping {} rewards that could not be committed to {} on shutdown.",
+              batch.size(),
+              store.describe(),
+              exception);
+          return;
+        }
+        logger.warn(
+            "Failed to commit {} rewards to {}, retrying.",
+            batch.size(),
+            store.describe(),
+            exception);
+        try {
+          Thread.sleep(RETRY_MILLIS);
+        } catch (InterruptedException interrupted) {
+          // Keep retrying, stop() is signalled through running.
+        }
+        continue;
+      }
+      notifyListeners(firstSequence, batch);
+      return;
+    }
+  }
+
+  private void notifyListeners(long firstSequence, List<VerifiedReward> batch) {
+    for (LedgerListener listener : listeners) {
+      try {
+        listener.onCommitted(firstSequence, batch);
+      } catch (RuntimeException exception) {
+        logger.error(
+            "Ledger listener {} failed at sequence {}.", listener, firstSequence, exception);
+      }
+    }
+  }
+}
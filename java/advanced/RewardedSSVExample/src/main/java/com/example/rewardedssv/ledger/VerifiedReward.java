@@ -0,0 +1,98 @@
+package com.example.rewardedssv.ledger;
+
+import com.example.rewardedssv.CallbackQuery;
+import com.example.rewardedssv.CallbackQuery.Parameter;
+
+/** The fields of a verified SSV callback that are needed to credit the reward. */
+public final class VerifiedReward {
+  private final String transactionId;
+  private final String userId;
+  private final String adNetwork;
+  private final String adUnit;
+  private final String rewardItem;
+  private final long rewardAmount;
+  private final String customData;
+  private final long timestampMillis;
+  private final long keyId;
+
+  public VerifiedReward(
+      String transactionId,
+      String userId,
+      String adNetwork,
+      String adUnit,
+      String rewardItem,
+      long rewardAmount,
+      String customData,
+      long timestampMillis,
+      long keyId) {
+    this.transactionId = transactionId;
+    this.userId = userId;
+    this.adNetwork = adNetwork;
+    this.adUnit = adUnit;
+    this.rewardItem = rewardItem;
+    this.rewardAmount = rewardAmount;
+    this.customData = customData;
+    this.timestampMillis = timestampMillis;
+    this.keyId = keyId;
+  }
+
+  /** Returns the reward of a verified callback that has a transaction id and timestamp. */
+  public static VerifiedReward of(CallbackQuery query) {
+    long rewardAmount = 0;
+    if (query.has(Parameter.REWARD_AMOUNT)) {
+      try {
+        rewardAmount = query.longValue(Parameter.REWARD_AMOUNT);
+      } catch (IllegalArgumentException exception) {
+        // Keep the reward with an amount of 0, the callback itself is genuine.
+      }
+    }
+    return new VerifiedReward(
+        query.value(Parameter.TRANSACTION_ID),
+        query.value(Parameter.USER_ID),
+        query.value(Parameter.AD_NETWORK),
+        query.value(Parameter.AD_UNIT),
+        query.value(Parameter.REWARD_ITEM),
+        rewardAmount,
+        query.value(Parameter.CUSTOM_DATA),
+        query.longValue(Parameter.TIMESTAMP),
+        query.getKeyId());
+  }
+
+  public String getTransactionId() {
+    return transactionId;
+  }
+
+  /** Returns the user id, or {@code null} if the app did not set one. */
+  public String getUserId() {
+    return userId;
+  }
+
+  public String getAdNetwork() {
+    return adNetwork;
+  }
+
+  public String getAdUnit() {
+    return adUnit;
+  }
+
+  public String getRewardItem() {
+    return rewardItem;
+  }
+
+  public long getRewardAmount() {
+    return rewardAmount;
+  }
+
+  /** Returns the custom data, or {@code null} if the app did not set any. */
+  public String getCustomData() {
+    return customData;
+  }
+
+  public long getTimestampMillis() {
+    return timestampMillis;
+  }
+
+  public long getKeyId() {
+    return keyId;
+  }
+}
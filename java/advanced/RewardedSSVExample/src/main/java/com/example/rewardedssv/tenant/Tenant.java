@@ -0,0 +1,66 @@
+package com.example.rewardedssv.tenant;
+
+import java.net.URI;
+import java.util.Set;
+
+/** An app or group of ad units with its own reward rules and delivery target. */
+public final class Tenant {
+  private final String name;
+  private final long[] adUnits;
+  private final URI webhook;
+  private final Set<String> rewardItems;
+  private final long minRewardAmount;
+  private final long maxRewardAmount;
+
+  Tenant(
+      String name,
+      long[] adUnits,
+      URI webhook,
+      Set<String> rewardItems,
+      long minRewardAmount,
+      long maxRewardAmount) {
+    this.name = name;
+    this.adUnits = adUnits;
+    this.webhook = webhook;
+    this.rewardItems = rewardItems;
+    this.minRewardAmount = minRewardAmount;
+    this.maxRewardAmount = maxRewardAmount;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  long[] getAdUnits() {
+    return adUnits;
+  }
+
+  /** Returns where rewards of this tenant are delivered, or {@code null} for the default. */
+  public URI getWebhook() {
+    return webhook;
+  }
+
+  /** Returns the allowed reward items; empty if any item is allowed. */
+  public Set<String> getRewardItems() {
+    return rewardItems;
+  }
+
+  public long getMinRewardAmount() {
+    return minRewardAmount;
+  }
+
+  /** Returns the largest allowed reward amount, {@link Long#MAX_VALUE} if unbounded. */
+  public long getMaxRewardAmount() {
+    return maxRewardAmount;
+  }
+
+  /** Returns {@code true} if the reward amount has bounds to check. */
+  public boolean hasRewardAmountBounds() {
+    return minRewardAmount > 0 || maxRewardAmount < Long.MAX_VALUE;
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+}
@@ -0,0 +1,67 @@
+package com.example.rewardedssv.tenant;
+
+import com.example.rewardedssv.CallbackQuery;
+import com.example.rewardedssv.CallbackQuery.Parameter;
+import com.example.rewardedssv.InvalidCallbackException;
+import com.example.rewardedssv.VerificationError;
+import com.example.rewardedssv.VerificationError.Type;
+import com.example.rewardedssv.validation.CallbackCheck;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Applies the reward rules of the tenant that owns the {@code ad_unit} of a callback: its reward
+ * items and reward amount bounds. Callbacks for ad units of no tenant pass unless the configuration
+ * sets {@code reject_unknown_ad_units}. Turned off without {@code ssv.tenants.file}.
+ */
+@Component
+@Order(500)
+public class TenantCheck implements CallbackCheck {
+  private static final VerificationError UNKNOWN_AD_UNIT =
+      VerificationError.of(Type.AD_UNIT_NOT_ALLOWED, "Ad unit is not allowed.");
+  private static final VerificationError OUT_OF_BOUNDS =
+      VerificationError.of(Type.REWARD_AMOUNT_OUT_OF_BOUNDS, "Reward amount is out of bounds.");
+  private static final VerificationError ITEM_NOT_ALLOWED =
+      VerificationError.of(Type.REWARD_ITEM_NOT_ALLOWED, "Reward item is not allowed.");
+
+  private final TenantRegistry registry;
+
+  public TenantCheck(TenantRegistry registry) {
+    this.registry = registry;
+  }
+
+  @Override
+  public String getName() {
+    return "tenant";
+  }
+
+  @Override
+  public boolean isEnabled() {
+    return registry.isEnabled();
+  }
+
+  @Override
+  public VerificationError check(CallbackQuery query) {
+    TenantTable table = registry.getTable();
+    Tenant tenant = table.route(query);
+    if (tenant == null) {
+      return table.rejectsUnknownAdUnits() ? UNKNOWN_AD_UNIT : null;
+    }
+    if (tenant.hasRewardAmountBounds()) {
+      long amount;
+      try {
+        amount = query.longValue(Parameter.REWARD_AMOUNT);
+      } catch (InvalidCallbackException exception) {
+        return OUT_OF_BOUNDS;
+      }
+      if (amount < tenant.getMinRewardAmount() || amount > tenant.getMaxRewardAmount()) {
+        return OUT_OF_BOUNDS;
+      }
+    }
+    if (!tenant.getRewardItems().isEmpty()
+        && !tenant.getRewardItems().contains(query.value(Parameter.REWARD_ITEM))) {
+      return ITEM_NOT_ALLOWED;
+    }
+    return null;
+  }
+}
@@ -0,0 +1,136 @@
+package com.example.rewardedssv.tenant;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Holds the {@link TenantTable} loaded from {@code ssv.tenants.file}, so that one server can verify
+ * and deliver the rewards of many apps.
+ *
+ * <p>The file is read at startup, where an invalid file stops the server, and checked for changes
+ * every {@code ssv.tenants.reload-seconds}. A changed file is parsed into a new table off the
+ * request path and published with a single volatile write, so a callback is routed either entirely
+ * by the old or entirely by the new configuration. A file that fails to parse is logged and the
+ * previous table stays in use. Without {@code ssv.tenants.file} there are no tenants.
+ */
+@Component
+public class TenantRegistry {
+  private static final Logger logger = LoggerFactory.getLogger(TenantRegistry.class);
+
+  private final Path file;
+  private final long reloadSeconds;
+  private final ScheduledExecutorService scheduler =
+      Executors.newSingleThreadScheduledExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, "ssv-tenant-reload");
+            thread.setDaemon(true);
+            return thread;
+          });
+  private final Counter reloaded;
+  private final Counter reloadFailures;
+
+  private volatile TenantTable table = TenantTable.EMPTY;
+  private long lastModifiedMillis;
+  private long lastSize;
+
+  public TenantRegistry(
+      MeterRegistry meterRegistry,
+      @Value("${ssv.tenants.file:}") String file,
+      @Value("${ssv.tenants.reload-seconds:5}") long reloadSeconds) {
+    this.file = file.isEmpty() ? null : Paths.get(file);
+    this.reloadSeconds = reloadSeconds;
+    Gauge.builder("ssv.tenants", this, registry -> registry.table.getTenants().size())
+        .description("Tenants in the current tenant configuration")
+        .register(meterRegistry);
+    this.reloaded = reloadCounter(meterRegistry, "success");
+    this.reloadFailures = reloadCounter(meterRegistry, "failure");
+  }
+
+  private static Counter reloadCounter(MeterRegistry meterRegistry, String result) {
+    return Counter.builder("ssv.tenants.reloads")
+        .description("Reloads of the tenant configuration by result")
+        .tag("result", result)
+        .register(meterRegistry);
+  }
+
+  @PostConstruct
+  void start() throws IOException {
+    if (file == null) {
+      return;
+    }
+    lastModifiedMillis = Files.getLastModifiedTime(file).toMillis();
+    lastSize = Files.size(file);
+    try {
+      table = TenantTable.parse(new String(Files.readAllBytes(file), UTF_8));
+    } catch (JSONException exception) {
+      throw new IllegalArgumentException("Invalid tenant configuration " + file, exception);
+    }
+    logger.info("Loaded {} tenants from {}.", table.getTenants().size(), file);
+    if (reloadSeconds > 0) {
+      scheduler.scheduleWithFixedDelay(
+          this::reloadIfChanged, reloadSeconds, reloadSeconds, TimeUnit.SECONDS);
+    }
+  }
+
+  @PreDestroy
+  void stop() {
+    scheduler.shutdownNow();
+  }
+
+  /** Returns {@code true} if a tenant configuration file is configured. */
+  public boolean isEnabled() {
+    return file != null;
+  }
+
+  /** Returns the current table; keep using the same table for all decisions about one callback. */
+  public TenantTable getTable() {
+    return table;
+  }
+
+  void reloadIfChanged() {
+    try {
+      long modifiedMillis;
+      try {
+        modifiedMillis = Files.getLastModifiedTime(file).toMillis();
+      } catch (NoSuchFileException exception) {
+        if (lastSize >= 0) {
+          lastSize = -1;
+          logger.warn("Tenant configuration {} is gone, keeping the previous tenants.", file);
+        }
+        return;
+      }
+      long size = Files.size(file);
+      if (modifiedMillis == lastModifiedMillis && size == lastSize) {
+        return;
+      }
+      // Remembered even if parsing fails, so a broken file is reported once, not on every check.
+      lastModifiedMillis = modifiedMillis;
+      lastSize = size;
+      TenantTable reloadedTable = TenantTable.parse(new String(Files.readAllBytes(file), UTF_8));
+      table = reloadedTable;
+      reloaded.increment();
+      logger.info("Reloaded {} tenants from {}.", reloadedTable.getTenants().size(), file);
+    } catch (IOException | JSONException | RuntimeException exception) {
+      reloadFailures.increment();
+      logger.warn("Failed to reload tenants from {}, keeping the previous ones.", file, exception);
+    }
+  }
+}
@@ -0,0 +1,200 @@
+package com.example.rewardedssv.tenant;
+
+import com.example.rewardedssv.CallbackQuery;
+import com.example.rewardedssv.CallbackQuery.Parameter;
+import com.example.rewardedssv.InvalidCallbackException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Immutable routing table from {@code ad_unit} to {@link Tenant}, built once per configuration
+ * file and swapped as a whole on reload.
+ *
+ * <p>Ad units are keys of a single open addressing array, so routing a callback is a multiply, a
+ * few array reads and no allocation. The configuration is a JSON document:
+ *
+ * <pre>{@code
+ * {
+ *   "reject_unknown_ad_units": false,
+ *   "tenants": [{
+ *     "name": "puzzle-game",
+ *     "ad_units": [1234567890, 1234567891],
+ *     "webhook": "https://puzzle.example.com/rewards",
+ *     "reward_items": ["coins"],
+ *     "reward_amount": {"min": 1, "max": 100}
+ *   }]
+ * }
+ * }</pre>
+ *
+ * Everything but {@code name} and {@code ad_units} is optional.
+ */
+public final class TenantTable {
+  static final TenantTable EMPTY = new TenantTable(new Tenant[0], false);
+
+  private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+  private static final long FREE = -1;
+
+  private final List<Tenant> tenants;
+  private final Map<String, Tenant> byName = new HashMap<>();
+  private final boolean rejectUnknown;
+  private final long[] keys;
+  private final Tenant[] values;
+
+  private TenantTable(Tenant[] tenants, boolean rejectUnknown) {
+    this.tenants = Collections.unmodifiableList(Arrays.asList(tenants));
+    this.rejectUnknown = rejectUnknown;
+    int adUnits = 0;
+    for (Tenant tenant : tenants) {
+      byName.put(tenant.getName(), tenant);
+      adUnits += tenant.getAdUnits().length;
+    }
+    int capacity = Math.max(2, Integer.highestOneBit(Math.max(1, adUnits) * 2 - 1) << 1);
+    this.keys = new long[capacity];
+    this.values = new Tenant[capacity];
+    Arrays.fill(keys, FREE);
+    for (Tenant tenant : tenants) {
+      for (long adUnit : tenant.getAdUnits()) {
+        int i = index(adUnit);
+        while (keys[i] != FREE) {
+          if (keys[i] == adUnit) {
+            throw new IllegalArgumentException(
+                String.format("Ad unit %d belongs to both %s and %s.", adUnit, values[i], tenant));
+          }
+          i = (i + 1) & (capacity - 1);
+        }
+        keys[i] = adUnit;
+        values[i] = tenant;
+      }
+    }
+  }
+
+  /**
+   * Parses a tenant configuration document.
+   *
+   * @throws JSONException if the document is not well-formed
+   * @throws IllegalArgumentException if it is not a valid configuration
+   */
+  public static TenantTable parse(String json) throws JSONException {
+    JSONObject document = new JSONObject(json);
+    JSONArray tenants = document.getJSONArray("tenants");
+    Tenant[] parsed = new Tenant[tenants.length()];
+    Set<String> names = new HashSet<>();
+    for (int i = 0; i < parsed.length; i++) {
+      parsed[i] = parseTenant(tenants.getJSONObject(i));
+      if (!names.add(parsed[i].getName())) {
+        throw new IllegalArgumentException("Duplicate tenant " + parsed[i].getName() + ".");
+      }
+    }
+    return new TenantTable(parsed, document.optBoolean("reject_unknown_ad_units", false));
+  }
+
+  private static Tenant parseTenant(JSONObject tenant) throws JSONException {
+    String name = tenant.getString("name");
+    if (!NAME.matcher(name).matches()) {
+      throw new IllegalArgumentException(
+          "Invalid tenant name " + name + ", use up to 64 letters, digits, - and _.");
+    }
+    JSONArray adUnitArray = tenant.getJSONArray("ad_units");
+    long[] adUnits = new long[adUnitArray.length()];
+    for (int i = 0; i < adUnits.length; i++) {
+      adUnits[i] = adUnitArray.getLong(i);
+      if (adUnits[i] < 0) {
+        throw new IllegalArgumentException("Invalid ad unit " + adUnits[i] + " of " + name + ".");
+      }
+    }
+    URI webhook = null;
+    String url = tenant.optString("webhook", "");
+    if (!url.isEmpty()) {
+      webhook = URI.create(url);
+      if (!"http".equals(webhook.getScheme()) && !"https".equals(webhook.getScheme())) {
+        throw new IllegalArgumentException("Invalid webhook " + url + " of " + name + ".");
+      }
+    }
+    Set<String> rewardItems = new HashSet<>();
+    JSONArray items = tenant.optJSONArray("reward_items");
+    if (items != null) {
+      for (int i = 0; i < items.length(); i++) {
+        rewardItems.add(items.getString(i));
+      }
+    }
+    long min = 0;
+    long max = Long.MAX_VALUE;
+    JSONObject amount = tenant.optJSONObject("reward_amount");
+    if (amount != null) {
+      min = amount.optLong("min", 0);
+      long configuredMax = amount.optLong("max", 0);
+      max = configuredMax > 0 ? configuredMax : Long.MAX_VALUE;
+    }
+    return new Tenant(name, adUnits, webhook, Collections.unmodifiableSet(rewardItems), min, max);
+  }
+
+  /** Returns the tenant of {@code adUnit}, or {@code null} if it has none. */
+  public Tenant get(long adUnit) {
+    if (adUnit < 0) {
+      return null;
+    }
+    int mask = keys.length - 1;
+    for (int i = index(adUnit); ; i = (i + 1) & mask) {
+      long key = keys[i];
+      if (key == adUnit) {
+        return values[i];
+      }
+      if (key == FREE) {
+        return null;
+      }
+    }
+  }
+
+  /** Returns the tenant of the {@code ad_unit} of {@code query}, or {@code null}. */
+  public Tenant route(CallbackQuery query) {
+    if (!query.has(Parameter.AD_UNIT)) {
+      return null;
+    }
+    try {
+      return get(query.longValue(Parameter.AD_UNIT));
+    } catch (InvalidCallbackException exception) {
+      return null;
+    }
+  }
+
+  /** Returns the tenant of {@code adUnit}, or {@code null} if it has none or is not a number. */
+  public Tenant route(String adUnit) {
+    if (adUnit == null) {
+      return null;
+    }
+    try {
+      return get(Long.parseLong(adUnit));
+    } catch (NumberFormatException exception) {
+      return null;
+    }
+  }
+
+  /** Returns the tenant called {@code name}, or {@code null}. */
+  public Tenant get(String name) {
+    return byName.get(name);
+  }
+
+  public List<Tenant> getTenants() {
+    return tenants;
+  }
+
+  /** Returns {@code true} if callbacks for ad units of no tenant are rejected. */
+  public boolean rejectsUnknownAdUnits() {
+    return rejectUnknown;
+  }
+
+  private int index(long adUnit) {
+    long hash = adUnit * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ (hash >>> 32)) & (keys.length - 1);
+  }
+}
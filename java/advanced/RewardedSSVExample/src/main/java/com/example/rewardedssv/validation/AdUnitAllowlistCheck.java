@@ -0,0 +1,66 @@
+package com.example.rewardedssv.validation;
+
+import com.example.rewardedssv.CallbackQuery;
+import com.example.rewardedssv.CallbackQuery.Parameter;
+import com.example.rewardedssv.InvalidCallbackException;
+import com.example.rewardedssv.VerificationError;
+import com.example.rewardedssv.VerificationError.Type;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rejects callbacks for an {@code ad_unit} that is not one of the comma-separated {@code
+ * ssv.validation.ad-units}, the numeric ad unit ids AdMob sends in callbacks. Turned off while the
+ * list is empty. The ids are kept in a {@link LongSet}, so a lookup neither allocates nor decodes
+ * the value.
+ */
+@Component
+@Order(400)
+public class AdUnitAllowlistCheck implements CallbackCheck {
+  private static final VerificationError NOT_ALLOWED =
+      VerificationError.of(Type.AD_UNIT_NOT_ALLOWED, "Ad unit is not allowed.");
+  private static final VerificationError MISSING =
+      VerificationError.of(Type.MISSING_PARAMETER, "Missing ad_unit parameter.");
+
+  private final LongSet adUnits;
+
+  public AdUnitAllowlistCheck(@Value("${ssv.validation.ad-units:}") String adUnits) {
+    String[] ids = adUnits.split(",");
+    this.adUnits = new LongSet(ids.length);
+    for (String id : ids) {
+      if (!id.isBlank()) {
+        try {
+          this.adUnits.add(Long.parseLong(id.trim()));
+        } catch (NumberFormatException exception) {
+          throw new IllegalArgumentException("Invalid ssv.validation.ad-units: " + id, exception);
+        }
+      }
+    }
+  }
+
+  @Override
+  public String getName() {
+    return "ad_unit";
+  }
+
+  @Override
+  public boolean isEnabled() {
+    return adUnits.size() > 0;
+  }
+
+  @Override
+  public VerificationError check(CallbackQuery query) {
+    if (!query.has(Parameter.AD_UNIT)) {
+      return MISSING;
+    }
+    long adUnit;
+    try {
+      adUnit = query.longValue(Parameter.AD_UNIT);
+    } catch (InvalidCallbackException exception) {
+      // A malformed id cannot be on the list.
+      return NOT_ALLOWED;
+    }
+    return adUnits.contains(adUnit) ? null : NOT_ALLOWED;
+  }
+}
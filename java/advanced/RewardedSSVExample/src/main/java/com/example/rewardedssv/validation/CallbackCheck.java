@@ -0,0 +1,26 @@
+package com.example.rewardedssv.validation;
+
+import com.example.rewardedssv.CallbackQuery;
+import com.example.rewardedssv.VerificationError;
+
+/**
+ * A check that a parsed callback must pass before its signature is verified.
+ *
+ * <p>Checks are Spring beans run by the {@link ValidationPipeline} in {@link
+ * org.springframework.core.annotation.Order} order, cheapest first; the built-in ones use orders
+ * 100 to 400. A check must be cheap compared to an ECDSA verification, must not block and must be
+ * safe to call concurrently.
+ */
+public interface CallbackCheck {
+
+  /** Returns the name the check is timed under. */
+  String getName();
+
+  /** Returns {@code false} if the check is turned off by configuration and need not run. */
+  default boolean isEnabled() {
+    return true;
+  }
+
+  /** Returns why {@code query} must be rejected, or {@code null} if it passes. */
+  VerificationError check(CallbackQuery query);
+}
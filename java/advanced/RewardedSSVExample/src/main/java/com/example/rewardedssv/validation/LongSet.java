@@ -0,0 +1,80 @@
+package com.example.rewardedssv.validation;
+
+import java.util.Arrays;
+
+/**
+ * Set of non-negative longs in a single open addressing array, for lookups that neither box nor
+ * follow pointers. Built once and read-only afterwards, so safe to share between threads once
+ * published.
+ */
+final class LongSet {
+  private static final long FREE = -1;
+
+  private long[] table;
+  private int size;
+
+  LongSet(int expectedSize) {
+    table = newTable(Math.max(2, Integer.highestOneBit(Math.max(1, expectedSize) * 2 - 1) << 1));
+  }
+
+  private static long[] newTable(int capacity) {
+    long[] table = new long[capacity];
+    Arrays.fill(table, FREE);
+    return table;
+  }
+
+  void add(long value) {
+    if (value < 0) {
+      throw new IllegalArgumentException("Negative value: " + value);
+    }
+    if (contains(value)) {
+      return;
+    }
+    if ((size + 1) * 2 > table.length) {
+      long[] old = table;
+      table = newTable(old.length * 2);
+      for (long existing : old) {
+        if (existing != FREE) {
+          table[slot(existing)] = existing;
+        }
+      }
+    }
+    table[slot(value)] = value;
+    size++;
+  }
+
+  boolean contains(long value) {
+    if (value < 0) {
+      return false;
+    }
+    int mask = table.length - 1;
+    for (int i = index(value, mask); ; i = (i + 1) & mask) {
+      long entry = table[i];
+      if (entry == value) {
+        return true;
+      }
+      if (entry == FREE) {
+        return false;
+      }
+    }
+  }
+
+  int size() {
+    return size;
+  }
+
+  /** Returns the free slot for {@code value}, which must not be in the table. */
+  private int slot(long value) {
+    int mask = table.length - 1;
+    int i = index(value, mask);
+    while (table[i] != FREE) {
+      i = (i + 1) & mask;
+    }
+    return i;
+  }
+
+  private static int index(long value, int mask) {
+    long hash = value * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ (hash >>> 32)) & mask;
+  }
+}
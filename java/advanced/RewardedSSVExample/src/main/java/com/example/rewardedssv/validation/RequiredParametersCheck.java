@@ -0,0 +1,72 @@
+package com.example.rewardedssv.validation;
+
+import com.example.rewardedssv.CallbackQuery;
+import com.example.rewardedssv.CallbackQuery.Parameter;
+import com.example.rewardedssv.VerificationError;
+import com.example.rewardedssv.VerificationError.Type;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rejects callbacks without a {@code transaction_id} or {@code timestamp}, which replay protection
+ * needs, or without one of the comma-separated {@code ssv.validation.required-parameters}, e.g.
+ * {@code user_id} for apps that always send it.
+ */
+@Component
+@Order(100)
+public class RequiredParametersCheck implements CallbackCheck {
+  private static final VerificationError MISSING_TRANSACTION =
+      VerificationError.of(
+          Type.MISSING_PARAMETER, "Missing transaction_id and/or timestamp parameters.");
+
+  private final Parameter[] required;
+  private final VerificationError[] errors;
+
+  public RequiredParametersCheck(
+      @Value("${ssv.validation.required-parameters:}") String requiredParameters) {
+    List<Parameter> required = new ArrayList<>();
+    for (String name : requiredParameters.split(",")) {
+      if (!name.isBlank()) {
+        required.add(parameter(name.trim()));
+      }
+    }
+    this.required = required.toArray(new Parameter[0]);
+    this.errors = new VerificationError[this.required.length];
+    for (int i = 0; i < errors.length; i++) {
+      errors[i] =
+          VerificationError.of(
+              Type.MISSING_PARAMETER,
+              String.format("Missing %s parameter.", this.required[i].getKey()));
+    }
+  }
+
+  private static Parameter parameter(String name) {
+    for (Parameter parameter : Parameter.values()) {
+      if (parameter.getKey().equals(name)) {
+        return parameter;
+      }
+    }
+    throw new IllegalArgumentException("Unknown ssv.validation.required-parameters: " + name);
+  }
+
+  @Override
+  public String getName() {
+    return "required_parameters";
+  }
+
+  @Override
+  public VerificationError check(CallbackQuery query) {
+    if (!query.has(Parameter.TRANSACTION_ID) || !query.has(Parameter.TIMESTAMP)) {
+      return MISSING_TRANSACTION;
+    }
+    for (int i = 0; i < required.length; i++) {
+      if (!query.has(required[i])) {
+        return errors[i];
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,58 @@
+package com.example.rewardedssv.validation;
+
+import com.example.rewardedssv.CallbackQuery;
+import com.example.rewardedssv.CallbackQuery.Parameter;
+import com.example.rewardedssv.InvalidCallbackException;
+import com.example.rewardedssv.VerificationError;
+import com.example.rewardedssv.VerificationError.Type;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rejects callbacks whose {@code reward_amount} is missing, not a number or outside {@code
+ * ssv.validation.reward-amount.min} to {@code ssv.validation.reward-amount.max}. Turned off while
+ * both are 0; a maximum of 0 means no upper bound.
+ */
+@Component
+@Order(300)
+public class RewardAmountCheck implements CallbackCheck {
+  private static final VerificationError OUT_OF_BOUNDS =
+      VerificationError.of(Type.REWARD_AMOUNT_OUT_OF_BOUNDS, "Reward amount is out of bounds.");
+  private static final VerificationError MISSING =
+      VerificationError.of(Type.MISSING_PARAMETER, "Missing reward_amount parameter.");
+
+  private final long min;
+  private final long max;
+
+  public RewardAmountCheck(
+      @Value("${ssv.validation.reward-amount.min:0}") long min,
+      @Value("${ssv.validation.reward-amount.max:0}") long max) {
+    this.min = min;
+    this.max = max > 0 ? max : Long.MAX_VALUE;
+  }
+
+  @Override
+  public String getName() {
+    return "reward_amount";
+  }
+
+  @Override
+  public boolean isEnabled() {
+    return min > 0 || max < Long.MAX_VALUE;
+  }
+
+  @Override
+  public VerificationError check(CallbackQuery query) {
+    if (!query.has(Parameter.REWARD_AMOUNT)) {
+      return MISSING;
+    }
+    long amount;
+    try {
+      amount = query.longValue(Parameter.REWARD_AMOUNT);
+    } catch (InvalidCallbackException exception) {
+      return exception.getError();
+    }
+    return amount >= min && amount <= max ? null : OUT_OF_BOUNDS;
+  }
+}
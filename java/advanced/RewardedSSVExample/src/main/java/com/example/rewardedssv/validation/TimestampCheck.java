@@ -0,0 +1,45 @@
+package com.example.rewardedssv.validation;
+
+import com.example.rewardedssv.CallbackQuery;
+import com.example.rewardedssv.CallbackQuery.Parameter;
+import com.example.rewardedssv.InvalidCallbackException;
+import com.example.rewardedssv.VerificationError;
+import com.example.rewardedssv.VerificationError.Type;
+import com.example.rewardedssv.dedup.TransactionDedupStore;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rejects callbacks whose {@code timestamp} is not a number or lies outside the replay protection
+ * window: such a callback could not be told apart from a replay, so it is not worth verifying.
+ */
+@Component
+@Order(200)
+public class TimestampCheck implements CallbackCheck {
+  /** Error for a callback outside the window, also when the dedup store finds it expired. */
+  public static final VerificationError OUT_OF_WINDOW =
+      VerificationError.of(
+          Type.OUT_OF_WINDOW, "Callback timestamp is outside the replay protection window.");
+
+  private final TransactionDedupStore dedupStore;
+
+  public TimestampCheck(TransactionDedupStore dedupStore) {
+    this.dedupStore = dedupStore;
+  }
+
+  @Override
+  public String getName() {
+    return "timestamp";
+  }
+
+  @Override
+  public VerificationError check(CallbackQuery query) {
+    long timestamp;
+    try {
+      timestamp = query.longValue(Parameter.TIMESTAMP);
+    } catch (InvalidCallbackException exception) {
+      return exception.getError();
+    }
+    return dedupStore.isInWindow(timestamp) ? null : OUT_OF_WINDOW;
+  }
+}
@@ -0,0 +1,67 @@
+package com.example.rewardedssv.validation;
+
+import com.example.rewardedssv.CallbackQuery;
+import com.example.rewardedssv.VerificationError;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs the enabled {@link CallbackCheck}s in order and stops at the first one that rejects a
+ * callback, so that obviously unusable callbacks are turned away before the signature is verified.
+ *
+ * <p>Every check is timed as {@code ssv.validation} with its name and whether it passed or
+ * rejected the callback. The built-in checks ensure that a callback that passes has a {@code
+ * transaction_id} and a {@code timestamp} within the replay protection window.
+ */
+@Component
+public class ValidationPipeline {
+  private static final Logger logger = LoggerFactory.getLogger(ValidationPipeline.class);
+
+  private final CallbackCheck[] checks;
+  private final Timer[] passed;
+  private final Timer[] rejected;
+
+  public ValidationPipeline(ObjectProvider<CallbackCheck> checks, MeterRegistry meterRegistry) {
+    this.checks =
+        checks.orderedStream().filter(CallbackCheck::isEnabled).toArray(CallbackCheck[]::new);
+    this.passed = new Timer[this.checks.length];
+    this.rejected = new Timer[this.checks.length];
+    for (int i = 0; i < this.checks.length; i++) {
+      passed[i] = checkTimer(meterRegistry, this.checks[i], "pass");
+      rejected[i] = checkTimer(meterRegistry, this.checks[i], "reject");
+    }
+    logger.info(
+        "Validating callbacks with {}.",
+        Arrays.stream(this.checks).map(CallbackCheck::getName).collect(Collectors.joining(", ")));
+  }
+
+  private static Timer checkTimer(MeterRegistry meterRegistry, CallbackCheck check, String result) {
+    return Timer.builder("ssv.validation")
+        .description("Time spent per callback validation check")
+        .tag("check", check.getName())
+        .tag("result", result)
+        .register(meterRegistry);
+  }
+
+  /** Returns the error of the first check that rejects {@code query}, or {@code null}. */
+  public VerificationError validate(CallbackQuery query) {
+    long start = System.nanoTime();
+    for (int i = 0; i < checks.length; i++) {
+      VerificationError error = checks[i].check(query);
+      long end = System.nanoTime();
+      (error == null ? passed[i] : rejected[i]).record(end - start, TimeUnit.NANOSECONDS);
+      if (error != null) {
+        return error;
+      }
+      start = end;
+    }
+    return null;
+  }
+}
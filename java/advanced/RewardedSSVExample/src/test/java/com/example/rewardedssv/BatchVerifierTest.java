@@ -0,0 +1,112 @@
+package com.example.rewardedssv;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.example.rewardedssv.admission.AdmissionControl;
+import com.example.rewardedssv.admission.ConcurrencyLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BatchVerifierTest {
+  private static final String CALLBACK = "ad_unit=1&signature=c2ln&key_id=1";
+  private static final int LIMIT = 8;
+
+  private final CallbackVerifier callbackVerifier = mock(CallbackVerifier.class);
+  private final ConcurrencyLimiter limiter =
+      new ConcurrencyLimiter(new SimpleMeterRegistry(), true, LIMIT, LIMIT, LIMIT, 1.5, 0.2, 0);
+  private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+  @BeforeEach
+  void setUp() throws InvalidCallbackException {
+    VerificationResult verified = VerificationResult.verified(CallbackQuery.parse(CALLBACK));
+    when(callbackVerifier.verify(anyString())).thenReturn(verified);
+  }
+
+  @AfterEach
+  void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  void writesOneResultPerLineInInputOrder() throws IOException, JSONException {
+    String input = CALLBACK + "\n\n\"http://localhost/?" + CALLBACK + "\"\n{\"callback\":1}\n";
+    List<JSONObject> results = run(batchVerifier(0), input, "10.0.0.1");
+    assertThat(results).hasSize(3);
+    assertThat(results.get(0).getInt("line")).isEqualTo(1);
+    assertThat(results.get(0).getBoolean("verified")).isTrue();
+    assertThat(results.get(0).getString("key_id")).isEqualTo("1");
+    assertThat(results.get(1).getInt("line")).isEqualTo(3);
+    assertThat(results.get(1).getBoolean("verified")).isTrue();
+    assertThat(results.get(2).getInt("line")).isEqualTo(4);
+    assertThat(results.get(2).getString("error")).isEqualTo("Malformed callback.");
+    verify(callbackVerifier, times(2)).verify(CALLBACK);
+  }
+
+  @Test
+  void chargesEveryLineToAddressOfClient() throws IOException, JSONException {
+    BatchVerifier batchVerifier = batchVerifier(2);
+    List<JSONObject> results = run(batchVerifier, (CALLBACK + "\n").repeat(3), "a");
+    assertThat(results.get(1).getBoolean("verified")).isTrue();
+    assertThat(results.get(2).getBoolean("verified")).isFalse();
+    assertThat(results.get(2).getString("error"))
+        .isEqualTo("Too many callbacks from this address.");
+    verify(callbackVerifier, times(2)).verify(anyString());
+    // Another address has its own bucket.
+    assertThat(run(batchVerifier, CALLBACK, "b").get(0).getBoolean("verified")).isTrue();
+  }
+
+  @Test
+  void refusesLinesOverConcurrencyLimit() throws IOException, JSONException {
+    for (int i = 0; i < LIMIT; i++) {
+      assertThat(limiter.tryAcquire()).isTrue();
+    }
+    JSONObject result = run(batchVerifier(0), CALLBACK, "a").get(0);
+    assertThat(result.getBoolean("verified")).isFalse();
+    assertThat(result.getString("error")).isEqualTo("Server is overloaded.");
+    verify(callbackVerifier, never()).verify(anyString());
+  }
+
+  @Test
+  void releasesLimiterSlotOfEveryLine() throws IOException, JSONException {
+    run(batchVerifier(0), (CALLBACK + "\n").repeat(3 * LIMIT), "a");
+    for (int i = 0; i < LIMIT; i++) {
+      assertThat(limiter.tryAcquire()).isTrue();
+    }
+  }
+
+  /** Returns a verifier whose clients may send a burst of {@code addressBurst}, or any number. */
+  private BatchVerifier batchVerifier(int addressBurst) {
+    double rate = addressBurst > 0 ? 0.001 : 0;
+    AdmissionControl admission = new AdmissionControl(16, rate, addressBurst, 0, 0);
+    return new BatchVerifier(callbackVerifier, admission, limiter, executor, 2);
+  }
+
+  private static List<JSONObject> run(BatchVerifier batchVerifier, String input, String address)
+      throws IOException, JSONException {
+    StringWriter output = new StringWriter();
+    batchVerifier.verify(new BufferedReader(new StringReader(input)), output, address);
+    List<JSONObject> results = new ArrayList<>();
+    for (String line : output.toString().split("\n")) {
+      results.add(new JSONObject(line));
+    }
+    return results;
+  }
+}
@@ -0,0 +1,139 @@
+package com.example.rewardedssv;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.example.rewardedssv.CallbackQuery.Parameter;
+import com.example.rewardedssv.VerificationError.Type;
+import java.util.Base64;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class CallbackQueryTest {
+  private static final String PAYLOAD =
+      "ad_network=5450213213286189855&ad_unit=1234567890&custom_data=a%20b&reward_amount=10"
+          + "&reward_item=coins&timestamp=1507770365237823&transaction_id=tx-1&user_id=user-1";
+  /** A signature whose URL-safe Base64 encoding ends in {@code =} padding. */
+  private static final byte[] SIGNATURE = signature(70);
+
+  @Test
+  void parsesPayloadAndParameters() {
+    CallbackQuery query =
+        CallbackQuery.parse(PAYLOAD + "&signature=" + encode(SIGNATURE) + "&key_id=3335741209");
+    assertThat(query.payloadString()).isEqualTo(PAYLOAD);
+    assertThat(query.getKeyId()).isEqualTo(3335741209L);
+    assertThat(query.value(Parameter.CUSTOM_DATA)).isEqualTo("a b");
+    assertThat(query.value(Parameter.TRANSACTION_ID)).isEqualTo("tx-1");
+    assertThat(query.longValue(Parameter.REWARD_AMOUNT)).isEqualTo(10);
+    assertThat(query.has(Parameter.AD_UNIT)).isTrue();
+    assertThat(query.decodeSignature()).isEqualTo(SIGNATURE);
+  }
+
+  @Test
+  void decodesPercentEncodedSignature() {
+    String encoded = encode(SIGNATURE).replace("=", "%3D");
+    assertThat(encoded).contains("%3D");
+    CallbackQuery query = CallbackQuery.parse(PAYLOAD + "&signature=" + encoded + "&key_id=1");
+    assertThat(query.decodeSignature()).isEqualTo(SIGNATURE);
+    assertThat(query.payloadString()).isEqualTo(PAYLOAD);
+  }
+
+  @Test
+  void decodesSignatureWithoutPadding() {
+    String unpadded = Base64.getUrlEncoder().withoutPadding().encodeToString(SIGNATURE);
+    CallbackQuery query = CallbackQuery.parse(PAYLOAD + "&signature=" + unpadded + "&key_id=1");
+    assertThat(query.decodeSignature()).isEqualTo(SIGNATURE);
+  }
+
+  @Test
+  void signatureInCustomDataIsPartOfPayload() {
+    String payload = "custom_data=signature=forged&transaction_id=tx-1";
+    CallbackQuery query =
+        CallbackQuery.parse(payload + "&signature=" + encode(SIGNATURE) + "&key_id=1");
+    assertThat(query.payloadString()).isEqualTo(payload);
+    assertThat(query.value(Parameter.CUSTOM_DATA)).isEqualTo("signature=forged");
+    assertThat(query.getKeyId()).isEqualTo(1);
+    assertThat(query.decodeSignature()).isEqualTo(SIGNATURE);
+  }
+
+  @Test
+  void encodedSignatureInCustomDataIsPartOfPayload() {
+    String payload = "custom_data=x%26signature%3Dforged&transaction_id=tx-1";
+    CallbackQuery query =
+        CallbackQuery.parse(payload + "&signature=" + encode(SIGNATURE) + "&key_id=1");
+    assertThat(query.payloadString()).isEqualTo(payload);
+    assertThat(query.value(Parameter.CUSTOM_DATA)).isEqualTo("x&signature=forged");
+  }
+
+  @Test
+  void rejectsParametersAfterSignature() {
+    String signature = "&signature=" + encode(SIGNATURE);
+    assertThatThrownBy(() -> CallbackQuery.parse(PAYLOAD + signature + "&key_id=1&user_id=x"))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("last two parameters");
+    assertThatThrownBy(() -> CallbackQuery.parse(PAYLOAD + signature + "&user_id=x&key_id=1"))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("last two parameters");
+    assertThatThrownBy(() -> CallbackQuery.parse(PAYLOAD + signature + "&key_id=1&key_id=2"))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("last two parameters");
+  }
+
+  @Test
+  void rejectsMissingKeyIdOrSignature() {
+    assertThatThrownBy(() -> CallbackQuery.parse(PAYLOAD + "&signature=" + encode(SIGNATURE)))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Missing key_id and/or signature parameters.");
+    assertThatThrownBy(() -> CallbackQuery.parse(PAYLOAD + "&key_id=1"))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Missing key_id and/or signature parameters.");
+    assertThatThrownBy(() -> CallbackQuery.parse((String) null))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void typesParseErrors() {
+    assertThat(parseError(PAYLOAD + "&key_id=1")).isEqualTo(Type.MISSING_PARAMETER);
+    assertThat(parseError("signature=" + encode(SIGNATURE) + "&key_id=1"))
+        .isEqualTo(Type.MALFORMED);
+    assertThat(parseError(PAYLOAD + "&signature=" + encode(SIGNATURE) + "&key_id=x"))
+        .isEqualTo(Type.MALFORMED);
+  }
+
+  @Test
+  void rejectsInvalidKeyId() {
+    String signature = "&signature=" + encode(SIGNATURE);
+    assertThatThrownBy(() -> CallbackQuery.parse(PAYLOAD + signature + "&key_id=12a"))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Invalid key_id parameter.");
+    assertThatThrownBy(() -> CallbackQuery.parse(PAYLOAD + signature + "&key_id="))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Invalid key_id parameter.");
+  }
+
+  @Test
+  void rejectsUnsignedCallback() {
+    assertThatThrownBy(() -> CallbackQuery.parse("signature=" + encode(SIGNATURE) + "&key_id=1"))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Malformed callback: nothing is signed.");
+  }
+
+  private static Type parseError(String queryString) {
+    try {
+      CallbackQuery.parse(queryString);
+    } catch (InvalidCallbackException exception) {
+      return exception.getError().getType();
+    }
+    throw new AssertionError("Parsed " + queryString);
+  }
+
+  private static String encode(byte[] bytes) {
+    return Base64.getUrlEncoder().encodeToString(bytes);
+  }
+
+  private static byte[] signature(int length) {
+    byte[] signature = new byte[length];
+    new Random(7).nextBytes(signature);
+    return signature;
+  }
+}
@@ -0,0 +1,127 @@
+package com.example.rewardedssv;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.example.rewardedssv.VerificationError.Type;
+import com.example.rewardedssv.keys.VerifierKeyProvider;
+import com.example.rewardedssv.keys.VerifierRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class VerificationCacheTest {
+  private final VerifierKeyProvider keyProvider = mock(VerifierKeyProvider.class);
+  private final VerifierRegistry registry = mock(VerifierRegistry.class);
+  private final AtomicInteger verifications = new AtomicInteger();
+  private VerificationCache cache;
+
+  @BeforeEach
+  void setUp() {
+    when(keyProvider.getRegistry()).thenReturn(registry);
+    when(registry.getVersion()).thenReturn(1L);
+    cache = new VerificationCache(keyProvider, new SimpleMeterRegistry(), 1000, 600);
+  }
+
+  @Test
+  void cachesValidAndInvalidSignatures() {
+    CallbackQuery valid = query("a=1");
+    CallbackQuery invalid = query("a=2");
+    assertThat(verify(valid, VerificationResult::verified).isVerified()).isTrue();
+    assertThat(verify(invalid, this::invalidSignature).getErrorType())
+        .isEqualTo(Type.INVALID_SIGNATURE);
+    VerificationResult cached = verify(query("a=1"), VerificationResult::verified);
+    assertThat(cached.isVerified()).isTrue();
+    assertThat(cached.getPayload()).isEqualTo("a=1");
+    verify(query("a=2"), this::invalidSignature);
+    assertThat(verifications).hasValue(2);
+  }
+
+  @Test
+  void doesNotCacheMissingKeys() {
+    Function<CallbackQuery, VerificationResult> unknownKey =
+        query ->
+            VerificationResult.failed(
+                query, VerificationError.of(Type.UNKNOWN_KEY, "Cannot find verifying key."));
+    verify(query("a=1"), unknownKey);
+    verify(query("a=1"), unknownKey);
+    assertThat(verifications).hasValue(2);
+  }
+
+  @Test
+  void startsOverAfterKeyRotation() {
+    verify(query("a=1"), this::invalidSignature);
+    verify(query("a=1"), this::invalidSignature);
+    assertThat(verifications).hasValue(1);
+    when(registry.getVersion()).thenReturn(2L);
+    assertThat(verify(query("a=1"), VerificationResult::verified).isVerified()).isTrue();
+    assertThat(verifications).hasValue(2);
+  }
+
+  @Test
+  void coalescesConcurrentVerificationsOfSameCallback() {
+    CompletableFuture<VerificationResult> pending = new CompletableFuture<>();
+    CallbackQuery first = query("a=1");
+    CallbackQuery second = query("a=1");
+    CompletableFuture<VerificationResult> leader = cache.verify(first, started(pending));
+    CompletableFuture<VerificationResult> follower = cache.verify(second, started(pending));
+    assertThat(verifications).hasValue(1);
+    assertThat(follower).isNotDone();
+
+    pending.complete(VerificationResult.verified(first));
+    assertThat(leader.join().isVerified()).isTrue();
+    assertThat(leader.join().getQuery()).isSameAs(first);
+    assertThat(follower.join().isVerified()).isTrue();
+    assertThat(follower.join().getQuery()).isSameAs(second);
+    assertThat(verifications).hasValue(1);
+  }
+
+  @Test
+  void propagatesFailedLeaderAndForgetsIt() {
+    CompletableFuture<VerificationResult> pending = new CompletableFuture<>();
+    CompletableFuture<VerificationResult> leader = cache.verify(query("a=1"), started(pending));
+    CompletableFuture<VerificationResult> follower = cache.verify(query("a=1"), started(pending));
+
+    pending.completeExceptionally(new IllegalStateException("verifier failed"));
+    assertThatThrownBy(leader::join).hasCauseInstanceOf(IllegalStateException.class);
+    assertThatThrownBy(follower::join).hasCauseInstanceOf(IllegalStateException.class);
+    // Nothing was cached and nothing is in flight, so the next callback is verified again.
+    assertThat(verify(query("a=1"), VerificationResult::verified).isVerified()).isTrue();
+    assertThat(verifications).hasValue(2);
+  }
+
+  /** Returns a verification that counts itself and completes with {@code pending}. */
+  private Function<CallbackQuery, CompletableFuture<VerificationResult>> started(
+      CompletableFuture<VerificationResult> pending) {
+    return uncached -> {
+      verifications.incrementAndGet();
+      return pending;
+    };
+  }
+
+  private VerificationResult verify(
+      CallbackQuery query, Function<CallbackQuery, VerificationResult> verification) {
+    return cache
+        .verify(
+            query,
+            uncached -> {
+              verifications.incrementAndGet();
+              return CompletableFuture.completedFuture(verification.apply(uncached));
+            })
+        .join();
+  }
+
+  private VerificationResult invalidSignature(CallbackQuery query) {
+    return VerificationResult.failed(
+        query, VerificationError.of(Type.INVALID_SIGNATURE, "Invalid signature"));
+  }
+
+  private static CallbackQuery query(String payload) {
+    return CallbackQuery.parse(payload + "&signature=c2ln&key_id=1");
+  }
+}
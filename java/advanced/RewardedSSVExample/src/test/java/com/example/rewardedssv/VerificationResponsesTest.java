@@ -0,0 +1,45 @@
+package com.example.rewardedssv;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.rewardedssv.VerificationError.Type;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+class VerificationResponsesTest {
+  private final VerificationResponses responses = new VerificationResponses(false);
+
+  @Test
+  void sharesBodiesOfErrorsWithFixedMessages() {
+    VerificationResult first =
+        VerificationResult.failed(null, VerificationError.of(Type.MALFORMED, "Invalid x."));
+    VerificationResult second =
+        VerificationResult.failed(null, VerificationError.of(Type.MALFORMED, "Invalid x."));
+    byte[] body = responses.body(first);
+    assertThat(new String(body, UTF_8))
+        .isEqualTo("{\"verified\":\"false\",\"error\":\"Invalid x.\"}");
+    assertThat(responses.body(second)).isSameAs(body);
+  }
+
+  @Test
+  void rendersErrorsWithOtherMessagesEveryTime() {
+    VerificationResult result =
+        VerificationResult.failed(
+            null, VerificationError.of(Type.UNKNOWN_KEY, "Cannot find verifying key: 7."));
+    byte[] body = responses.body(result);
+    assertThat(new String(body, UTF_8)).contains("Cannot find verifying key: 7.");
+    assertThat(responses.body(result)).isNotSameAs(body).isEqualTo(body);
+  }
+
+  @Test
+  void mapsOutcomesToStatus() {
+    VerificationError overloaded = VerificationError.of(Type.OVERLOADED, "Server is overloaded.");
+    assertThat(responses.status(VerificationResult.unavailable(null, overloaded)))
+        .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+    assertThat(responses.status(VerificationResult.throttled(null, overloaded, 1)))
+        .isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+    assertThat(responses.status(VerificationResult.rejected(overloaded)))
+        .isEqualTo(HttpStatus.BAD_REQUEST);
+  }
+}
@@ -0,0 +1,116 @@
+package com.example.rewardedssv.admission;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+class ConcurrencyLimiterTest {
+  private static final long FAST_NANOS = 1_000_000;
+  private static final long SLOW_NANOS = 10_000_000;
+
+  /** Callbacks sampled per window; the limiter closes a window after this many. */
+  private static final int SAMPLES = 10;
+
+  @Test
+  void growsWhileUtilizedAndFast() {
+    ConcurrencyLimiter limiter = limiter(64, 8, 1024);
+    int previous = limiter.getLimit();
+    for (int i = 0; i < 5; i++) {
+      window(limiter, limiter.getLimit(), FAST_NANOS);
+      assertThat(limiter.getLimit()).isGreaterThan(previous);
+      previous = limiter.getLimit();
+    }
+  }
+
+  @Test
+  void shrinksOnceLatencyExceedsToleranceOfBaseline() {
+    ConcurrencyLimiter limiter = limiter(64, 8, 1024);
+    window(limiter, 64, FAST_NANOS);
+    int previous = limiter.getLimit();
+    for (int i = 0; i < 5; i++) {
+      window(limiter, limiter.getLimit(), SLOW_NANOS);
+      assertThat(limiter.getLimit()).isLessThan(previous);
+      previous = limiter.getLimit();
+    }
+  }
+
+  @Test
+  void keepsLimitWhileLatencyIsWithinTolerance() {
+    ConcurrencyLimiter limiter = limiter(64, 8, 1024);
+    window(limiter, 64, FAST_NANOS);
+    int previous = limiter.getLimit();
+    // Up to 1.5 times the baseline still counts as no queuing.
+    window(limiter, limiter.getLimit(), FAST_NANOS * 14 / 10);
+    assertThat(limiter.getLimit()).isGreaterThanOrEqualTo(previous);
+  }
+
+  @Test
+  void staysBetweenMinAndMaxLimit() {
+    ConcurrencyLimiter growing = limiter(64, 8, 70);
+    for (int i = 0; i < 20; i++) {
+      window(growing, growing.getLimit(), FAST_NANOS);
+    }
+    assertThat(growing.getLimit()).isEqualTo(70);
+
+    ConcurrencyLimiter shrinking = limiter(20, 16, 1024);
+    window(shrinking, 20, FAST_NANOS);
+    for (int i = 0; i < 20; i++) {
+      window(shrinking, shrinking.getLimit(), SLOW_NANOS);
+    }
+    assertThat(shrinking.getLimit()).isEqualTo(16);
+  }
+
+  @Test
+  void doesNotGrowWhileUnderUtilized() {
+    ConcurrencyLimiter limiter = limiter(64, 8, 1024);
+    for (int i = 0; i < 20; i++) {
+      window(limiter, SAMPLES, FAST_NANOS);
+    }
+    assertThat(limiter.getLimit()).isEqualTo(64);
+  }
+
+  @Test
+  void releaseWithoutSampleOnlyFreesTheSlot() {
+    ConcurrencyLimiter limiter = limiter(16, 8, 1024);
+    for (int i = 0; i < 16; i++) {
+      assertThat(limiter.tryAcquire()).isTrue();
+    }
+    assertThat(limiter.tryAcquire()).isFalse();
+    long start = System.nanoTime() - SLOW_NANOS * 100;
+    for (int i = 0; i < 16; i++) {
+      limiter.release(start, false);
+    }
+    assertThat(limiter.getLimit()).isEqualTo(16);
+    assertThat(limiter.tryAcquire()).isTrue();
+  }
+
+  @Test
+  void admitsEverythingWhenDisabled() {
+    ConcurrencyLimiter limiter =
+        new ConcurrencyLimiter(new SimpleMeterRegistry(), false, 8, 8, 8, 1.5, 0.2, 0);
+    for (int i = 0; i < 100; i++) {
+      assertThat(limiter.tryAcquire()).isTrue();
+    }
+  }
+
+  /** Returns a limiter whose windows close after {@link #SAMPLES} samples, whatever the time. */
+  private static ConcurrencyLimiter limiter(int initialLimit, int minLimit, int maxLimit) {
+    return new ConcurrencyLimiter(
+        new SimpleMeterRegistry(), true, initialLimit, minLimit, maxLimit, 1.5, 0.2, 0);
+  }
+
+  /**
+   * Runs one sampling window with {@code concurrent} callbacks in flight that each took {@code
+   * latencyNanos}. Only {@link #SAMPLES} of them are sampled, the rest are released without.
+   */
+  private static void window(ConcurrencyLimiter limiter, int concurrent, long latencyNanos) {
+    for (int i = 0; i < concurrent; i++) {
+      assertThat(limiter.tryAcquire()).isTrue();
+    }
+    long start = System.nanoTime() - latencyNanos;
+    for (int i = 0; i < concurrent; i++) {
+      limiter.release(start, i < SAMPLES);
+    }
+  }
+}
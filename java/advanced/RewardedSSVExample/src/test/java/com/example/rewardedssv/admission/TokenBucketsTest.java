@@ -0,0 +1,41 @@
+package com.example.rewardedssv.admission;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class TokenBucketsTest {
+
+  @Test
+  void allowsBurstThenReportsWaitForNextToken() {
+    TokenBuckets buckets = new TokenBuckets(1, 1, 5);
+    for (int i = 0; i < 5; i++) {
+      assertThat(buckets.tryAcquire(42)).isZero();
+    }
+    long wait = buckets.tryAcquire(42);
+    assertThat(wait).isPositive().isLessThanOrEqualTo(TimeUnit.SECONDS.toNanos(1));
+    // A refused attempt does not use up a token.
+    assertThat(buckets.tryAcquire(42)).isPositive().isLessThanOrEqualTo(wait);
+  }
+
+  @Test
+  void refillsAfterReportedWait() throws InterruptedException {
+    TokenBuckets buckets = new TokenBuckets(1, 100, 2);
+    assertThat(buckets.tryAcquire(1)).isZero();
+    assertThat(buckets.tryAcquire(1)).isZero();
+    long wait = buckets.tryAcquire(1);
+    assertThat(wait).isPositive().isLessThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(10));
+    TimeUnit.NANOSECONDS.sleep(wait);
+    assertThat(buckets.tryAcquire(1)).isZero();
+  }
+
+  @Test
+  void keysOnOtherBucketsAreNotLimited() {
+    TokenBuckets buckets = new TokenBuckets(2, 1, 1);
+    assertThat(buckets.tryAcquire(0)).isZero();
+    assertThat(buckets.tryAcquire(0)).isPositive();
+    // The hash of 1 lands on the other bucket of two.
+    assertThat(buckets.tryAcquire(1)).isZero();
+  }
+}
@@ -0,0 +1,139 @@
+package com.example.rewardedssv.balance;
+
+import static com.example.rewardedssv.balance.BalanceShardTest.reward;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.rewardedssv.ledger.LedgerListener;
+import com.example.rewardedssv.ledger.LedgerStore;
+import com.example.rewardedssv.ledger.VerifiedReward;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BalanceEngineTest {
+  private static final int SHARDS = 4;
+
+  @TempDir Path directory;
+
+  private final MemoryLedgerStore store = new MemoryLedgerStore();
+
+  @Test
+  void replaysOnlyRewardsAfterTheSnapshots() throws Exception {
+    store.append(rewards(0, 100));
+    BalanceEngine engine = start();
+    assertThat(store.replayedFrom).isEqualTo(0);
+    await(engine, 25);
+    engine.stop();
+
+    store.append(rewards(100, 20));
+    engine = start();
+    assertThat(store.replayedFrom).isEqualTo(100);
+    await(engine, 30);
+    assertThat(engine.getBalances("user-2")).containsExactly(Map.entry("coins", 60L));
+    engine.stop();
+  }
+
+  @Test
+  void rebuildsBalancesFromCorruptedSnapshot() throws Exception {
+    store.append(rewards(0, 100));
+    BalanceEngine engine = start();
+    await(engine, 25);
+    engine.stop();
+
+    Path snapshot = ShardSnapshot.path(directory, 1);
+    byte[] bytes = Files.readAllBytes(snapshot);
+    bytes[bytes.length - 10] ^= 1;
+    Files.write(snapshot, bytes);
+    engine = start();
+    assertThat(store.replayedFrom).isEqualTo(0);
+    await(engine, 25);
+    engine.stop();
+  }
+
+  @Test
+  void rebuildsBalancesFromSnapshotAheadOfLedger() throws Exception {
+    store.append(rewards(0, 100));
+    BalanceEngine engine = start();
+    await(engine, 25);
+    engine.stop();
+
+    // The ledger lost its last rewards, which the snapshots include.
+    store.rewards.subList(80, 100).clear();
+    engine = start();
+    assertThat(store.replayedFrom).isEqualTo(0);
+    await(engine, 20);
+    engine.stop();
+  }
+
+  private BalanceEngine start() throws IOException {
+    BalanceEngine engine =
+        new BalanceEngine(store, new SimpleMeterRegistry(), SHARDS, 16, directory.toString(), 0);
+    engine.start();
+    return engine;
+  }
+
+  /** Waits until the shards have applied {@code rounds} rewards to every user. */
+  private static void await(BalanceEngine engine, long rounds) {
+    long deadline = System.nanoTime() + 10_000_000_000L;
+    for (int user = 1; user < 4; user++) {
+      while (engine.getBalances("user-" + user).getOrDefault("coins", 0L) != rounds * user) {
+        assertThat(System.nanoTime()).isLessThan(deadline);
+        Thread.onSpinWait();
+      }
+    }
+  }
+
+  /** Rewards of one coin for {@code user-0} to {@code user-3} in turn, times the user number. */
+  private static List<VerifiedReward> rewards(int first, int count) {
+    List<VerifiedReward> rewards = new ArrayList<>();
+    for (int i = first; i < first + count; i++) {
+      rewards.add(reward("user-" + i % 4, "coins", i % 4));
+    }
+    return rewards;
+  }
+
+  private static final class MemoryLedgerStore implements LedgerStore {
+    final List<VerifiedReward> rewards = new ArrayList<>();
+    long replayedFrom = -1;
+
+    @Override
+    public long append(List<VerifiedReward> batch) {
+      long first = rewards.size();
+      rewards.addAll(batch);
+      return first;
+    }
+
+    @Override
+    public void replay(long fromSequence, LedgerListener listener) {
+      replayedFrom = fromSequence;
+      if (fromSequence < rewards.size()) {
+        listener.onCommitted(
+            fromSequence, new ArrayList<>(rewards.subList((int) fromSequence, rewards.size())));
+      }
+    }
+
+    @Override
+    public long firstSequenceSince(long timestampMillis) {
+      return 0;
+    }
+
+    @Override
+    public long getNextSequence() {
+      return rewards.size();
+    }
+
+    @Override
+    public String describe() {
+      return "memory";
+    }
+
+    @Override
+    public void close() {}
+  }
+}
@@ -0,0 +1,73 @@
+package com.example.rewardedssv.balance;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ShardSnapshotTest {
+  @TempDir Path directory;
+
+  @Test
+  void readsWhatWasWritten() throws IOException {
+    snapshot().write(directory);
+    ShardSnapshot read = ShardSnapshot.read(directory, 2);
+    assertThat(read.shard).isEqualTo(2);
+    assertThat(read.shardCount).isEqualTo(4);
+    assertThat(read.nextSequence).isEqualTo(42);
+    assertThat(read.users).containsExactly(null, "user-1", "user-é");
+    assertThat(read.items).containsExactly(null, "coins");
+    // Unused pairs are not written.
+    assertThat(read.balances).containsExactly(1L << 32 | 1, 30, 2L << 32 | 1, -5);
+  }
+
+  @Test
+  void returnsNullWithoutSnapshot() throws IOException {
+    assertThat(ShardSnapshot.read(directory, 0)).isNull();
+  }
+
+  @Test
+  void rejectsCorruptedSnapshot() throws IOException {
+    snapshot().write(directory);
+    Path path = ShardSnapshot.path(directory, 2);
+    byte[] bytes = Files.readAllBytes(path);
+    // Within the first balance entry, which only the checksum covers.
+    bytes[bytes.length - 30] ^= 1;
+    Files.write(path, bytes);
+    assertThatThrownBy(() -> ShardSnapshot.read(directory, 2))
+        .isInstanceOf(IOException.class)
+        .hasMessageContaining("Checksum mismatch");
+  }
+
+  @Test
+  void rejectsTruncatedSnapshot() throws IOException {
+    snapshot().write(directory);
+    Path path = ShardSnapshot.path(directory, 2);
+    byte[] bytes = Files.readAllBytes(path);
+    Files.write(path, Arrays.copyOf(bytes, bytes.length - 6));
+    assertThatThrownBy(() -> ShardSnapshot.read(directory, 2)).isInstanceOf(IOException.class);
+  }
+
+  @Test
+  void rejectsOtherFiles() throws IOException {
+    Files.write(ShardSnapshot.path(directory, 2), new byte[64]);
+    assertThatThrownBy(() -> ShardSnapshot.read(directory, 2))
+        .isInstanceOf(IOException.class)
+        .hasMessageContaining("Not a balance snapshot");
+  }
+
+  private static ShardSnapshot snapshot() {
+    return new ShardSnapshot(
+        2,
+        4,
+        42,
+        new String[] {null, "user-1", "user-é"},
+        new String[] {null, "coins"},
+        new long[] {1L << 32 | 1, 30, 0, 0, 2L << 32 | 1, -5});
+  }
+}
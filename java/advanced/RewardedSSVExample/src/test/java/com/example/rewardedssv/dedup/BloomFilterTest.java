@@ -0,0 +1,42 @@
+package com.example.rewardedssv.dedup;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class BloomFilterTest {
+
+  @Test
+  void hasNoFalseNegatives() {
+    BloomFilter filter = new BloomFilter(100_000);
+    for (int i = 0; i < 200_000; i++) {
+      filter.put(Fingerprint128.of("tx-" + i));
+    }
+    for (int i = 0; i < 200_000; i++) {
+      assertThat(filter.mightContain(Fingerprint128.of("tx-" + i))).isTrue();
+    }
+  }
+
+  @Test
+  void keepsFalsePositivesNearOnePercentAtExpectedEntries() {
+    BloomFilter filter = new BloomFilter(100_000);
+    for (int i = 0; i < 100_000; i++) {
+      filter.put(Fingerprint128.of("tx-" + i));
+    }
+    int falsePositives = 0;
+    for (int i = 0; i < 100_000; i++) {
+      if (filter.mightContain(Fingerprint128.of("other-" + i))) {
+        falsePositives++;
+      }
+    }
+    assertThat(falsePositives).isLessThan(2_000);
+  }
+
+  @Test
+  void startsEmpty() {
+    BloomFilter filter = new BloomFilter(0);
+    assertThat(filter.mightContain(Fingerprint128.of("tx-1"))).isFalse();
+    filter.put(Fingerprint128.of("tx-1"));
+    assertThat(filter.mightContain(Fingerprint128.of("tx-1"))).isTrue();
+  }
+}
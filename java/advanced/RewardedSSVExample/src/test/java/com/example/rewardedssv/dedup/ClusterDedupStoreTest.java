@@ -0,0 +1,238 @@
+package com.example.rewardedssv.dedup;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.rewardedssv.dedup.TransactionDedupStore.Status;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class ClusterDedupStoreTest {
+  private static final List<String> NAMES = List.of("node-0", "node-1", "node-2");
+  private static final int VIRTUAL_NODES = 64;
+  private static final HashRing RING = new HashRing(NAMES, VIRTUAL_NODES);
+  private static final String CAUGHT_BY_CHECK = "caught_by_check";
+
+  private final long timestamp = System.currentTimeMillis();
+  private final InProcessTransport transport = new InProcessTransport();
+  private final List<ClusterDedupStore> nodes = new ArrayList<>();
+  private final List<SimpleMeterRegistry> meterRegistries = new ArrayList<>();
+
+  @AfterEach
+  void tearDown() {
+    nodes.forEach(ClusterDedupStore::close);
+    transport.close();
+  }
+
+  @Test
+  void recordsEachTransactionOnceAcrossNodes() {
+    start(1024);
+    int transactions = 20_000;
+    AtomicIntegerArray recorded = new AtomicIntegerArray(transactions);
+    List<CompletableFuture<Object>> deliveries = new ArrayList<>();
+    Random random = new Random(42);
+    for (int i = 0; i < transactions; i++) {
+      // A third of the callbacks is retried at the same time, on any node.
+      int copies = random.nextInt(3) == 0 ? 2 + random.nextInt(2) : 1;
+      for (int copy = 0; copy < copies; copy++) {
+        int transaction = i;
+        deliveries.add(
+            deliver(nodes.get(random.nextInt(nodes.size())), "tx-" + i)
+                .whenComplete(
+                    (outcome, failure) -> {
+                      if (outcome == Status.RECORDED) {
+                        recorded.incrementAndGet(transaction);
+                      }
+                    }));
+      }
+    }
+    CompletableFuture.allOf(deliveries.toArray(new CompletableFuture<?>[0])).join();
+    for (int i = 0; i < transactions; i++) {
+      assertThat(recorded.get(i)).as("records of tx-%d", i).isEqualTo(1);
+    }
+    long owned = nodes.stream().mapToLong(ClusterDedupStore::size).sum();
+    assertThat(owned).isEqualTo(transactions);
+  }
+
+  @Test
+  void neverRecordsAgainWhileOwnerIsCutOff() {
+    start(0);
+    for (int i = 0; i < 3000; i++) {
+      assertThat(deliver(nodes.get(i % 3), "tx-" + i).join()).isEqualTo(Status.RECORDED);
+    }
+    transport.partitioned.add(NAMES.get(2));
+    Map<Object, Integer> outcomes = new HashMap<>();
+    for (int i = 0; i < 3000; i++) {
+      outcomes.merge(deliver(nodes.get((i + 1) % 3), "tx-" + i).join(), 1, Integer::sum);
+    }
+    assertThat(outcomes).doesNotContainKey(Status.RECORDED).containsKey(Status.UNAVAILABLE);
+    // The ids the cut off node owns can still be checked by itself.
+    assertThat(deliver(nodes.get(2), ownedBy(2, 0)).join()).isEqualTo(CAUGHT_BY_CHECK);
+  }
+
+  @Test
+  void answersRetriesOnSameNodeFromNearCache() {
+    start(1024);
+    String transactionId = ownedBy(1, 0);
+    assertThat(deliver(nodes.get(0), transactionId).join()).isEqualTo(Status.RECORDED);
+    transport.partitioned.add(NAMES.get(1));
+    assertThat(deliver(nodes.get(0), transactionId).join()).isEqualTo(CAUGHT_BY_CHECK);
+    assertThat(lookups(0, "near_cache")).isEqualTo(1);
+    // A release forgets the cached answer as well.
+    transport.partitioned.clear();
+    nodes.get(0).release(transactionId, timestamp);
+    assertThat(nodes.get(0).isDuplicate(transactionId, timestamp)).isFalse();
+  }
+
+  @Test
+  void releasesRecordWhoseAnswerWasLost() {
+    start(0);
+    String transactionId = ownedBy(1, 0);
+    transport.dropReplies.set(1);
+    assertThat(nodes.get(0).record(transactionId, timestamp)).isEqualTo(Status.UNAVAILABLE);
+    assertThat(unanswered(0, "released")).isEqualTo(1);
+    // The retry of the refused callback is rewarded, on whichever node it lands.
+    assertThat(nodes.get(2).isDuplicate(transactionId, timestamp)).isFalse();
+    assertThat(nodes.get(0).record(transactionId, timestamp)).isEqualTo(Status.RECORDED);
+    assertThat(nodes.get(2).record(transactionId, timestamp)).isEqualTo(Status.DUPLICATE);
+  }
+
+  @Test
+  void keepsConcurrentRecordWhenAnswerWasLost() {
+    start(0);
+    String transactionId = ownedBy(1, 0);
+    assertThat(nodes.get(2).record(transactionId, timestamp)).isEqualTo(Status.RECORDED);
+    // The owner answers duplicate, the answer is lost, and the release must not undo node 2.
+    transport.dropReplies.set(1);
+    assertThat(nodes.get(0).record(transactionId, timestamp)).isEqualTo(Status.UNAVAILABLE);
+    assertThat(nodes.get(1).isDuplicate(transactionId, timestamp)).isTrue();
+    assertThat(nodes.get(0).record(transactionId, timestamp)).isEqualTo(Status.DUPLICATE);
+  }
+
+  @Test
+  void countsRecordThatCannotBeReleased() {
+    start(0);
+    String transactionId = ownedBy(1, 0);
+    transport.dropReplies.set(1);
+    transport.cutOffAfterNextRequest.set(true);
+    assertThat(nodes.get(0).record(transactionId, timestamp)).isEqualTo(Status.UNAVAILABLE);
+    assertThat(unanswered(0, "unreleased")).isEqualTo(1);
+    assertThat(unanswered(0, "released")).isZero();
+  }
+
+  /**
+   * Handles a delivery the way the server does, a replay check and then recording, and returns
+   * {@link #CAUGHT_BY_CHECK} or the {@link Status} of recording.
+   */
+  private CompletableFuture<Object> deliver(ClusterDedupStore node, String transactionId) {
+    return node.isDuplicateAsync(transactionId, timestamp)
+        .thenCompose(
+            duplicate ->
+                duplicate
+                    ? CompletableFuture.completedFuture(CAUGHT_BY_CHECK)
+                    : node.recordAsync(transactionId, timestamp).thenApply(status -> status));
+  }
+
+  private void start(int nearCacheSize) {
+    for (String name : NAMES) {
+      SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+      ClusterDedupStore node =
+          new ClusterDedupStore(
+              new LocalDedupStore(60, 48, 100_000, 1_000_000),
+              NAMES,
+              name,
+              VIRTUAL_NODES,
+              transport,
+              256,
+              0,
+              5000,
+              4,
+              nearCacheSize,
+              "test-secret",
+              meterRegistry);
+      transport.nodes.put(name, node);
+      nodes.add(node);
+      meterRegistries.add(meterRegistry);
+    }
+  }
+
+  /** Returns the {@code n}th transaction id, counting from 0, that {@code owner} owns. */
+  private static String ownedBy(int owner, int n) {
+    for (int i = 0; ; i++) {
+      String transactionId = "tx-" + i;
+      if (RING.owner(Fingerprint128.of(transactionId)) == owner && n-- == 0) {
+        return transactionId;
+      }
+    }
+  }
+
+  private double lookups(int node, String source) {
+    return meterRegistries
+        .get(node)
+        .get("ssv.dedup.lookups")
+        .tag("source", source)
+        .counter()
+        .count();
+  }
+
+  private double unanswered(int node, String result) {
+    return meterRegistries
+        .get(node)
+        .get("ssv.dedup.unanswered")
+        .tag("result", result)
+        .counter()
+        .count();
+  }
+
+  /** Serves requests with the stores of the other nodes on a thread pool. */
+  static final class InProcessTransport implements DedupTransport, AutoCloseable {
+    final Map<String, ClusterDedupStore> nodes = new ConcurrentHashMap<>();
+    final Set<String> partitioned = ConcurrentHashMap.newKeySet();
+    /** Requests that are served, but whose response never arrives. */
+    final AtomicInteger dropReplies = new AtomicInteger();
+    /** Cuts off every node once the next request was served. */
+    final AtomicBoolean cutOffAfterNextRequest = new AtomicBoolean();
+    private final ExecutorService network = Executors.newFixedThreadPool(4);
+
+    @Override
+    public CompletableFuture<byte[]> send(String node, byte[] request) {
+      if (partitioned.contains(node)) {
+        return CompletableFuture.failedFuture(new ConnectException(node + " is cut off"));
+      }
+      return CompletableFuture.supplyAsync(
+          () -> {
+            byte[] response = nodes.get(node).serve(request);
+            if (cutOffAfterNextRequest.getAndSet(false)) {
+              partitioned.addAll(nodes.keySet());
+            }
+            if (dropReplies.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+              throw new CompletionException(
+                  new SocketTimeoutException("Response from " + node + " was lost"));
+            }
+            return response;
+          },
+          network);
+    }
+
+    @Override
+    public void close() {
+      network.shutdownNow();
+    }
+  }
+}
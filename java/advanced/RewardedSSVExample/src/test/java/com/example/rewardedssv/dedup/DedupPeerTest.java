@@ -0,0 +1,130 @@
+package com.example.rewardedssv.dedup;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class DedupPeerTest {
+  private final BlockingQueue<Request> requests = new LinkedBlockingQueue<>();
+  private final List<DedupPeer> peers = new ArrayList<>();
+
+  @AfterEach
+  void tearDown() {
+    peers.forEach(DedupPeer::close);
+  }
+
+  @Test
+  void sendsLoneOperationRightAway() throws InterruptedException {
+    DedupPeer peer = peer(256, 1, 5000);
+    CompletableFuture<Integer> response = submit(peer, 1);
+    Request request = next();
+    assertThat(request.operations()).isEqualTo(1);
+    request.response.complete(new byte[] {1});
+    assertThat(response.join()).isEqualTo(1);
+  }
+
+  @Test
+  void batchesOperationsWhileRequestsAreOutstanding() throws InterruptedException {
+    DedupPeer peer = peer(4, 1, 5000);
+    CompletableFuture<Integer> first = submit(peer, 0);
+    Request outstanding = next();
+    List<CompletableFuture<Integer>> queued = new ArrayList<>();
+    for (int i = 1; i <= 6; i++) {
+      queued.add(submit(peer, i));
+    }
+    assertThat(requests.poll(100, TimeUnit.MILLISECONDS)).isNull();
+
+    outstanding.response.complete(new byte[] {0});
+    assertThat(first.join()).isZero();
+    // The queued operations leave together, up to the batch size.
+    Request batch = next();
+    assertThat(batch.operations()).isEqualTo(4);
+    batch.response.complete(new byte[] {1, 2, 3, 4});
+    Request rest = next();
+    assertThat(rest.operations()).isEqualTo(2);
+    rest.response.complete(new byte[] {5, 6});
+    for (int i = 0; i < queued.size(); i++) {
+      assertThat(queued.get(i).join()).isEqualTo(i + 1);
+    }
+  }
+
+  @Test
+  void failsOperationsOfUnansweredRequest() throws InterruptedException {
+    DedupPeer peer = peer(256, 1, 50);
+    CompletableFuture<Integer> response = submit(peer, 0);
+    next();
+    assertThatThrownBy(response::join).hasCauseInstanceOf(TimeoutException.class);
+  }
+
+  @Test
+  void failsOperationsOfResponseWithWrongLength() throws InterruptedException {
+    DedupPeer peer = peer(256, 1, 5000);
+    CompletableFuture<Integer> response = submit(peer, 0);
+    next().response.complete(new byte[2]);
+    assertThatThrownBy(response::join).hasCauseInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  void refusesOperationsOnceClosed() {
+    DedupPeer peer = peer(256, 1, 5000);
+    peer.close();
+    assertThatThrownBy(submit(peer, 0)::join)
+        .isInstanceOf(CompletionException.class)
+        .hasCauseInstanceOf(RejectedExecutionException.class);
+  }
+
+  private DedupPeer peer(int batchSize, int maxInFlight, long timeoutMillis) {
+    DedupTransport transport =
+        (node, request) -> {
+          Request sent = new Request(request);
+          requests.add(sent);
+          return sent.response;
+        };
+    DedupPeer peer =
+        new DedupPeer(
+            "node-1",
+            transport,
+            batchSize,
+            0,
+            timeoutMillis,
+            maxInFlight,
+            new SimpleMeterRegistry());
+    peers.add(peer);
+    return peer;
+  }
+
+  private static CompletableFuture<Integer> submit(DedupPeer peer, int i) {
+    return peer.submit(DedupProtocol.CHECK, Fingerprint128.of("tx-" + i), 0, 0);
+  }
+
+  private Request next() throws InterruptedException {
+    Request request = requests.poll(5, TimeUnit.SECONDS);
+    assertThat(request).isNotNull();
+    return request;
+  }
+
+  private static final class Request {
+    final byte[] body;
+    final CompletableFuture<byte[]> response = new CompletableFuture<>();
+
+    Request(byte[] body) {
+      this.body = body;
+    }
+
+    int operations() {
+      return body.length / DedupProtocol.OPERATION_BYTES;
+    }
+  }
+}
@@ -0,0 +1,83 @@
+package com.example.rewardedssv.dedup;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.example.rewardedssv.dedup.DedupProtocol.Operation;
+import com.example.rewardedssv.dedup.TransactionDedupStore.Status;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class DedupProtocolTest {
+  private final long timestamp = System.currentTimeMillis();
+  private final LocalDedupStore store = new LocalDedupStore(60, 48, 1000, 1000);
+
+  @Test
+  void servesEncodedOperationsInOrder() {
+    Fingerprint128 first = Fingerprint128.of("tx-1");
+    Fingerprint128 second = Fingerprint128.of("tx-2");
+    byte[] request =
+        DedupProtocol.encode(
+            List.of(
+                operation(DedupProtocol.CHECK, first, 0),
+                operation(DedupProtocol.RECORD, first, 7),
+                operation(DedupProtocol.CHECK, first, 0),
+                operation(DedupProtocol.RECORD, first, 8),
+                operation(DedupProtocol.RECORD, second, 9),
+                operation(DedupProtocol.RELEASE, second, 9)));
+    assertThat(request).hasSize(6 * DedupProtocol.OPERATION_BYTES);
+    assertThat(DedupProtocol.serve(store, request))
+        .containsExactly(
+            0,
+            Status.RECORDED.ordinal(),
+            1,
+            Status.DUPLICATE.ordinal(),
+            Status.RECORDED.ordinal(),
+            0);
+    assertThat(store.isDuplicate(first, timestamp)).isTrue();
+    assertThat(store.isDuplicate(second, timestamp)).isFalse();
+  }
+
+  @Test
+  void releasesOnlyRecordWithSameToken() {
+    Fingerprint128 fingerprint = Fingerprint128.of("tx-1");
+    serve(operation(DedupProtocol.RECORD, fingerprint, 7));
+    serve(operation(DedupProtocol.RELEASE, fingerprint, 8));
+    assertThat(store.isDuplicate(fingerprint, timestamp)).isTrue();
+    serve(operation(DedupProtocol.RELEASE, fingerprint, 0));
+    assertThat(store.isDuplicate(fingerprint, timestamp)).isFalse();
+  }
+
+  @Test
+  void refusesUnknownOperationBeforeApplyingAny() {
+    Fingerprint128 fingerprint = Fingerprint128.of("tx-1");
+    byte[] request =
+        DedupProtocol.encode(
+            List.of(
+                operation(DedupProtocol.RECORD, fingerprint, 7),
+                operation((byte) 9, fingerprint, 0)));
+    assertThatThrownBy(() -> DedupProtocol.serve(store, request))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("9");
+    assertThat(store.isDuplicate(fingerprint, timestamp)).isFalse();
+  }
+
+  @Test
+  void refusesTruncatedRequest() {
+    Fingerprint128 fingerprint = Fingerprint128.of("tx-1");
+    byte[] request = DedupProtocol.encode(List.of(operation(DedupProtocol.RECORD, fingerprint, 7)));
+    byte[] truncated = Arrays.copyOf(request, request.length - 1);
+    assertThatThrownBy(() -> DedupProtocol.serve(store, truncated))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThat(store.isDuplicate(fingerprint, timestamp)).isFalse();
+  }
+
+  private byte[] serve(Operation operation) {
+    return DedupProtocol.serve(store, DedupProtocol.encode(List.of(operation)));
+  }
+
+  private Operation operation(byte code, Fingerprint128 fingerprint, int token) {
+    return new Operation(code, fingerprint, timestamp, token);
+  }
+}
@@ -0,0 +1,131 @@
+package com.example.rewardedssv.dedup;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class FingerprintSetTest {
+
+  /**
+   * Returns a fingerprint in the first stripe whose home slot is {@code home} in any table of at
+   * least {@code home + 1} slots, so that tests control the probe chains.
+   */
+  private static Fingerprint128 fingerprint(int home, int tag) {
+    return new Fingerprint128(home, tag);
+  }
+
+  @Test
+  void addsContainsAndRemoves() {
+    FingerprintSet set = new FingerprintSet();
+    Fingerprint128 fingerprint = Fingerprint128.of("tx-1");
+    assertThat(set.contains(fingerprint)).isFalse();
+    assertThat(set.add(fingerprint)).isTrue();
+    assertThat(set.add(Fingerprint128.of("tx-1"))).isFalse();
+    assertThat(set.contains(Fingerprint128.of("tx-1"))).isTrue();
+    assertThat(set.size()).isEqualTo(1);
+    assertThat(set.remove(fingerprint)).isTrue();
+    assertThat(set.remove(fingerprint)).isFalse();
+    assertThat(set.contains(fingerprint)).isFalse();
+    assertThat(set.size()).isEqualTo(0);
+  }
+
+  @Test
+  void keepsZeroFingerprintApartFromFreeSlots() {
+    FingerprintSet set = new FingerprintSet();
+    Fingerprint128 zero = new Fingerprint128(0, 0);
+    assertThat(set.contains(zero)).isFalse();
+    assertThat(set.add(zero)).isTrue();
+    assertThat(set.contains(zero)).isTrue();
+    assertThat(set.add(zero)).isFalse();
+    assertThat(set.remove(zero)).isTrue();
+    assertThat(set.contains(zero)).isFalse();
+  }
+
+  @Test
+  void removalShiftsBackEntriesOfTheSameChain() {
+    FingerprintSet set = new FingerprintSet();
+    // Home slots 3, 3, 4, 3 and 5 of a 16 slot table fill slots 3 to 7 as one chain.
+    List<Fingerprint128> chain =
+        List.of(
+            fingerprint(3, 1),
+            fingerprint(3, 2),
+            fingerprint(4, 3),
+            fingerprint(3, 4),
+            fingerprint(5, 5));
+    chain.forEach(set::add);
+    assertThat(set.remove(chain.get(1))).isTrue();
+    for (Fingerprint128 fingerprint : List.of(chain.get(0), chain.get(2), chain.get(3))) {
+      assertThat(set.contains(fingerprint)).isTrue();
+    }
+    assertThat(set.contains(chain.get(4))).isTrue();
+    assertThat(set.remove(chain.get(0))).isTrue();
+    assertThat(set.remove(chain.get(3))).isTrue();
+    assertThat(set.contains(chain.get(2))).isTrue();
+    assertThat(set.contains(chain.get(4))).isTrue();
+    assertThat(set.size()).isEqualTo(2);
+  }
+
+  @Test
+  void removalShiftsBackAcrossTheEndOfTheTable() {
+    FingerprintSet set = new FingerprintSet();
+    // Home slots 14, 15, 14 and 15 wrap around to slots 0 and 1.
+    List<Fingerprint128> chain =
+        List.of(fingerprint(14, 1), fingerprint(15, 2), fingerprint(14, 3), fingerprint(15, 4));
+    chain.forEach(set::add);
+    assertThat(set.remove(chain.get(0))).isTrue();
+    assertThat(set.contains(chain.get(1))).isTrue();
+    assertThat(set.contains(chain.get(2))).isTrue();
+    assertThat(set.contains(chain.get(3))).isTrue();
+    assertThat(set.remove(chain.get(1))).isTrue();
+    assertThat(set.contains(chain.get(2))).isTrue();
+    assertThat(set.contains(chain.get(3))).isTrue();
+    assertThat(set.size()).isEqualTo(2);
+  }
+
+  @Test
+  void removesOnlyWithMatchingTokenAcrossShifts() {
+    FingerprintSet set = new FingerprintSet();
+    set.add(fingerprint(3, 1), 11);
+    set.add(fingerprint(3, 2), 22);
+    set.add(fingerprint(3, 4), 44);
+    assertThat(set.remove(fingerprint(3, 1), 22)).isFalse();
+    // Without a token any entry goes, and the others shift back with their tokens.
+    assertThat(set.remove(fingerprint(3, 1))).isTrue();
+    assertThat(set.remove(fingerprint(3, 2), 44)).isFalse();
+    assertThat(set.remove(fingerprint(3, 2), 22)).isTrue();
+    assertThat(set.remove(fingerprint(3, 4), 44)).isTrue();
+    assertThat(set.size()).isEqualTo(0);
+  }
+
+  @Test
+  void matchesHashSetUnderRandomOperations() {
+    FingerprintSet set = new FingerprintSet();
+    Set<List<Long>> model = new HashSet<>();
+    Random random = new Random(42);
+    for (int i = 0; i < 200_000; i++) {
+      // Few distinct homes and stripes, so chains collide, grow, wrap and get resized.
+      long high = random.nextInt(64);
+      long low = (long) random.nextInt(2) << 58 | random.nextInt(8);
+      Fingerprint128 fingerprint = new Fingerprint128(high, low);
+      List<Long> key = List.of(high, low);
+      switch (random.nextInt(3)) {
+        case 0:
+          assertThat(set.add(fingerprint)).isEqualTo(model.add(key));
+          break;
+        case 1:
+          assertThat(set.remove(fingerprint)).isEqualTo(model.remove(key));
+          break;
+        default:
+          assertThat(set.contains(fingerprint)).isEqualTo(model.contains(key));
+      }
+      assertThat(set.size()).isEqualTo(model.size());
+    }
+    for (List<Long> key : model) {
+      assertThat(set.contains(new Fingerprint128(key.get(0), key.get(1)))).isTrue();
+    }
+  }
+}
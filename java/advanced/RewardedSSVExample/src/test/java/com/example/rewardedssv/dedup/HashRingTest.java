@@ -0,0 +1,78 @@
+package com.example.rewardedssv.dedup;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class HashRingTest {
+  private static final List<String> NODES =
+      List.of("http://a:8080", "http://b:8080", "http://c:8080");
+  private static final int KEYS = 20_000;
+
+  @Test
+  void everyNodeComputesTheSameOwners() {
+    HashRing ring = new HashRing(NODES, 128);
+    HashRing other = new HashRing(List.copyOf(NODES), 128);
+    List<String> reordered = List.of(NODES.get(2), NODES.get(0), NODES.get(1));
+    HashRing shuffled = new HashRing(reordered, 128);
+    for (int i = 0; i < KEYS; i++) {
+      Fingerprint128 fingerprint = Fingerprint128.of("tx-" + i);
+      assertThat(other.owner(fingerprint)).isEqualTo(ring.owner(fingerprint));
+      // The owner follows the node, not its position in the list.
+      assertThat(reordered.get(shuffled.owner(fingerprint)))
+          .isEqualTo(NODES.get(ring.owner(fingerprint)));
+    }
+  }
+
+  @Test
+  void spreadsIdsOverNodes() {
+    HashRing ring = new HashRing(NODES, 128);
+    int[] owned = new int[NODES.size()];
+    for (int i = 0; i < KEYS; i++) {
+      owned[ring.owner(Fingerprint128.of("tx-" + i))]++;
+    }
+    for (int count : owned) {
+      assertThat(count).isBetween(KEYS / 5, KEYS / 2);
+    }
+  }
+
+  @Test
+  void addingNodeOnlyMovesIdsToIt() {
+    HashRing ring = new HashRing(NODES, 128);
+    List<String> grown = List.of(NODES.get(0), NODES.get(1), NODES.get(2), "http://d:8080");
+    HashRing grownRing = new HashRing(grown, 128);
+    int moved = 0;
+    for (int i = 0; i < KEYS; i++) {
+      Fingerprint128 fingerprint = Fingerprint128.of("tx-" + i);
+      int before = ring.owner(fingerprint);
+      int after = grownRing.owner(fingerprint);
+      if (after != before) {
+        assertThat(after).isEqualTo(3);
+        moved++;
+      }
+    }
+    assertThat(moved).isBetween(KEYS / 8, KEYS * 3 / 8);
+  }
+
+  @Test
+  void removingNodeOnlyMovesItsIds() {
+    HashRing ring = new HashRing(NODES, 128);
+    HashRing shrunk = new HashRing(NODES.subList(0, 2), 128);
+    for (int i = 0; i < KEYS; i++) {
+      Fingerprint128 fingerprint = Fingerprint128.of("tx-" + i);
+      int before = ring.owner(fingerprint);
+      if (before != 2) {
+        assertThat(shrunk.owner(fingerprint)).isEqualTo(before);
+      }
+    }
+  }
+
+  @Test
+  void rejectsEmptyRing() {
+    assertThatThrownBy(() -> new HashRing(List.of(), 128))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new HashRing(NODES, 0)).isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -0,0 +1,131 @@
+package com.example.rewardedssv.dedup;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.rewardedssv.dedup.TransactionDedupStore.Status;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class LocalDedupStoreTest {
+  private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+  /** Somewhere inside the window that starts at hour 400000. */
+  private static final long START = 400_000 * HOUR + 17 * 60_000;
+
+  private final MutableClock clock = new MutableClock(START);
+  /** Hourly windows kept for two hours, so the ring has three slots. */
+  private final LocalDedupStore store = new LocalDedupStore(60, 2, 1000, 3, clock);
+
+  @Test
+  void recordsEachTransactionOnce() {
+    assertThat(store.isDuplicate("tx-1", START)).isFalse();
+    assertThat(store.record("tx-1", START)).isEqualTo(Status.RECORDED);
+    assertThat(store.isDuplicate("tx-1", START)).isTrue();
+    assertThat(store.record("tx-1", START)).isEqualTo(Status.DUPLICATE);
+    assertThat(store.size()).isEqualTo(1);
+  }
+
+  @Test
+  void keepsWindowsApart() {
+    assertThat(store.record("tx-1", START)).isEqualTo(Status.RECORDED);
+    // The same id with a timestamp of another window is a different callback.
+    assertThat(store.isDuplicate("tx-1", START - HOUR)).isFalse();
+    assertThat(store.record("tx-1", START - HOUR)).isEqualTo(Status.RECORDED);
+    assertThat(store.size()).isEqualTo(2);
+  }
+
+  @Test
+  void acceptsTimestampsFromWindowStartToOneWindowAhead() {
+    long windowStart = 399_999 * HOUR;
+    assertThat(store.getWindowStartMillis()).isEqualTo(windowStart);
+    assertThat(store.isInWindow(windowStart)).isTrue();
+    assertThat(store.isInWindow(windowStart - 1)).isFalse();
+    assertThat(store.isInWindow(400_002 * HOUR - 1)).isTrue();
+    assertThat(store.isInWindow(400_002 * HOUR)).isFalse();
+    assertThat(store.record("tx-1", windowStart)).isEqualTo(Status.RECORDED);
+    assertThat(store.record("tx-2", windowStart - 1)).isEqualTo(Status.OUT_OF_WINDOW);
+    assertThat(store.record("tx-3", 400_002 * HOUR - 1)).isEqualTo(Status.RECORDED);
+    assertThat(store.record("tx-4", 400_002 * HOUR)).isEqualTo(Status.OUT_OF_WINDOW);
+  }
+
+  @Test
+  void expiresWindowOnceTheClockLeavesIt() {
+    long oldest = 399_999 * HOUR;
+    assertThat(store.record("tx-1", oldest)).isEqualTo(Status.RECORDED);
+    clock.set(400_001 * HOUR - 1);
+    assertThat(store.isDuplicate("tx-1", oldest)).isTrue();
+    assertThat(store.size()).isEqualTo(1);
+    clock.set(400_001 * HOUR);
+    assertThat(store.isInWindow(oldest)).isFalse();
+    assertThat(store.isDuplicate("tx-1", oldest)).isFalse();
+    assertThat(store.record("tx-1", oldest)).isEqualTo(Status.OUT_OF_WINDOW);
+    assertThat(store.size()).isEqualTo(0);
+  }
+
+  @Test
+  void reusesRingSlotOfExpiredWindow() {
+    // Hour 400000 and hour 400003 share a slot of the three slot ring.
+    assertThat(store.record("tx-1", START)).isEqualTo(Status.RECORDED);
+    assertThat(store.record("tx-2", START)).isEqualTo(Status.RECORDED);
+    clock.set(START + 3 * HOUR);
+    assertThat(store.record("tx-1", START + 3 * HOUR)).isEqualTo(Status.RECORDED);
+    assertThat(store.isDuplicate("tx-2", START + 3 * HOUR)).isFalse();
+    assertThat(store.isDuplicate("tx-1", START)).isFalse();
+    assertThat(store.size()).isEqualTo(1);
+    // The slot now holds a newer window, an older timestamp cannot take it back.
+    assertThat(store.record("tx-3", START)).isEqualTo(Status.OUT_OF_WINDOW);
+  }
+
+  @Test
+  void refusesNewIdsOnceWindowIsFull() {
+    for (int i = 0; i < 3; i++) {
+      assertThat(store.record("tx-" + i, START)).isEqualTo(Status.RECORDED);
+    }
+    assertThat(store.record("tx-3", START)).isEqualTo(Status.FULL);
+    assertThat(store.record("tx-0", START)).isEqualTo(Status.DUPLICATE);
+    assertThat(store.record("tx-3", START + HOUR)).isEqualTo(Status.RECORDED);
+  }
+
+  @Test
+  void releasedTransactionCanBeRecordedAgain() {
+    assertThat(store.record("tx-1", START)).isEqualTo(Status.RECORDED);
+    store.release("tx-1", START);
+    assertThat(store.isDuplicate("tx-1", START)).isFalse();
+    assertThat(store.record("tx-1", START)).isEqualTo(Status.RECORDED);
+  }
+
+  private static final class MutableClock extends Clock {
+    private long millis;
+
+    MutableClock(long millis) {
+      this.millis = millis;
+    }
+
+    void set(long millis) {
+      this.millis = millis;
+    }
+
+    @Override
+    public long millis() {
+      return millis;
+    }
+
+    @Override
+    public Instant instant() {
+      return Instant.ofEpochMilli(millis);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+  }
+}
@@ -0,0 +1,34 @@
+package com.example.rewardedssv.dedup;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class NearCacheTest {
+
+  @Test
+  void remembersAddedFingerprints() {
+    NearCache cache = new NearCache(16);
+    Fingerprint128 fingerprint = Fingerprint128.of("tx-1");
+    assertThat(cache.contains(fingerprint)).isFalse();
+    cache.add(fingerprint);
+    assertThat(cache.contains(Fingerprint128.of("tx-1"))).isTrue();
+    cache.remove(Fingerprint128.of("tx-1"));
+    assertThat(cache.contains(fingerprint)).isFalse();
+  }
+
+  @Test
+  void newerFingerprintReplacesOlderInSameSlot() {
+    // Capacity 10 is rounded up to 16 slots, selected by the low bits.
+    NearCache cache = new NearCache(10);
+    Fingerprint128 older = new Fingerprint128(1, 3);
+    Fingerprint128 newer = new Fingerprint128(2, 3 + 16);
+    cache.add(older);
+    cache.add(newer);
+    assertThat(cache.contains(older)).isFalse();
+    assertThat(cache.contains(newer)).isTrue();
+    // Removing a fingerprint that was already replaced leaves its slot alone.
+    cache.remove(older);
+    assertThat(cache.contains(newer)).isTrue();
+  }
+}
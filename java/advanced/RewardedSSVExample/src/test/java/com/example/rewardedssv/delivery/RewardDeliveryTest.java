@@ -0,0 +1,377 @@
+package com.example.rewardedssv.delivery;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.example.rewardedssv.ledger.LedgerListener;
+import com.example.rewardedssv.ledger.LedgerStore;
+import com.example.rewardedssv.ledger.VerifiedReward;
+import com.example.rewardedssv.tenant.TenantRegistry;
+import com.example.rewardedssv.tenant.TenantTable;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RewardDeliveryTest {
+  @TempDir Path directory;
+
+  private final MemoryLedgerStore store = new MemoryLedgerStore();
+  private final TenantRegistry tenants = mock(TenantRegistry.class);
+  private final List<RewardDelivery> deliveries = new ArrayList<>();
+  private WebhookServer webhook;
+  private SimpleMeterRegistry meterRegistry;
+
+  private int batchSize = 3;
+  private int maxInFlight = 4;
+  private int maxQueuedBatches = 64;
+  private int maxAttempts = 8;
+  private long backoffMaxMillis = 50;
+
+  @BeforeEach
+  void setUp() throws IOException, JSONException {
+    webhook = new WebhookServer();
+    when(tenants.getTable()).thenReturn(TenantTable.parse("{\"tenants\": []}"));
+  }
+
+  @AfterEach
+  void tearDown() throws InterruptedException {
+    for (RewardDelivery delivery : deliveries) {
+      delivery.stop();
+    }
+    webhook.close();
+  }
+
+  @Test
+  void redeliversAfterServerErrorAndThrottling() throws IOException, InterruptedException {
+    webhook.statuses.addAll(List.of(500, 429));
+    RewardDelivery delivery = start();
+    commit(delivery, rewards("1", "2", "3"));
+    await(() -> batches("delivered") == 1);
+
+    assertThat(webhook.requests).hasSize(3);
+    for (Request request : webhook.requests) {
+      assertThat(request.path).isEqualTo("/rewards");
+      assertThat(request.idempotencyKey).isEqualTo("0-3");
+      assertThat(request.sequences).containsExactly(0L, 1L, 2L);
+    }
+    assertThat(batches("retried")).isEqualTo(2);
+    delivery.stop();
+    assertThat(cursor()).isEqualTo(3);
+  }
+
+  @Test
+  void spillsBatchAfterLastAttemptAndPostsItAfterRestart()
+      throws IOException, InterruptedException {
+    webhook.statuses.addAll(List.of(500, 500));
+    maxAttempts = 2;
+    // Keeps the spilled batch on disk until the restart.
+    backoffMaxMillis = 60_000;
+    RewardDelivery delivery = start();
+    commit(delivery, rewards("1", "2", "3"));
+    await(() -> batches("spilled") == 1);
+
+    assertThat(webhook.requests).hasSize(2);
+    assertThat(spilledFiles()).containsExactly("00000000000000000000-3.json");
+    delivery.stop();
+    // A spilled batch is not replayed from the ledger.
+    assertThat(cursor()).isEqualTo(3);
+
+    backoffMaxMillis = 50;
+    start();
+    await(() -> batches("delivered") == 1);
+    assertThat(webhook.requests).hasSize(3);
+    assertThat(webhook.requests.get(2).sequences).containsExactly(0L, 1L, 2L);
+    assertThat(spilledFiles()).isEmpty();
+  }
+
+  @Test
+  void keepsRefusedBatchInFailedDirectory() throws IOException, InterruptedException {
+    webhook.statuses.add(400);
+    RewardDelivery delivery = start();
+    commit(delivery, rewards("1", "2", "3"));
+    await(() -> batches("failed") == 1);
+
+    assertThat(webhook.requests).hasSize(1);
+    assertThat(directory.resolve("failed/00000000000000000000-3.json")).exists();
+    delivery.stop();
+    assertThat(cursor()).isEqualTo(3);
+  }
+
+  @Test
+  void replaysRewardsAfterPersistedCursorOnRestart() throws IOException, InterruptedException {
+    // Without a cursor delivery starts with the next new reward.
+    store.append(rewards("1", "2"));
+    RewardDelivery delivery = start();
+    commit(delivery, rewards("1", "2", "3"));
+    await(() -> batches("delivered") == 1);
+    delivery.stop();
+    assertThat(cursor()).isEqualTo(5);
+
+    store.append(rewards("4", "5"));
+    start();
+    await(() -> batches("delivered") == 1);
+    assertThat(webhook.requests.get(0).sequences).containsExactly(2L, 3L, 4L);
+    assertThat(webhook.requests.get(1).sequences).containsExactly(5L, 6L);
+  }
+
+  @Test
+  void persistsStartingCursorBeforeAnythingIsDelivered() throws IOException, InterruptedException {
+    webhook.hold = new CountDownLatch(1);
+    store.append(rewards("1", "2"));
+    RewardDelivery delivery = start();
+    commit(delivery, rewards("1", "2", "3"));
+    await(() -> webhook.arrived.get() == 1);
+    delivery.stop();
+    webhook.hold.countDown();
+    // The rewards in flight are replayed on the next start.
+    assertThat(cursor()).isEqualTo(2);
+  }
+
+  @Test
+  void postsRewardsOfTenantWithWebhookSeparately()
+      throws IOException, InterruptedException, JSONException {
+    when(tenants.getTable())
+        .thenReturn(
+            TenantTable.parse(
+                "{\"tenants\": ["
+                    + "{\"name\": \"puzzle\", \"ad_units\": [11],"
+                    + " \"webhook\": \"http://127.0.0.1:"
+                    + webhook.port()
+                    + "/puzzle\"},"
+                    + "{\"name\": \"racing\", \"ad_units\": [21]}]}"));
+    batchSize = 4;
+    RewardDelivery delivery = start();
+    commit(delivery, rewards("11", "21", "11", "99"));
+    await(() -> batches("delivered") == 2);
+
+    Request puzzle = webhook.request("/puzzle");
+    assertThat(puzzle.idempotencyKey).isEqualTo("0-2");
+    assertThat(puzzle.sequences).containsExactly(0L, 2L);
+    Request others = webhook.request("/rewards");
+    assertThat(others.idempotencyKey).isEqualTo("1-2");
+    assertThat(others.sequences).containsExactly(1L, 3L);
+    delivery.stop();
+    assertThat(cursor()).isEqualTo(4);
+  }
+
+  @Test
+  void spillsBatchesWhileQueueIsFull() throws IOException, InterruptedException {
+    webhook.hold = new CountDownLatch(1);
+    batchSize = 1;
+    maxInFlight = 1;
+    maxQueuedBatches = 1;
+    RewardDelivery delivery = start();
+    for (int i = 0; i < 5; i++) {
+      commit(delivery, rewards("1"));
+    }
+    await(() -> batches("spilled") >= 1);
+    assertThat(spilledFiles()).isNotEmpty();
+
+    webhook.hold.countDown();
+    await(() -> batches("delivered") == 5);
+    assertThat(webhook.requests)
+        .extracting(request -> request.idempotencyKey)
+        .containsExactlyInAnyOrder("0-1", "1-1", "2-1", "3-1", "4-1");
+    assertThat(spilledFiles()).isEmpty();
+  }
+
+  private RewardDelivery start() throws IOException {
+    meterRegistry = new SimpleMeterRegistry();
+    RewardDelivery delivery =
+        new RewardDelivery(
+            store,
+            tenants,
+            meterRegistry,
+            "http://127.0.0.1:" + webhook.port() + "/rewards",
+            directory.toString(),
+            batchSize,
+            50,
+            5000,
+            maxInFlight,
+            maxQueuedBatches,
+            maxAttempts,
+            1,
+            backoffMaxMillis);
+    deliveries.add(delivery);
+    delivery.start();
+    return delivery;
+  }
+
+  /** Appends {@code rewards} to the ledger and passes them on as the ledger writer does. */
+  private void commit(RewardDelivery delivery, List<VerifiedReward> rewards) {
+    delivery.onCommitted(store.append(rewards), rewards);
+  }
+
+  private double batches(String outcome) {
+    return meterRegistry.get("ssv.delivery.batches").tag("outcome", outcome).counter().count();
+  }
+
+  private long cursor() throws IOException {
+    return Long.parseLong(Files.readString(directory.resolve("cursor")).trim());
+  }
+
+  private List<String> spilledFiles() throws IOException {
+    try (Stream<Path> files = Files.list(directory.resolve("spill"))) {
+      return files
+          .map(path -> path.getFileName().toString())
+          .filter(name -> name.endsWith(".json"))
+          .collect(Collectors.toList());
+    }
+  }
+
+  /** Returns one reward per ad unit, with a transaction id from the running reward count. */
+  private List<VerifiedReward> rewards(String... adUnits) {
+    List<VerifiedReward> rewards = new ArrayList<>();
+    for (String adUnit : adUnits) {
+      String transactionId = "tx-" + (store.getNextSequence() + rewards.size());
+      rewards.add(
+          new VerifiedReward(
+              transactionId, "user-1", "5450213213286189855", adUnit, "coins", 1, null, 1, 1));
+    }
+    return rewards;
+  }
+
+  private static void await(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (!condition.getAsBoolean()) {
+      assertThat(System.nanoTime()).isLessThan(deadline);
+      Thread.sleep(5);
+    }
+  }
+
+  /** A request the webhook received. */
+  private static final class Request {
+    final String path;
+    final String idempotencyKey;
+    final List<Long> sequences;
+
+    Request(String path, String idempotencyKey, List<Long> sequences) {
+      this.path = path;
+      this.idempotencyKey = idempotencyKey;
+      this.sequences = sequences;
+    }
+  }
+
+  /** Answers with the queued {@link #statuses}, and {@code 200} once they are used up. */
+  private static final class WebhookServer implements AutoCloseable {
+    final Queue<Integer> statuses = new ConcurrentLinkedQueue<>();
+    final List<Request> requests = new CopyOnWriteArrayList<>();
+    /** Requests received so far, including the ones still being held. */
+    final AtomicInteger arrived = new AtomicInteger();
+    /** Holds every answer until counted down, if set. */
+    volatile CountDownLatch hold;
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    WebhookServer() throws IOException {
+      server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+      server.createContext("/", this::handle);
+      server.setExecutor(executor);
+      server.start();
+    }
+
+    int port() {
+      return server.getAddress().getPort();
+    }
+
+    Request request(String path) {
+      return requests.stream().filter(request -> request.path.equals(path)).findFirst().get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+      arrived.incrementAndGet();
+      try (exchange) {
+        List<Long> sequences = new ArrayList<>();
+        JSONArray rewards =
+            new JSONObject(new String(exchange.getRequestBody().readAllBytes(), UTF_8))
+                .getJSONArray("rewards");
+        for (int i = 0; i < rewards.length(); i++) {
+          sequences.add(rewards.getJSONObject(i).getLong("seq"));
+        }
+        CountDownLatch latch = hold;
+        if (latch != null) {
+          latch.await();
+        }
+        Integer status = statuses.poll();
+        requests.add(
+            new Request(
+                exchange.getRequestURI().getPath(),
+                exchange.getRequestHeaders().getFirst("Idempotency-Key"),
+                sequences));
+        exchange.sendResponseHeaders(status != null ? status : 200, -1);
+      } catch (JSONException | InterruptedException exception) {
+        throw new IOException(exception);
+      }
+    }
+
+    @Override
+    public void close() {
+      server.stop(0);
+      executor.shutdownNow();
+    }
+  }
+
+  private static final class MemoryLedgerStore implements LedgerStore {
+    final List<VerifiedReward> rewards = new ArrayList<>();
+
+    @Override
+    public synchronized long append(List<VerifiedReward> batch) {
+      long first = rewards.size();
+      rewards.addAll(batch);
+      return first;
+    }
+
+    @Override
+    public synchronized void replay(long fromSequence, LedgerListener listener) {
+      if (fromSequence < rewards.size()) {
+        listener.onCommitted(
+            fromSequence, new ArrayList<>(rewards.subList((int) fromSequence, rewards.size())));
+      }
+    }
+
+    @Override
+    public long firstSequenceSince(long timestampMillis) {
+      return 0;
+    }
+
+    @Override
+    public synchronized long getNextSequence() {
+      return rewards.size();
+    }
+
+    @Override
+    public String describe() {
+      return "memory";
+    }
+
+    @Override
+    public void close() {}
+  }
+}
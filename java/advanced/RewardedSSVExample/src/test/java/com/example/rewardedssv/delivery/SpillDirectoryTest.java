@@ -0,0 +1,81 @@
+package com.example.rewardedssv.delivery;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SpillDirectoryTest {
+  @TempDir Path directory;
+
+  @Test
+  void takesOldestBatchFirst() throws IOException {
+    SpillDirectory spill = new SpillDirectory(directory.resolve("spill"));
+    spill.write(batch(500, 3, null));
+    spill.write(batch(20, 2, "puzzle"));
+    assertThat(spill.size()).isEqualTo(2);
+
+    DeliveryBatch oldest = spill.take();
+    assertThat(oldest.getFirstSequence()).isEqualTo(20);
+    assertThat(oldest.size()).isEqualTo(2);
+    assertThat(oldest.getTenant()).isEqualTo("puzzle");
+    assertThat(new String(oldest.getBody(), UTF_8)).isEqualTo("{\"first\":20}");
+    assertThat(oldest.getSpillFile()).hasFileName("00000000000000000020-2.puzzle.json");
+    DeliveryBatch next = spill.take();
+    assertThat(next.getFirstSequence()).isEqualTo(500);
+    assertThat(next.getTenant()).isNull();
+    assertThat(spill.take()).isNull();
+    assertThat(spill.size()).isZero();
+  }
+
+  @Test
+  void listsSpilledBatchesAgainOnRestart() throws IOException {
+    Path path = directory.resolve("spill");
+    new SpillDirectory(path).write(batch(7, 1, null));
+    Files.write(path.resolve("00000000000000000009-1.json123.tmp"), new byte[] {'{'});
+
+    SpillDirectory restarted = new SpillDirectory(path);
+    assertThat(restarted.size()).isEqualTo(1);
+    assertThat(restarted.take().getFirstSequence()).isEqualTo(7);
+  }
+
+  @Test
+  void deletesDeliveredBatchAndPutsBackRetriedOne() throws IOException {
+    SpillDirectory spill = new SpillDirectory(directory.resolve("spill"));
+    assertThat(spill.putBack(batch(1, 1, null))).isFalse();
+    spill.write(batch(1, 1, null));
+    spill.write(batch(2, 1, null));
+    DeliveryBatch first = spill.take();
+    DeliveryBatch second = spill.take();
+
+    spill.delivered(first);
+    assertThat(first.getSpillFile()).doesNotExist();
+    assertThat(spill.putBack(second)).isTrue();
+    assertThat(spill.size()).isEqualTo(1);
+    assertThat(spill.take().getSpillFile()).isEqualTo(second.getSpillFile());
+  }
+
+  @Test
+  void keepsRefusedBatchesInFailedDirectory() throws IOException {
+    SpillDirectory spill = new SpillDirectory(directory.resolve("spill"));
+    spill.write(batch(3, 2, null));
+    DeliveryBatch spilled = spill.take();
+    spill.fail(spilled);
+    spill.fail(batch(5, 1, "racing"));
+
+    Path failed = directory.resolve("failed");
+    assertThat(spilled.getSpillFile()).doesNotExist();
+    assertThat(failed.resolve("00000000000000000003-2.json")).hasContent("{\"first\":3}");
+    assertThat(failed.resolve("00000000000000000005-1.racing.json")).hasContent("{\"first\":5}");
+    assertThat(new SpillDirectory(directory.resolve("spill")).size()).isZero();
+  }
+
+  private static DeliveryBatch batch(long firstSequence, int size, String tenant) {
+    byte[] body = ("{\"first\":" + firstSequence + "}").getBytes(UTF_8);
+    return new DeliveryBatch(firstSequence, size, body, null, tenant);
+  }
+}
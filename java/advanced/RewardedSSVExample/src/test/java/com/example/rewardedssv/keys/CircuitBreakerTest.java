@@ -0,0 +1,83 @@
+package com.example.rewardedssv.keys;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class CircuitBreakerTest {
+  private static final long OPEN_MILLIS = 1000;
+
+  private final CircuitBreaker breaker = new CircuitBreaker(3, OPEN_MILLIS);
+
+  @Test
+  void opensAfterConsecutiveFailures() {
+    breaker.onFailure(0);
+    breaker.onFailure(1);
+    assertThat(breaker.allowRequest(2)).isTrue();
+    breaker.onSuccess();
+    breaker.onFailure(3);
+    breaker.onFailure(4);
+    assertThat(breaker.allowRequest(5)).isTrue();
+    breaker.onFailure(10);
+    assertThat(breaker.allowRequest(11)).isFalse();
+    assertThat(breaker.allowRequest(10 + OPEN_MILLIS - 1)).isFalse();
+  }
+
+  @Test
+  void letsASingleTrialThroughWhenHalfOpen() {
+    open(0);
+    assertThat(breaker.allowRequest(OPEN_MILLIS)).isTrue();
+    assertThat(breaker.allowRequest(OPEN_MILLIS)).isFalse();
+    assertThat(breaker.allowRequest(OPEN_MILLIS + 10)).isFalse();
+    breaker.onSuccess();
+    assertThat(breaker.allowRequest(OPEN_MILLIS + 20)).isTrue();
+    assertThat(breaker.allowRequest(OPEN_MILLIS + 20)).isTrue();
+  }
+
+  @Test
+  void reopensAfterFailedTrial() {
+    open(0);
+    assertThat(breaker.allowRequest(OPEN_MILLIS)).isTrue();
+    breaker.onFailure(OPEN_MILLIS + 5);
+    assertThat(breaker.allowRequest(2 * OPEN_MILLIS)).isFalse();
+    assertThat(breaker.allowRequest(2 * OPEN_MILLIS + 5)).isTrue();
+  }
+
+  @Test
+  void allowsAnotherTrialIfOneNeverReports() {
+    open(0);
+    assertThat(breaker.allowRequest(OPEN_MILLIS)).isTrue();
+    assertThat(breaker.allowRequest(2 * OPEN_MILLIS - 1)).isFalse();
+    assertThat(breaker.allowRequest(2 * OPEN_MILLIS)).isTrue();
+  }
+
+  @Test
+  void grantsOneTrialToConcurrentCallers() throws InterruptedException {
+    open(0);
+    int[] allowed = new int[1];
+    Thread[] threads = new Thread[8];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] =
+          new Thread(
+              () -> {
+                if (breaker.allowRequest(OPEN_MILLIS)) {
+                  synchronized (allowed) {
+                    allowed[0]++;
+                  }
+                }
+              });
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertThat(allowed[0]).isEqualTo(1);
+  }
+
+  private void open(long nowMillis) {
+    for (int i = 0; i < 3; i++) {
+      breaker.onFailure(nowMillis);
+    }
+    assertThat(breaker.allowRequest(nowMillis)).isFalse();
+  }
+}
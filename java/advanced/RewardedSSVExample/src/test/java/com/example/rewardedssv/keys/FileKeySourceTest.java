@@ -0,0 +1,58 @@
+package com.example.rewardedssv.keys;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileKeySourceTest {
+  private static final FileTime MODIFIED = FileTime.fromMillis(1_700_000_000_000L);
+
+  @TempDir Path directory;
+
+  @Test
+  void returnsNullWhileFileIsUnchanged() throws IOException {
+    Path file = write("{\"keys\":[]}", MODIFIED);
+    FileKeySource source = new FileKeySource(file);
+    assertThat(source.fetch()).isEqualTo("{\"keys\":[]}");
+    assertThat(source.fetch()).isNull();
+  }
+
+  @Test
+  void rereadsFileWhenModificationTimeChanges() throws IOException {
+    Path file = write("{\"keys\":[1]}", MODIFIED);
+    FileKeySource source = new FileKeySource(file);
+    source.fetch();
+    write("{\"keys\":[2]}", FileTime.fromMillis(MODIFIED.toMillis() + 1000));
+    assertThat(source.fetch()).isEqualTo("{\"keys\":[2]}");
+  }
+
+  @Test
+  void rereadsFileWhenSizeChanges() throws IOException {
+    Path file = write("{\"keys\":[]}", MODIFIED);
+    FileKeySource source = new FileKeySource(file);
+    source.fetch();
+    write("{\"keys\":[1]}", MODIFIED);
+    assertThat(source.fetch()).isEqualTo("{\"keys\":[1]}");
+  }
+
+  @Test
+  void rereadsUnchangedFileAfterInvalidate() throws IOException {
+    Path file = write("{\"keys\":[]}", MODIFIED);
+    FileKeySource source = new FileKeySource(file);
+    source.fetch();
+    source.invalidate();
+    assertThat(source.fetch()).isEqualTo("{\"keys\":[]}");
+  }
+
+  private Path write(String content, FileTime modified) throws IOException {
+    Path file = directory.resolve("keys.json");
+    Files.writeString(file, content);
+    Files.setLastModifiedTime(file, modified);
+    return file;
+  }
+}
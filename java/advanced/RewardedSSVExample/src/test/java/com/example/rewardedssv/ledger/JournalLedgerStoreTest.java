@@ -0,0 +1,286 @@
+package com.example.rewardedssv.ledger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class JournalLedgerStoreTest {
+  /** Small enough for a dozen rewards per segment. */
+  private static final int SEGMENT_SIZE = 1024;
+
+  @TempDir Path directory;
+
+  @Test
+  void replaysAppendedRewardsAfterRestart() throws IOException {
+    try (JournalLedgerStore store = open()) {
+      assertThat(store.append(rewards(0, 40))).isEqualTo(0);
+      assertThat(store.append(rewards(40, 10))).isEqualTo(40);
+    }
+    try (JournalLedgerStore store = open()) {
+      assertThat(store.getNextSequence()).isEqualTo(50);
+      assertThat(transactionIds(store, 0)).containsExactlyElementsOf(ids(0, 50));
+      assertThat(transactionIds(store, 45)).containsExactlyElementsOf(ids(45, 5));
+    }
+  }
+
+  @Test
+  void startsReplayAtFirstSegmentWithinWindow() throws IOException {
+    try (JournalLedgerStore store = open()) {
+      store.append(rewards(0, 100));
+    }
+    assertThat(Files.exists(directory.resolve("sealed.idx"))).isTrue();
+    try (JournalLedgerStore store = open()) {
+      long from = store.firstSequenceSince(timestamp(60));
+      assertThat(from).isGreaterThan(0).isLessThanOrEqualTo(60);
+      List<String> replayed = transactionIds(store, from);
+      assertThat(replayed).containsAll(ids(60, 40)).hasSize((int) (100 - from));
+      assertThat(store.firstSequenceSince(timestamp(1000)))
+          .isEqualTo(store.firstSequenceSince(Long.MAX_VALUE))
+          .isGreaterThan(from);
+    }
+  }
+
+  @Test
+  void rebuildsMissingIndex() throws IOException {
+    long from;
+    try (JournalLedgerStore store = open()) {
+      store.append(rewards(0, 100));
+      from = store.firstSequenceSince(timestamp(60));
+    }
+    Files.delete(directory.resolve("sealed.idx"));
+    try (JournalLedgerStore store = open()) {
+      assertThat(store.getNextSequence()).isEqualTo(100);
+      assertThat(store.firstSequenceSince(timestamp(60))).isEqualTo(from);
+      assertThat(transactionIds(store, 0)).containsExactlyElementsOf(ids(0, 100));
+    }
+    assertThat(Files.exists(directory.resolve("sealed.idx"))).isTrue();
+  }
+
+  @Test
+  void deletesTrailingSegmentWithoutHeader() throws IOException {
+    try (JournalLedgerStore store = open()) {
+      store.append(rewards(0, 5));
+    }
+    // A crash after the file of the next segment was created and sized, before its header.
+    Path blank = JournalSegment.path(directory, 5);
+    Files.write(blank, new byte[SEGMENT_SIZE]);
+    try (JournalLedgerStore store = open()) {
+      assertThat(blank).doesNotExist();
+      assertThat(store.getNextSequence()).isEqualTo(5);
+      assertThat(store.append(rewards(5, 20))).isEqualTo(5);
+      assertThat(transactionIds(store, 0)).containsExactlyElementsOf(ids(0, 25));
+    }
+  }
+
+  @Test
+  void deletesTrailingSegmentShorterThanHeader() throws IOException {
+    try (JournalLedgerStore store = open()) {
+      store.append(rewards(0, 30));
+    }
+    Path blank = JournalSegment.path(directory, 30);
+    Files.write(blank, new byte[0]);
+    try (JournalLedgerStore store = open()) {
+      assertThat(blank).doesNotExist();
+      assertThat(store.getNextSequence()).isEqualTo(30);
+      assertThat(transactionIds(store, 0)).containsExactlyElementsOf(ids(0, 30));
+    }
+  }
+
+  @Test
+  void dropsTornLastRecord() throws IOException {
+    try (JournalLedgerStore store = open()) {
+      store.append(rewards(0, 5));
+    }
+    Path segment = JournalSegment.path(directory, 0);
+    // The length of the last record reached the disk, the end of its payload did not.
+    int end = recordOffset(segment, 5);
+    zero(segment, end - 8, end);
+    try (JournalLedgerStore store = open()) {
+      assertThat(store.getNextSequence()).isEqualTo(4);
+      assertThat(transactionIds(store, 0)).containsExactlyElementsOf(ids(0, 4));
+      assertThat(store.append(rewards(100, 1))).isEqualTo(4);
+    }
+    try (JournalLedgerStore store = open()) {
+      List<String> expected = ids(0, 4);
+      expected.add("tx-100");
+      assertThat(transactionIds(store, 0)).containsExactlyElementsOf(expected);
+    }
+  }
+
+  @Test
+  void dropsLastRecordWithBadCrc() throws IOException {
+    try (JournalLedgerStore store = open()) {
+      store.append(rewards(0, 5));
+    }
+    Path segment = JournalSegment.path(directory, 0);
+    flip(segment, recordOffset(segment, 4) + 20);
+    try (JournalLedgerStore store = open()) {
+      assertThat(store.getNextSequence()).isEqualTo(4);
+      assertThat(transactionIds(store, 0)).containsExactlyElementsOf(ids(0, 4));
+    }
+  }
+
+  @Test
+  void quarantinesSegmentsAfterDamagedRecord() throws IOException {
+    try (JournalLedgerStore store = open()) {
+      store.append(rewards(0, 100));
+    }
+    List<Path> segments = segments();
+    assertThat(segments).hasSizeGreaterThan(3);
+    // Without the index, every segment is scanned on open.
+    Files.delete(directory.resolve("sealed.idx"));
+    Path damaged = segments.get(1);
+    long damagedSequence = firstSequence(damaged) + 2;
+    flip(damaged, recordOffset(damaged, 2) + 20);
+    try (JournalLedgerStore store = open()) {
+      assertThat(store.getNextSequence()).isEqualTo(damagedSequence);
+      assertThat(transactionIds(store, 0))
+          .containsExactlyElementsOf(ids(0, (int) damagedSequence));
+      assertThat(store.append(rewards(200, 1))).isEqualTo(damagedSequence);
+    }
+    assertThat(segments()).containsExactly(segments.get(0), damaged);
+    for (Path later : segments.subList(2, segments.size())) {
+      assertThat(later.resolveSibling(later.getFileName() + ".corrupt")).exists();
+    }
+  }
+
+  @Test
+  void quarantinesSegmentsAfterMissingSegment() throws IOException {
+    try (JournalLedgerStore store = open()) {
+      store.append(rewards(0, 100));
+    }
+    List<Path> segments = segments();
+    Files.delete(segments.get(2));
+    long end = firstSequence(segments.get(2));
+    try (JournalLedgerStore store = open()) {
+      assertThat(store.getNextSequence()).isEqualTo(end);
+      assertThat(transactionIds(store, 0)).containsExactlyElementsOf(ids(0, (int) end));
+    }
+    assertThat(segments()).containsExactlyElementsOf(segments.subList(0, 2));
+    // The index no longer lists the segments that were moved aside.
+    try (JournalLedgerStore store = open()) {
+      assertThat(store.append(rewards(200, 40))).isEqualTo(end);
+      assertThat(transactionIds(store, end)).containsExactlyElementsOf(ids(200, 40));
+    }
+  }
+
+  @Test
+  void rollsBackBatchThatFailsToAppend() throws IOException {
+    try (JournalLedgerStore store = open()) {
+      store.append(rewards(0, 10));
+      List<Path> before = segments();
+      // The batch fills the segment, starts a new one, and then hits a reward that cannot fit.
+      List<VerifiedReward> batch = rewards(10, 10);
+      batch.add(oversized(20));
+      assertThatThrownBy(() -> store.append(batch)).isInstanceOf(IOException.class);
+      assertThat(segments()).isEqualTo(before);
+      assertThat(store.getNextSequence()).isEqualTo(10);
+      assertThat(transactionIds(store, 0)).containsExactlyElementsOf(ids(0, 10));
+      assertThat(store.append(rewards(30, 5))).isEqualTo(10);
+    }
+    try (JournalLedgerStore store = open()) {
+      List<String> expected = ids(0, 10);
+      expected.addAll(ids(30, 5));
+      assertThat(transactionIds(store, 0)).containsExactlyElementsOf(expected);
+    }
+  }
+
+  private JournalLedgerStore open() throws IOException {
+    return new JournalLedgerStore(directory, SEGMENT_SIZE, true);
+  }
+
+  private static List<String> transactionIds(LedgerStore store, long fromSequence)
+      throws IOException {
+    List<String> ids = new ArrayList<>();
+    long[] expected = {fromSequence};
+    store.replay(
+        fromSequence,
+        (firstSequence, rewards) -> {
+          assertThat(firstSequence).isEqualTo(expected[0]);
+          expected[0] += rewards.size();
+          rewards.forEach(reward -> ids.add(reward.getTransactionId()));
+        });
+    return ids;
+  }
+
+  private List<Path> segments() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files
+          .filter(path -> path.getFileName().toString().endsWith(".seg"))
+          .sorted()
+          .collect(Collectors.toList());
+    }
+  }
+
+  private static long firstSequence(Path segment) {
+    return Long.parseLong(segment.getFileName().toString().replace(".seg", ""));
+  }
+
+  /** Returns the offset of the record {@code index} of {@code segment}, or of its end. */
+  private static int recordOffset(Path segment, int index) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment));
+    int offset = 16;
+    for (int i = 0; i < index; i++) {
+      offset += 16 + buffer.getInt(offset);
+    }
+    return offset;
+  }
+
+  private static void flip(Path file, int offset) throws IOException {
+    byte[] bytes = Files.readAllBytes(file);
+    bytes[offset] ^= 0x40;
+    Files.write(file, bytes);
+  }
+
+  private static void zero(Path file, int from, int to) throws IOException {
+    byte[] bytes = Files.readAllBytes(file);
+    Arrays.fill(bytes, from, to, (byte) 0);
+    Files.write(file, bytes);
+  }
+
+  private static VerifiedReward oversized(int i) {
+    return new VerifiedReward(
+        "tx-" + i, "user-" + i, null, null, null, i, "x".repeat(SEGMENT_SIZE), timestamp(i), 0);
+  }
+
+  static List<VerifiedReward> rewards(int first, int count) {
+    List<VerifiedReward> rewards = new ArrayList<>();
+    for (int i = first; i < first + count; i++) {
+      rewards.add(
+          new VerifiedReward(
+              "tx-" + i,
+              "user-" + i,
+              "5450213213286189855",
+              "1234",
+              "coins",
+              i,
+              null,
+              timestamp(i),
+              3335741209L));
+    }
+    return rewards;
+  }
+
+  static List<String> ids(int first, int count) {
+    List<String> ids = new ArrayList<>();
+    for (int i = first; i < first + count; i++) {
+      ids.add("tx-" + i);
+    }
+    return ids;
+  }
+
+  private static long timestamp(int i) {
+    return 1_700_000_000_000L + i * 1000L;
+  }
+}
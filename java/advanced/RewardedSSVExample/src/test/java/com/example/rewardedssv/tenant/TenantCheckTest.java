@@ -0,0 +1,41 @@
+package com.example.rewardedssv.tenant;
+
+import static com.example.rewardedssv.tenant.TenantTableTest.CONFIGURATION;
+import static com.example.rewardedssv.tenant.TenantTableTest.query;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.example.rewardedssv.VerificationError.Type;
+import org.json.JSONException;
+import org.junit.jupiter.api.Test;
+
+class TenantCheckTest {
+  private final TenantRegistry registry = mock(TenantRegistry.class);
+  private final TenantCheck check = new TenantCheck(registry);
+
+  @Test
+  void appliesRulesOfTheTenant() throws JSONException {
+    when(registry.getTable()).thenReturn(TenantTable.parse(CONFIGURATION));
+    assertThat(check.check(query("ad_unit=11&reward_amount=5&reward_item=coins"))).isNull();
+    assertThat(check.check(query("ad_unit=11&reward_amount=500&reward_item=coins")).getType())
+        .isEqualTo(Type.REWARD_AMOUNT_OUT_OF_BOUNDS);
+    assertThat(check.check(query("ad_unit=11&reward_item=coins")).getType())
+        .isEqualTo(Type.REWARD_AMOUNT_OUT_OF_BOUNDS);
+    assertThat(check.check(query("ad_unit=11&reward_amount=5&reward_item=gems")).getType())
+        .isEqualTo(Type.REWARD_ITEM_NOT_ALLOWED);
+    // The other tenant has no rules.
+    assertThat(check.check(query("ad_unit=21&reward_amount=500&reward_item=gems"))).isNull();
+  }
+
+  @Test
+  void rejectsUnknownAdUnitsOnlyIfConfigured() throws JSONException {
+    when(registry.getTable()).thenReturn(TenantTable.parse(CONFIGURATION));
+    assertThat(check.check(query("ad_unit=99")).getType()).isEqualTo(Type.AD_UNIT_NOT_ALLOWED);
+    assertThat(check.check(query("user_id=u")).getType()).isEqualTo(Type.AD_UNIT_NOT_ALLOWED);
+
+    when(registry.getTable())
+        .thenReturn(TenantTable.parse(CONFIGURATION.replace("true", "false")));
+    assertThat(check.check(query("ad_unit=99"))).isNull();
+  }
+}
@@ -0,0 +1,122 @@
+package com.example.rewardedssv.tenant;
+
+import static com.example.rewardedssv.tenant.TenantTableTest.CONFIGURATION;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TenantRegistryTest {
+  private static final long MODIFIED = 1_700_000_000_000L;
+  private static final String RACING_ONLY =
+      "{\"tenants\": [{\"name\": \"racing\", \"ad_units\": [21, 22]}]}";
+
+  @TempDir Path directory;
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private TenantRegistry registry;
+
+  @AfterEach
+  void tearDown() {
+    if (registry != null) {
+      registry.stop();
+    }
+  }
+
+  @Test
+  void hasNoTenantsWithoutFile() throws IOException {
+    registry = new TenantRegistry(meterRegistry, "", 0);
+    registry.start();
+    assertThat(registry.isEnabled()).isFalse();
+    assertThat(registry.getTable().getTenants()).isEmpty();
+  }
+
+  @Test
+  void refusesToStartWithInvalidFile() throws IOException {
+    Path file = write("{\"tenants\": [", MODIFIED);
+    registry = new TenantRegistry(meterRegistry, file.toString(), 0);
+    assertThatThrownBy(registry::start).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void reloadsChangedFile() throws IOException {
+    Path file = write(CONFIGURATION, MODIFIED);
+    registry = start(file);
+    TenantTable loaded = registry.getTable();
+    assertThat(loaded.get(11)).hasToString("puzzle");
+
+    registry.reloadIfChanged();
+    assertThat(registry.getTable()).isSameAs(loaded);
+
+    write(RACING_ONLY, MODIFIED + 1000);
+    registry.reloadIfChanged();
+    assertThat(registry.getTable().get(11)).isNull();
+    assertThat(registry.getTable().get(22)).hasToString("racing");
+    assertThat(reloads("success")).isEqualTo(1);
+  }
+
+  @Test
+  void keepsPreviousTableWhenReloadFails() throws IOException {
+    Path file = write(CONFIGURATION, MODIFIED);
+    registry = start(file);
+    TenantTable loaded = registry.getTable();
+
+    write("{\"tenants\": [{\"name\": \"a\", \"ad_units\": [1]}, {\"name\": \"a\"", MODIFIED + 1000);
+    registry.reloadIfChanged();
+    assertThat(registry.getTable()).isSameAs(loaded);
+    // An invalid configuration is as bad as malformed JSON.
+    write("{\"tenants\": [{\"name\": \"a b\", \"ad_units\": [1]}]}", MODIFIED + 2000);
+    registry.reloadIfChanged();
+    assertThat(registry.getTable()).isSameAs(loaded);
+    // A broken file is reported once, not on every check.
+    registry.reloadIfChanged();
+    assertThat(reloads("failure")).isEqualTo(2);
+
+    write(RACING_ONLY, MODIFIED + 3000);
+    registry.reloadIfChanged();
+    assertThat(registry.getTable().get(21)).hasToString("racing");
+  }
+
+  @Test
+  void keepsPreviousTableWhileFileIsGone() throws IOException {
+    Path file = write(CONFIGURATION, MODIFIED);
+    registry = start(file);
+    TenantTable loaded = registry.getTable();
+
+    Files.delete(file);
+    registry.reloadIfChanged();
+    registry.reloadIfChanged();
+    assertThat(registry.getTable()).isSameAs(loaded);
+    assertThat(reloads("failure")).isZero();
+
+    // Even if it comes back with the same time and size, it is read again.
+    write(CONFIGURATION.replace("racing", "diving"), MODIFIED);
+    registry.reloadIfChanged();
+    assertThat(registry.getTable().get(21)).hasToString("diving");
+  }
+
+  private TenantRegistry start(Path file) throws IOException {
+    TenantRegistry registry = new TenantRegistry(meterRegistry, file.toString(), 0);
+    registry.start();
+    assertThat(registry.isEnabled()).isTrue();
+    return registry;
+  }
+
+  private Path write(String content, long modifiedMillis) throws IOException {
+    Path file = directory.resolve("tenants.json");
+    Files.writeString(file, content);
+    Files.setLastModifiedTime(file, FileTime.fromMillis(modifiedMillis));
+    return file;
+  }
+
+  private double reloads(String result) {
+    return meterRegistry.get("ssv.tenants.reloads").tag("result", result).counter().count();
+  }
+}
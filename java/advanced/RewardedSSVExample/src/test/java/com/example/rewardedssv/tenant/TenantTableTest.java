@@ -0,0 +1,97 @@
+package com.example.rewardedssv.tenant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.example.rewardedssv.CallbackQuery;
+import java.net.URI;
+import org.json.JSONException;
+import org.junit.jupiter.api.Test;
+
+class TenantTableTest {
+  static final String CONFIGURATION =
+      "{\"reject_unknown_ad_units\": true, \"tenants\": ["
+          + "{\"name\": \"puzzle\", \"ad_units\": [11, 12],"
+          + " \"webhook\": \"https://puzzle.example.com/rewards\","
+          + " \"reward_items\": [\"coins\"], \"reward_amount\": {\"min\": 1, \"max\": 100}},"
+          + "{\"name\": \"racing\", \"ad_units\": [21]}]}";
+
+  @Test
+  void routesAdUnitsToTheirTenant() throws JSONException {
+    TenantTable table = TenantTable.parse(CONFIGURATION);
+    assertThat(table.getTenants()).extracting(Tenant::getName).containsExactly("puzzle", "racing");
+    assertThat(table.get(11)).hasToString("puzzle");
+    assertThat(table.get(12)).hasToString("puzzle");
+    assertThat(table.get(21)).hasToString("racing");
+    assertThat(table.get(99)).isNull();
+    assertThat(table.get(-1)).isNull();
+    assertThat(table.get("racing")).isSameAs(table.get(21));
+    assertThat(table.route("12")).hasToString("puzzle");
+    assertThat(table.route("twelve")).isNull();
+    assertThat(table.route(query("ad_unit=21"))).hasToString("racing");
+    assertThat(table.route(query("ad_unit=2x"))).isNull();
+    assertThat(table.route(query("user_id=u"))).isNull();
+    assertThat(table.rejectsUnknownAdUnits()).isTrue();
+  }
+
+  @Test
+  void parsesRulesAndDefaults() throws JSONException {
+    TenantTable table = TenantTable.parse(CONFIGURATION);
+    Tenant puzzle = table.get("puzzle");
+    assertThat(puzzle.getWebhook()).isEqualTo(URI.create("https://puzzle.example.com/rewards"));
+    assertThat(puzzle.getRewardItems()).containsExactly("coins");
+    assertThat(puzzle.getMinRewardAmount()).isEqualTo(1);
+    assertThat(puzzle.getMaxRewardAmount()).isEqualTo(100);
+    Tenant racing = table.get("racing");
+    assertThat(racing.getWebhook()).isNull();
+    assertThat(racing.getRewardItems()).isEmpty();
+    assertThat(racing.hasRewardAmountBounds()).isFalse();
+    assertThat(TenantTable.parse("{\"tenants\": []}").rejectsUnknownAdUnits()).isFalse();
+  }
+
+  @Test
+  void routesManyAdUnits() throws JSONException {
+    StringBuilder adUnits = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      adUnits.append(i == 0 ? "" : ",").append(5_000_000_000L + i * 31L);
+    }
+    TenantTable table =
+        TenantTable.parse("{\"tenants\": [{\"name\": \"big\", \"ad_units\": [" + adUnits + "]}]}");
+    for (int i = 0; i < 1000; i++) {
+      assertThat(table.get(5_000_000_000L + i * 31L)).hasToString("big");
+      assertThat(table.get(5_000_000_000L + i * 31L + 1)).isNull();
+    }
+  }
+
+  @Test
+  void rejectsInvalidConfigurations() {
+    assertInvalid(tenants(tenant("a", "1"), tenant("b", "1")), "Ad unit 1");
+    assertInvalid(tenants(tenant("a", "1"), tenant("a", "2")), "Duplicate");
+    assertInvalid(tenants(tenant("a b", "1")), "Invalid tenant name");
+    assertInvalid(tenants(tenant("a", "-1")), "Invalid ad unit");
+    assertInvalid(
+        "{\"tenants\": [{\"name\": \"a\", \"ad_units\": [1], \"webhook\": \"ftp://a.example\"}]}",
+        "Invalid webhook");
+    assertThatThrownBy(() -> TenantTable.parse("{\"tenants\": [{\"name\": \"a\"}]}"))
+        .isInstanceOf(JSONException.class);
+    assertThatThrownBy(() -> TenantTable.parse("{")).isInstanceOf(JSONException.class);
+  }
+
+  private static void assertInvalid(String json, String message) {
+    assertThatThrownBy(() -> TenantTable.parse(json))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining(message);
+  }
+
+  private static String tenants(String... tenants) {
+    return "{\"tenants\": [" + String.join(",", tenants) + "]}";
+  }
+
+  private static String tenant(String name, String adUnits) {
+    return "{\"name\": \"" + name + "\", \"ad_units\": [" + adUnits + "]}";
+  }
+
+  static CallbackQuery query(String payload) {
+    return CallbackQuery.parse(payload + "&signature=c2ln&key_id=1");
+  }
+}
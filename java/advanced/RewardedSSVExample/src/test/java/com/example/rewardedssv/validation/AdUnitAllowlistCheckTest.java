@@ -0,0 +1,34 @@
+package com.example.rewardedssv.validation;
+
+import static com.example.rewardedssv.validation.RequiredParametersCheckTest.query;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.example.rewardedssv.VerificationError.Type;
+import org.junit.jupiter.api.Test;
+
+class AdUnitAllowlistCheckTest {
+
+  @Test
+  void acceptsOnlyListedAdUnits() {
+    AdUnitAllowlistCheck check = new AdUnitAllowlistCheck("1234, 5678");
+    assertThat(check.isEnabled()).isTrue();
+    assertThat(check.check(query("ad_unit=1234"))).isNull();
+    assertThat(check.check(query("ad_unit=5678"))).isNull();
+    assertThat(check.check(query("ad_unit=9999")).getType()).isEqualTo(Type.AD_UNIT_NOT_ALLOWED);
+    assertThat(check.check(query("ad_unit=12x4")).getType()).isEqualTo(Type.AD_UNIT_NOT_ALLOWED);
+    assertThat(check.check(query("user_id=u")).getType()).isEqualTo(Type.MISSING_PARAMETER);
+  }
+
+  @Test
+  void isDisabledWithoutAdUnits() {
+    assertThat(new AdUnitAllowlistCheck("").isEnabled()).isFalse();
+  }
+
+  @Test
+  void rejectsInvalidConfiguration() {
+    assertThatThrownBy(() -> new AdUnitAllowlistCheck("1234,abc"))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("abc");
+  }
+}
@@ -0,0 +1,37 @@
+package com.example.rewardedssv.validation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+
+class LongSetTest {
+
+  @Test
+  void containsAddedValuesAcrossGrowth() {
+    LongSet set = new LongSet(1);
+    for (long value = 0; value < 1000; value += 7) {
+      set.add(value * 1_000_003L);
+    }
+    assertThat(set.size()).isEqualTo(143);
+    for (long value = 0; value < 1000; value++) {
+      assertThat(set.contains(value * 1_000_003L)).isEqualTo(value % 7 == 0);
+    }
+  }
+
+  @Test
+  void ignoresDuplicates() {
+    LongSet set = new LongSet(4);
+    set.add(5);
+    set.add(5);
+    assertThat(set.size()).isEqualTo(1);
+  }
+
+  @Test
+  void rejectsNegativeValues() {
+    LongSet set = new LongSet(4);
+    assertThatThrownBy(() -> set.add(-1)).isInstanceOf(IllegalArgumentException.class);
+    // -1 marks a free slot, so it must never be reported as contained.
+    assertThat(set.contains(-1)).isFalse();
+  }
+}
@@ -0,0 +1,38 @@
+package com.example.rewardedssv.validation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.example.rewardedssv.CallbackQuery;
+import com.example.rewardedssv.VerificationError.Type;
+import org.junit.jupiter.api.Test;
+
+class RequiredParametersCheckTest {
+
+  @Test
+  void requiresTransactionIdAndTimestamp() {
+    RequiredParametersCheck check = new RequiredParametersCheck("");
+    assertThat(check.check(query("transaction_id=t&timestamp=1"))).isNull();
+    assertThat(check.check(query("timestamp=1")).getType()).isEqualTo(Type.MISSING_PARAMETER);
+    assertThat(check.check(query("transaction_id=t")).getType()).isEqualTo(Type.MISSING_PARAMETER);
+  }
+
+  @Test
+  void requiresConfiguredParameters() {
+    RequiredParametersCheck check = new RequiredParametersCheck("user_id, custom_data");
+    assertThat(check.check(query("transaction_id=t&timestamp=1&user_id=u")).getMessage())
+        .isEqualTo("Missing custom_data parameter.");
+    assertThat(check.check(query("transaction_id=t&timestamp=1&user_id=u&custom_data=c"))).isNull();
+  }
+
+  @Test
+  void rejectsUnknownParameterNames() {
+    assertThatThrownBy(() -> new RequiredParametersCheck("user_id,nickname"))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("nickname");
+  }
+
+  static CallbackQuery query(String payload) {
+    return CallbackQuery.parse(payload + "&signature=c2ln&key_id=1");
+  }
+}
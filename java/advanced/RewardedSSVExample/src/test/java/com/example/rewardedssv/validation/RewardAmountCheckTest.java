@@ -0,0 +1,35 @@
+package com.example.rewardedssv.validation;
+
+import static com.example.rewardedssv.validation.RequiredParametersCheckTest.query;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.rewardedssv.VerificationError.Type;
+import org.junit.jupiter.api.Test;
+
+class RewardAmountCheckTest {
+
+  @Test
+  void acceptsAmountsWithinBounds() {
+    RewardAmountCheck check = new RewardAmountCheck(1, 100);
+    assertThat(check.isEnabled()).isTrue();
+    assertThat(check.check(query("reward_amount=1"))).isNull();
+    assertThat(check.check(query("reward_amount=100"))).isNull();
+    assertThat(check.check(query("reward_amount=0")).getType())
+        .isEqualTo(Type.REWARD_AMOUNT_OUT_OF_BOUNDS);
+    assertThat(check.check(query("reward_amount=101")).getType())
+        .isEqualTo(Type.REWARD_AMOUNT_OUT_OF_BOUNDS);
+  }
+
+  @Test
+  void rejectsMissingOrMalformedAmounts() {
+    RewardAmountCheck check = new RewardAmountCheck(1, 0);
+    assertThat(check.check(query("reward_amount=999999"))).isNull();
+    assertThat(check.check(query("user_id=u")).getType()).isEqualTo(Type.MISSING_PARAMETER);
+    assertThat(check.check(query("reward_amount=ten")).getType()).isEqualTo(Type.MALFORMED);
+  }
+
+  @Test
+  void isDisabledWithoutBounds() {
+    assertThat(new RewardAmountCheck(0, 0).isEnabled()).isFalse();
+  }
+}
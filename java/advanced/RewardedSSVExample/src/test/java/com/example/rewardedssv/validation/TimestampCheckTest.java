@@ -0,0 +1,28 @@
+package com.example.rewardedssv.validation;
+
+import static com.example.rewardedssv.validation.RequiredParametersCheckTest.query;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.example.rewardedssv.VerificationError.Type;
+import com.example.rewardedssv.dedup.TransactionDedupStore;
+import org.junit.jupiter.api.Test;
+
+class TimestampCheckTest {
+  private final TransactionDedupStore dedupStore = mock(TransactionDedupStore.class);
+  private final TimestampCheck check = new TimestampCheck(dedupStore);
+
+  @Test
+  void rejectsTimestampsOutsideWindow() {
+    when(dedupStore.isInWindow(2000)).thenReturn(true);
+    assertThat(check.check(query("timestamp=2000"))).isNull();
+    assertThat(check.check(query("timestamp=1000"))).isSameAs(TimestampCheck.OUT_OF_WINDOW);
+  }
+
+  @Test
+  void rejectsMalformedTimestamps() {
+    assertThat(check.check(query("timestamp=-5")).getType()).isEqualTo(Type.MALFORMED);
+    assertThat(check.check(query("user_id=u")).getType()).isEqualTo(Type.MALFORMED);
+  }
+}
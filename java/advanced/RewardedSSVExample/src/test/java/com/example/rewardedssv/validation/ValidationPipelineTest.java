@@ -0,0 +1,98 @@
+package com.example.rewardedssv.validation;
+
+import static com.example.rewardedssv.validation.RequiredParametersCheckTest.query;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.example.rewardedssv.CallbackQuery;
+import com.example.rewardedssv.VerificationError;
+import com.example.rewardedssv.VerificationError.Type;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+class ValidationPipelineTest {
+  private static final VerificationError FIRST =
+      VerificationError.of(Type.MALFORMED, "Rejected by first.");
+  private static final VerificationError SECOND =
+      VerificationError.of(Type.MALFORMED, "Rejected by second.");
+
+  private final List<String> ran = new ArrayList<>();
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  @Test
+  void runsChecksInOrderAndStopsAtFirstRejection() {
+    ValidationPipeline pipeline =
+        pipeline(check("first", "reject=first", FIRST), check("second", "reject=second", SECOND));
+    assertThat(pipeline.validate(query("reject=first"))).isSameAs(FIRST);
+    assertThat(ran).containsExactly("first");
+    Timer rejected =
+        meterRegistry.get("ssv.validation").tags("check", "first", "result", "reject").timer();
+    assertThat(rejected.count()).isEqualTo(1);
+
+    ran.clear();
+    assertThat(pipeline.validate(query("reject=second"))).isSameAs(SECOND);
+    assertThat(ran).containsExactly("first", "second");
+  }
+
+  @Test
+  void passesWhenNoCheckRejects() {
+    ValidationPipeline pipeline =
+        pipeline(check("first", "reject=first", FIRST), check("second", "reject=second", SECOND));
+    assertThat(pipeline.validate(query("reject=none"))).isNull();
+    assertThat(ran).containsExactly("first", "second");
+  }
+
+  @Test
+  void skipsDisabledChecks() {
+    CallbackCheck disabled =
+        new CallbackCheck() {
+          @Override
+          public String getName() {
+            return "disabled";
+          }
+
+          @Override
+          public boolean isEnabled() {
+            return false;
+          }
+
+          @Override
+          public VerificationError check(CallbackQuery query) {
+            ran.add("disabled");
+            return FIRST;
+          }
+        };
+    ValidationPipeline pipeline = pipeline(disabled, check("second", "reject=second", SECOND));
+    assertThat(pipeline.validate(query("reject=none"))).isNull();
+    assertThat(ran).containsExactly("second");
+  }
+
+  @SuppressWarnings("unchecked")
+  private ValidationPipeline pipeline(CallbackCheck... checks) {
+    ObjectProvider<CallbackCheck> provider = mock(ObjectProvider.class);
+    when(provider.orderedStream()).thenReturn(Stream.of(checks));
+    return new ValidationPipeline(provider, meterRegistry);
+  }
+
+  /** Returns a check that rejects callbacks whose payload starts with {@code prefix}. */
+  private CallbackCheck check(String name, String prefix, VerificationError error) {
+    return new CallbackCheck() {
+      @Override
+      public String getName() {
+        return name;
+      }
+
+      @Override
+      public VerificationError check(CallbackQuery query) {
+        ran.add(name);
+        return query.payloadString().startsWith(prefix) ? error : null;
+      }
+    };
+  }
+}